@@ -18,9 +18,7 @@ package org.thoughtcrime.securesms;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
-import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
@@ -54,6 +52,7 @@ import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
 import org.thoughtcrime.securesms.components.viewpager.ExtendedOnPageChangedListener;
 import org.thoughtcrime.securesms.database.MediaDatabase;
 import org.thoughtcrime.securesms.database.MediaDatabase.MediaRecord;
+import org.thoughtcrime.securesms.database.loaders.PagedGalleryMedia;
 import org.thoughtcrime.securesms.database.loaders.PagingMediaLoader;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.mediaoverview.MediaOverviewActivity;
@@ -78,9 +77,10 @@ import java.util.Map;
  * Activity for displaying media attachments in-app
  */
 public final class MediaPreviewActivity extends PassphraseRequiredActionBarActivity
-  implements LoaderManager.LoaderCallbacks<Pair<Cursor, Integer>>,
+  implements LoaderManager.LoaderCallbacks<Pair<PagedGalleryMedia, Integer>>,
              MediaRailAdapter.RailItemListener,
-             MediaPreviewFragment.Events
+             MediaPreviewFragment.Events,
+             PagedGalleryMedia.Listener
 {
 
   private final static String TAG = MediaPreviewActivity.class.getSimpleName();
@@ -328,12 +328,19 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
   private int cleanupMedia() {
     int restartItem = mediaPager.getCurrentItem();
 
+    detachGalleryMedia();
     mediaPager.removeAllViews();
     mediaPager.setAdapter(null);
 
     return restartItem;
   }
 
+  private void detachGalleryMedia() {
+    if (mediaPager.getAdapter() instanceof GalleryPagerAdapter) {
+      ((GalleryPagerAdapter) mediaPager.getAdapter()).getMedia().setListener(null);
+    }
+  }
+
   private void showOverview() {
     startActivity(MediaOverviewActivity.forThread(this, threadId));
   }
@@ -454,19 +461,22 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
   }
 
   @Override
-  public @NonNull Loader<Pair<Cursor, Integer>> onCreateLoader(int id, Bundle args) {
+  public @NonNull Loader<Pair<PagedGalleryMedia, Integer>> onCreateLoader(int id, Bundle args) {
     return new PagingMediaLoader(this, threadId, initialMediaUri, leftIsRecent, sorting);
   }
 
   @Override
-  public void onLoadFinished(@NonNull Loader<Pair<Cursor, Integer>> loader, @Nullable Pair<Cursor, Integer> data) {
+  public void onLoadFinished(@NonNull Loader<Pair<PagedGalleryMedia, Integer>> loader, @Nullable Pair<PagedGalleryMedia, Integer> data) {
     if (data != null) {
+      detachGalleryMedia();
+
       @SuppressWarnings("ConstantConditions")
-      CursorPagerAdapter adapter = new CursorPagerAdapter(getSupportFragmentManager(),this, data.first, data.second, leftIsRecent);
+      GalleryPagerAdapter adapter = new GalleryPagerAdapter(getSupportFragmentManager(), data.first, data.second, leftIsRecent);
+      data.first.setListener(this);
       mediaPager.setAdapter(adapter);
       adapter.setActive(true);
 
-      viewModel.setCursor(this, data.first, leftIsRecent);
+      viewModel.setGalleryMedia(this, data.first, leftIsRecent);
 
       int item = restartItem >= 0 ? restartItem : data.second;
       mediaPager.setCurrentItem(item);
@@ -478,8 +488,30 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
   }
 
   @Override
-  public void onLoaderReset(@NonNull Loader<Pair<Cursor, Integer>> loader) {
+  public void onLoaderReset(@NonNull Loader<Pair<PagedGalleryMedia, Integer>> loader) {
+
+  }
+
+  @Override
+  public void onPageLoaded() {
+    if (!(mediaPager.getAdapter() instanceof GalleryPagerAdapter)) {
+      return;
+    }
+
+    mediaPager.getAdapter().notifyDataSetChanged();
+    viewModel.setActiveAlbumRailItem(this, mediaPager.getCurrentItem());
+    initializeActionBar();
+  }
+
+  @Override
+  public void onGalleryChanged() {
+    if (!(mediaPager.getAdapter() instanceof GalleryPagerAdapter)) {
+      return;
+    }
 
+    Log.i(TAG, "Gallery changed while paging, reloading.");
+    restartItem = mediaPager.getCurrentItem();
+    LoaderManager.getInstance(this).restartLoader(0, null, this);
   }
 
   @Override
@@ -524,7 +556,7 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
 
       if (adapter != null) {
         MediaItem item = adapter.getMediaItemFor(position);
-        if (item.recipient != null) item.recipient.live().observe(MediaPreviewActivity.this, r -> initializeActionBar());
+        if (item != null && item.recipient != null) item.recipient.live().observe(MediaPreviewActivity.this, r -> initializeActionBar());
         viewModel.setActiveAlbumRailItem(MediaPreviewActivity.this, position);
         initializeActionBar();
       }
@@ -537,7 +569,7 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
 
       if (adapter != null) {
         MediaItem item = adapter.getMediaItemFor(position);
-        if (item.recipient != null) item.recipient.live().removeObservers(MediaPreviewActivity.this);
+        if (item != null && item.recipient != null) item.recipient.live().removeObservers(MediaPreviewActivity.this);
 
         adapter.pause(position);
       }
@@ -651,27 +683,24 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
     });
   }
 
-  private static class CursorPagerAdapter extends FragmentStatePagerAdapter implements MediaItemAdapter {
+  private static class GalleryPagerAdapter extends FragmentStatePagerAdapter implements MediaItemAdapter {
 
     @SuppressLint("UseSparseArrays")
     private final Map<Integer, MediaPreviewFragment> mediaFragments = new HashMap<>();
 
-    private final Context context;
-    private final Cursor  cursor;
-    private final boolean leftIsRecent;
+    private final PagedGalleryMedia media;
+    private final boolean           leftIsRecent;
 
     private boolean active;
     private int     autoPlayPosition;
 
-    CursorPagerAdapter(@NonNull FragmentManager fragmentManager,
-                       @NonNull Context context,
-                       @NonNull Cursor cursor,
-                       int autoPlayPosition,
-                       boolean leftIsRecent)
+    GalleryPagerAdapter(@NonNull FragmentManager fragmentManager,
+                        @NonNull PagedGalleryMedia media,
+                        int autoPlayPosition,
+                        boolean leftIsRecent)
     {
       super(fragmentManager, BEHAVIOR_RESUME_ONLY_CURRENT_FRAGMENT);
-      this.context          = context.getApplicationContext();
-      this.cursor           = cursor;
+      this.media            = media;
       this.autoPlayPosition = autoPlayPosition;
       this.leftIsRecent     = leftIsRecent;
     }
@@ -684,28 +713,43 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
     @Override
     public int getCount() {
       if (!active) return 0;
-      else         return cursor.getCount();
+      else         return media.size();
+    }
+
+    PagedGalleryMedia getMedia() {
+      return media;
     }
 
+    /**
+     * Positions whose page hasn't loaded yet get an empty placeholder, which is swapped for the real
+     * fragment by {@link #getItemPosition(Object)} once the page is in.
+     */
     @NonNull
     @Override
     public Fragment getItem(int position) {
+      MediaRecord mediaRecord = media.get(getMediaPosition(position));
+
+      if (mediaRecord == null) {
+        return new Fragment();
+      }
+
       boolean autoPlay = autoPlayPosition == position;
-      int cursorPosition = getCursorPosition(position);
 
       autoPlayPosition = -1;
 
-      cursor.moveToPosition(cursorPosition);
-
-      MediaDatabase.MediaRecord mediaRecord = MediaDatabase.MediaRecord.from(context, cursor);
-      DatabaseAttachment        attachment  = mediaRecord.getAttachment();
-      MediaPreviewFragment      fragment    = MediaPreviewFragment.newInstance(attachment, autoPlay);
+      DatabaseAttachment   attachment = mediaRecord.getAttachment();
+      MediaPreviewFragment fragment   = MediaPreviewFragment.newInstance(attachment, autoPlay);
 
       mediaFragments.put(position, fragment);
 
       return fragment;
     }
 
+    @Override
+    public int getItemPosition(@NonNull Object object) {
+      return object instanceof MediaPreviewFragment ? POSITION_UNCHANGED : POSITION_NONE;
+    }
+
     @Override
     public void destroyItem(@NonNull ViewGroup container, int position, @NonNull Object object) {
       MediaPreviewFragment removed = mediaFragments.remove(position);
@@ -717,10 +761,13 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
       super.destroyItem(container, position, object);
     }
 
-    public MediaItem getMediaItemFor(int position) {
-      cursor.moveToPosition(getCursorPosition(position));
+    public @Nullable MediaItem getMediaItemFor(int position) {
+      MediaRecord mediaRecord = media.get(getMediaPosition(position));
+
+      if (mediaRecord == null) {
+        return null;
+      }
 
-      MediaRecord mediaRecord       = MediaRecord.from(context, cursor);
       RecipientId recipientId       = mediaRecord.getRecipientId();
       RecipientId threadRecipientId = mediaRecord.getThreadRecipientId();
 
@@ -753,9 +800,9 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
       return mediaFragments.containsKey(position);
     }
 
-    private int getCursorPosition(int position) {
+    private int getMediaPosition(int position) {
       if (leftIsRecent) return position;
-      else              return cursor.getCount() - 1 - position;
+      else              return media.size() - 1 - position;
     }
   }
 
@@ -787,7 +834,7 @@ public final class MediaPreviewActivity extends PassphraseRequiredActionBarActiv
   }
 
   interface MediaItemAdapter {
-    MediaItem getMediaItemFor(int position);
+    @Nullable MediaItem getMediaItemFor(int position);
     void pause(int position);
     @Nullable View getPlaybackControls(int position);
     boolean hasFragmentFor(int position);
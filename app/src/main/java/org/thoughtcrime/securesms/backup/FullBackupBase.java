@@ -5,6 +5,9 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.greenrobot.eventbus.EventBus;
+import org.thoughtcrime.securesms.database.GroupDatabase;
+import org.thoughtcrime.securesms.database.RecipientDatabase;
+import org.thoughtcrime.securesms.database.SearchDatabase;
 import org.whispersystems.libsignal.util.ByteUtil;
 
 import java.security.MessageDigest;
@@ -15,6 +18,31 @@ public abstract class FullBackupBase {
   @SuppressWarnings("unused")
   private static final String TAG = FullBackupBase.class.getSimpleName();
 
+  /**
+   * Full-text search tables are derived from their content tables, so only their schema is backed
+   * up. FTS5 manages its own shadow tables (e.g. sms_fts_data), which are left out entirely.
+   */
+  static final String[] FTS_TABLE_NAMES = { SearchDatabase.SMS_FTS_TABLE_NAME,
+                                            SearchDatabase.MMS_FTS_TABLE_NAME,
+                                            RecipientDatabase.FTS_TABLE_NAME,
+                                            GroupDatabase.FTS_TABLE_NAME };
+
+  /**
+   * Only tables are checked, since the triggers that keep the indexes current (e.g.
+   * recipient_fts_ai) share the shadow tables' prefix and have to be backed up.
+   */
+  static boolean isFtsSecretTable(@Nullable String name, @Nullable String type) {
+    if (name == null || !"table".equals(type)) return false;
+
+    for (String table : FTS_TABLE_NAMES) {
+      if (!name.equals(table) && name.startsWith(table + "_")) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   static class BackupStream {
     static @NonNull byte[] getBackupKey(@NonNull String passphrase, @Nullable byte[] salt) {
       try {
@@ -22,12 +22,16 @@ import org.thoughtcrime.securesms.crypto.IdentityKeyUtil;
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.GroupDatabase;
 import org.thoughtcrime.securesms.database.GroupReceiptDatabase;
 import org.thoughtcrime.securesms.database.JobDatabase;
 import org.thoughtcrime.securesms.database.KeyValueDatabase;
+import org.thoughtcrime.securesms.database.LinkPreviewDatabase;
+import org.thoughtcrime.securesms.database.MediaDatabase;
 import org.thoughtcrime.securesms.database.MmsDatabase;
 import org.thoughtcrime.securesms.database.MmsSmsColumns;
 import org.thoughtcrime.securesms.database.OneTimePreKeyDatabase;
+import org.thoughtcrime.securesms.database.RecipientDatabase;
 import org.thoughtcrime.securesms.database.SearchDatabase;
 import org.thoughtcrime.securesms.database.SessionDatabase;
 import org.thoughtcrime.securesms.database.SignedPreKeyDatabase;
@@ -73,10 +77,14 @@ public class FullBackupExporter extends FullBackupBase {
     SessionDatabase.TABLE_NAME,
     SearchDatabase.SMS_FTS_TABLE_NAME,
     SearchDatabase.MMS_FTS_TABLE_NAME,
+    RecipientDatabase.FTS_TABLE_NAME,
+    GroupDatabase.FTS_TABLE_NAME,
     JobDatabase.JOBS_TABLE_NAME,
     JobDatabase.CONSTRAINTS_TABLE_NAME,
     JobDatabase.DEPENDENCIES_TABLE_NAME,
-    KeyValueDatabase.TABLE_NAME
+    KeyValueDatabase.TABLE_NAME,
+    LinkPreviewDatabase.TABLE_NAME,
+    MediaDatabase.STORAGE_TABLE_NAME
   );
 
   public static void export(@NonNull Context context,
@@ -145,11 +153,7 @@ public class FullBackupExporter extends FullBackupBase {
         String type = cursor.getString(2);
 
         if (sql != null) {
-
-          boolean isSmsFtsSecretTable = name != null && !name.equals(SearchDatabase.SMS_FTS_TABLE_NAME) && name.startsWith(SearchDatabase.SMS_FTS_TABLE_NAME);
-          boolean isMmsFtsSecretTable = name != null && !name.equals(SearchDatabase.MMS_FTS_TABLE_NAME) && name.startsWith(SearchDatabase.MMS_FTS_TABLE_NAME);
-
-          if (!isSmsFtsSecretTable && !isMmsFtsSecretTable) {
+          if (!isFtsSecretTable(name, type)) {
             if ("table".equals(type)) {
               tables.add(name);
             }
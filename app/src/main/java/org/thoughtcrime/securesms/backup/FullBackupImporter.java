@@ -7,9 +7,11 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import android.util.Pair;
 
 import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
 
 import org.greenrobot.eventbus.EventBus;
 import org.thoughtcrime.securesms.backup.BackupProtos.Attachment;
@@ -21,7 +23,7 @@ import org.thoughtcrime.securesms.backup.BackupProtos.Sticker;
 import org.thoughtcrime.securesms.crypto.AttachmentSecret;
 import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
-import org.thoughtcrime.securesms.database.SearchDatabase;
+import org.thoughtcrime.securesms.database.MediaDatabase;
 import org.thoughtcrime.securesms.database.StickerDatabase;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.profiles.AvatarHelper;
@@ -44,8 +46,10 @@ import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -65,6 +69,8 @@ public class FullBackupImporter extends FullBackupBase {
       throws IOException
   {
     BackupRecordInputStream inputStream = new BackupRecordInputStream(file, passphrase);
+    StatementCache          statements  = new StatementCache(db);
+    List<String>            deferred    = new LinkedList<>();
     int                     count       = 0;
 
     try {
@@ -78,15 +84,22 @@ public class FullBackupImporter extends FullBackupBase {
         if (count++ % 100 == 0) EventBus.getDefault().post(new BackupEvent(BackupEvent.Type.PROGRESS, count));
 
         if      (frame.hasVersion())    processVersion(db, frame.getVersion());
-        else if (frame.hasStatement())  processStatement(db, frame.getStatement());
+        else if (frame.hasStatement())  processStatement(db, statements, deferred, frame.getStatement());
         else if (frame.hasPreference()) processPreference(context, frame.getPreference());
         else if (frame.hasAttachment()) processAttachment(context, attachmentSecret, db, frame.getAttachment(), inputStream);
         else if (frame.hasSticker())    processSticker(context, attachmentSecret, db, frame.getSticker(), inputStream);
         else if (frame.hasAvatar())     processAvatar(context, db, frame.getAvatar(), inputStream);
       }
 
+      statements.close();
+
+      processDeferredStatements(db, deferred);
+      rebuildSearchIndexes(db);
+      rebuildMediaStorage(db);
+
       db.setTransactionSuccessful();
     } finally {
+      statements.close();
       db.endTransaction();
     }
 
@@ -101,28 +114,111 @@ public class FullBackupImporter extends FullBackupBase {
     db.setVersion(version.getVersion());
   }
 
-  private static void processStatement(@NonNull SQLiteDatabase db, SqlStatement statement) {
-    boolean isForSmsFtsSecretTable = statement.getStatement().contains(SearchDatabase.SMS_FTS_TABLE_NAME + "_");
-    boolean isForMmsFtsSecretTable = statement.getStatement().contains(SearchDatabase.MMS_FTS_TABLE_NAME + "_");
+  private static void processStatement(@NonNull SQLiteDatabase db,
+                                       @NonNull StatementCache statements,
+                                       @NonNull List<String> deferred,
+                                       @NonNull SqlStatement statement)
+  {
+    boolean isForFtsSecretTable    = isForFtsSecretTable(statement.getStatement());
     boolean isForSqliteSecretTable = statement.getStatement().toLowerCase().startsWith("create table sqlite_");
 
-    if (isForSmsFtsSecretTable || isForMmsFtsSecretTable || isForSqliteSecretTable) {
+    if (isForFtsSecretTable || isForSqliteSecretTable) {
       Log.i(TAG, "Ignoring import for statement: " + statement.getStatement());
       return;
     }
 
-    List<Object> parameters = new LinkedList<>();
+    if (isDeferrable(statement.getStatement())) {
+      deferred.add(statement.getStatement());
+      return;
+    }
+
+    if (statement.getParametersCount() == 0) {
+      db.execSQL(statement.getStatement());
+      return;
+    }
+
+    SQLiteStatement compiled = statements.get(statement.getStatement());
+    int             index    = 1;
 
     for (SqlStatement.SqlParameter parameter : statement.getParametersList()) {
-      if      (parameter.hasStringParamter())   parameters.add(parameter.getStringParamter());
-      else if (parameter.hasDoubleParameter())  parameters.add(parameter.getDoubleParameter());
-      else if (parameter.hasIntegerParameter()) parameters.add(parameter.getIntegerParameter());
-      else if (parameter.hasBlobParameter())    parameters.add(parameter.getBlobParameter().toByteArray());
-      else if (parameter.hasNullparameter())    parameters.add(null);
+      if      (parameter.hasStringParamter())   compiled.bindString(index, parameter.getStringParamter());
+      else if (parameter.hasDoubleParameter())  compiled.bindDouble(index, parameter.getDoubleParameter());
+      else if (parameter.hasIntegerParameter()) compiled.bindLong(index, parameter.getIntegerParameter());
+      else if (parameter.hasBlobParameter())    compiled.bindBlob(index, parameter.getBlobParameter().toByteArray());
+      else if (parameter.hasNullparameter())    compiled.bindNull(index);
+      else                                      continue;
+
+      index++;
     }
 
-    if (parameters.size() > 0) db.execSQL(statement.getStatement(), parameters.toArray());
-    else                       db.execSQL(statement.getStatement());
+    compiled.execute();
+    compiled.clearBindings();
+  }
+
+  /**
+   * Older backups may include the FTS5 shadow tables, which are created along with their virtual
+   * table. Only table statements are checked, since trigger names like recipient_fts_ai share the
+   * prefix.
+   */
+  @VisibleForTesting
+  static boolean isForFtsSecretTable(@NonNull String statement) {
+    if (!statement.toLowerCase().startsWith("create table")) return false;
+
+    for (String table : FTS_TABLE_NAMES) {
+      if (statement.contains(table + "_")) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Indexes and triggers are created after all rows have been inserted, so that the bulk insert
+   * doesn't pay for index maintenance and FTS updates on every row.
+   */
+  private static boolean isDeferrable(@NonNull String statement) {
+    String normalized = statement.trim().toLowerCase();
+
+    return normalized.startsWith("create index")        ||
+           normalized.startsWith("create unique index") ||
+           normalized.startsWith("create trigger");
+  }
+
+  private static void processDeferredStatements(@NonNull SQLiteDatabase db, @NonNull List<String> deferred) {
+    Log.i(TAG, "Creating " + deferred.size() + " deferred indexes and triggers.");
+
+    for (String statement : deferred) {
+      db.execSQL(statement);
+    }
+  }
+
+  /**
+   * Because the FTS triggers were not active during the import, the search tables are populated
+   * from their content tables in a single pass.
+   */
+  private static void rebuildSearchIndexes(@NonNull SQLiteDatabase db) {
+    for (String table : FTS_TABLE_NAMES) {
+      if (SqlUtil.tableExists(db, table)) {
+        db.execSQL("INSERT INTO " + table + "(" + table + ") VALUES ('rebuild')");
+      } else {
+        Log.w(TAG, "No " + table + " table in backup. Skipping rebuild.");
+      }
+    }
+  }
+
+  /**
+   * The media storage counters aren't backed up, and their triggers weren't active during the
+   * import, so they're computed from the restored attachments.
+   */
+  private static void rebuildMediaStorage(@NonNull SQLiteDatabase db) {
+    if (SqlUtil.tableExists(db, MediaDatabase.STORAGE_TABLE_NAME)) {
+      for (String statement : MediaDatabase.REBUILD_STORAGE) {
+        db.execSQL(statement);
+      }
+    } else {
+      Log.w(TAG, "No " + MediaDatabase.STORAGE_TABLE_NAME + " table in backup. Skipping rebuild.");
+    }
   }
 
   private static void processAttachment(@NonNull Context context, @NonNull AttachmentSecret attachmentSecret, @NonNull SQLiteDatabase db, @NonNull Attachment attachment, BackupRecordInputStream inputStream)
@@ -347,6 +443,39 @@ public class FullBackupImporter extends FullBackupBase {
     }
   }
 
+  /**
+   * Backup rows are replayed as a long run of identical INSERT templates, so we compile each
+   * distinct statement once and rebind it for every row.
+   */
+  private static class StatementCache {
+
+    private final SQLiteDatabase               db;
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+
+    private StatementCache(@NonNull SQLiteDatabase db) {
+      this.db = db;
+    }
+
+    @NonNull SQLiteStatement get(@NonNull String sql) {
+      SQLiteStatement statement = statements.get(sql);
+
+      if (statement == null) {
+        statement = db.compileStatement(sql);
+        statements.put(sql, statement);
+      }
+
+      return statement;
+    }
+
+    void close() {
+      for (SQLiteStatement statement : statements.values()) {
+        statement.close();
+      }
+
+      statements.clear();
+    }
+  }
+
   private static class BadMacException extends IOException {}
 
   public static class DatabaseDowngradeException extends IOException {
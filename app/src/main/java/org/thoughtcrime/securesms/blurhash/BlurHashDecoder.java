@@ -87,7 +87,22 @@ class BlurHashDecoder {
   }
 
   private static Bitmap composeBitmap(int width, int height, int numCompX, int numCompY, double[][] colors) {
-    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    double[] cosX   = new double[width * numCompX];
+    double[] cosY   = new double[height * numCompY];
+    int[]    pixels = new int[width * height];
+
+    for (int x = 0; x < width; x++) {
+      for (int i = 0; i < numCompX; i++) {
+        cosX[x * numCompX + i] = Math.cos(Math.PI * x * i / width);
+      }
+    }
+
+    for (int y = 0; y < height; y++) {
+      for (int j = 0; j < numCompY; j++) {
+        cosY[y * numCompY + j] = Math.cos(Math.PI * y * j / height);
+      }
+    }
+
     for (int y = 0; y < height; y++) {
       for (int x = 0; x < width; x++) {
 
@@ -97,17 +112,20 @@ class BlurHashDecoder {
 
         for (int j = 0; j < numCompY; j++) {
           for (int i = 0; i < numCompX; i++) {
-            double basis = (Math.cos(Math.PI * x * i / width) * Math.cos(Math.PI * y * j / height));
+            double basis = cosX[x * numCompX + i] * cosY[y * numCompY + j];
             double[] color = colors[j * numCompX + i];
             r += color[0] * basis;
             g += color[1] * basis;
             b += color[2] * basis;
           }
         }
-        bitmap.setPixel(x, y, Color.rgb((int) linearTosRGB(r), (int) linearTosRGB(g), (int) linearTosRGB(b)));
+        pixels[y * width + x] = Color.rgb((int) linearTosRGB(r), (int) linearTosRGB(g), (int) linearTosRGB(b));
       }
     }
 
+    Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+
     return bitmap;
   }
 }
@@ -26,12 +26,13 @@ import android.graphics.BitmapFactory;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import java.io.InputStream;
 
+import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.SRGB_TO_LINEAR;
 import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.linearTosRGB;
 import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.max;
-import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.sRGBToLinear;
 import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.signPow;
 
 public final class BlurHashEncoder {
@@ -65,7 +66,8 @@ public final class BlurHashEncoder {
     return encode(pixels, width, height, componentX, componentY);
   }
 
-  private static String encode(int[] pixels, int width, int height, int componentX, int componentY) {
+  @VisibleForTesting
+  static String encode(int[] pixels, int width, int height, int componentX, int componentY) {
 
     if (componentX < 1 || componentX > 9 || componentY < 1 || componentY > 9) {
       throw new IllegalArgumentException("Blur hash must have between 1 and 9 components");
@@ -74,15 +76,7 @@ public final class BlurHashEncoder {
       throw new IllegalArgumentException("Width and height must match the pixels array");
     }
 
-    double[][] factors = new double[componentX * componentY][3];
-    for (int j = 0; j < componentY; j++) {
-      for (int i = 0; i < componentX; i++) {
-        double normalisation = i == 0 && j == 0 ? 1 : 2;
-        applyBasisFunction(pixels, width, height,
-            normalisation, i, j,
-            factors, j * componentX + i);
-      }
-    }
+    double[][] factors = applyBasisFunctions(pixels, width, height, componentX, componentY);
 
     char[] hash = new char[1 + 1 + 4 + 2 * (factors.length - 1)]; // size flag + max AC + DC + 2 * AC components
 
@@ -109,26 +103,60 @@ public final class BlurHashEncoder {
     return new String(hash);
   }
 
-  private static void applyBasisFunction(int[] pixels, int width, int height,
-                                         double normalisation, int i, int j,
-                                         double[][] factors, int index)
-  {
-    double r = 0, g = 0, b = 0;
+  /**
+   * Computes every component in a single pass over the pixels, with the cosines and sRGB conversions
+   * looked up from tables. The pixels are visited column by column so that each component is
+   * accumulated in the same order as evaluating it on its own, keeping the output bit-identical.
+   */
+  private static double[][] applyBasisFunctions(int[] pixels, int width, int height, int componentX, int componentY) {
+    double[]   cosX    = cosineTable(componentX, width);
+    double[]   cosY    = cosineTable(componentY, height);
+    double[][] factors = new double[componentX * componentY][3];
+
     for (int x = 0; x < width; x++) {
       for (int y = 0; y < height; y++) {
-        double basis = normalisation
-                     * Math.cos((Math.PI * i * x) / width)
-                     * Math.cos((Math.PI * j * y) / height);
-        int pixel = pixels[y * width + x];
-        r += basis * sRGBToLinear((pixel >> 16) & 0xff);
-        g += basis * sRGBToLinear((pixel >> 8)  & 0xff);
-        b += basis * sRGBToLinear( pixel        & 0xff);
+        int    pixel = pixels[y * width + x];
+        double r     = SRGB_TO_LINEAR[(pixel >> 16) & 0xff];
+        double g     = SRGB_TO_LINEAR[(pixel >> 8)  & 0xff];
+        double b     = SRGB_TO_LINEAR[ pixel        & 0xff];
+
+        for (int j = 0; j < componentY; j++) {
+          double cosYj = cosY[j * height + y];
+
+          for (int i = 0; i < componentX; i++) {
+            double   normalisation = i == 0 && j == 0 ? 1 : 2;
+            double   basis         = normalisation * cosX[i * width + x] * cosYj;
+            double[] factor        = factors[j * componentX + i];
+
+            factor[0] += basis * r;
+            factor[1] += basis * g;
+            factor[2] += basis * b;
+          }
+        }
       }
     }
+
     double scale = 1.0 / (width * height);
-    factors[index][0] = r * scale;
-    factors[index][1] = g * scale;
-    factors[index][2] = b * scale;
+
+    for (double[] factor : factors) {
+      factor[0] *= scale;
+      factor[1] *= scale;
+      factor[2] *= scale;
+    }
+
+    return factors;
+  }
+
+  private static double[] cosineTable(int components, int size) {
+    double[] table = new double[components * size];
+
+    for (int component = 0; component < components; component++) {
+      for (int position = 0; position < size; position++) {
+        table[component * size + position] = Math.cos((Math.PI * component * position) / size);
+      }
+    }
+
+    return table;
   }
 
   private static long encodeDC(double[] value) {
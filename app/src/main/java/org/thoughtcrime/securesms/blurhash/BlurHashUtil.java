@@ -22,6 +22,14 @@ package org.thoughtcrime.securesms.blurhash;
 
 final class BlurHashUtil {
 
+  static final double[] SRGB_TO_LINEAR = new double[256];
+
+  static {
+    for (int i = 0; i < SRGB_TO_LINEAR.length; i++) {
+      SRGB_TO_LINEAR[i] = sRGBToLinear(i);
+    }
+  }
+
   static double sRGBToLinear(long value) {
     double v = value / 255.0;
     if (v <= 0.04045) {
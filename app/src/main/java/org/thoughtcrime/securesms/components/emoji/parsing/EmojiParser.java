@@ -24,8 +24,9 @@ package org.thoughtcrime.securesms.components.emoji.parsing;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -40,16 +41,15 @@ public class EmojiParser {
   }
 
   public @NonNull CandidateList findCandidates(@Nullable CharSequence text) {
-    List<Candidate> results = new LinkedList<>();
-
     if (text == null) {
-      return new CandidateList(results, false);
+      return CandidateList.EMPTY;
     }
 
-    boolean allEmojis = text.length() > 0;
+    List<Candidate> results   = null;
+    boolean         allEmojis = text.length() > 0;
 
     for (int i = 0; i < text.length(); i++) {
-      int emojiEnd = getEmojiEndPos(text, i);
+      int emojiEnd = emojiTree.getLongestEmojiEnd(text, i);
 
       if (emojiEnd != -1) {
         EmojiDrawInfo drawInfo = emojiTree.getEmoji(text, i, emojiEnd);
@@ -60,6 +60,10 @@ public class EmojiParser {
           }
         }
 
+        if (results == null) {
+          results = new ArrayList<>();
+        }
+
         results.add(new Candidate(i, emojiEnd, drawInfo));
 
         i = emojiEnd - 1;
@@ -68,25 +72,11 @@ public class EmojiParser {
       }
     }
 
-    allEmojis &= !results.isEmpty();
-
-    return new CandidateList(results, allEmojis);
-  }
-
-  private int getEmojiEndPos(CharSequence text, int startPos) {
-    int best = -1;
-
-    for (int j = startPos + 1; j <= text.length(); j++) {
-      EmojiTree.Matches status = emojiTree.isEmoji(text, startPos, j);
-
-      if (status.exactMatch()) {
-        best = j;
-      } else if (status.impossibleMatch()) {
-        return best;
-      }
+    if (results == null) {
+      return CandidateList.EMPTY;
     }
 
-    return best;
+    return new CandidateList(results, allEmojis);
   }
 
   public static class Candidate {
@@ -115,6 +105,10 @@ public class EmojiParser {
   }
 
   public static class CandidateList implements Iterable<Candidate> {
+
+    /** Shared result for text without any emoji, which is most text, so it costs no allocations. */
+    static final CandidateList EMPTY = new CandidateList(Collections.<Candidate>emptyList(), false);
+
     public final List<EmojiParser.Candidate> list;
     public final boolean                     allEmojis;
 
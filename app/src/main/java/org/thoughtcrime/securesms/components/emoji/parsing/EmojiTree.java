@@ -20,29 +20,36 @@
 
 package org.thoughtcrime.securesms.components.emoji.parsing;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Based in part on code from emoji-java
+ *
+ * Each node keeps its children in a sorted char[] with a parallel array of child nodes, so lookups
+ * are a binary search over primitive chars rather than boxing every character of the text being
+ * parsed into a map key. Most characters in a message can't start an emoji, so those are rejected
+ * with a bitmap of first characters before touching the tree.
  */
 public class EmojiTree {
 
-  private final EmojiTreeNode root = new EmojiTreeNode();
+  private final EmojiTreeNode root            = new EmojiTreeNode();
+  private final long[]        firstCharacters = new long[(Character.MAX_VALUE + 1) / 64];
 
   private static final char TERMINATOR = '\ufe0f';
 
   public void add(String emojiEncoding, EmojiDrawInfo emoji) {
     EmojiTreeNode tree = root;
 
-    for (char c: emojiEncoding.toCharArray()) {
-      if (!tree.hasChild(c)) {
-        tree.addChild(c);
-      }
+    if (emojiEncoding.length() > 0) {
+      char first = emojiEncoding.charAt(0);
+      firstCharacters[first >>> 6] |= 1L << first;
+    }
 
-      tree = tree.getChild(c);
+    for (int i = 0; i < emojiEncoding.length(); i++) {
+      tree = tree.getOrAddChild(emojiEncoding.charAt(i));
     }
 
     tree.setEmoji(emoji);
@@ -53,50 +60,97 @@ public class EmojiTree {
       return Matches.POSSIBLY;
     }
 
+    EmojiTreeNode tree = find(sequence, startPosition, endPosition);
+
+    if (tree == null) {
+      return Matches.IMPOSSIBLE;
+    } else if (isEmojiAt(tree, sequence.charAt(endPosition - 1))) {
+      return Matches.EXACTLY;
+    } else {
+      return Matches.POSSIBLY;
+    }
+  }
+
+  /**
+   * Walks the tree once from startPosition and returns the end of the longest emoji found, with the
+   * same matching rules as {@link #isEmoji(CharSequence, int, int)}.
+   *
+   * @return The exclusive end index of the longest emoji starting at startPosition, or -1 if there
+   *         is none.
+   */
+  public int getLongestEmojiEnd(@NonNull CharSequence sequence, int startPosition) {
+    char first = sequence.charAt(startPosition);
+
+    if ((firstCharacters[first >>> 6] & (1L << first)) == 0) {
+      return -1;
+    }
+
     EmojiTreeNode tree = root;
+    int           best = -1;
 
-    for (int i=startPosition; i<endPosition; i++) {
+    for (int i = startPosition; i < sequence.length(); i++) {
       char character = sequence.charAt(i);
 
-      if (!tree.hasChild(character)) {
-        return Matches.IMPOSSIBLE;
+      tree = tree.getChild(character);
+
+      if (tree == null) {
+        break;
       }
 
-      tree = tree.getChild(character);
+      if (isEmojiAt(tree, character)) {
+        best = i + 1;
+      }
     }
 
-    if (tree.isEndOfEmoji()) {
-      return Matches.EXACTLY;
-    } else if (sequence.charAt(endPosition-1) != TERMINATOR && tree.hasChild(TERMINATOR) && tree.getChild(TERMINATOR).isEndOfEmoji()) {
-      return Matches.EXACTLY;
-    } else {
-      return Matches.POSSIBLY;
-    }
+    return best;
   }
 
   public @Nullable EmojiDrawInfo getEmoji(CharSequence unicode, int startPosition, int endPostiion) {
-    EmojiTreeNode tree = root;
+    EmojiTreeNode tree = find(unicode, startPosition, endPostiion);
 
-    for (int i=startPosition; i<endPostiion; i++) {
-      char character = unicode.charAt(i);
+    if (tree == null) {
+      return null;
+    }
 
-      if (!tree.hasChild(character)) {
-        return null;
-      }
+    EmojiTreeNode terminator = tree.getChild(TERMINATOR);
 
-      tree = tree.getChild(character);
+    if      (tree.getEmoji() != null)                                           return tree.getEmoji();
+    else if (unicode.charAt(endPostiion-1) != TERMINATOR && terminator != null) return terminator.getEmoji();
+    else    return null;
+  }
+
+  private @Nullable EmojiTreeNode find(@NonNull CharSequence sequence, int startPosition, int endPosition) {
+    EmojiTreeNode tree = root;
+
+    for (int i = startPosition; i < endPosition && tree != null; i++) {
+      tree = tree.getChild(sequence.charAt(i));
     }
 
-    if      (tree.getEmoji() != null)                                                  return tree.getEmoji();
-    else if (unicode.charAt(endPostiion-1) != TERMINATOR && tree.hasChild(TERMINATOR)) return tree.getChild(TERMINATOR).getEmoji();
-    else    return null;
+    return tree;
   }
 
+  private static boolean isEmojiAt(@NonNull EmojiTreeNode tree, char lastCharacter) {
+    if (tree.isEndOfEmoji()) {
+      return true;
+    }
+
+    if (lastCharacter == TERMINATOR) {
+      return false;
+    }
+
+    EmojiTreeNode terminator = tree.getChild(TERMINATOR);
+
+    return terminator != null && terminator.isEndOfEmoji();
+  }
 
   private static class EmojiTreeNode {
 
-    private Map<Character, EmojiTreeNode> children = new HashMap<>();
-    private EmojiDrawInfo emoji;
+    private static final char[]          NO_KEYS     = new char[0];
+    private static final EmojiTreeNode[] NO_CHILDREN = new EmojiTreeNode[0];
+
+    private char[]          keys     = NO_KEYS;
+    private EmojiTreeNode[] children = NO_CHILDREN;
+    private EmojiDrawInfo   emoji;
 
     public void setEmoji(EmojiDrawInfo emoji) {
       this.emoji = emoji;
@@ -106,16 +160,35 @@ public class EmojiTree {
       return emoji;
     }
 
-    boolean hasChild(char child) {
-      return children.containsKey(child);
+    @Nullable EmojiTreeNode getChild(char child) {
+      int index = Arrays.binarySearch(keys, child);
+      return index >= 0 ? children[index] : null;
     }
 
-    void addChild(char child) {
-      children.put(child, new EmojiTreeNode());
-    }
+    @NonNull EmojiTreeNode getOrAddChild(char child) {
+      int index = Arrays.binarySearch(keys, child);
+
+      if (index >= 0) {
+        return children[index];
+      }
+
+      int             insertAt    = -index - 1;
+      char[]          newKeys     = new char[keys.length + 1];
+      EmojiTreeNode[] newChildren = new EmojiTreeNode[children.length + 1];
+      EmojiTreeNode   node        = new EmojiTreeNode();
+
+      System.arraycopy(keys, 0, newKeys, 0, insertAt);
+      System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+      System.arraycopy(children, 0, newChildren, 0, insertAt);
+      System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+      newKeys[insertAt]     = child;
+      newChildren[insertAt] = node;
+
+      keys     = newKeys;
+      children = newChildren;
 
-    EmojiTreeNode getChild(char child) {
-      return children.get(child);
+      return node;
     }
 
     boolean isEndOfEmoji() {
@@ -30,7 +30,7 @@ public class ContactsSyncAdapter extends AbstractThreadedSyncAdapter {
 
     if (TextSecurePreferences.isPushRegistered(getContext())) {
       try {
-        DirectoryHelper.refreshDirectory(getContext(), true);
+        DirectoryHelper.refreshDirectoryIncrementally(getContext(), true);
       } catch (IOException e) {
         Log.w(TAG, e);
       }
@@ -0,0 +1,246 @@
+package org.thoughtcrime.securesms.contacts.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import org.thoughtcrime.securesms.contacts.ContactAccessor;
+import org.thoughtcrime.securesms.phonenumbers.PhoneNumberFormatter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A compact summary of the system address book, with one 64-bit hash per phone number row. Each
+ * hash covers the formatted number and every field a directory refresh copies out of the row, so
+ * comparing two snapshots tells us which numbers were added or changed, and whether any row was
+ * removed.
+ *
+ * A captured snapshot also keeps the rows it read, so a refresh can write system contact info from
+ * the same pass over the contacts provider instead of querying it again.
+ */
+final class AddressBookSnapshot {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME        = 0x100000001b3L;
+
+  private final long[]              hashes;
+  private final Map<Long, String>   numbersByHash;
+  private final List<SystemContact> contacts;
+
+  private AddressBookSnapshot(@NonNull long[] hashes, @NonNull Map<Long, String> numbersByHash, @NonNull List<SystemContact> contacts) {
+    this.hashes        = hashes;
+    this.numbersByHash = numbersByHash;
+    this.contacts      = contacts;
+  }
+
+  @WorkerThread
+  static @NonNull AddressBookSnapshot capture(@NonNull Context context) {
+    PhoneNumberFormatter formatter = PhoneNumberFormatter.get(context);
+    List<SystemContact>  contacts  = new ArrayList<>();
+
+    try (Cursor cursor = ContactAccessor.getInstance().getAllSystemContacts(context)) {
+      while (cursor != null && cursor.moveToNext()) {
+        String number = cursor.getString(cursor.getColumnIndexOrThrow(Phone.NUMBER));
+
+        if (TextUtils.isEmpty(number)) continue;
+
+        contacts.add(new SystemContact(number,
+                                       formatter.format(number),
+                                       cursor.getString(cursor.getColumnIndexOrThrow(Phone.DISPLAY_NAME)),
+                                       cursor.getString(cursor.getColumnIndexOrThrow(Phone.PHOTO_URI)),
+                                       cursor.getString(cursor.getColumnIndexOrThrow(Phone.LABEL)),
+                                       cursor.getInt(cursor.getColumnIndexOrThrow(Phone.TYPE)),
+                                       cursor.getLong(cursor.getColumnIndexOrThrow(Phone._ID)),
+                                       cursor.getString(cursor.getColumnIndexOrThrow(Phone.LOOKUP_KEY))));
+      }
+    }
+
+    return create(contacts);
+  }
+
+  @VisibleForTesting
+  static @NonNull AddressBookSnapshot create(@NonNull List<SystemContact> contacts) {
+    Map<Long, String> numbersByHash = new TreeMap<>();
+
+    for (SystemContact contact : contacts) {
+      long hash = hash(contact.getFormattedNumber(),
+                       contact.getDisplayName(),
+                       contact.getPhotoUri(),
+                       contact.getLabel(),
+                       String.valueOf(contact.getPhoneType()),
+                       String.valueOf(contact.getId()),
+                       contact.getLookupKey());
+
+      numbersByHash.put(hash, contact.getFormattedNumber());
+    }
+
+    long[] hashes = new long[numbersByHash.size()];
+    int    i      = 0;
+
+    for (long hash : numbersByHash.keySet()) {
+      hashes[i++] = hash;
+    }
+
+    return new AddressBookSnapshot(hashes, numbersByHash, contacts);
+  }
+
+  /**
+   * The result only supports comparison. It carries no numbers or rows.
+   */
+  static @Nullable AddressBookSnapshot deserialize(@Nullable byte[] serialized) {
+    if (serialized == null || serialized.length % 8 != 0) {
+      return null;
+    }
+
+    long[] hashes = new long[serialized.length / 8];
+    ByteBuffer.wrap(serialized).asLongBuffer().get(hashes);
+
+    for (int i = 1; i < hashes.length; i++) {
+      if (hashes[i - 1] >= hashes[i]) return null;
+    }
+
+    return new AddressBookSnapshot(hashes, new TreeMap<>(), Collections.emptyList());
+  }
+
+  @NonNull byte[] serialize() {
+    ByteBuffer buffer = ByteBuffer.allocate(hashes.length * 8);
+    buffer.asLongBuffer().put(hashes);
+    return buffer.array();
+  }
+
+  @NonNull Set<String> getNumbers() {
+    return new HashSet<>(numbersByHash.values());
+  }
+
+  /**
+   * @return Every phone row read when the snapshot was captured, in provider order.
+   */
+  @NonNull List<SystemContact> getContacts() {
+    return contacts;
+  }
+
+  /**
+   * @return Numbers of the rows that are new or different since the previous snapshot.
+   */
+  @NonNull Set<String> getChangedNumbers(@NonNull AddressBookSnapshot previous) {
+    Set<String> changed = new HashSet<>();
+
+    for (Map.Entry<Long, String> entry : numbersByHash.entrySet()) {
+      if (Arrays.binarySearch(previous.hashes, entry.getKey()) < 0) {
+        changed.add(entry.getValue());
+      }
+    }
+
+    return changed;
+  }
+
+  /**
+   * @return True if any row in the previous snapshot is gone or different in this one.
+   */
+  boolean hasRemovalsSince(@NonNull AddressBookSnapshot previous) {
+    for (long hash : previous.hashes) {
+      if (Arrays.binarySearch(hashes, hash) < 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static long hash(String... fields) {
+    long hash = FNV_OFFSET_BASIS;
+
+    for (String field : fields) {
+      if (field != null) {
+        for (int i = 0; i < field.length(); i++) {
+          char c = field.charAt(i);
+
+          hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+          hash = (hash ^ (c >>> 8))  * FNV_PRIME;
+        }
+      }
+
+      hash = (hash ^ (field != null ? 0x1f : 0x1e)) * FNV_PRIME;
+    }
+
+    return hash;
+  }
+
+  static final class SystemContact {
+
+    private final String number;
+    private final String formattedNumber;
+    private final String displayName;
+    private final String photoUri;
+    private final String label;
+    private final int    phoneType;
+    private final long   id;
+    private final String lookupKey;
+
+    @VisibleForTesting
+    SystemContact(@NonNull String number,
+                  @NonNull String formattedNumber,
+                  @Nullable String displayName,
+                  @Nullable String photoUri,
+                  @Nullable String label,
+                  int phoneType,
+                  long id,
+                  @Nullable String lookupKey)
+    {
+      this.number          = number;
+      this.formattedNumber = formattedNumber;
+      this.displayName     = displayName;
+      this.photoUri        = photoUri;
+      this.label           = label;
+      this.phoneType       = phoneType;
+      this.id              = id;
+      this.lookupKey       = lookupKey;
+    }
+
+    @NonNull String getNumber() {
+      return number;
+    }
+
+    @NonNull String getFormattedNumber() {
+      return formattedNumber;
+    }
+
+    @Nullable String getDisplayName() {
+      return displayName;
+    }
+
+    @Nullable String getPhotoUri() {
+      return photoUri;
+    }
+
+    @Nullable String getLabel() {
+      return label;
+    }
+
+    int getPhoneType() {
+      return phoneType;
+    }
+
+    long getId() {
+      return id;
+    }
+
+    @Nullable String getLookupKey() {
+      return lookupKey;
+    }
+  }
+}
@@ -21,6 +21,20 @@ public class DirectoryHelper {
 
   @WorkerThread
   public static void refreshDirectory(@NonNull Context context, boolean notifyOfNewUsers) throws IOException {
+    refreshDirectory(context, notifyOfNewUsers, false);
+  }
+
+  /**
+   * Like {@link #refreshDirectory(Context, boolean)}, but only looks up numbers that were added or
+   * changed in the system address book since the last refresh, unless a full refresh is due.
+   */
+  @WorkerThread
+  public static void refreshDirectoryIncrementally(@NonNull Context context, boolean notifyOfNewUsers) throws IOException {
+    refreshDirectory(context, notifyOfNewUsers, true);
+  }
+
+  @WorkerThread
+  private static void refreshDirectory(@NonNull Context context, boolean notifyOfNewUsers, boolean incremental) throws IOException {
     if (!SignalStore.storageServiceValues().hasFirstStorageSyncCompleted()) {
       Log.i(TAG, "First storage sync has not completed. Skipping.");
       return;
@@ -28,9 +42,9 @@ public class DirectoryHelper {
 
     if (FeatureFlags.uuids()) {
       // TODO [greyson] Create a DirectoryHelperV2 when appropriate.
-      DirectoryHelperV1.refreshDirectory(context, notifyOfNewUsers);
+      DirectoryHelperV1.refreshDirectory(context, notifyOfNewUsers, incremental);
     } else {
-      DirectoryHelperV1.refreshDirectory(context, notifyOfNewUsers);
+      DirectoryHelperV1.refreshDirectory(context, notifyOfNewUsers, incremental);
     }
 
     ApplicationDependencies.getJobManager().add(new StorageSyncJob());
@@ -7,7 +7,6 @@ import android.annotation.SuppressLint;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.OperationApplicationException;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
 import android.provider.ContactsContract;
@@ -21,7 +20,6 @@ import com.annimon.stream.Collectors;
 import com.annimon.stream.Stream;
 
 import org.thoughtcrime.securesms.R;
-import org.thoughtcrime.securesms.contacts.ContactAccessor;
 import org.thoughtcrime.securesms.crypto.SessionUtil;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.MessagingDatabase.InsertResult;
@@ -29,11 +27,11 @@ import org.thoughtcrime.securesms.database.RecipientDatabase;
 import org.thoughtcrime.securesms.database.RecipientDatabase.RegisteredState;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobs.MultiDeviceContactUpdateJob;
+import org.thoughtcrime.securesms.keyvalue.SignalStore;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.notifications.MessageNotifier;
 import org.thoughtcrime.securesms.notifications.NotificationChannels;
 import org.thoughtcrime.securesms.permissions.Permissions;
-import org.thoughtcrime.securesms.phonenumbers.PhoneNumberFormatter;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.sms.IncomingJoinedMessage;
@@ -57,17 +55,20 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 class DirectoryHelperV1 {
 
   private static final String TAG = DirectoryHelperV1.class.getSimpleName();
 
+  private static final long FULL_REFRESH_INTERVAL = TimeUnit.DAYS.toMillis(3);
+
   @WorkerThread
-  static void refreshDirectory(@NonNull Context context, boolean notifyOfNewUsers) throws IOException {
+  static void refreshDirectory(@NonNull Context context, boolean notifyOfNewUsers, boolean incremental) throws IOException {
     if (TextUtils.isEmpty(TextSecurePreferences.getLocalNumber(context))) return;
     if (!Permissions.hasAll(context, Manifest.permission.WRITE_CONTACTS)) return;
 
-    List<RecipientId> newlyActiveUsers = refreshDirectory(context, ApplicationDependencies.getSignalServiceAccountManager());
+    List<RecipientId> newlyActiveUsers = refreshDirectory(context, ApplicationDependencies.getSignalServiceAccountManager(), incremental);
 
     if (TextSecurePreferences.isMultiDevice(context)) {
       ApplicationDependencies.getJobManager().add(new MultiDeviceContactUpdateJob());
@@ -77,7 +78,7 @@ class DirectoryHelperV1 {
   }
 
   @SuppressLint("CheckResult")
-  private static @NonNull List<RecipientId> refreshDirectory(@NonNull Context context, @NonNull SignalServiceAccountManager accountManager) throws IOException {
+  private static @NonNull List<RecipientId> refreshDirectory(@NonNull Context context, @NonNull SignalServiceAccountManager accountManager, boolean incremental) throws IOException {
     if (TextUtils.isEmpty(TextSecurePreferences.getLocalNumber(context))) {
       return Collections.emptyList();
     }
@@ -86,17 +87,66 @@ class DirectoryHelperV1 {
       return Collections.emptyList();
     }
 
-    RecipientDatabase recipientDatabase                       = DatabaseFactory.getRecipientDatabase(context);
-    Set<String>       allRecipientNumbers                     = recipientDatabase.getAllPhoneNumbers();
-    Stream<String>    eligibleRecipientDatabaseContactNumbers = Stream.of(allRecipientNumbers);
-    Stream<String>    eligibleSystemDatabaseContactNumbers    = Stream.of(ContactAccessor.getInstance().getAllContactsWithNumbers(context));
-    Set<String>       eligibleContactNumbers                  = Stream.concat(eligibleRecipientDatabaseContactNumbers, eligibleSystemDatabaseContactNumbers).collect(Collectors.toSet());
-    Set<String>       storedNumbers                           = Stream.of(allRecipientNumbers).collect(Collectors.toSet());
-    DirectoryResult   directoryResult                         = getDirectoryResult(context, accountManager, recipientDatabase, storedNumbers, eligibleContactNumbers);
+    RecipientDatabase   recipientDatabase   = DatabaseFactory.getRecipientDatabase(context);
+    Set<String>         allRecipientNumbers = recipientDatabase.getAllPhoneNumbers();
+    AddressBookSnapshot addressBook         = AddressBookSnapshot.capture(context);
+    AddressBookSnapshot previousAddressBook = AddressBookSnapshot.deserialize(SignalStore.directoryValues().getAddressBookSnapshot());
+
+    if (incremental && previousAddressBook != null && !isFullRefreshDue()) {
+      return refreshDirectoryIncrementally(context, accountManager, recipientDatabase, allRecipientNumbers, addressBook, previousAddressBook);
+    }
+
+    Set<String>     eligibleContactNumbers = Stream.concat(Stream.of(allRecipientNumbers), Stream.of(addressBook.getNumbers())).collect(Collectors.toSet());
+    Set<String>     storedNumbers          = Stream.of(allRecipientNumbers).collect(Collectors.toSet());
+    DirectoryResult directoryResult        = getDirectoryResult(context, accountManager, recipientDatabase, addressBook, storedNumbers, eligibleContactNumbers, true);
+
+    SignalStore.directoryValues().onFullRefreshCompleted(addressBook.serialize());
 
     return directoryResult.getNewlyActiveRecipients();
   }
 
+  /**
+   * Only looks up numbers whose address book rows were added or changed since the last refresh.
+   * Registration changes for everyone else are picked up by the next full refresh.
+   */
+  private static @NonNull List<RecipientId> refreshDirectoryIncrementally(@NonNull Context context,
+                                                                          @NonNull SignalServiceAccountManager accountManager,
+                                                                          @NonNull RecipientDatabase recipientDatabase,
+                                                                          @NonNull Set<String> allRecipientNumbers,
+                                                                          @NonNull AddressBookSnapshot addressBook,
+                                                                          @NonNull AddressBookSnapshot previousAddressBook)
+      throws IOException
+  {
+    Set<String> changedNumbers = addressBook.getChangedNumbers(previousAddressBook);
+
+    if (changedNumbers.isEmpty() && !addressBook.hasRemovalsSince(previousAddressBook)) {
+      Log.i(TAG, "[refreshDirectoryIncrementally] Address book is unchanged. Skipping.");
+      return Collections.emptyList();
+    }
+
+    Log.i(TAG, "[refreshDirectoryIncrementally] Looking up " + changedNumbers.size() + " changed number(s).");
+
+    List<RecipientId> newlyActiveIds;
+
+    if (changedNumbers.isEmpty()) {
+      updateContactsDatabase(context, addressBook, Collections.emptyList(), false, Collections.emptyMap());
+      newlyActiveIds = Collections.emptyList();
+    } else {
+      newlyActiveIds = getDirectoryResult(context, accountManager, recipientDatabase, addressBook, allRecipientNumbers, changedNumbers, false).getNewlyActiveRecipients();
+    }
+
+    SignalStore.directoryValues().onIncrementalRefreshCompleted(addressBook.serialize());
+
+    return newlyActiveIds;
+  }
+
+  private static boolean isFullRefreshDue() {
+    long lastFullRefreshTime = SignalStore.directoryValues().getLastFullRefreshTime();
+    long now                 = System.currentTimeMillis();
+
+    return lastFullRefreshTime > now || now - lastFullRefreshTime > FULL_REFRESH_INTERVAL;
+  }
+
   @WorkerThread
   static RegisteredState refreshDirectoryFor(@NonNull Context context, @NonNull Recipient recipient, boolean notifyOfNewUsers) throws IOException {
     RecipientDatabase recipientDatabase = DatabaseFactory.getRecipientDatabase(context);
@@ -115,7 +165,16 @@ class DirectoryHelperV1 {
     return getRegisteredState(context, ApplicationDependencies.getSignalServiceAccountManager(), recipientDatabase, recipient);
   }
 
-  private static void updateContactsDatabase(@NonNull Context context, @NonNull List<RecipientId> activeIds, boolean removeMissing, Map<String, String> rewrites) {
+  /**
+   * System contact info is written from the rows the address book snapshot already read, rather
+   * than from another pass over the contacts provider.
+   */
+  private static void updateContactsDatabase(@NonNull Context context,
+                                             @NonNull AddressBookSnapshot addressBook,
+                                             @NonNull List<RecipientId> activeIds,
+                                             boolean removeMissing,
+                                             Map<String, String> rewrites)
+  {
     Optional<AccountHolder> account = getOrCreateAccount(context);
 
     if (account.isPresent()) {
@@ -125,25 +184,17 @@ class DirectoryHelperV1 {
         DatabaseFactory.getContactsDatabase(context).removeDeletedRawContacts(account.get().getAccount());
         DatabaseFactory.getContactsDatabase(context).setRegisteredUsers(account.get().getAccount(), activeAddresses, removeMissing);
 
-        Cursor                                 cursor = ContactAccessor.getInstance().getAllSystemContacts(context);
         RecipientDatabase.BulkOperationsHandle handle = DatabaseFactory.getRecipientDatabase(context).beginBulkSystemContactUpdate();
 
         try {
-          while (cursor != null && cursor.moveToNext()) {
-            String number = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.NUMBER));
-
-            if (isValidContactNumber(number)) {
-              String      formattedNumber = PhoneNumberFormatter.get(context).format(number);
+          for (AddressBookSnapshot.SystemContact contact : addressBook.getContacts()) {
+            if (isValidContactNumber(contact.getNumber())) {
+              String      formattedNumber = contact.getFormattedNumber();
               String      realNumber      = Util.getFirstNonEmpty(rewrites.get(formattedNumber), formattedNumber);
               RecipientId recipientId     = Recipient.externalContact(context, realNumber).getId();
-              String      displayName     = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME));
-              String      contactPhotoUri = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.PHOTO_URI));
-              String      contactLabel    = cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.LABEL));
-              int         phoneType       = cursor.getInt(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.TYPE));
-              Uri         contactUri      = ContactsContract.Contacts.getLookupUri(cursor.getLong(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone._ID)),
-                                                                                   cursor.getString(cursor.getColumnIndexOrThrow(ContactsContract.CommonDataKinds.Phone.LOOKUP_KEY)));
-
-              handle.setSystemContactInfo(recipientId, displayName, contactPhotoUri, contactLabel, phoneType, contactUri.toString());
+              Uri         contactUri      = ContactsContract.Contacts.getLookupUri(contact.getId(), contact.getLookupKey());
+
+              handle.setSystemContactInfo(recipientId, contact.getDisplayName(), contact.getPhotoUri(), contact.getLabel(), contact.getPhoneType(), contactUri.toString());
             }
           }
         } finally {
@@ -220,8 +271,10 @@ class DirectoryHelperV1 {
   private static DirectoryResult getDirectoryResult(@NonNull Context context,
                                                     @NonNull SignalServiceAccountManager accountManager,
                                                     @NonNull RecipientDatabase recipientDatabase,
+                                                    @NonNull AddressBookSnapshot addressBook,
                                                     @NonNull Set<String> locallyStoredNumbers,
-                                                    @NonNull Set<String> eligibleContactNumbers)
+                                                    @NonNull Set<String> eligibleContactNumbers,
+                                                    boolean removeMissing)
       throws IOException
   {
     FuzzyPhoneNumberHelper.InputResult  inputResult   = FuzzyPhoneNumberHelper.generateInput(eligibleContactNumbers, locallyStoredNumbers);
@@ -262,7 +315,7 @@ class DirectoryHelperV1 {
                                                .toList();
 
     recipientDatabase.setRegistered(activeIds, inactiveIds);
-    updateContactsDatabase(context, activeIds, true, outputResult.getRewrites());
+    updateContactsDatabase(context, addressBook, activeIds, removeMissing, outputResult.getRewrites());
 
     Set<String> activeContactNumbers = Stream.of(activeIds).map(Recipient::resolved).filter(Recipient::hasSmsAddress).map(Recipient::requireSmsAddress).collect(Collectors.toSet());
 
@@ -316,7 +369,7 @@ class DirectoryHelperV1 {
       recipientDatabase.setRegistered(recipient.getId(), RegisteredState.REGISTERED);
 
       if (Permissions.hasAll(context, Manifest.permission.WRITE_CONTACTS)) {
-        updateContactsDatabase(context, Util.asList(recipient.getId()), false, rewrites);
+        updateContactsDatabase(context, AddressBookSnapshot.capture(context), Util.asList(recipient.getId()), false, rewrites);
       }
 
       if (!activeUser && TextSecurePreferences.isMultiDevice(context)) {
@@ -253,7 +253,7 @@ public class ConversationListItem extends RelativeLayout
     this.recipient.observeForever(this);
 
     fromView.setText(recipient.get(), true);
-    subjectView.setText(SearchUtil.getHighlightedSpan(locale, () -> new StyleSpan(Typeface.BOLD), messageResult.bodySnippet, highlightSubstring));
+    subjectView.setText(SearchUtil.getHighlightedSpan(locale, () -> new StyleSpan(Typeface.BOLD), SearchUtil.getSnippet(locale, messageResult.body, highlightSubstring), highlightSubstring));
     dateView.setText(DateUtils.getBriefRelativeTimeSpanString(getContext(), locale, messageResult.receivedTimestampMs));
     archivedView.setVisibility(GONE);
     unreadIndicator.setVisibility(GONE);
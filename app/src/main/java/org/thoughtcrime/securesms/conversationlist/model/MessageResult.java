@@ -11,19 +11,19 @@ public class MessageResult {
 
   public final Recipient conversationRecipient;
   public final Recipient messageRecipient;
-  public final String    bodySnippet;
+  public final String    body;
   public final long      threadId;
   public final long      receivedTimestampMs;
 
   public MessageResult(@NonNull Recipient conversationRecipient,
                        @NonNull Recipient messageRecipient,
-                       @NonNull String bodySnippet,
+                       @NonNull String body,
                        long threadId,
                        long receivedTimestampMs)
   {
     this.conversationRecipient = conversationRecipient;
     this.messageRecipient      = messageRecipient;
-    this.bodySnippet           = bodySnippet;
+    this.body                  = body;
     this.threadId              = threadId;
     this.receivedTimestampMs   = receivedTimestampMs;
   }
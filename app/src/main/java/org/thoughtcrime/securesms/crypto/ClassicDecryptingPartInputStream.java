@@ -44,26 +44,60 @@ public class ClassicDecryptingPartInputStream {
 
   private static final int IV_LENGTH  = 16;
   private static final int MAC_LENGTH = 20;
+  private static final int BLOCK_SIZE = 16;
 
   public static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull File file)
       throws IOException
+  {
+    return createFor(attachmentSecret, file, 0);
+  }
+
+  /**
+   * The whole file is still read once to verify the MAC, but decryption starts at the block
+   * containing the offset. In CBC mode the ciphertext block before it serves as that block's IV,
+   * so the file is positioned there instead of decrypting and discarding everything before it.
+   */
+  public static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull File file, long offset)
+      throws IOException
   {
     try {
       if (file.length() <= IV_LENGTH + MAC_LENGTH) {
         throw new IOException("File too short");
       }
 
+      long dataLength = file.length() - MAC_LENGTH - IV_LENGTH;
+      long block      = offset / BLOCK_SIZE;
+      int  remainder  = (int) (offset % BLOCK_SIZE);
+
+      if (offset < 0 || block * BLOCK_SIZE >= dataLength) {
+        throw new IOException("Offset " + offset + " is outside of the data (" + dataLength + " bytes)");
+      }
+
       verifyMac(attachmentSecret, file);
 
       FileInputStream fileStream = new FileInputStream(file);
-      byte[]          ivBytes    = new byte[IV_LENGTH];
-      readFully(fileStream, ivBytes);
 
-      Cipher          cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-      IvParameterSpec iv     = new IvParameterSpec(ivBytes);
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(attachmentSecret.getClassicCipherKey(), "AES"), iv);
+      try {
+        byte[] ivBytes = new byte[IV_LENGTH];
+
+        fileStream.getChannel().position(block * BLOCK_SIZE);
+        readFully(fileStream, ivBytes);
+
+        Cipher          cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        IvParameterSpec iv     = new IvParameterSpec(ivBytes);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(attachmentSecret.getClassicCipherKey(), "AES"), iv);
+
+        InputStream stream = new CipherInputStreamWrapper(new LimitedInputStream(fileStream, dataLength - block * BLOCK_SIZE), cipher);
 
-      return new CipherInputStreamWrapper(new LimitedInputStream(fileStream, file.length() - MAC_LENGTH - IV_LENGTH), cipher);
+        if (stream.skip(remainder) != remainder) {
+          throw new IOException("Offset " + offset + " is past the end of the plaintext");
+        }
+
+        return stream;
+      } catch (IOException e) {
+        fileStream.close();
+        throw e;
+      }
     } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException e) {
       throw new AssertionError(e);
     }
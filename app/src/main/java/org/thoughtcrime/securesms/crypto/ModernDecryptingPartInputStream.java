@@ -25,7 +25,7 @@ public class ModernDecryptingPartInputStream {
   public static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull File file, long offset)
       throws IOException
   {
-    return createFor(attachmentSecret, random, new FileInputStream(file), offset);
+    return createFor(attachmentSecret, random, new FileInputStream(file), 0, offset);
   }
 
   public static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull File file, long offset)
@@ -34,12 +34,24 @@ public class ModernDecryptingPartInputStream {
     FileInputStream inputStream = new FileInputStream(file);
     byte[]          random      = new byte[32];
 
-    readFully(inputStream, random);
+    try {
+      readFully(inputStream, random);
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
 
-    return createFor(attachmentSecret, random, inputStream, offset);
+    return createFor(attachmentSecret, random, inputStream, random.length, offset);
   }
 
-  private static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull InputStream inputStream, long offset) throws IOException {
+  /**
+   * Positions the file at the block containing the offset rather than skipping through it, and
+   * starts the CTR counter at that block. Only the bytes before the offset within the block are
+   * decrypted and discarded.
+   */
+  private static InputStream createFor(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random, @NonNull FileInputStream inputStream, long dataOffset, long offset)
+      throws IOException
+  {
     try {
       Mac mac  = Mac.getInstance("HmacSHA256");
       mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
@@ -52,20 +64,20 @@ public class ModernDecryptingPartInputStream {
       Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
       cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
 
-      long skipped = inputStream.skip(offset - remainder);
-
-      if (skipped != offset - remainder) {
-        throw new IOException("Skip failed: " + skipped + " vs " + (offset - remainder));
-      }
+      inputStream.getChannel().position(dataOffset + offset - remainder);
 
       CipherInputStream cipherInputStream = new CipherInputStream(inputStream, cipher);
-      byte[]            remainderBuffer   = new byte[remainder];
 
-      readFully(cipherInputStream, remainderBuffer);
+      if (remainder > 0) {
+        readFully(cipherInputStream, new byte[remainder]);
+      }
 
       return cipherInputStream;
     } catch (NoSuchAlgorithmException | InvalidKeyException | InvalidAlgorithmParameterException | NoSuchPaddingException e) {
       throw new AssertionError(e);
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
     }
   }
 
@@ -0,0 +1,150 @@
+package org.thoughtcrime.securesms.crypto;
+
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thoughtcrime.securesms.util.Conversions;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Random access reader for files written by {@link ModernEncryptingPartOutputStream}.
+ *
+ * Unlike {@link ModernDecryptingPartInputStream}, the file is opened and the key is derived once,
+ * and every read computes the CTR counter block for its position directly and decrypts only the
+ * requested range. Reads are positional, so a single instance can serve concurrent readers.
+ */
+public final class ModernDecryptingPartRandomAccessFile implements Closeable {
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final FileInputStream inputStream;
+  private final FileChannel     channel;
+  private final SecretKeySpec   key;
+  private final long            dataOffset;
+
+  /**
+   * @param random The random used to derive the file key, or null if it is stored inline at the
+   *               start of the file.
+   */
+  public static ModernDecryptingPartRandomAccessFile createFor(@NonNull AttachmentSecret attachmentSecret, @Nullable byte[] random, @NonNull File file)
+      throws IOException
+  {
+    FileInputStream inputStream = new FileInputStream(file);
+
+    try {
+      long dataOffset = 0;
+
+      if (random == null) {
+        random = new byte[32];
+
+        if (readFully(inputStream.getChannel(), ByteBuffer.wrap(random), 0) != random.length) {
+          throw new IOException("Prematurely reached end of stream!");
+        }
+
+        dataOffset = random.length;
+      }
+
+      return new ModernDecryptingPartRandomAccessFile(inputStream, deriveKey(attachmentSecret, random), dataOffset);
+    } catch (IOException e) {
+      inputStream.close();
+      throw e;
+    }
+  }
+
+  private ModernDecryptingPartRandomAccessFile(@NonNull FileInputStream inputStream, @NonNull SecretKeySpec key, long dataOffset) {
+    this.inputStream = inputStream;
+    this.channel     = inputStream.getChannel();
+    this.key         = key;
+    this.dataOffset  = dataOffset;
+  }
+
+  /**
+   * Reads and decrypts up to length bytes of plaintext starting at position.
+   *
+   * @return The number of bytes read, or -1 if position is at or beyond the end of the file.
+   */
+  public int read(long position, @NonNull byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) return 0;
+
+    int        remainder  = (int) (position % BLOCK_SIZE);
+    ByteBuffer ciphertext = ByteBuffer.allocate(remainder + length);
+    int        read       = readFully(channel, ciphertext, dataOffset + position - remainder);
+
+    if (read <= remainder) {
+      return -1;
+    }
+
+    try {
+      Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(counterBlockFor(position)));
+
+      if (remainder > 0) {
+        cipher.update(ciphertext.array(), 0, remainder);
+      }
+
+      return cipher.update(ciphertext.array(), remainder, read - remainder, buffer, offset);
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | InvalidAlgorithmParameterException | ShortBufferException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * @return The length of the plaintext.
+   */
+  public long length() throws IOException {
+    return channel.size() - dataOffset;
+  }
+
+  @Override
+  public void close() throws IOException {
+    inputStream.close();
+  }
+
+  private static byte[] counterBlockFor(long position) {
+    byte[] iv = new byte[BLOCK_SIZE];
+    Conversions.longTo4ByteArray(iv, 12, position / BLOCK_SIZE);
+    return iv;
+  }
+
+  private static SecretKeySpec deriveKey(@NonNull AttachmentSecret attachmentSecret, @NonNull byte[] random) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(attachmentSecret.getModernKey(), "HmacSHA256"));
+
+      return new SecretKeySpec(mac.doFinal(random), "AES");
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static int readFully(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position) throws IOException {
+    int total = 0;
+
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + total);
+
+      if (read == -1) break;
+
+      total += read;
+    }
+
+    return total;
+  }
+}
@@ -19,20 +19,26 @@ package org.thoughtcrime.securesms.crypto;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
 import org.thoughtcrime.securesms.crypto.storage.TextSecurePreKeyStore;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 import org.whispersystems.libsignal.IdentityKeyPair;
 import org.whispersystems.libsignal.InvalidKeyException;
 import org.whispersystems.libsignal.ecc.Curve;
 import org.whispersystems.libsignal.ecc.ECKeyPair;
 import org.whispersystems.libsignal.state.PreKeyRecord;
-import org.whispersystems.libsignal.state.PreKeyStore;
 import org.whispersystems.libsignal.state.SignedPreKeyRecord;
 import org.whispersystems.libsignal.state.SignedPreKeyStore;
 import org.whispersystems.libsignal.util.Medium;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class PreKeyUtil {
 
@@ -41,25 +47,70 @@ public class PreKeyUtil {
 
   private static final int BATCH_SIZE = 100;
 
+  private static final int             GENERATION_THREADS  = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+  private static final ExecutorService GENERATION_EXECUTOR = SignalExecutors.newCachedBoundedExecutor("signal-prekeys", GENERATION_THREADS);
+
+  /**
+   * Generates and stores a batch of one-time prekeys. The key pairs are generated in parallel and
+   * stored in a single transaction, and the id counter is only advanced once they are stored.
+   */
   public synchronized static List<PreKeyRecord> generatePreKeys(Context context) {
-    PreKeyStore        preKeyStore    = new TextSecurePreKeyStore(context);
-    List<PreKeyRecord> records        = new LinkedList<>();
-    int                preKeyIdOffset = TextSecurePreferences.getNextPreKeyId(context);
+    TextSecurePreKeyStore preKeyStore    = new TextSecurePreKeyStore(context);
+    int                   preKeyIdOffset = TextSecurePreferences.getNextPreKeyId(context);
+    List<PreKeyRecord>    records        = generatePreKeyRecords(preKeyIdOffset, BATCH_SIZE);
+
+    preKeyStore.storePreKeys(records);
+    TextSecurePreferences.setNextPreKeyId(context, getNextPreKeyIdOffset(preKeyIdOffset, BATCH_SIZE));
+
+    return records;
+  }
 
-    for (int i=0;i<BATCH_SIZE;i++) {
-      int          preKeyId = (preKeyIdOffset + i) % Medium.MAX_VALUE;
-      ECKeyPair    keyPair  = Curve.generateKeyPair();
-      PreKeyRecord record   = new PreKeyRecord(preKeyId, keyPair);
+  @VisibleForTesting
+  static @NonNull List<PreKeyRecord> generatePreKeyRecords(int preKeyIdOffset, int count) {
+    int                              chunkSize = (count + GENERATION_THREADS) / (GENERATION_THREADS + 1);
+    List<Future<List<PreKeyRecord>>> chunks    = new ArrayList<>(GENERATION_THREADS);
 
-      preKeyStore.storePreKey(preKeyId, record);
-      records.add(record);
+    for (int start = chunkSize; start < count; start += chunkSize) {
+      int chunkStart = start;
+      int chunkEnd   = Math.min(count, start + chunkSize);
+
+      chunks.add(GENERATION_EXECUTOR.submit(() -> generatePreKeyRecords(preKeyIdOffset, chunkStart, chunkEnd)));
+    }
+
+    List<PreKeyRecord> records = new ArrayList<>(count);
+    records.addAll(generatePreKeyRecords(preKeyIdOffset, 0, Math.min(count, chunkSize)));
+
+    try {
+      for (Future<List<PreKeyRecord>> chunk : chunks) {
+        records.addAll(chunk.get());
+      }
+    } catch (ExecutionException | InterruptedException e) {
+      throw new AssertionError(e);
     }
 
-    TextSecurePreferences.setNextPreKeyId(context, (preKeyIdOffset + BATCH_SIZE + 1) % Medium.MAX_VALUE);
+    return records;
+  }
+
+  private static @NonNull List<PreKeyRecord> generatePreKeyRecords(int preKeyIdOffset, int start, int end) {
+    List<PreKeyRecord> records = new ArrayList<>(end - start);
+
+    for (int i = start; i < end; i++) {
+      records.add(new PreKeyRecord(getPreKeyId(preKeyIdOffset, i), Curve.generateKeyPair()));
+    }
 
     return records;
   }
 
+  @VisibleForTesting
+  static int getPreKeyId(int preKeyIdOffset, int index) {
+    return (preKeyIdOffset + index) % Medium.MAX_VALUE;
+  }
+
+  @VisibleForTesting
+  static int getNextPreKeyIdOffset(int preKeyIdOffset, int count) {
+    return (preKeyIdOffset + count + 1) % Medium.MAX_VALUE;
+  }
+
   public synchronized static SignedPreKeyRecord generateSignedPreKey(Context context, IdentityKeyPair identityKeyPair, boolean active) {
     try {
       SignedPreKeyStore  signedPreKeyStore = new TextSecurePreKeyStore(context);
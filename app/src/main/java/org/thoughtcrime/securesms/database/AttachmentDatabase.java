@@ -31,6 +31,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
 import com.bumptech.glide.Glide;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -54,6 +55,7 @@ import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.mms.MediaStream;
 import org.thoughtcrime.securesms.mms.MmsException;
 import org.thoughtcrime.securesms.mms.PartAuthority;
+import org.thoughtcrime.securesms.mms.PartUriParser;
 import org.thoughtcrime.securesms.stickers.StickerLocator;
 import org.thoughtcrime.securesms.util.Base64;
 import org.thoughtcrime.securesms.util.BitmapDecodingException;
@@ -80,9 +82,11 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -168,7 +172,8 @@ public class AttachmentDatabase extends Database {
     "CREATE INDEX IF NOT EXISTS pending_push_index ON " + TABLE_NAME + " (" + TRANSFER_STATE + ");",
     "CREATE INDEX IF NOT EXISTS part_sticker_pack_id_index ON " + TABLE_NAME + " (" + STICKER_PACK_ID + ");",
     "CREATE INDEX IF NOT EXISTS part_data_hash_index ON " + TABLE_NAME + " (" + DATA_HASH + ");",
-    "CREATE INDEX IF NOT EXISTS part_data_index ON " + TABLE_NAME + " (" + DATA + ");"
+    "CREATE INDEX IF NOT EXISTS part_data_index ON " + TABLE_NAME + " (" + DATA + ");",
+    "CREATE INDEX IF NOT EXISTS part_mid_display_order_index ON " + TABLE_NAME + " (" + MMS_ID + ", " + DISPLAY_ORDER + ", " + ROW_ID + ");"
   };
 
   private static final long STANDARD_THUMB_TIME = 1000;
@@ -330,6 +335,68 @@ public class AttachmentDatabase extends Database {
     notifyAttachmentListeners();
   }
 
+  /**
+   * Bulk version of {@link #deleteAttachmentsForMessage(long)}, meant to be called inside the
+   * caller's transaction. The rows are removed before their files are looked up, so data shared
+   * between attachments in the same batch is only kept if something outside the batch still
+   * references it. Nothing is removed from disk here: the caller should call
+   * {@link DeletedAttachmentFiles#delete()} once its transaction has committed.
+   */
+  @NonNull DeletedAttachmentFiles deleteAttachmentsForMessages(@NonNull List<Long> mmsIds) {
+    if (mmsIds.isEmpty()) return DeletedAttachmentFiles.EMPTY;
+
+    SQLiteDatabase database       = databaseHelper.getWritableDatabase();
+    String         where          = MMS_ID + " IN (" + Util.join(mmsIds, ",") + ")";
+    Set<String>    dataFiles      = new HashSet<>();
+    List<String>   files          = new LinkedList<>();
+    boolean        clearDiskCache = false;
+
+    try (Cursor cursor = database.query(TABLE_NAME, new String[] {DATA, THUMBNAIL, CONTENT_TYPE}, where, null, null, null, null)) {
+      while (cursor != null && cursor.moveToNext()) {
+        String data        = cursor.getString(cursor.getColumnIndexOrThrow(DATA));
+        String thumbnail   = cursor.getString(cursor.getColumnIndexOrThrow(THUMBNAIL));
+        String contentType = cursor.getString(cursor.getColumnIndexOrThrow(CONTENT_TYPE));
+
+        if (!TextUtils.isEmpty(data)) {
+          dataFiles.add(data);
+        }
+
+        if (!TextUtils.isEmpty(thumbnail)) {
+          files.add(thumbnail);
+        }
+
+        clearDiskCache |= MediaUtil.isImageType(contentType) || thumbnail != null;
+      }
+    }
+
+    int deleted = database.delete(TABLE_NAME, where, null);
+
+    if (deleted == 0) return DeletedAttachmentFiles.EMPTY;
+
+    for (String data : dataFiles) {
+      if (DatabaseUtils.longForQuery(database, "SELECT count(*) FROM " + TABLE_NAME + " WHERE " + DATA + " = ?", new String[] {data}) == 0) {
+        files.add(data);
+      }
+    }
+
+    Log.d(TAG, "[deleteAttachmentsForMessages] Deleted " + deleted + " attachments for " + mmsIds.size() + " messages.");
+
+    return new DeletedAttachmentFiles(files, clearDiskCache);
+  }
+
+  /**
+   * Clears Glide's disk cache and notifies attachment listeners after a bulk delete. Must be called
+   * outside of any transaction, as clearing the cache does disk I/O.
+   */
+  @WorkerThread
+  void onAttachmentsDeleted(boolean clearDiskCache) {
+    if (clearDiskCache) {
+      Glide.get(context).clearDiskCache();
+    }
+
+    notifyAttachmentListeners();
+  }
+
   /**
    * Deletes all attachments with an ID of {@link #PREUPLOAD_MESSAGE_ID}. These represent
    * attachments that were pre-uploaded and haven't been assigned to a message. This should only be
@@ -890,15 +957,7 @@ public class AttachmentDatabase extends Database {
       if (dataInfo.random != null && dataInfo.random.length == 32) {
         return ModernDecryptingPartInputStream.createFor(attachmentSecret, dataInfo.random, dataInfo.file, offset);
       } else {
-        InputStream stream  = ClassicDecryptingPartInputStream.createFor(attachmentSecret, dataInfo.file);
-        long        skipped = stream.skip(offset);
-
-        if (skipped != offset) {
-          Log.w(TAG, "Skip failed: " + skipped + " vs " + offset);
-          return null;
-        }
-
-        return stream;
+        return ClassicDecryptingPartInputStream.createFor(attachmentSecret, dataInfo.file, offset);
       }
     } catch (IOException e) {
       Log.w(TAG, e);
@@ -1143,7 +1202,13 @@ public class AttachmentDatabase extends Database {
     long           uniqueId        = System.currentTimeMillis();
     long           thumbnailTimeUs;
 
-    if (attachment.getDataUri() != null) {
+    if (attachment.getDataUri() != null && !attachment.getTransformProperties().isVideoEdited()) {
+      dataInfo = getSharedAttachmentDataFileInfo(attachment.getDataUri());
+    }
+
+    if (dataInfo != null) {
+      Log.d(TAG, "Sharing part file with existing attachment: " + dataInfo.file.getAbsolutePath());
+    } else if (attachment.getDataUri() != null) {
       dataInfo = setAttachmentData(attachment.getDataUri(), false, null);
       Log.d(TAG, "Wrote part to file: " + dataInfo.file.getAbsolutePath());
     }
@@ -1246,6 +1311,25 @@ public class AttachmentDatabase extends Database {
     return attachmentId;
   }
 
+  /**
+   * If the uri points at an existing attachment (e.g. when forwarding), its data file and hash can
+   * be shared directly instead of re-reading, re-encrypting and re-hashing the whole file only to
+   * find the duplicate afterwards.
+   */
+  private @Nullable DataInfo getSharedAttachmentDataFileInfo(@NonNull Uri uri) {
+    if (!PartAuthority.isAttachmentUri(uri)) {
+      return null;
+    }
+
+    DataInfo dataInfo = getAttachmentDataFileInfo(new PartUriParser(uri).getPartId(), DATA);
+
+    if (dataInfo == null || dataInfo.hash == null || !dataInfo.file.exists()) {
+      return null;
+    }
+
+    return dataInfo;
+  }
+
   private @Nullable DatabaseAttachment findTemplateAttachment(@NonNull String dataHash) {
     String   selection = DATA_HASH + " = ?";
     String[] args      = new String[] { dataHash };
@@ -1444,4 +1528,32 @@ public class AttachmentDatabase extends Database {
       }
     }
   }
+
+  /**
+   * The files left behind by {@link #deleteAttachmentsForMessages(List)}, to be unlinked once the
+   * rows that referenced them are gone for good.
+   */
+  static final class DeletedAttachmentFiles {
+
+    static final DeletedAttachmentFiles EMPTY = new DeletedAttachmentFiles(Collections.emptyList(), false);
+
+    private final List<String> files;
+    private final boolean      clearDiskCache;
+
+    private DeletedAttachmentFiles(@NonNull List<String> files, boolean clearDiskCache) {
+      this.files          = files;
+      this.clearDiskCache = clearDiskCache;
+    }
+
+    boolean shouldClearDiskCache() {
+      return clearDiskCache;
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    void delete() {
+      for (String file : files) {
+        new File(file).delete();
+      }
+    }
+  }
 }
@@ -53,6 +53,7 @@ public class DatabaseFactory {
   private final RecipientDatabase     recipientDatabase;
   private final ContactsDatabase      contactsDatabase;
   private final GroupReceiptDatabase  groupReceiptDatabase;
+  private final ReactionDatabase      reactionDatabase;
   private final OneTimePreKeyDatabase preKeyDatabase;
   private final SignedPreKeyDatabase  signedPreKeyDatabase;
   private final SessionDatabase       sessionDatabase;
@@ -62,6 +63,7 @@ public class DatabaseFactory {
   private final StorageKeyDatabase    storageKeyDatabase;
   private final KeyValueDatabase      keyValueDatabase;
   private final MegaphoneDatabase     megaphoneDatabase;
+  private final LinkPreviewDatabase   linkPreviewDatabase;
 
   public static DatabaseFactory getInstance(Context context) {
     synchronized (lock) {
@@ -124,6 +126,14 @@ public class DatabaseFactory {
     return getInstance(context).groupReceiptDatabase;
   }
 
+  public static ReactionDatabase getReactionDatabase(Context context) {
+    return getInstance(context).reactionDatabase;
+  }
+
+  public static LinkPreviewDatabase getLinkPreviewDatabase(Context context) {
+    return getInstance(context).linkPreviewDatabase;
+  }
+
   public static OneTimePreKeyDatabase getPreKeyDatabase(Context context) {
     return getInstance(context).preKeyDatabase;
   }
@@ -189,6 +199,7 @@ public class DatabaseFactory {
     this.groupDatabase        = new GroupDatabase(context, databaseHelper);
     this.recipientDatabase    = new RecipientDatabase(context, databaseHelper);
     this.groupReceiptDatabase = new GroupReceiptDatabase(context, databaseHelper);
+    this.reactionDatabase     = new ReactionDatabase(context, databaseHelper);
     this.contactsDatabase     = new ContactsDatabase(context);
     this.preKeyDatabase       = new OneTimePreKeyDatabase(context, databaseHelper);
     this.signedPreKeyDatabase = new SignedPreKeyDatabase(context, databaseHelper);
@@ -199,6 +210,7 @@ public class DatabaseFactory {
     this.storageKeyDatabase   = new StorageKeyDatabase(context, databaseHelper);
     this.keyValueDatabase     = new KeyValueDatabase(context, databaseHelper);
     this.megaphoneDatabase    = new MegaphoneDatabase(context, databaseHelper);
+    this.linkPreviewDatabase  = new LinkPreviewDatabase(context, databaseHelper);
   }
 
   public void onApplicationLevelUpgrade(@NonNull Context context, @NonNull MasterSecret masterSecret,
@@ -36,6 +36,7 @@ public class GroupDatabase extends Database {
   private static final String TAG = GroupDatabase.class.getSimpleName();
 
           static final String TABLE_NAME          = "groups";
+  public  static final String FTS_TABLE_NAME      = "group_fts";
   private static final String ID                  = "_id";
           static final String GROUP_ID            = "group_id";
           static final String RECIPIENT_ID        = "recipient_id";
@@ -68,6 +69,21 @@ public class GroupDatabase extends Database {
           AVATAR_DIGEST + " BLOB, " +
           MMS + " INTEGER DEFAULT 0);";
 
+  public static final String[] CREATE_FTS_TABLE = {
+      "CREATE VIRTUAL TABLE " + FTS_TABLE_NAME + " USING fts5(" + TITLE + ", content=" + TABLE_NAME + ", content_rowid=" + ID + ", prefix='2 3');",
+
+      "CREATE TRIGGER group_fts_ai AFTER INSERT ON " + TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(rowid, " + TITLE + ") VALUES (new." + ID + ", new." + TITLE + ");\n" +
+          "END;",
+      "CREATE TRIGGER group_fts_ad AFTER DELETE ON " + TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(" + FTS_TABLE_NAME + ", rowid, " + TITLE + ") VALUES ('delete', old." + ID + ", old." + TITLE + ");\n" +
+          "END;",
+      "CREATE TRIGGER group_fts_au AFTER UPDATE OF " + TITLE + " ON " + TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(" + FTS_TABLE_NAME + ", rowid, " + TITLE + ") VALUES ('delete', old." + ID + ", old." + TITLE + ");\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(rowid, " + TITLE + ") VALUES (new." + ID + ", new." + TITLE + ");\n" +
+          "END;"
+  };
+
   public static final String[] CREATE_INDEXS = {
       "CREATE UNIQUE INDEX IF NOT EXISTS group_id_index ON " + TABLE_NAME + " (" + GROUP_ID + ");",
       "CREATE UNIQUE INDEX IF NOT EXISTS group_recipient_id_index ON " + TABLE_NAME + " (" + RECIPIENT_ID + ");",
@@ -126,15 +142,25 @@ public class GroupDatabase extends Database {
   }
 
   public Reader getGroupsFilteredByTitle(String constraint, boolean includeInactive) {
+    String   titleFilter;
+    String   titleArg;
     String   query;
     String[] queryArgs;
 
+    if (SearchDatabase.isFullTextSearchable(constraint)) {
+      titleFilter = ID + " IN (SELECT " + SearchDatabase.ID + " FROM " + FTS_TABLE_NAME + " WHERE " + FTS_TABLE_NAME + " MATCH ?)";
+      titleArg    = SearchDatabase.createFullTextSearchQuery(constraint);
+    } else {
+      titleFilter = TITLE + " LIKE ?";
+      titleArg    = "%" + constraint + "%";
+    }
+
     if (includeInactive) {
-      query     = TITLE + " LIKE ? AND (" + ACTIVE + " = ? OR " + RECIPIENT_ID + " IN (SELECT " + ThreadDatabase.RECIPIENT_ID + " FROM " + ThreadDatabase.TABLE_NAME + "))";
-      queryArgs = new String[]{"%" + constraint + "%", "1"};
+      query     = titleFilter + " AND (" + ACTIVE + " = ? OR " + RECIPIENT_ID + " IN (SELECT " + ThreadDatabase.RECIPIENT_ID + " FROM " + ThreadDatabase.TABLE_NAME + "))";
+      queryArgs = new String[]{titleArg, "1"};
     } else {
-      query     = TITLE + " LIKE ? AND " + ACTIVE + " = ?";
-      queryArgs = new String[]{"%" + constraint + "%", "1"};
+      query     = titleFilter + " AND " + ACTIVE + " = ?";
+      queryArgs = new String[]{titleArg, "1"};
     }
 
     Cursor cursor = databaseHelper.getReadableDatabase().query(TABLE_NAME, null, query, queryArgs, null, null, TITLE + " COLLATE NOCASE ASC");
@@ -4,13 +4,19 @@ package org.thoughtcrime.securesms.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.util.Pair;
 import androidx.annotation.NonNull;
 
+import com.annimon.stream.Stream;
+
 import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
 
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.util.Util;
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -34,24 +40,33 @@ public class GroupReceiptDatabase extends Database {
       MMS_ID + " INTEGER, " + RECIPIENT_ID + " INTEGER, " + STATUS + " INTEGER, " + TIMESTAMP + " INTEGER, " + UNIDENTIFIED + " INTEGER DEFAULT 0);";
 
   public static final String[] CREATE_INDEXES = {
-      "CREATE INDEX IF NOT EXISTS group_receipt_mms_id_index ON " + TABLE_NAME + " (" + MMS_ID + ");",
+      "CREATE INDEX IF NOT EXISTS group_receipt_mms_id_address_index ON " + TABLE_NAME + " (" + MMS_ID + ", " + RECIPIENT_ID + ");",
   };
 
   public GroupReceiptDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
   }
 
-  public void insert(List<RecipientId> recipientIds, long mmsId, int status, long timestamp) {
-    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+  public void insert(Collection<RecipientId> recipientIds, long mmsId, int status, long timestamp) {
+    if (recipientIds.isEmpty()) return;
 
-    for (RecipientId recipientId : recipientIds) {
-      ContentValues values = new ContentValues(4);
-      values.put(MMS_ID, mmsId);
-      values.put(RECIPIENT_ID, recipientId.serialize());
-      values.put(STATUS, status);
-      values.put(TIMESTAMP, timestamp);
+    SQLiteDatabase  db        = databaseHelper.getWritableDatabase();
+    SQLiteStatement statement = db.compileStatement("INSERT INTO " + TABLE_NAME + " (" + MMS_ID + ", " + RECIPIENT_ID + ", " + STATUS + ", " + TIMESTAMP + ") VALUES (?, ?, ?, ?)");
+
+    db.beginTransaction();
+    try {
+      for (RecipientId recipientId : recipientIds) {
+        statement.bindLong(1, mmsId);
+        statement.bindLong(2, recipientId.toLong());
+        statement.bindLong(3, status);
+        statement.bindLong(4, timestamp);
+        statement.executeInsert();
+      }
 
-      db.insert(TABLE_NAME, null, values);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+      statement.close();
     }
   }
 
@@ -65,14 +80,44 @@ public class GroupReceiptDatabase extends Database {
               new String[] {String.valueOf(mmsId), recipientId.serialize(), String.valueOf(status)});
   }
 
-  public void setUnidentified(RecipientId recipientId, long mmsId, boolean unidentified) {
+  /**
+   * Moves every listed recipient that is behind the status forward in a single statement.
+   */
+  public void update(@NonNull Collection<RecipientId> recipientIds, long mmsId, int status, long timestamp) {
+    if (recipientIds.isEmpty()) return;
+
     SQLiteDatabase db     = databaseHelper.getWritableDatabase();
-    ContentValues  values = new ContentValues(1);
-    values.put(UNIDENTIFIED, unidentified ? 1 : 0);
+    ContentValues  values = new ContentValues(2);
+    values.put(STATUS, status);
+    values.put(TIMESTAMP, timestamp);
 
-    db.update(TABLE_NAME, values, MMS_ID + " = ? AND " + RECIPIENT_ID + " = ?",
-              new String[] {String.valueOf(mmsId), recipientId.serialize()});
+    db.update(TABLE_NAME, values, MMS_ID + " = ? AND " + RECIPIENT_ID + " IN (" + Util.join(Stream.of(recipientIds).map(RecipientId::toLong).toList(), ",") + ") AND " + STATUS + " < ?",
+              new String[] {String.valueOf(mmsId), String.valueOf(status)});
+  }
+
+  /**
+   * @param unidentified Pairs of a recipient and whether the message was sent to them unidentified.
+   */
+  public void setUnidentified(@NonNull Collection<Pair<RecipientId, Boolean>> unidentified, long mmsId) {
+    if (unidentified.isEmpty()) return;
+
+    SQLiteDatabase  db        = databaseHelper.getWritableDatabase();
+    SQLiteStatement statement = db.compileStatement("UPDATE " + TABLE_NAME + " SET " + UNIDENTIFIED + " = ? WHERE " + MMS_ID + " = ? AND " + RECIPIENT_ID + " = ?");
+
+    db.beginTransaction();
+    try {
+      for (Pair<RecipientId, Boolean> pair : unidentified) {
+        statement.bindLong(1, pair.second ? 1 : 0);
+        statement.bindLong(2, mmsId);
+        statement.bindLong(3, pair.first.toLong());
+        statement.execute();
+      }
 
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+      statement.close();
+    }
   }
 
   public @NonNull List<GroupReceiptInfo> getGroupReceiptInfo(long mmsId) {
@@ -96,6 +141,13 @@ public class GroupReceiptDatabase extends Database {
     db.delete(TABLE_NAME, MMS_ID + " = ?", new String[] {String.valueOf(mmsId)});
   }
 
+  void deleteRowsForMessages(@NonNull List<Long> mmsIds) {
+    if (mmsIds.isEmpty()) return;
+
+    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+    db.delete(TABLE_NAME, MMS_ID + " IN (" + Util.join(mmsIds, ",") + ")", null);
+  }
+
   void deleteAllRows() {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     db.delete(TABLE_NAME, null, null);
@@ -22,6 +22,8 @@ import android.database.Cursor;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.annimon.stream.Stream;
+
 import net.sqlcipher.database.SQLiteDatabase;
 
 import org.greenrobot.eventbus.EventBus;
@@ -29,17 +31,23 @@ import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.util.Base64;
+import org.thoughtcrime.securesms.util.Util;
 import org.whispersystems.libsignal.IdentityKey;
 import org.whispersystems.libsignal.InvalidKeyException;
 import org.whispersystems.libsignal.util.guava.Optional;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class IdentityDatabase extends Database {
 
   @SuppressWarnings("unused")
   private static final String TAG = IdentityDatabase.class.getSimpleName();
 
+  private static final int MAX_BATCH_SIZE = 500;
+
           static final String TABLE_NAME           = "identities";
   private static final String ID                   = "_id";
           static final String RECIPIENT_ID         = "address";
@@ -110,6 +118,29 @@ public class IdentityDatabase extends Database {
     return Optional.absent();
   }
 
+  /**
+   * Looks up the identities of many recipients with a query per batch rather than per recipient.
+   */
+  public @NonNull Map<RecipientId, IdentityRecord> getIdentities(@NonNull List<RecipientId> recipientIds) {
+    SQLiteDatabase                   database = databaseHelper.getReadableDatabase();
+    Map<RecipientId, IdentityRecord> results  = new HashMap<>(recipientIds.size());
+
+    for (List<RecipientId> batch : Util.chunk(recipientIds, MAX_BATCH_SIZE)) {
+      String query = RECIPIENT_ID + " IN (" + Util.join(Stream.of(batch).map(RecipientId::serialize).toList(), ",") + ")";
+
+      try (Cursor cursor = database.query(TABLE_NAME, null, query, null, null, null, null)) {
+        while (cursor != null && cursor.moveToNext()) {
+          IdentityRecord record = getIdentityRecord(cursor);
+          results.put(record.getRecipientId(), record);
+        }
+      } catch (InvalidKeyException | IOException e) {
+        throw new AssertionError(e);
+      }
+    }
+
+    return results;
+  }
+
   public void saveIdentity(@NonNull RecipientId recipientId, IdentityKey identityKey, VerifiedStatus verifiedStatus,
                            boolean firstUse, long timestamp, boolean nonBlockingApproval)
   {
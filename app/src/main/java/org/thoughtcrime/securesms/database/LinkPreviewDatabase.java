@@ -0,0 +1,94 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.linkpreview.LinkPreviewMetadata;
+import org.whispersystems.libsignal.util.guava.Optional;
+
+/**
+ * Recently fetched link preview metadata, so that a link that is pasted again or shared in
+ * several chats does not have to be fetched and parsed each time. Entries expire after a fixed
+ * time, and only the most recently fetched ones are kept.
+ */
+public class LinkPreviewDatabase extends Database {
+
+  public static final String TABLE_NAME = "link_preview_cache";
+
+  private static final String ID         = "_id";
+  private static final String URL        = "url";
+  private static final String TITLE      = "title";
+  private static final String IMAGE_URL  = "image_url";
+  private static final String FETCHED_AT = "fetched_at";
+
+  private static final int MAX_ENTRIES = 500;
+
+  public static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" + ID         + " INTEGER PRIMARY KEY, " +
+                                                                                  URL        + " TEXT UNIQUE NOT NULL, " +
+                                                                                  TITLE      + " TEXT, " +
+                                                                                  IMAGE_URL  + " TEXT, " +
+                                                                                  FETCHED_AT + " INTEGER NOT NULL);";
+
+  public static final String[] CREATE_INDEXES = {
+      "CREATE INDEX IF NOT EXISTS link_preview_cache_fetched_at_index ON " + TABLE_NAME + " (" + FETCHED_AT + ");"
+  };
+
+  LinkPreviewDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
+    super(context, databaseHelper);
+  }
+
+  /**
+   * @return The cached metadata for the url, or null if there is none that was fetched at or
+   *         after {@code fetchedSince}.
+   */
+  public @Nullable LinkPreviewMetadata get(@NonNull String url, long fetchedSince) {
+    SQLiteDatabase db    = databaseHelper.getReadableDatabase();
+    String         query = URL + " = ? AND " + FETCHED_AT + " >= ?";
+    String[]       args  = new String[] { url, String.valueOf(fetchedSince) };
+
+    try (Cursor cursor = db.query(TABLE_NAME, new String[] { TITLE, IMAGE_URL }, query, args, null, null, null)) {
+      if (cursor != null && cursor.moveToFirst()) {
+        return new LinkPreviewMetadata(Optional.fromNullable(cursor.getString(cursor.getColumnIndexOrThrow(TITLE))),
+                                       Optional.fromNullable(cursor.getString(cursor.getColumnIndexOrThrow(IMAGE_URL))));
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Replaces any earlier entry for the url, and drops entries fetched before {@code fetchedSince}
+   * along with the oldest entries beyond the size limit. Expired entries are deleted rather than
+   * left to be ignored by {@link #get(String, long)}, so that the urls don't outlive their use.
+   */
+  public void put(@NonNull String url, @NonNull LinkPreviewMetadata metadata, long fetchedAt, long fetchedSince) {
+    SQLiteDatabase db     = databaseHelper.getWritableDatabase();
+    ContentValues  values = new ContentValues(4);
+
+    values.put(URL, url);
+    values.put(TITLE, metadata.getTitle().orNull());
+    values.put(IMAGE_URL, metadata.getImageUrl().orNull());
+    values.put(FETCHED_AT, fetchedAt);
+
+    db.beginTransaction();
+    try {
+      db.insertWithOnConflict(TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+      db.delete(TABLE_NAME, FETCHED_AT + " < ?", new String[] { String.valueOf(fetchedSince) });
+      db.delete(TABLE_NAME, ID + " NOT IN (SELECT " + ID + " FROM " + TABLE_NAME + " ORDER BY " + FETCHED_AT + " DESC LIMIT " + MAX_ENTRIES + ")", null);
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+  public void deleteAll() {
+    databaseHelper.getWritableDatabase().delete(TABLE_NAME, null, null);
+  }
+}
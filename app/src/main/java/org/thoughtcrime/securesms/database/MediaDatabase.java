@@ -7,20 +7,46 @@ import android.database.Cursor;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.google.android.gms.common.util.ArrayUtils;
+
 import net.sqlcipher.database.SQLiteDatabase;
 
 import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.util.MediaUtil;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 public class MediaDatabase extends Database {
 
+    private static final String TAG = MediaDatabase.class.getSimpleName();
+
     public  static final int    ALL_THREADS         = -1;
     private static final String THREAD_RECIPIENT_ID = "THREAD_RECIPIENT_ID";
 
+    public  static final String STORAGE_TABLE_NAME = "media_storage";
+    private static final String STORAGE_THREAD_ID  = "thread_id";
+    private static final String STORAGE_CATEGORY   = "category";
+    private static final String STORAGE_SIZE       = "size";
+
+    private static final int CATEGORY_PHOTO    = 0;
+    private static final int CATEGORY_VIDEO    = 1;
+    private static final int CATEGORY_AUDIO    = 2;
+    private static final int CATEGORY_DOCUMENT = 3;
+
+    private static final String THREAD_FILTER = "__THREAD_FILTER__";
+
+    private static final String SINGLE_THREAD_FILTER = AttachmentDatabase.MMS_ID + " IN (SELECT " + MmsSmsColumns.ID + " FROM " + MmsDatabase.TABLE_NAME + " WHERE " + MmsDatabase.THREAD_ID + " = ?)";
+    private static final String ALL_THREADS_FILTER   = MmsDatabase.TABLE_NAME + "." + MmsDatabase.THREAD_ID + " != ?";
+
+    /**
+     * The unary + on the sticker column keeps the planner off its index, which matches nearly every
+     * row, so it can walk part_mid_display_order_index in sort order instead.
+     */
     private static final String BASE_MEDIA_QUERY = "SELECT " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.ROW_ID + " AS " + AttachmentDatabase.ROW_ID + ", "
         + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.CONTENT_TYPE + ", "
         + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.THUMBNAIL_ASPECT_RATIO + ", "
@@ -57,13 +83,11 @@ public class MediaDatabase extends Database {
         + " ON " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.MMS_ID + " = " + MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID + " "
         + "LEFT JOIN " + ThreadDatabase.TABLE_NAME
         + " ON " + ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.ID + " = " + MmsDatabase.TABLE_NAME + "." + MmsDatabase.THREAD_ID + " "
-        + "WHERE " + AttachmentDatabase.MMS_ID + " IN (SELECT " + MmsSmsColumns.ID
-        + " FROM " + MmsDatabase.TABLE_NAME
-        + " WHERE " + MmsDatabase.THREAD_ID + " __EQUALITY__ ?) AND (%s) AND "
+        + "WHERE " + THREAD_FILTER + " AND (%s) AND "
         + MmsDatabase.VIEW_ONCE + " = 0 AND "
         + AttachmentDatabase.DATA + " IS NOT NULL AND "
         + AttachmentDatabase.QUOTE + " = 0 AND "
-        + AttachmentDatabase.STICKER_PACK_ID + " IS NULL ";
+        + "+" + AttachmentDatabase.STICKER_PACK_ID + " IS NULL ";
 
    private static final String UNIQUE_MEDIA_QUERY = "SELECT "
         + "MAX(" + AttachmentDatabase.SIZE + ") as " + AttachmentDatabase.SIZE + ", "
@@ -80,13 +104,73 @@ public class MediaDatabase extends Database {
                                                                                      AttachmentDatabase.CONTENT_TYPE + " NOT LIKE 'audio/%' AND " +
                                                                                      AttachmentDatabase.CONTENT_TYPE + " NOT LIKE 'text/x-signal-plain'");
 
+  private static final String INSERT_ALL_THREADS_STORAGE = "INSERT INTO " + STORAGE_TABLE_NAME + " (" + STORAGE_THREAD_ID + ", " + STORAGE_CATEGORY + ") VALUES " +
+                                                           "(" + ALL_THREADS + ", " + CATEGORY_PHOTO + "), " +
+                                                           "(" + ALL_THREADS + ", " + CATEGORY_VIDEO + "), " +
+                                                           "(" + ALL_THREADS + ", " + CATEGORY_AUDIO + "), " +
+                                                           "(" + ALL_THREADS + ", " + CATEGORY_DOCUMENT + ")";
+
+  /**
+   * Storage usage per thread and category, kept up to date by triggers on the attachment table. The
+   * {@link #ALL_THREADS} rows count each data file once, at its largest size, while the per-thread
+   * rows count every attachment in the thread. Categories mirror
+   * {@link MediaUtil#getSlideTypeFromContentType(String)}.
+   */
+  public static final String[] CREATE_TABLE = {
+      "CREATE TABLE " + STORAGE_TABLE_NAME + " (" + STORAGE_THREAD_ID + " INTEGER, " +
+                                                    STORAGE_CATEGORY  + " INTEGER, " +
+                                                    STORAGE_SIZE      + " INTEGER DEFAULT 0, " +
+                                                    "UNIQUE(" + STORAGE_THREAD_ID + ", " + STORAGE_CATEGORY + "));",
+
+      INSERT_ALL_THREADS_STORAGE,
+
+      "CREATE TRIGGER media_storage_ai AFTER INSERT ON " + AttachmentDatabase.TABLE_NAME + " WHEN " + isCountedSql("new") + " BEGIN\n" +
+          updateStorageSql("new", "+") +
+      "END;",
+
+      "CREATE TRIGGER media_storage_ad AFTER DELETE ON " + AttachmentDatabase.TABLE_NAME + " WHEN " + isCountedSql("old") + " BEGIN\n" +
+          updateStorageSql("old", "-") +
+      "END;",
+
+      "CREATE TRIGGER media_storage_bu BEFORE UPDATE OF " + storageColumnsSql() + " ON " + AttachmentDatabase.TABLE_NAME + " WHEN " + isCountedSql("old") + " BEGIN\n" +
+          updateStorageSql("old", "-") +
+      "END;",
+
+      "CREATE TRIGGER media_storage_au AFTER UPDATE OF " + storageColumnsSql() + " ON " + AttachmentDatabase.TABLE_NAME + " WHEN " + isCountedSql("new") + " BEGIN\n" +
+          updateStorageSql("new", "+") +
+      "END;"
+  };
+
+  /**
+   * Recomputes every counter from the attachment table.
+   */
+  public static final String[] REBUILD_STORAGE = {
+      "DELETE FROM " + STORAGE_TABLE_NAME,
+
+      INSERT_ALL_THREADS_STORAGE,
+
+      "INSERT OR REPLACE INTO " + STORAGE_TABLE_NAME + " (" + STORAGE_THREAD_ID + ", " + STORAGE_CATEGORY + ", " + STORAGE_SIZE + ") " +
+          "SELECT " + ALL_THREADS + ", " + STORAGE_CATEGORY + ", SUM(" + STORAGE_SIZE + ") FROM (" +
+              "SELECT " + categorySql(AttachmentDatabase.TABLE_NAME) + " AS " + STORAGE_CATEGORY + ", MAX(" + AttachmentDatabase.SIZE + ") AS " + STORAGE_SIZE + " " +
+              "FROM " + AttachmentDatabase.TABLE_NAME + " " +
+              "WHERE " + isCountedSql(AttachmentDatabase.TABLE_NAME) + " " +
+              "GROUP BY " + AttachmentDatabase.DATA + ", " + STORAGE_CATEGORY +
+          ") GROUP BY " + STORAGE_CATEGORY,
+
+      "INSERT INTO " + STORAGE_TABLE_NAME + " (" + STORAGE_THREAD_ID + ", " + STORAGE_CATEGORY + ", " + STORAGE_SIZE + ") " +
+          "SELECT " + MmsDatabase.TABLE_NAME + "." + MmsDatabase.THREAD_ID + ", " + categorySql(AttachmentDatabase.TABLE_NAME) + ", SUM(" + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.SIZE + ") " +
+          "FROM " + AttachmentDatabase.TABLE_NAME + " INNER JOIN " + MmsDatabase.TABLE_NAME + " ON " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.MMS_ID + " = " + MmsDatabase.TABLE_NAME + "." + MmsDatabase.ID + " " +
+          "WHERE " + isCountedSql(AttachmentDatabase.TABLE_NAME) + " " +
+          "GROUP BY 1, 2"
+  };
+
   MediaDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
     super(context, databaseHelper);
   }
 
   public @NonNull Cursor getGalleryMediaForThread(long threadId, @NonNull Sorting sorting) {
     SQLiteDatabase database = databaseHelper.getReadableDatabase();
-    String         query    = sorting.applyToQuery(applyEqualityOperator(threadId, GALLERY_MEDIA_QUERY));
+    String         query    = sorting.applyToQuery(applyThreadFilter(threadId, GALLERY_MEDIA_QUERY));
     String[]       args     = {threadId + ""};
     Cursor         cursor   = database.rawQuery(query, args);
     setNotifyConverationListeners(cursor, threadId);
@@ -95,7 +179,7 @@ public class MediaDatabase extends Database {
 
   public @NonNull Cursor getDocumentMediaForThread(long threadId, @NonNull Sorting sorting) {
     SQLiteDatabase database = databaseHelper.getReadableDatabase();
-    String         query    = sorting.applyToQuery(applyEqualityOperator(threadId, DOCUMENT_MEDIA_QUERY));
+    String         query    = sorting.applyToQuery(applyThreadFilter(threadId, DOCUMENT_MEDIA_QUERY));
     String[]       args     = {threadId + ""};
     Cursor         cursor   = database.rawQuery(query, args);
     setNotifyConverationListeners(cursor, threadId);
@@ -104,7 +188,7 @@ public class MediaDatabase extends Database {
 
   public @NonNull Cursor getAudioMediaForThread(long threadId, @NonNull Sorting sorting) {
     SQLiteDatabase database = databaseHelper.getReadableDatabase();
-    String         query    = sorting.applyToQuery(applyEqualityOperator(threadId, AUDIO_MEDIA_QUERY));
+    String         query    = sorting.applyToQuery(applyThreadFilter(threadId, AUDIO_MEDIA_QUERY));
     String[]       args     = {threadId + ""};
     Cursor         cursor   = database.rawQuery(query, args);
     setNotifyConverationListeners(cursor, threadId);
@@ -113,15 +197,63 @@ public class MediaDatabase extends Database {
 
   public @NonNull Cursor getAllMediaForThread(long threadId, @NonNull Sorting sorting) {
     SQLiteDatabase database = databaseHelper.getReadableDatabase();
-    String         query    = sorting.applyToQuery(applyEqualityOperator(threadId, ALL_MEDIA_QUERY));
+    String         query    = sorting.applyToQuery(applyThreadFilter(threadId, ALL_MEDIA_QUERY));
     String[]       args     = {threadId + ""};
     Cursor         cursor   = database.rawQuery(query, args);
     setNotifyConverationListeners(cursor, threadId);
     return cursor;
   }
 
-  private static String applyEqualityOperator(long threadId, String query) {
-    return query.replace("__EQUALITY__", threadId == ALL_THREADS ? "!=" : "=");
+  /**
+   * @return The gallery media that sorts after the anchor, or before it if before is true, in which
+   *         case the nearest comes first. With no anchor, the page starts at the beginning.
+   */
+  public @NonNull Cursor getGalleryMediaPage(long threadId, @NonNull Sorting sorting, @Nullable DatabaseAttachment anchor, boolean before, int limit) {
+    SQLiteDatabase database = databaseHelper.getReadableDatabase();
+    String         query    = applyThreadFilter(threadId, GALLERY_MEDIA_QUERY);
+    String[]       args     = {threadId + ""};
+
+    if (anchor != null) {
+      query += "AND " + sorting.getKeysetClause(before) + " ";
+      args   = ArrayUtils.concat(args, sorting.getKeysetArgs(anchor));
+    }
+
+    return database.rawQuery(sorting.applyToQuery(query, before) + " LIMIT " + limit, args);
+  }
+
+  public @NonNull Cursor getGalleryMediaPage(long threadId, @NonNull Sorting sorting, int offset, int limit) {
+    SQLiteDatabase database = databaseHelper.getReadableDatabase();
+    String         query    = sorting.applyToQuery(applyThreadFilter(threadId, GALLERY_MEDIA_QUERY)) + " LIMIT " + limit + " OFFSET " + offset;
+    String[]       args     = {threadId + ""};
+
+    return database.rawQuery(query, args);
+  }
+
+  public int getGalleryMediaCount(long threadId) {
+    SQLiteDatabase database = databaseHelper.getReadableDatabase();
+    String         query    = "SELECT COUNT(*) FROM (" + applyThreadFilter(threadId, GALLERY_MEDIA_QUERY) + ")";
+    String[]       args     = {threadId + ""};
+
+    try (Cursor cursor = database.rawQuery(query, args)) {
+      return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+    }
+  }
+
+  /**
+   * @return The number of gallery media that sort before the attachment.
+   */
+  public int getGalleryMediaPosition(long threadId, @NonNull Sorting sorting, @NonNull DatabaseAttachment attachment) {
+    SQLiteDatabase database = databaseHelper.getReadableDatabase();
+    String         query    = "SELECT COUNT(*) FROM (" + applyThreadFilter(threadId, GALLERY_MEDIA_QUERY) + "AND " + sorting.getKeysetClause(true) + ")";
+    String[]       args     = ArrayUtils.concat(new String[] {threadId + ""}, sorting.getKeysetArgs(attachment));
+
+    try (Cursor cursor = database.rawQuery(query, args)) {
+      return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+    }
+  }
+
+  private static String applyThreadFilter(long threadId, String query) {
+    return query.replace(THREAD_FILTER, threadId == ALL_THREADS ? ALL_THREADS_FILTER : SINGLE_THREAD_FILTER);
   }
 
   public void subscribeToMediaChanges(@NonNull ContentObserver observer) {
@@ -133,35 +265,29 @@ public class MediaDatabase extends Database {
   }
 
   public StorageBreakdown getStorageBreakdown() {
+    return getStorageBreakdown(ALL_THREADS);
+  }
+
+  /**
+   * Reads the maintained counters, so it's cheap enough to call for any thread, or
+   * {@link #ALL_THREADS} for the device as a whole.
+   */
+  public @NonNull StorageBreakdown getStorageBreakdown(long threadId) {
     StorageBreakdown storageBreakdown = new StorageBreakdown();
     SQLiteDatabase   database         = databaseHelper.getReadableDatabase();
+    String[]         projection       = new String[] { STORAGE_CATEGORY, STORAGE_SIZE };
+    String           selection        = STORAGE_THREAD_ID + " = ?";
+    String[]         args             = new String[] { String.valueOf(threadId) };
 
-    try (Cursor cursor = database.rawQuery(UNIQUE_MEDIA_QUERY, new String[0])) {
-      int sizeColumn        = cursor.getColumnIndexOrThrow(AttachmentDatabase.SIZE);
-      int contentTypeColumn = cursor.getColumnIndexOrThrow(AttachmentDatabase.CONTENT_TYPE);
-
+    try (Cursor cursor = database.query(STORAGE_TABLE_NAME, projection, selection, args, null, null, null)) {
       while (cursor.moveToNext()) {
-        int    size = cursor.getInt(sizeColumn);
-        String type = cursor.getString(contentTypeColumn);
-
-        switch (MediaUtil.getSlideTypeFromContentType(type)) {
-          case GIF:
-          case IMAGE:
-          case MMS:
-            storageBreakdown.photoSize += size;
-            break;
-          case VIDEO:
-            storageBreakdown.videoSize += size;
-            break;
-          case AUDIO:
-            storageBreakdown.audioSize += size;
-            break;
-          case LONG_TEXT:
-          case DOCUMENT:
-            storageBreakdown.documentSize += size;
-            break;
-          default:
-            break;
+        long size = Math.max(cursor.getLong(1), 0);
+
+        switch (cursor.getInt(0)) {
+          case CATEGORY_PHOTO:    storageBreakdown.photoSize    += size; break;
+          case CATEGORY_VIDEO:    storageBreakdown.videoSize    += size; break;
+          case CATEGORY_AUDIO:    storageBreakdown.audioSize    += size; break;
+          case CATEGORY_DOCUMENT: storageBreakdown.documentSize += size; break;
         }
       }
     }
@@ -169,6 +295,97 @@ public class MediaDatabase extends Database {
     return storageBreakdown;
   }
 
+  /**
+   * Drops the per-thread counters of deleted threads. Their attachments are already gone, so the
+   * rows would only be left behind at zero until the next rebuild.
+   */
+  void deleteStorageForThreads(@NonNull Collection<Long> threadIds) {
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
+
+    for (long threadId : threadIds) {
+      database.delete(STORAGE_TABLE_NAME, STORAGE_THREAD_ID + " = ?", new String[] { String.valueOf(threadId) });
+    }
+  }
+
+  void deleteStorageForAllThreads() {
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
+    database.delete(STORAGE_TABLE_NAME, STORAGE_THREAD_ID + " != ?", new String[] { String.valueOf(ALL_THREADS) });
+  }
+
+  /**
+   * Recomputes the storage counters from scratch. The triggers can't see everything, like a message
+   * moving to another thread, so this is run every so often to repair any drift.
+   *
+   * @return True if the counters had drifted.
+   */
+  public boolean rebuildStorageBreakdown() {
+    SQLiteDatabase database = databaseHelper.getWritableDatabase();
+
+    database.beginTransaction();
+    try {
+      StorageBreakdown before = getStorageBreakdown();
+
+      for (String statement : REBUILD_STORAGE) {
+        database.execSQL(statement);
+      }
+
+      StorageBreakdown after = getStorageBreakdown();
+
+      database.setTransactionSuccessful();
+
+      if (!before.equals(after)) {
+        Log.w(TAG, "Storage breakdown had drifted. Before: " + before + ", after: " + after);
+        return true;
+      }
+
+      return false;
+    } finally {
+      database.endTransaction();
+    }
+  }
+
+  private static String isCountedSql(@NonNull String table) {
+    return table + "." + AttachmentDatabase.DATA + " IS NOT NULL AND " +
+           table + "." + AttachmentDatabase.STICKER_PACK_ID + " IS NULL AND " +
+           table + "." + AttachmentDatabase.CONTENT_TYPE + " IS NOT '" + MediaUtil.VIEW_ONCE + "'";
+  }
+
+  private static String categorySql(@NonNull String table) {
+    String contentType = table + "." + AttachmentDatabase.CONTENT_TYPE;
+
+    return "CASE WHEN " + contentType + " GLOB 'image/*' OR " + contentType + " = 'application/mms' THEN " + CATEGORY_PHOTO + " " +
+                "WHEN " + contentType + " GLOB 'video/*' THEN " + CATEGORY_VIDEO + " " +
+                "WHEN " + contentType + " GLOB 'audio/*' THEN " + CATEGORY_AUDIO + " " +
+                "ELSE " + CATEGORY_DOCUMENT + " END";
+  }
+
+  private static String storageColumnsSql() {
+    return AttachmentDatabase.DATA + ", " + AttachmentDatabase.SIZE + ", " + AttachmentDatabase.CONTENT_TYPE + ", " + AttachmentDatabase.MMS_ID + ", " + AttachmentDatabase.STICKER_PACK_ID;
+  }
+
+  /**
+   * Adds or removes the row's size in its thread. {@link #ALL_THREADS} counts the largest size of
+   * each data file, like {@link #REBUILD_STORAGE}, so it only moves by however much the row raises
+   * that maximum over the other counted attachments sharing the file. The global rows always exist,
+   * the thread rows are created on demand.
+   */
+  private static String updateStorageSql(@NonNull String row, @NonNull String operator) {
+    String category = categorySql(row);
+    String threadId = "(SELECT " + MmsDatabase.THREAD_ID + " FROM " + MmsDatabase.TABLE_NAME + " WHERE " + MmsDatabase.ID + " = " + row + "." + AttachmentDatabase.MMS_ID + ")";
+    String otherMax = "(SELECT COALESCE(MAX(" + AttachmentDatabase.SIZE + "), 0) FROM " + AttachmentDatabase.TABLE_NAME + " WHERE " +
+                          AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.DATA + " = " + row + "." + AttachmentDatabase.DATA + " AND " +
+                          AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.ROW_ID + " != " + row + "." + AttachmentDatabase.ROW_ID + " AND " +
+                          categorySql(AttachmentDatabase.TABLE_NAME) + " = " + category + " AND " +
+                          isCountedSql(AttachmentDatabase.TABLE_NAME) + ")";
+
+    return "  INSERT OR IGNORE INTO " + STORAGE_TABLE_NAME + " (" + STORAGE_THREAD_ID + ", " + STORAGE_CATEGORY + ") " +
+           "SELECT " + MmsDatabase.THREAD_ID + ", " + category + " FROM " + MmsDatabase.TABLE_NAME + " WHERE " + MmsDatabase.ID + " = " + row + "." + AttachmentDatabase.MMS_ID + ";\n" +
+           "  UPDATE " + STORAGE_TABLE_NAME + " SET " + STORAGE_SIZE + " = " + STORAGE_SIZE + " " + operator + " " + row + "." + AttachmentDatabase.SIZE + " " +
+           "WHERE " + STORAGE_THREAD_ID + " = " + threadId + " AND " + STORAGE_CATEGORY + " = " + category + ";\n" +
+           "  UPDATE " + STORAGE_TABLE_NAME + " SET " + STORAGE_SIZE + " = " + STORAGE_SIZE + " " + operator + " (MAX(" + row + "." + AttachmentDatabase.SIZE + ", " + otherMax + ") - " + otherMax + ") " +
+           "WHERE " + STORAGE_THREAD_ID + " = " + ALL_THREADS + " AND " + STORAGE_CATEGORY + " = " + category + ";\n";
+  }
+
   public static class MediaRecord {
 
     private final DatabaseAttachment attachment;
@@ -248,18 +465,64 @@ public class MediaDatabase extends Database {
   }
 
   public enum Sorting {
-    Newest (AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.MMS_ID + " DESC, " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.DISPLAY_ORDER + " DESC, " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.ROW_ID + " DESC"),
-    Oldest (AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.MMS_ID + " ASC, "  + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.DISPLAY_ORDER + " DESC, " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.ROW_ID + " ASC"),
-    Largest(AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.SIZE   + " DESC, " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.DISPLAY_ORDER + " DESC");
+    Newest (new SortKey(AttachmentDatabase.MMS_ID, true),  new SortKey(AttachmentDatabase.DISPLAY_ORDER, true), new SortKey(AttachmentDatabase.ROW_ID, true)),
+    Oldest (new SortKey(AttachmentDatabase.MMS_ID, false), new SortKey(AttachmentDatabase.DISPLAY_ORDER, true), new SortKey(AttachmentDatabase.ROW_ID, false)),
+    Largest(new SortKey(AttachmentDatabase.SIZE, true),    new SortKey(AttachmentDatabase.DISPLAY_ORDER, true), new SortKey(AttachmentDatabase.ROW_ID, true));
 
-    private final String postFix;
+    private final SortKey[] keys;
 
-    Sorting(@NonNull String order) {
-      postFix = " ORDER BY " + order;
+    Sorting(@NonNull SortKey... keys) {
+      this.keys = keys;
     }
 
     private String applyToQuery(@NonNull String query) {
-      return query + postFix;
+      return applyToQuery(query, false);
+    }
+
+    private String applyToQuery(@NonNull String query, boolean reversed) {
+      StringBuilder order = new StringBuilder(query).append(" ORDER BY ");
+
+      for (int i = 0; i < keys.length; i++) {
+        if (i > 0) order.append(", ");
+        order.append(keys[i].getQualifiedColumn()).append(keys[i].descending != reversed ? " DESC" : " ASC");
+      }
+
+      return order.toString();
+    }
+
+    /**
+     * Rows strictly after (or before) a key, expanded for mixed sort directions, e.g.
+     * (a < ? OR (a = ? AND (b > ? OR (b = ? AND c < ?)))).
+     */
+    private String getKeysetClause(boolean before) {
+      StringBuilder clause = new StringBuilder();
+
+      for (int i = 0; i < keys.length; i++) {
+        boolean last       = i == keys.length - 1;
+        String  comparison = keys[i].descending != before ? " < ?" : " > ?";
+
+        clause.append("(").append(keys[i].getQualifiedColumn()).append(comparison);
+        if (!last) clause.append(" OR (").append(keys[i].getQualifiedColumn()).append(" = ? AND ");
+      }
+
+      for (int i = 0; i < keys.length; i++) {
+        clause.append(i == keys.length - 1 ? ")" : "))");
+      }
+
+      return clause.toString();
+    }
+
+    private String[] getKeysetArgs(@NonNull DatabaseAttachment attachment) {
+      String[] args = new String[keys.length * 2 - 1];
+
+      for (int i = 0; i < keys.length; i++) {
+        String value = String.valueOf(keys[i].valueOf(attachment));
+
+        args[i * 2] = value;
+        if (i * 2 + 1 < args.length) args[i * 2 + 1] = value;
+      }
+
+      return args;
     }
 
     public boolean isRelatedToFileSize() {
@@ -267,6 +530,30 @@ public class MediaDatabase extends Database {
     }
   }
 
+  private static final class SortKey {
+    private final String  column;
+    private final boolean descending;
+
+    private SortKey(@NonNull String column, boolean descending) {
+      this.column     = column;
+      this.descending = descending;
+    }
+
+    private String getQualifiedColumn() {
+      return AttachmentDatabase.TABLE_NAME + "." + column;
+    }
+
+    private long valueOf(@NonNull DatabaseAttachment attachment) {
+      switch (column) {
+        case AttachmentDatabase.MMS_ID:        return attachment.getMmsId();
+        case AttachmentDatabase.DISPLAY_ORDER: return attachment.getDisplayOrder();
+        case AttachmentDatabase.ROW_ID:        return attachment.getAttachmentId().getRowId();
+        case AttachmentDatabase.SIZE:          return attachment.getSize();
+        default:                               throw new AssertionError("Unknown sort column: " + column);
+      }
+    }
+  }
+
   public final static class StorageBreakdown {
     private long photoSize;
     private long videoSize;
@@ -288,5 +575,28 @@ public class MediaDatabase extends Database {
     public long getDocumentSize() {
       return documentSize;
     }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      StorageBreakdown that = (StorageBreakdown) o;
+
+      return photoSize    == that.photoSize &&
+             videoSize    == that.videoSize &&
+             audioSize    == that.audioSize &&
+             documentSize == that.documentSize;
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(new long[] { photoSize, videoSize, audioSize, documentSize });
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return "{photos: " + photoSize + ", videos: " + videoSize + ", audio: " + audioSize + ", documents: " + documentSize + "}";
+    }
   }
 }
@@ -7,27 +7,21 @@ import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 
-import com.annimon.stream.Stream;
-import com.google.protobuf.InvalidProtocolBufferException;
-
 import net.sqlcipher.database.SQLiteDatabase;
 
 import org.thoughtcrime.securesms.database.documents.Document;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatch;
 import org.thoughtcrime.securesms.database.documents.IdentityKeyMismatchList;
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
-import org.thoughtcrime.securesms.database.model.DatabaseProtos.ReactionList;
 import org.thoughtcrime.securesms.database.model.ReactionRecord;
 import org.thoughtcrime.securesms.insights.InsightsConstants;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.util.JsonUtils;
 import org.whispersystems.libsignal.IdentityKey;
-import org.whispersystems.libsignal.util.guava.Optional;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -163,19 +157,8 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
     db.beginTransaction();
 
     try {
-      ReactionList          reactions   = getReactions(db, messageId).or(ReactionList.getDefaultInstance());
-      ReactionList.Reaction newReaction = ReactionList.Reaction.newBuilder()
-                                                               .setEmoji(reaction.getEmoji())
-                                                               .setAuthor(reaction.getAuthor().toLong())
-                                                               .setSentTime(reaction.getDateSent())
-                                                               .setReceivedTime(reaction.getDateReceived())
-                                                               .build();
-
-      ReactionList updatedList = pruneByAuthor(reactions, reaction.getAuthor()).toBuilder()
-                                                                               .addReactions(newReaction)
-                                                                               .build();
-
-      setReactions(db, messageId, updatedList);
+      DatabaseFactory.getReactionDatabase(context).addReaction(messageId, isMms(), reaction);
+      setReactionsUnread(db, messageId, true);
 
       db.setTransactionSuccessful();
     } finally {
@@ -186,15 +169,14 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
   }
 
   public void deleteReaction(long messageId, @NonNull RecipientId author) {
-    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+    SQLiteDatabase   db               = databaseHelper.getWritableDatabase();
+    ReactionDatabase reactionDatabase = DatabaseFactory.getReactionDatabase(context);
 
     db.beginTransaction();
 
     try {
-      ReactionList reactions   = getReactions(db, messageId).or(ReactionList.getDefaultInstance());
-      ReactionList updatedList = pruneByAuthor(reactions, author);
-
-      setReactions(db, messageId, updatedList);
+      reactionDatabase.deleteReaction(messageId, isMms(), author);
+      setReactionsUnread(db, messageId, reactionDatabase.hasReactions(messageId, isMms()));
 
       db.setTransactionSuccessful();
     } finally {
@@ -205,19 +187,7 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
   }
 
   public boolean hasReaction(long messageId, @NonNull ReactionRecord reactionRecord) {
-    SQLiteDatabase db = databaseHelper.getReadableDatabase();
-
-    ReactionList reactions = getReactions(db, messageId).or(ReactionList.getDefaultInstance());
-
-    for (ReactionList.Reaction reaction : reactions.getReactionsList()) {
-      if (reactionRecord.getAuthor().toLong() == reaction.getAuthor() &&
-          reactionRecord.getEmoji().equals(reaction.getEmoji()))
-      {
-        return true;
-      }
-    }
-
-    return false;
+    return DatabaseFactory.getReactionDatabase(context).hasReaction(messageId, isMms(), reactionRecord);
   }
 
   public void addMismatchedIdentity(long messageId, @NonNull RecipientId recipientId, IdentityKey identityKey) {
@@ -240,26 +210,8 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
     }
   }
 
-  protected List<ReactionRecord> parseReactions(@NonNull Cursor cursor) {
-    byte[] raw = cursor.getBlob(cursor.getColumnIndexOrThrow(REACTIONS));
-
-    if (raw != null) {
-      try {
-        return Stream.of(ReactionList.parseFrom(raw).getReactionsList())
-                     .map(r -> {
-                       return new ReactionRecord(r.getEmoji(),
-                                                 RecipientId.from(r.getAuthor()),
-                                                 r.getSentTime(),
-                                                 r.getReceivedTime());
-                     })
-                     .toList();
-      } catch (InvalidProtocolBufferException e) {
-        Log.w(TAG, "[parseReactions] Failed to parse reaction list!", e);
-        return Collections.emptyList();
-      }
-    } else {
-      return Collections.emptyList();
-    }
+  protected List<ReactionRecord> getReactions(@NonNull Cursor cursor, long messageId) {
+    return DatabaseFactory.getReactionDatabase(context).getReactions(cursor, messageId, isMms());
   }
 
   protected <D extends Document<I>, I> void removeFromDocument(long messageId, String column, I object, Class<D> clazz) throws IOException {
@@ -357,42 +309,9 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
     }
   }
 
-  private static @NonNull ReactionList pruneByAuthor(@NonNull ReactionList reactionList, @NonNull RecipientId recipientId) {
-    List<ReactionList.Reaction> pruned = Stream.of(reactionList.getReactionsList())
-                                               .filterNot(r -> r.getAuthor() == recipientId.toLong())
-                                               .toList();
+  private void setReactionsUnread(@NonNull SQLiteDatabase db, long messageId, boolean hasReactions) {
+    ContentValues values = new ContentValues(2);
 
-    return reactionList.toBuilder()
-                       .clearReactions()
-                       .addAllReactions(pruned)
-                       .build();
-  }
-
-  private @NonNull Optional<ReactionList> getReactions(SQLiteDatabase db, long messageId) {
-    String[] projection = new String[]{ REACTIONS };
-    String   query      = ID + " = ?";
-    String[] args       = new String[]{String.valueOf(messageId)};
-
-    try (Cursor cursor = db.query(getTableName(), projection, query, args, null, null, null)) {
-      if (cursor != null && cursor.moveToFirst()) {
-        byte[] raw = cursor.getBlob(cursor.getColumnIndexOrThrow(REACTIONS));
-
-        if (raw != null) {
-          return Optional.of(ReactionList.parseFrom(raw));
-        }
-      }
-    } catch (InvalidProtocolBufferException e) {
-      Log.w(TAG, "[getRecipients] Failed to parse reaction list!", e);
-    }
-
-    return Optional.absent();
-  }
-
-  private void setReactions(@NonNull SQLiteDatabase db, long messageId, @NonNull ReactionList reactionList) {
-    ContentValues values       = new ContentValues(1);
-    boolean       hasReactions = reactionList.getReactionsCount() != 0;
-
-    values.put(REACTIONS, reactionList.getReactionsList().isEmpty() ? null : reactionList.toByteArray());
     values.put(REACTIONS_UNREAD, hasReactions ? 1 : 0);
 
     if (hasReactions) {
@@ -405,6 +324,10 @@ public abstract class MessagingDatabase extends Database implements MmsSmsColumn
     db.update(getTableName(), values, query, args);
   }
 
+  private boolean isMms() {
+    return MmsDatabase.TABLE_NAME.equals(getTableName());
+  }
+
   private long getThreadId(@NonNull SQLiteDatabase db, long messageId) {
     String[] projection = new String[]{ THREAD_ID };
     String   query      = ID + " = ?";
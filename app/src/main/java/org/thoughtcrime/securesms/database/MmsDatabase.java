@@ -75,6 +75,7 @@ import org.whispersystems.libsignal.util.guava.Optional;
 import java.io.Closeable;
 import java.io.IOException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -89,6 +90,8 @@ public class MmsDatabase extends MessagingDatabase {
 
   private static final String TAG = MmsDatabase.class.getSimpleName();
 
+  private static final int TRIM_BATCH_SIZE = 500;
+
   public  static final String TABLE_NAME         = "mms";
           static final String DATE_SENT          = "date";
           static final String DATE_RECEIVED      = "date_received";
@@ -188,7 +191,7 @@ public class MmsDatabase extends MessagingDatabase {
       BODY, PART_COUNT, RECIPIENT_ID, ADDRESS_DEVICE_ID,
       DELIVERY_RECEIPT_COUNT, READ_RECEIPT_COUNT, MISMATCHED_IDENTITIES, NETWORK_FAILURE, SUBSCRIPTION_ID,
       EXPIRES_IN, EXPIRE_STARTED, NOTIFIED, QUOTE_ID, QUOTE_AUTHOR, QUOTE_BODY, QUOTE_ATTACHMENT, QUOTE_MISSING,
-      SHARED_CONTACTS, LINK_PREVIEWS, UNIDENTIFIED, VIEW_ONCE, REACTIONS, REACTIONS_UNREAD, REACTIONS_LAST_SEEN,
+      SHARED_CONTACTS, LINK_PREVIEWS, UNIDENTIFIED, VIEW_ONCE, REACTIONS_UNREAD, REACTIONS_LAST_SEEN,
       "json_group_array(json_object(" +
           "'" + AttachmentDatabase.ROW_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.ROW_ID + ", " +
           "'" + AttachmentDatabase.UNIQUE_ID + "', " + AttachmentDatabase.TABLE_NAME + "." + AttachmentDatabase.UNIQUE_ID + ", " +
@@ -1147,8 +1150,8 @@ public class MmsDatabase extends MessagingDatabase {
       receiptDatabase.insert(Stream.of(members).map(Recipient::getId).toList(),
                              messageId, defaultReceiptStatus, message.getSentTimeMillis());
 
-      for (RecipientId recipientId : earlyDeliveryReceipts.keySet()) receiptDatabase.update(recipientId, messageId, GroupReceiptDatabase.STATUS_DELIVERED, -1);
-      for (RecipientId recipientId : earlyReadReceipts.keySet())     receiptDatabase.update(recipientId, messageId, GroupReceiptDatabase.STATUS_READ, -1);
+      receiptDatabase.update(earlyDeliveryReceipts.keySet(), messageId, GroupReceiptDatabase.STATUS_DELIVERED, -1);
+      receiptDatabase.update(earlyReadReceipts.keySet(), messageId, GroupReceiptDatabase.STATUS_READ, -1);
     }
 
     DatabaseFactory.getThreadDatabase(context).setLastSeen(threadId);
@@ -1237,6 +1240,7 @@ public class MmsDatabase extends MessagingDatabase {
 
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
     database.delete(TABLE_NAME, ID_WHERE, new String[] {messageId+""});
+    DatabaseFactory.getReactionDatabase(context).invalidate(messageId, true);
     boolean threadDeleted = DatabaseFactory.getThreadDatabase(context).update(threadId, false);
     notifyConversationListeners(threadId);
     notifyStickerListeners();
@@ -1346,30 +1350,69 @@ public class MmsDatabase extends MessagingDatabase {
     }
   }
 
-  /*package*/void deleteMessagesInThreadBeforeDate(long threadId, long date) {
-    Cursor cursor = null;
+  /**
+   * Deletes in bounded batches, each removing the messages along with their attachments and group
+   * receipts in one transaction. Reactions are removed by trigger. Attachment files are only
+   * unlinked once their batch has committed. Unlike {@link #delete(long)}, the thread isn't updated
+   * per message, so callers are responsible for updating and notifying the thread once at the end.
+   *
+   * @return The number of messages deleted.
+   */
+  /*package*/ int deleteMessagesInThreadBeforeDate(long threadId, long date) {
+    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+    String where      = THREAD_ID + " = ? AND (CASE (" + MESSAGE_BOX + " & " + Types.BASE_TYPE_MASK + ") ";
 
-    try {
-      SQLiteDatabase db = databaseHelper.getReadableDatabase();
-      String where      = THREAD_ID + " = ? AND (CASE (" + MESSAGE_BOX + " & " + Types.BASE_TYPE_MASK + ") ";
+    for (long outgoingType : Types.OUTGOING_MESSAGE_TYPES) {
+      where += " WHEN " + outgoingType + " THEN " + DATE_SENT + " < " + date;
+    }
+
+    where += (" ELSE " + DATE_RECEIVED + " < " + date + " END)");
+
+    AttachmentDatabase   attachmentDatabase   = DatabaseFactory.getAttachmentDatabase(context);
+    GroupReceiptDatabase groupReceiptDatabase = DatabaseFactory.getGroupReceiptDatabase(context);
+    String[]             args                 = new String[] {threadId + ""};
+    int                  total                = 0;
+    boolean              clearDiskCache       = false;
+
+    while (true) {
+      List<Long> ids = new ArrayList<>(TRIM_BATCH_SIZE);
 
-      for (long outgoingType : Types.OUTGOING_MESSAGE_TYPES) {
-        where += " WHEN " + outgoingType + " THEN " + DATE_SENT + " < " + date;
+      try (Cursor cursor = db.query(TABLE_NAME, new String[] {ID}, where, args, null, null, null, String.valueOf(TRIM_BATCH_SIZE))) {
+        while (cursor != null && cursor.moveToNext()) {
+          ids.add(cursor.getLong(0));
+        }
       }
 
-      where += (" ELSE " + DATE_RECEIVED + " < " + date + " END)");
+      if (ids.isEmpty()) {
+        break;
+      }
 
-      cursor = db.query(TABLE_NAME, new String[] {ID}, where, new String[] {threadId+""}, null, null, null);
+      AttachmentDatabase.DeletedAttachmentFiles deletedFiles;
 
-      while (cursor != null && cursor.moveToNext()) {
-        Log.i("MmsDatabase", "Trimming: " + cursor.getLong(0));
-        delete(cursor.getLong(0));
+      db.beginTransaction();
+      try {
+        deletedFiles = attachmentDatabase.deleteAttachmentsForMessages(ids);
+        groupReceiptDatabase.deleteRowsForMessages(ids);
+        db.delete(TABLE_NAME, ID + " IN (" + Util.join(ids, ",") + ")", null);
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
       }
 
-    } finally {
-      if (cursor != null)
-        cursor.close();
+      deletedFiles.delete();
+      clearDiskCache |= deletedFiles.shouldClearDiskCache();
+
+      total += ids.size();
     }
+
+    if (total > 0) {
+      attachmentDatabase.onAttachmentsDeleted(clearDiskCache);
+      DatabaseFactory.getReactionDatabase(context).clearCache();
+      notifyStickerListeners();
+      notifyStickerPackListeners();
+    }
+
+    return total;
   }
 
 
@@ -1379,6 +1422,7 @@ public class MmsDatabase extends MessagingDatabase {
 
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
     database.delete(TABLE_NAME, null, null);
+    DatabaseFactory.getReactionDatabase(context).clearCache();
   }
 
   public @Nullable
@@ -1612,7 +1656,7 @@ public class MmsDatabase extends MessagingDatabase {
       long                 expireStarted        = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.EXPIRE_STARTED          ));
       boolean              unidentified         = cursor.getInt(cursor.getColumnIndexOrThrow(MmsDatabase.UNIDENTIFIED)) == 1;
       boolean              isViewOnce           = cursor.getLong(cursor.getColumnIndexOrThrow(MmsDatabase.VIEW_ONCE))   == 1;
-      List<ReactionRecord> reactions            = parseReactions(cursor);
+      List<ReactionRecord> reactions            = getReactions(cursor, id);
 
       if (!TextSecurePreferences.isReadReceiptsEnabled(context)) {
         readReceiptCount = 0;
@@ -20,6 +20,7 @@ public interface MmsSmsColumns {
   public static final String EXPIRE_STARTED           = "expire_started";
   public static final String NOTIFIED                 = "notified";
   public static final String UNIDENTIFIED             = "unidentified";
+  /** No longer written, reactions live in {@link ReactionDatabase}. */
   public static final String REACTIONS                = "reactions";
   public static final String REACTIONS_UNREAD         = "reactions_unread";
   public static final String REACTIONS_LAST_SEEN      = "reactions_last_seen";
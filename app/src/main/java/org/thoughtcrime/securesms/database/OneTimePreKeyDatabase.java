@@ -4,10 +4,12 @@ package org.thoughtcrime.securesms.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import org.thoughtcrime.securesms.logging.Log;
 
 import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
 
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
 import org.thoughtcrime.securesms.util.Base64;
@@ -19,6 +21,7 @@ import org.whispersystems.libsignal.ecc.ECPublicKey;
 import org.whispersystems.libsignal.state.PreKeyRecord;
 
 import java.io.IOException;
+import java.util.List;
 
 public class OneTimePreKeyDatabase extends Database {
 
@@ -73,6 +76,29 @@ public class OneTimePreKeyDatabase extends Database {
     database.replace(TABLE_NAME, null, contentValues);
   }
 
+  /**
+   * Stores the records in a single transaction, replacing any existing keys with the same ids.
+   */
+  public void insertPreKeys(@NonNull List<PreKeyRecord> records) {
+    SQLiteDatabase  database  = databaseHelper.getWritableDatabase();
+    SQLiteStatement statement = database.compileStatement("INSERT OR REPLACE INTO " + TABLE_NAME + " (" + KEY_ID + ", " + PUBLIC_KEY + ", " + PRIVATE_KEY + ") VALUES (?, ?, ?)");
+
+    database.beginTransaction();
+    try {
+      for (PreKeyRecord record : records) {
+        statement.bindLong(1, record.getId());
+        statement.bindString(2, Base64.encodeBytes(record.getKeyPair().getPublicKey().serialize()));
+        statement.bindString(3, Base64.encodeBytes(record.getKeyPair().getPrivateKey().serialize()));
+        statement.executeInsert();
+      }
+
+      database.setTransactionSuccessful();
+    } finally {
+      database.endTransaction();
+      statement.close();
+    }
+  }
+
   public void removePreKey(int keyId) {
     SQLiteDatabase database = databaseHelper.getWritableDatabase();
     database.delete(TABLE_NAME, KEY_ID + " = ?", new String[] {String.valueOf(keyId)});
@@ -9,17 +9,14 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import net.sqlcipher.database.SQLiteDatabase;
+import net.sqlcipher.database.SQLiteStatement;
 
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
-import org.thoughtcrime.securesms.logging.Log;
-import org.thoughtcrime.securesms.util.Base64;
 import org.whispersystems.libsignal.util.guava.Optional;
 import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
 import org.whispersystems.signalservice.api.push.SignalServiceAddress;
 import org.whispersystems.signalservice.api.util.UuidUtil;
-import org.whispersystems.signalservice.internal.util.Util;
 
-import java.io.IOException;
 import java.util.UUID;
 
 public class PushDatabase extends Database {
@@ -39,7 +36,7 @@ public class PushDatabase extends Database {
   public  static final String SERVER_GUID      = "server_guid";
 
   public static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" + ID + " INTEGER PRIMARY KEY, " +
-      TYPE + " INTEGER, " + SOURCE_E164 + " TEXT, " + SOURCE_UUID + " TEXT, " + DEVICE_ID + " INTEGER, " + LEGACY_MSG + " TEXT, " + CONTENT + " TEXT, " + TIMESTAMP + " INTEGER, " +
+      TYPE + " INTEGER, " + SOURCE_E164 + " TEXT, " + SOURCE_UUID + " TEXT, " + DEVICE_ID + " INTEGER, " + LEGACY_MSG + " BLOB, " + CONTENT + " BLOB, " + TIMESTAMP + " INTEGER, " +
       SERVER_TIMESTAMP + " INTEGER DEFAULT 0, " + SERVER_GUID + " TEXT DEFAULT NULL);";
 
   public PushDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
@@ -57,8 +54,8 @@ public class PushDatabase extends Database {
       values.put(SOURCE_UUID, envelope.getSourceUuid().orNull());
       values.put(SOURCE_E164, envelope.getSourceE164().orNull());
       values.put(DEVICE_ID, envelope.getSourceDevice());
-      values.put(LEGACY_MSG, envelope.hasLegacyMessage() ? Base64.encodeBytes(envelope.getLegacyMessage()) : "");
-      values.put(CONTENT, envelope.hasContent() ? Base64.encodeBytes(envelope.getContent()) : "");
+      values.put(LEGACY_MSG, envelope.hasLegacyMessage() ? envelope.getLegacyMessage() : null);
+      values.put(CONTENT, envelope.hasContent() ? envelope.getContent() : null);
       values.put(TIMESTAMP, envelope.getTimestamp());
       values.put(SERVER_TIMESTAMP, envelope.getServerTimestamp());
       values.put(SERVER_GUID, envelope.getUuid());
@@ -76,8 +73,8 @@ public class PushDatabase extends Database {
                                                           null, null, null);
 
       if (cursor != null && cursor.moveToNext()) {
-        String legacyMessage = cursor.getString(cursor.getColumnIndexOrThrow(LEGACY_MSG));
-        String content       = cursor.getString(cursor.getColumnIndexOrThrow(CONTENT));
+        byte[] legacyMessage = getBytes(cursor, LEGACY_MSG);
+        byte[] content       = getBytes(cursor, CONTENT);
         String uuid          = cursor.getString(cursor.getColumnIndexOrThrow(SOURCE_UUID));
         String e164          = cursor.getString(cursor.getColumnIndexOrThrow(SOURCE_E164));
 
@@ -85,14 +82,11 @@ public class PushDatabase extends Database {
                                          SignalServiceAddress.fromRaw(uuid, e164),
                                          cursor.getInt(cursor.getColumnIndexOrThrow(DEVICE_ID)),
                                          cursor.getLong(cursor.getColumnIndexOrThrow(TIMESTAMP)),
-                                         Util.isEmpty(legacyMessage) ? null : Base64.decode(legacyMessage),
-                                         Util.isEmpty(content) ? null : Base64.decode(content),
+                                         legacyMessage,
+                                         content,
                                          cursor.getLong(cursor.getColumnIndexOrThrow(SERVER_TIMESTAMP)),
                                          cursor.getString(cursor.getColumnIndexOrThrow(SERVER_GUID)));
       }
-    } catch (IOException e) {
-      Log.w(TAG, e);
-      throw new NoSuchMessageException(e);
     } finally {
       if (cursor != null)
         cursor.close();
@@ -114,34 +108,46 @@ public class PushDatabase extends Database {
   }
 
   private Optional<Long> find(SignalServiceEnvelope envelope) {
-    SQLiteDatabase database = databaseHelper.getReadableDatabase();
-    String         query    = TYPE       + " = ? AND " +
-                              DEVICE_ID  + " = ? AND " +
-                              LEGACY_MSG + " = ? AND " +
-                              CONTENT    + " = ? AND " +
-                              TIMESTAMP  + " = ? AND " +
-                              "(" +
-                                "(" + SOURCE_E164 + " NOT NULL AND " + SOURCE_E164 + " = ?) OR " +
-                                "(" + SOURCE_UUID + " NOT NULL AND " + SOURCE_UUID + " = ?)" +
-                              ")";
-    String[]        args     = new String[] { String.valueOf(envelope.getType()),
-                                              String.valueOf(envelope.getSourceDevice()),
-                                              envelope.hasLegacyMessage() ? Base64.encodeBytes(envelope.getLegacyMessage()) : "",
-                                              envelope.hasContent() ? Base64.encodeBytes(envelope.getContent()) : "",
-                                              String.valueOf(envelope.getTimestamp()),
-                                              String.valueOf(envelope.getSourceUuid().orNull()),
-                                              String.valueOf(envelope.getSourceE164().orNull()) };
-
-
-    try (Cursor cursor = database.query(TABLE_NAME, null, query, args, null, null, null)) {
-      if (cursor != null && cursor.moveToFirst()) {
-        return Optional.of(cursor.getLong(cursor.getColumnIndexOrThrow(ID)));
-      } else {
-        return Optional.absent();
-      }
+    SQLiteDatabase  database  = databaseHelper.getReadableDatabase();
+    String          query     = "SELECT IFNULL((SELECT " + ID + " FROM " + TABLE_NAME + " WHERE " +
+                                  TYPE       + " = ? AND " +
+                                  DEVICE_ID  + " = ? AND " +
+                                  LEGACY_MSG + " IS ? AND " +
+                                  CONTENT    + " IS ? AND " +
+                                  TIMESTAMP  + " = ? AND " +
+                                  "(" +
+                                    "(" + SOURCE_E164 + " NOT NULL AND " + SOURCE_E164 + " = ?) OR " +
+                                    "(" + SOURCE_UUID + " NOT NULL AND " + SOURCE_UUID + " = ?)" +
+                                  ") LIMIT 1), -1)";
+    SQLiteStatement statement = database.compileStatement(query);
+
+    try {
+      statement.bindLong(1, envelope.getType());
+      statement.bindLong(2, envelope.getSourceDevice());
+      bindBytes(statement, 3, envelope.hasLegacyMessage() ? envelope.getLegacyMessage() : null);
+      bindBytes(statement, 4, envelope.hasContent() ? envelope.getContent() : null);
+      statement.bindLong(5, envelope.getTimestamp());
+      statement.bindString(6, String.valueOf(envelope.getSourceUuid().orNull()));
+      statement.bindString(7, String.valueOf(envelope.getSourceE164().orNull()));
+
+      long id = statement.simpleQueryForLong();
+
+      return id != -1 ? Optional.of(id) : Optional.absent();
+    } finally {
+      statement.close();
     }
   }
 
+  private static void bindBytes(@NonNull SQLiteStatement statement, int index, @Nullable byte[] value) {
+    if (value != null) statement.bindBlob(index, value);
+    else               statement.bindNull(index);
+  }
+
+  private static @Nullable byte[] getBytes(@NonNull Cursor cursor, @NonNull String column) {
+    int index = cursor.getColumnIndexOrThrow(column);
+    return cursor.isNull(index) ? null : cursor.getBlob(index);
+  }
+
   public static class Reader {
     private final Cursor cursor;
 
@@ -150,31 +156,27 @@ public class PushDatabase extends Database {
     }
 
     public SignalServiceEnvelope getNext() {
-      try {
-        if (cursor == null || !cursor.moveToNext())
-          return null;
-
-        int    type            = cursor.getInt(cursor.getColumnIndexOrThrow(TYPE));
-        String sourceUuid      = cursor.getString(cursor.getColumnIndexOrThrow(SOURCE_UUID));
-        String sourceE164      = cursor.getString(cursor.getColumnIndexOrThrow(SOURCE_E164));
-        int    deviceId        = cursor.getInt(cursor.getColumnIndexOrThrow(DEVICE_ID));
-        String legacyMessage   = cursor.getString(cursor.getColumnIndexOrThrow(LEGACY_MSG));
-        String content         = cursor.getString(cursor.getColumnIndexOrThrow(CONTENT));
-        long   timestamp       = cursor.getLong(cursor.getColumnIndexOrThrow(TIMESTAMP));
-        long   serverTimestamp = cursor.getLong(cursor.getColumnIndexOrThrow(SERVER_TIMESTAMP));
-        String serverGuid      = cursor.getString(cursor.getColumnIndexOrThrow(SERVER_GUID));
-
-        return new SignalServiceEnvelope(type,
-                                         SignalServiceAddress.fromRaw(sourceUuid, sourceE164),
-                                         deviceId,
-                                         timestamp,
-                                         legacyMessage != null ? Base64.decode(legacyMessage) : null,
-                                         content != null ? Base64.decode(content) : null,
-                                         serverTimestamp,
-                                         serverGuid);
-      } catch (IOException e) {
-        throw new AssertionError(e);
-      }
+      if (cursor == null || !cursor.moveToNext())
+        return null;
+
+      int    type            = cursor.getInt(cursor.getColumnIndexOrThrow(TYPE));
+      String sourceUuid      = cursor.getString(cursor.getColumnIndexOrThrow(SOURCE_UUID));
+      String sourceE164      = cursor.getString(cursor.getColumnIndexOrThrow(SOURCE_E164));
+      int    deviceId        = cursor.getInt(cursor.getColumnIndexOrThrow(DEVICE_ID));
+      byte[] legacyMessage   = getBytes(cursor, LEGACY_MSG);
+      byte[] content         = getBytes(cursor, CONTENT);
+      long   timestamp       = cursor.getLong(cursor.getColumnIndexOrThrow(TIMESTAMP));
+      long   serverTimestamp = cursor.getLong(cursor.getColumnIndexOrThrow(SERVER_TIMESTAMP));
+      String serverGuid      = cursor.getString(cursor.getColumnIndexOrThrow(SERVER_GUID));
+
+      return new SignalServiceEnvelope(type,
+                                       SignalServiceAddress.fromRaw(sourceUuid, sourceE164),
+                                       deviceId,
+                                       timestamp,
+                                       legacyMessage,
+                                       content,
+                                       serverTimestamp,
+                                       serverGuid);
     }
 
     public void close() {
@@ -0,0 +1,279 @@
+package org.thoughtcrime.securesms.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.database.model.ReactionRecord;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reactions to sms and mms messages, one row per author and message. Message deletes are
+ * cascaded by triggers, so every way of removing messages also removes their reactions.
+ */
+public class ReactionDatabase extends Database {
+
+  public  static final String TABLE_NAME = "reaction";
+
+  private static final String ID            = "_id";
+  private static final String MESSAGE_ID    = "message_id";
+  private static final String IS_MMS        = "is_mms";
+  private static final String AUTHOR_ID     = "author_id";
+  private static final String EMOJI         = "emoji";
+  private static final String DATE_SENT     = "date_sent";
+  private static final String DATE_RECEIVED = "date_received";
+
+  private static final int CACHE_SIZE        = 1000;
+  private static final int CURSOR_BATCH_SIZE = 100;
+
+  public static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" + ID            + " INTEGER PRIMARY KEY, " +
+                                                                                  MESSAGE_ID    + " INTEGER NOT NULL, " +
+                                                                                  IS_MMS        + " INTEGER NOT NULL, " +
+                                                                                  AUTHOR_ID     + " INTEGER NOT NULL, " +
+                                                                                  EMOJI         + " TEXT NOT NULL, " +
+                                                                                  DATE_SENT     + " INTEGER NOT NULL, " +
+                                                                                  DATE_RECEIVED + " INTEGER NOT NULL, " +
+                                                                                  "UNIQUE(" + MESSAGE_ID + ", " + IS_MMS + ", " + AUTHOR_ID + ") ON CONFLICT REPLACE);";
+
+  public static final String[] CREATE_TRIGGERS = {
+      "CREATE TRIGGER reactions_sms_delete AFTER DELETE ON " + SmsDatabase.TABLE_NAME + " BEGIN " +
+          "DELETE FROM " + TABLE_NAME + " WHERE " + MESSAGE_ID + " = old." + SmsDatabase.ID + " AND " + IS_MMS + " = 0; " +
+      "END;",
+
+      "CREATE TRIGGER reactions_mms_delete AFTER DELETE ON " + MmsDatabase.TABLE_NAME + " BEGIN " +
+          "DELETE FROM " + TABLE_NAME + " WHERE " + MESSAGE_ID + " = old." + MmsDatabase.ID + " AND " + IS_MMS + " = 1; " +
+      "END;"
+  };
+
+  /**
+   * Decoded reactions per message. Every write bumps the update counter, and a read only caches
+   * what it loaded if no write happened in the meantime.
+   */
+  private final LRUCache<MessageKey, List<ReactionRecord>> cache = new LRUCache<>(CACHE_SIZE);
+
+  private long updateCounter;
+
+  public ReactionDatabase(Context context, SQLCipherOpenHelper databaseHelper) {
+    super(context, databaseHelper);
+  }
+
+  /**
+   * Replaces any earlier reaction by the same author.
+   */
+  void addReaction(long messageId, boolean mms, @NonNull ReactionRecord reaction) {
+    SQLiteDatabase db     = databaseHelper.getWritableDatabase();
+    ContentValues  values = new ContentValues(6);
+
+    values.put(MESSAGE_ID, messageId);
+    values.put(IS_MMS, mms ? 1 : 0);
+    values.put(AUTHOR_ID, reaction.getAuthor().serialize());
+    values.put(EMOJI, reaction.getEmoji());
+    values.put(DATE_SENT, reaction.getDateSent());
+    values.put(DATE_RECEIVED, reaction.getDateReceived());
+
+    db.insert(TABLE_NAME, null, values);
+    invalidate(messageId, mms);
+  }
+
+  void deleteReaction(long messageId, boolean mms, @NonNull RecipientId author) {
+    SQLiteDatabase db    = databaseHelper.getWritableDatabase();
+    String         query = MESSAGE_ID + " = ? AND " + IS_MMS + " = ? AND " + AUTHOR_ID + " = ?";
+    String[]       args  = new String[] { String.valueOf(messageId), mms ? "1" : "0", author.serialize() };
+
+    db.delete(TABLE_NAME, query, args);
+    invalidate(messageId, mms);
+  }
+
+  boolean hasReactions(long messageId, boolean mms) {
+    return !getReactions(messageId, mms).isEmpty();
+  }
+
+  boolean hasReaction(long messageId, boolean mms, @NonNull ReactionRecord reactionRecord) {
+    for (ReactionRecord reaction : getReactions(messageId, mms)) {
+      if (reaction.getAuthor().equals(reactionRecord.getAuthor()) && reaction.getEmoji().equals(reactionRecord.getEmoji())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @return The reactions to the message, oldest first.
+   */
+  @NonNull List<ReactionRecord> getReactions(long messageId, boolean mms) {
+    MessageKey key = new MessageKey(messageId, mms);
+    long       counter;
+
+    synchronized (this) {
+      List<ReactionRecord> cached = cache.get(key);
+      if (cached != null) return cached;
+
+      counter = updateCounter;
+    }
+
+    SQLiteDatabase       db        = databaseHelper.getReadableDatabase();
+    String               query     = MESSAGE_ID + " = ? AND " + IS_MMS + " = ?";
+    String[]             args      = new String[] { String.valueOf(messageId), mms ? "1" : "0" };
+    List<ReactionRecord> reactions = new ArrayList<>();
+
+    try (Cursor cursor = db.query(TABLE_NAME, null, query, args, null, null, ID + " ASC")) {
+      while (cursor != null && cursor.moveToNext()) {
+        reactions.add(readReaction(cursor));
+      }
+    }
+
+    reactions = Collections.unmodifiableList(reactions);
+
+    synchronized (this) {
+      if (counter == updateCounter) cache.put(key, reactions);
+    }
+
+    return reactions;
+  }
+
+  /**
+   * Returns the reactions of the message at the cursor's current row. On a cache miss, the
+   * uncached messages in the next {@link #CURSOR_BATCH_SIZE} rows are loaded along with it, so a
+   * cursor read front to back costs one query per table per batch rather than one per row. Rows of
+   * mixed sms and mms cursors are told apart by their transport column.
+   */
+  @NonNull List<ReactionRecord> getReactions(@NonNull Cursor cursor, long messageId, boolean mms) {
+    List<Long> smsIds = new ArrayList<>();
+    List<Long> mmsIds = new ArrayList<>();
+
+    synchronized (this) {
+      List<ReactionRecord> cached = cache.get(new MessageKey(messageId, mms));
+      if (cached != null) return cached;
+    }
+
+    (mms ? mmsIds : smsIds).add(messageId);
+
+    int position        = cursor.getPosition();
+    int idColumn        = cursor.getColumnIndexOrThrow(MmsSmsColumns.ID);
+    int transportColumn = cursor.getColumnIndex(MmsSmsDatabase.TRANSPORT);
+
+    try {
+      while (smsIds.size() + mmsIds.size() < CURSOR_BATCH_SIZE && cursor.moveToNext()) {
+        long    rowId  = cursor.getLong(idColumn);
+        boolean rowMms = transportColumn != -1 ? MmsSmsDatabase.MMS_TRANSPORT.equals(cursor.getString(transportColumn)) : mms;
+
+        synchronized (this) {
+          if (cache.containsKey(new MessageKey(rowId, rowMms))) continue;
+        }
+
+        (rowMms ? mmsIds : smsIds).add(rowId);
+      }
+    } finally {
+      cursor.moveToPosition(position);
+    }
+
+    Map<Long, List<ReactionRecord>> smsReactions = getReactionsForMessages(smsIds, false);
+    Map<Long, List<ReactionRecord>> mmsReactions = getReactionsForMessages(mmsIds, true);
+
+    //noinspection ConstantConditions
+    return mms ? mmsReactions.get(messageId) : smsReactions.get(messageId);
+  }
+
+  /**
+   * Loads the reactions of many messages with one query, so that a conversation window can be
+   * bound without a query or decode per row.
+   */
+  public @NonNull Map<Long, List<ReactionRecord>> getReactionsForMessages(@NonNull List<Long> messageIds, boolean mms) {
+    Map<Long, List<ReactionRecord>> reactions = new HashMap<>(messageIds.size());
+
+    if (messageIds.isEmpty()) return reactions;
+
+    for (long messageId : messageIds) {
+      reactions.put(messageId, new ArrayList<>());
+    }
+
+    long counter;
+
+    synchronized (this) {
+      counter = updateCounter;
+    }
+
+    SQLiteDatabase db    = databaseHelper.getReadableDatabase();
+    String         query = MESSAGE_ID + " IN (" + Util.join(messageIds, ",") + ") AND " + IS_MMS + " = ?";
+    String[]       args  = new String[] { mms ? "1" : "0" };
+
+    try (Cursor cursor = db.query(TABLE_NAME, null, query, args, null, null, ID + " ASC")) {
+      while (cursor != null && cursor.moveToNext()) {
+        //noinspection ConstantConditions
+        reactions.get(cursor.getLong(cursor.getColumnIndexOrThrow(MESSAGE_ID))).add(readReaction(cursor));
+      }
+    }
+
+    for (Map.Entry<Long, List<ReactionRecord>> entry : reactions.entrySet()) {
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+
+    synchronized (this) {
+      if (counter == updateCounter) {
+        for (Map.Entry<Long, List<ReactionRecord>> entry : reactions.entrySet()) {
+          cache.put(new MessageKey(entry.getKey(), mms), entry.getValue());
+        }
+      }
+    }
+
+    return reactions;
+  }
+
+  /**
+   * Must be called when messages are deleted, because message ids can be reused.
+   */
+  synchronized void clearCache() {
+    updateCounter++;
+    cache.clear();
+  }
+
+  synchronized void invalidate(long messageId, boolean mms) {
+    updateCounter++;
+    cache.remove(new MessageKey(messageId, mms));
+  }
+
+  private static @NonNull ReactionRecord readReaction(@NonNull Cursor cursor) {
+    return new ReactionRecord(cursor.getString(cursor.getColumnIndexOrThrow(EMOJI)),
+                              RecipientId.from(cursor.getLong(cursor.getColumnIndexOrThrow(AUTHOR_ID))),
+                              cursor.getLong(cursor.getColumnIndexOrThrow(DATE_SENT)),
+                              cursor.getLong(cursor.getColumnIndexOrThrow(DATE_RECEIVED)));
+  }
+
+  private static final class MessageKey {
+    private final long    messageId;
+    private final boolean mms;
+
+    private MessageKey(long messageId, boolean mms) {
+      this.messageId = messageId;
+      this.mms       = mms;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      MessageKey that = (MessageKey) o;
+      return messageId == that.messageId && mms == that.mms;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(messageId, mms);
+    }
+  }
+}
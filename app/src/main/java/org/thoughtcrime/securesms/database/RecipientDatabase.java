@@ -44,7 +44,9 @@ import org.whispersystems.signalservice.api.util.UuidUtil;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -53,12 +55,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 public class RecipientDatabase extends Database {
 
   private static final String TAG = RecipientDatabase.class.getSimpleName();
 
           static final String TABLE_NAME               = "recipient";
+  public  static final String FTS_TABLE_NAME           = "recipient_fts";
   public  static final String ID                       = "_id";
   private static final String UUID                     = "uuid";
   private static final String USERNAME                 = "username";
@@ -93,6 +97,7 @@ public class RecipientDatabase extends Database {
   private static final String UUID_SUPPORTED           = "uuid_supported";
   private static final String STORAGE_SERVICE_KEY      = "storage_service_key";
   private static final String DIRTY                    = "dirty";
+  private static final String LAST_PROFILE_FETCH       = "last_profile_fetch";
   private static final String PROFILE_GIVEN_NAME       = "signal_profile_name";
   private static final String PROFILE_FAMILY_NAME      = "profile_family_name";
   private static final String PROFILE_JOINED_NAME      = "profile_joined_name";
@@ -127,6 +132,27 @@ public class RecipientDatabase extends Database {
       "CREATE INDEX IF NOT EXISTS recipient_group_type_index ON " + TABLE_NAME + " (" + GROUP_TYPE + ");",
   };
 
+  private static final String FTS_COLUMNS = SYSTEM_DISPLAY_NAME + ", " + PROFILE_JOINED_NAME + ", " + PROFILE_GIVEN_NAME + ", " + USERNAME + ", " + EMAIL;
+
+  public static final String[] CREATE_FTS_TABLE = new String[] {
+      "CREATE VIRTUAL TABLE " + FTS_TABLE_NAME + " USING fts5(" + FTS_COLUMNS + ", content=" + TABLE_NAME + ", content_rowid=" + ID + ", prefix='2 3');",
+
+      "CREATE TRIGGER recipient_fts_ai AFTER INSERT ON " + TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(rowid, " + FTS_COLUMNS + ") VALUES (new." + ID + ", new." + SYSTEM_DISPLAY_NAME + ", new." + PROFILE_JOINED_NAME + ", new." + PROFILE_GIVEN_NAME + ", new." + USERNAME + ", new." + EMAIL + ");\n" +
+          "END;",
+      "CREATE TRIGGER recipient_fts_ad AFTER DELETE ON " + TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(" + FTS_TABLE_NAME + ", rowid, " + FTS_COLUMNS + ") VALUES ('delete', old." + ID + ", old." + SYSTEM_DISPLAY_NAME + ", old." + PROFILE_JOINED_NAME + ", old." + PROFILE_GIVEN_NAME + ", old." + USERNAME + ", old." + EMAIL + ");\n" +
+          "END;",
+      "CREATE TRIGGER recipient_fts_au AFTER UPDATE OF " + FTS_COLUMNS + " ON " + TABLE_NAME + " BEGIN\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(" + FTS_TABLE_NAME + ", rowid, " + FTS_COLUMNS + ") VALUES ('delete', old." + ID + ", old." + SYSTEM_DISPLAY_NAME + ", old." + PROFILE_JOINED_NAME + ", old." + PROFILE_GIVEN_NAME + ", old." + USERNAME + ", old." + EMAIL + ");\n" +
+          "  INSERT INTO " + FTS_TABLE_NAME + "(rowid, " + FTS_COLUMNS + ") VALUES (new." + ID + ", new." + SYSTEM_DISPLAY_NAME + ", new." + PROFILE_JOINED_NAME + ", new." + PROFILE_GIVEN_NAME + ", new." + USERNAME + ", new." + EMAIL + ");\n" +
+          "END;"
+  };
+
+  private static final int MAX_BATCH_SIZE = 500;
+
+  private static final Pattern PHONE_QUERY_PATTERN = Pattern.compile("^[0-9+()\\-\\s]+$");
+
   private static final String[]     ID_PROJECTION              = new String[]{ID};
   private static final String[]     SEARCH_PROJECTION          = new String[]{ID, SYSTEM_DISPLAY_NAME, PHONE, EMAIL, SYSTEM_PHONE_LABEL, SYSTEM_PHONE_TYPE, REGISTERED, "COALESCE(" + PROFILE_JOINED_NAME + ", " + PROFILE_GIVEN_NAME + ") AS " + SEARCH_PROFILE_NAME, "COALESCE(" + SYSTEM_DISPLAY_NAME + ", " + PROFILE_JOINED_NAME + ", " + PROFILE_GIVEN_NAME + ", " + USERNAME + ") AS " + SORT_NAME};
   public  static final String[]     SEARCH_PROJECTION_NAMES    = new String[]{ID, SYSTEM_DISPLAY_NAME, PHONE, EMAIL, SYSTEM_PHONE_LABEL, SYSTEM_PHONE_TYPE, REGISTERED, SEARCH_PROFILE_NAME, SORT_NAME};
@@ -279,7 +305,8 @@ public class RecipientDatabase extends Database {
                                             FORCE_SMS_SELECTION      + " INTEGER DEFAULT 0, " +
                                             UUID_SUPPORTED           + " INTEGER DEFAULT 0, " +
                                             STORAGE_SERVICE_KEY      + " TEXT UNIQUE DEFAULT NULL, " +
-                                            DIRTY                    + " INTEGER DEFAULT " + DirtyState.CLEAN.getId() + ");";
+                                            DIRTY                    + " INTEGER DEFAULT " + DirtyState.CLEAN.getId() + ", " +
+                                            LAST_PROFILE_FETCH       + " INTEGER DEFAULT 0);";
 
   private static final String INSIGHTS_INVITEE_LIST = "SELECT " + TABLE_NAME + "." + ID +
       " FROM " + TABLE_NAME +
@@ -986,6 +1013,66 @@ public class RecipientDatabase extends Database {
     }
   }
 
+  /**
+   * Records that the profiles were fetched at the given time, with one update per batch of ids.
+   */
+  public void markProfilesFetched(@NonNull Collection<RecipientId> ids, long time) {
+    SQLiteDatabase db     = databaseHelper.getWritableDatabase();
+    ContentValues  values = new ContentValues(1);
+
+    values.put(LAST_PROFILE_FETCH, time);
+
+    db.beginTransaction();
+
+    try {
+      for (List<RecipientId> batch : Util.chunk(new ArrayList<>(ids), MAX_BATCH_SIZE)) {
+        db.update(TABLE_NAME, values, ID + " IN (" + Util.join(Stream.of(batch).map(RecipientId::serialize).toList(), ",") + ")", null);
+      }
+
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
+  /**
+   * @return The subset of ids whose profiles were fetched at or after the given time.
+   */
+  public @NonNull Set<RecipientId> getProfilesFetchedSince(@NonNull Collection<RecipientId> ids, long time) {
+    SQLiteDatabase   db      = databaseHelper.getReadableDatabase();
+    Set<RecipientId> results = new HashSet<>();
+    String[]         args    = new String[] { String.valueOf(time) };
+
+    for (List<RecipientId> batch : Util.chunk(new ArrayList<>(ids), MAX_BATCH_SIZE)) {
+      String query = ID + " IN (" + Util.join(Stream.of(batch).map(RecipientId::serialize).toList(), ",") + ") AND " + LAST_PROFILE_FETCH + " >= ?";
+
+      try (Cursor cursor = db.query(TABLE_NAME, ID_PROJECTION, query, args, null, null, null)) {
+        while (cursor != null && cursor.moveToNext()) {
+          results.add(RecipientId.from(cursor.getLong(cursor.getColumnIndexOrThrow(ID))));
+        }
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Runs the updates in one transaction, so that a bulk refresh commits once rather than once per
+   * changed field.
+   */
+  public void runInTransaction(@NonNull Runnable updates) {
+    SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+    db.beginTransaction();
+
+    try {
+      updates.run();
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+  }
+
   public void setUsername(@NonNull RecipientId id, @Nullable String username) {
     if (username != null) {
       Optional<RecipientId> existingUsername = getByUsername(username);
@@ -1114,24 +1201,39 @@ public class RecipientDatabase extends Database {
   public void setRegistered(@NonNull Collection<RecipientId> activeIds,
                             @NonNull Collection<RecipientId> inactiveIds)
   {
-    for (RecipientId activeId : activeIds) {
+    SQLiteDatabase    db      = databaseHelper.getWritableDatabase();
+    List<RecipientId> changed = new LinkedList<>();
+
+    db.beginTransaction();
+
+    try {
       ContentValues registeredValues = new ContentValues(1);
       registeredValues.put(REGISTERED, RegisteredState.REGISTERED.getId());
 
-      if (update(activeId, registeredValues)) {
-        markDirty(activeId, DirtyState.INSERT);
-        Recipient.live(activeId).refresh();
+      for (RecipientId activeId : activeIds) {
+        if (update(activeId, registeredValues)) {
+          markDirty(activeId, DirtyState.INSERT);
+          changed.add(activeId);
+        }
       }
-    }
 
-    for (RecipientId inactiveId : inactiveIds) {
-      ContentValues contentValues = new ContentValues(1);
-      contentValues.put(REGISTERED, RegisteredState.NOT_REGISTERED.getId());
+      ContentValues unregisteredValues = new ContentValues(1);
+      unregisteredValues.put(REGISTERED, RegisteredState.NOT_REGISTERED.getId());
 
-      if (update(inactiveId, contentValues)) {
-        markDirty(inactiveId, DirtyState.DELETE);
-        Recipient.live(inactiveId).refresh();
+      for (RecipientId inactiveId : inactiveIds) {
+        if (update(inactiveId, unregisteredValues)) {
+          markDirty(inactiveId, DirtyState.DELETE);
+          changed.add(inactiveId);
+        }
       }
+
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+
+    for (RecipientId id : changed) {
+      Recipient.live(id).refresh();
     }
   }
 
@@ -1213,22 +1315,16 @@ public class RecipientDatabase extends Database {
 
   public @Nullable Cursor querySignalContacts(@NonNull String query) {
     query = TextUtils.isEmpty(query) ? "*" : query;
-    query = "%" + query + "%";
 
-    String   selection = BLOCKED         + " = ? AND " +
-                         REGISTERED      + " = ? AND " +
-                         GROUP_ID        + " IS NULL AND " +
-                         "(" + SYSTEM_DISPLAY_NAME + " NOT NULL OR " + PROFILE_SHARING + " = ? OR " + USERNAME + " NOT NULL) AND " +
-                         "(" +
-                           PHONE               + " LIKE ? OR " +
-                           SYSTEM_DISPLAY_NAME + " LIKE ? OR " +
-                           SEARCH_PROFILE_NAME + " LIKE ? OR " +
-                           USERNAME            + " LIKE ?" +
-                         ")";
-    String[] args      = new String[] { "0", String.valueOf(RegisteredState.REGISTERED.getId()), "1", query, query, query, query };
-    String   orderBy   = SORT_NAME + ", " + SYSTEM_DISPLAY_NAME + ", " + SEARCH_PROFILE_NAME + ", " + PHONE;
+    List<String> args      = new ArrayList<>(Arrays.asList("0", String.valueOf(RegisteredState.REGISTERED.getId()), "1"));
+    String       selection = BLOCKED         + " = ? AND " +
+                             REGISTERED      + " = ? AND " +
+                             GROUP_ID        + " IS NULL AND " +
+                             "(" + SYSTEM_DISPLAY_NAME + " NOT NULL OR " + PROFILE_SHARING + " = ? OR " + USERNAME + " NOT NULL) AND " +
+                             buildSearchFilter(query, args, SYSTEM_DISPLAY_NAME + " " + PROFILE_JOINED_NAME + " " + PROFILE_GIVEN_NAME + " " + USERNAME, PHONE, SYSTEM_DISPLAY_NAME, SEARCH_PROFILE_NAME, USERNAME);
+    String       orderBy   = SORT_NAME + ", " + SYSTEM_DISPLAY_NAME + ", " + SEARCH_PROFILE_NAME + ", " + PHONE;
 
-    return databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_PROJECTION, selection, args, null, null, orderBy);
+    return databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_PROJECTION, selection, args.toArray(new String[0]), null, null, orderBy);
   }
 
   public @Nullable Cursor getNonSignalContacts() {
@@ -1245,38 +1341,56 @@ public class RecipientDatabase extends Database {
 
   public @Nullable Cursor queryNonSignalContacts(@NonNull String query) {
     query = TextUtils.isEmpty(query) ? "*" : query;
-    query = "%" + query + "%";
 
-    String   selection = BLOCKED    + " = ? AND " +
-                         REGISTERED + " != ? AND " +
-                         GROUP_ID   + " IS NULL AND " +
-                         SYSTEM_DISPLAY_NAME + " NOT NULL AND " +
-                         "(" + PHONE + " NOT NULL OR " + EMAIL + " NOT NULL) AND " +
-                         "(" +
-                           PHONE               + " LIKE ? OR " +
-                           EMAIL               + " LIKE ? OR " +
-                           SYSTEM_DISPLAY_NAME + " LIKE ?" +
-                         ")";
-    String[] args      = new String[] { "0", String.valueOf(RegisteredState.REGISTERED.getId()), query, query, query };
-    String   orderBy   = SYSTEM_DISPLAY_NAME + ", " + PHONE;
+    List<String> args      = new ArrayList<>(Arrays.asList("0", String.valueOf(RegisteredState.REGISTERED.getId())));
+    String       selection = BLOCKED    + " = ? AND " +
+                             REGISTERED + " != ? AND " +
+                             GROUP_ID   + " IS NULL AND " +
+                             SYSTEM_DISPLAY_NAME + " NOT NULL AND " +
+                             "(" + PHONE + " NOT NULL OR " + EMAIL + " NOT NULL) AND " +
+                             buildSearchFilter(query, args, SYSTEM_DISPLAY_NAME + " " + EMAIL, PHONE, EMAIL, SYSTEM_DISPLAY_NAME);
+    String       orderBy   = SYSTEM_DISPLAY_NAME + ", " + PHONE;
 
-    return databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_PROJECTION, selection, args, null, null, orderBy);
+    return databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_PROJECTION, selection, args.toArray(new String[0]), null, null, orderBy);
   }
 
   public @Nullable Cursor queryAllContacts(@NonNull String query) {
     query = TextUtils.isEmpty(query) ? "*" : query;
-    query = "%" + query + "%";
-
-    String   selection = BLOCKED + " = ? AND " +
-                         "(" +
-                           SYSTEM_DISPLAY_NAME + " LIKE ? OR " +
-                           SEARCH_PROFILE_NAME + " LIKE ? OR " +
-                           PHONE               + " LIKE ? OR " +
-                           EMAIL               + " LIKE ?" +
-                         ")";
-    String[] args      = new String[] { "0", query, query, query, query };
-
-    return databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_PROJECTION, selection, args, null, null, null);
+
+    List<String> args      = new ArrayList<>(Collections.singletonList("0"));
+    String       selection = BLOCKED + " = ? AND " +
+                             buildSearchFilter(query, args, SYSTEM_DISPLAY_NAME + " " + PROFILE_JOINED_NAME + " " + PROFILE_GIVEN_NAME + " " + EMAIL, SYSTEM_DISPLAY_NAME, SEARCH_PROFILE_NAME, PHONE, EMAIL);
+
+    return databaseHelper.getReadableDatabase().query(TABLE_NAME, SEARCH_PROJECTION, selection, args.toArray(new String[0]), null, null, null);
+  }
+
+  /**
+   * Matches the start of words in the given space-separated FTS columns through {@link #FTS_TABLE_NAME}. Queries
+   * that are entirely CJKV aren't split into words by the tokenizer, so they fall back to a
+   * substring match on the LIKE columns, and digit-only queries also match anywhere in the phone
+   * number.
+   */
+  private static @NonNull String buildSearchFilter(@NonNull String query, @NonNull List<String> args, @NonNull String ftsColumns, @NonNull String... likeColumns) {
+    if (!SearchDatabase.isFullTextSearchable(query)) {
+      List<String> clauses = new ArrayList<>(likeColumns.length);
+
+      for (String column : likeColumns) {
+        clauses.add(column + " LIKE ?");
+        args.add("%" + query + "%");
+      }
+
+      return "(" + TextUtils.join(" OR ", clauses) + ")";
+    }
+
+    String filter = ID + " IN (SELECT " + SearchDatabase.ID + " FROM " + FTS_TABLE_NAME + " WHERE " + FTS_TABLE_NAME + " MATCH ?)";
+    args.add("{" + ftsColumns + "} : (" + SearchDatabase.createFullTextSearchQuery(query) + ")");
+
+    if (PHONE_QUERY_PATTERN.matcher(query).matches()) {
+      filter = "(" + filter + " OR " + PHONE + " LIKE ?)";
+      args.add("%" + query + "%");
+    }
+
+    return filter;
   }
 
   public @NonNull List<Recipient> getRecipientsForMultiDeviceSync() {
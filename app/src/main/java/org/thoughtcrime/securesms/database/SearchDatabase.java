@@ -11,6 +11,7 @@ import net.sqlcipher.Cursor;
 import net.sqlcipher.database.SQLiteDatabase;
 
 import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.util.cjkv.CJKVUtil;
 
 /**
  * Contains all databases necessary for full-text search (FTS).
@@ -23,12 +24,11 @@ public class SearchDatabase extends Database {
   public static final String ID                     = "rowid";
   public static final String BODY                   = MmsSmsColumns.BODY;
   public static final String THREAD_ID              = MmsSmsColumns.THREAD_ID;
-  public static final String SNIPPET                = "snippet";
   public static final String CONVERSATION_RECIPIENT = "conversation_recipient";
   public static final String MESSAGE_RECIPIENT      = "message_recipient";
 
   public static final String[] CREATE_TABLE = {
-      "CREATE VIRTUAL TABLE " + SMS_FTS_TABLE_NAME + " USING fts5(" + BODY + ", " + THREAD_ID + " UNINDEXED, content=" + SmsDatabase.TABLE_NAME + ", content_rowid=" + SmsDatabase.ID + ");",
+      "CREATE VIRTUAL TABLE " + SMS_FTS_TABLE_NAME + " USING fts5(" + BODY + ", " + THREAD_ID + " UNINDEXED, content=" + SmsDatabase.TABLE_NAME + ", content_rowid=" + SmsDatabase.ID + ", prefix='2 3');",
 
       "CREATE TRIGGER sms_ai AFTER INSERT ON " + SmsDatabase.TABLE_NAME + " BEGIN\n" +
           "  INSERT INTO " + SMS_FTS_TABLE_NAME + "(" + ID + ", " + BODY + ", " + THREAD_ID + ") VALUES (new." + SmsDatabase.ID + ", new." + SmsDatabase.BODY + ", new." + SmsDatabase.THREAD_ID + ");\n" +
@@ -42,7 +42,7 @@ public class SearchDatabase extends Database {
           "END;",
 
 
-      "CREATE VIRTUAL TABLE " + MMS_FTS_TABLE_NAME + " USING fts5(" + BODY + ", " + THREAD_ID + " UNINDEXED, content=" + MmsDatabase.TABLE_NAME + ", content_rowid=" + MmsDatabase.ID + ");",
+      "CREATE VIRTUAL TABLE " + MMS_FTS_TABLE_NAME + " USING fts5(" + BODY + ", " + THREAD_ID + " UNINDEXED, content=" + MmsDatabase.TABLE_NAME + ", content_rowid=" + MmsDatabase.ID + ", prefix='2 3');",
 
       "CREATE TRIGGER mms_ai AFTER INSERT ON " + MmsDatabase.TABLE_NAME + " BEGIN\n" +
           "  INSERT INTO " + MMS_FTS_TABLE_NAME + "(" + ID + ", " + BODY + ", " + THREAD_ID + ") VALUES (new." + MmsDatabase.ID + ", new." + MmsDatabase.BODY + ", new." + MmsDatabase.THREAD_ID + ");\n" +
@@ -60,7 +60,7 @@ public class SearchDatabase extends Database {
       "SELECT " +
         ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.RECIPIENT_ID + " AS " + CONVERSATION_RECIPIENT + ", " +
         MmsSmsColumns.RECIPIENT_ID + " AS " + MESSAGE_RECIPIENT + ", " +
-        "snippet(" + SMS_FTS_TABLE_NAME + ", -1, '', '', '...', 7) AS " + SNIPPET + ", " +
+        SmsDatabase.TABLE_NAME + "." + SmsDatabase.BODY + " AS " + BODY + ", " +
         SmsDatabase.TABLE_NAME + "." + SmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + ", " +
         SMS_FTS_TABLE_NAME + "."  + THREAD_ID + " " +
       "FROM " + SmsDatabase.TABLE_NAME + " " +
@@ -71,7 +71,7 @@ public class SearchDatabase extends Database {
       "SELECT " +
         ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.RECIPIENT_ID + " AS " + CONVERSATION_RECIPIENT + ", " +
         MmsSmsColumns.RECIPIENT_ID + " AS " + MESSAGE_RECIPIENT + ", " +
-        "snippet(" + MMS_FTS_TABLE_NAME + ", -1, '', '', '...', 7) AS " + SNIPPET + ", " +
+        MmsDatabase.TABLE_NAME + "." + MmsDatabase.BODY + " AS " + BODY + ", " +
         MmsDatabase.TABLE_NAME + "." + MmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + ", " +
         MMS_FTS_TABLE_NAME + "." + THREAD_ID + " " +
       "FROM " + MmsDatabase.TABLE_NAME + " " +
@@ -85,7 +85,7 @@ public class SearchDatabase extends Database {
       "SELECT " +
           ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.RECIPIENT_ID + " AS " + CONVERSATION_RECIPIENT + ", " +
           MmsSmsColumns.RECIPIENT_ID + " AS " + MESSAGE_RECIPIENT + ", " +
-          "snippet(" + SMS_FTS_TABLE_NAME + ", -1, '', '', '...', 7) AS " + SNIPPET + ", " +
+          SmsDatabase.TABLE_NAME + "." + SmsDatabase.BODY + " AS " + BODY + ", " +
           SmsDatabase.TABLE_NAME + "." + SmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + ", " +
           SMS_FTS_TABLE_NAME + "." + THREAD_ID + " " +
         "FROM " + SmsDatabase.TABLE_NAME + " " +
@@ -96,7 +96,7 @@ public class SearchDatabase extends Database {
         "SELECT " +
           ThreadDatabase.TABLE_NAME + "." + ThreadDatabase.RECIPIENT_ID + " AS " + CONVERSATION_RECIPIENT + ", " +
           MmsSmsColumns.RECIPIENT_ID + " AS " + MESSAGE_RECIPIENT + ", " +
-          "snippet(" + MMS_FTS_TABLE_NAME + ", -1, '', '', '...', 7) AS " + SNIPPET + ", " +
+          MmsDatabase.TABLE_NAME + "." + MmsDatabase.BODY + " AS " + BODY + ", " +
           MmsDatabase.TABLE_NAME + "." + MmsDatabase.DATE_RECEIVED + " AS " + MmsSmsColumns.NORMALIZED_DATE_RECEIVED + ", " +
           MMS_FTS_TABLE_NAME + "." + THREAD_ID + " " +
         "FROM " + MmsDatabase.TABLE_NAME + " " +
@@ -142,7 +142,26 @@ public class SearchDatabase extends Database {
     return cursor;
   }
 
-  private static String createFullTextSearchQuery(@NonNull String query) {
+  /**
+   * @return True if the query can be matched against an FTS index. Queries without any letters or
+   *         digits produce an empty match expression, and queries that are entirely CJKV aren't
+   *         split into words by the tokenizer, so callers should fall back to a substring match.
+   */
+  static boolean isFullTextSearchable(@NonNull String query) {
+    if (CJKVUtil.isCJKV(query)) {
+      return false;
+    }
+
+    for (int i = 0; i < query.length(); i++) {
+      if (Character.isLetterOrDigit(query.charAt(i))) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  static String createFullTextSearchQuery(@NonNull String query) {
     return Stream.of(query.split(" "))
                  .map(String::trim)
                  .filter(s -> s.length() > 0)
@@ -66,6 +66,8 @@ public class SmsDatabase extends MessagingDatabase {
 
   private static final String TAG = SmsDatabase.class.getSimpleName();
 
+  private static final int TRIM_BATCH_SIZE = 500;
+
   public  static final String TABLE_NAME         = "sms";
   public  static final String PERSON             = "person";
           static final String DATE_RECEIVED      = "date";
@@ -121,7 +123,7 @@ public class SmsDatabase extends MessagingDatabase {
       PROTOCOL, READ, STATUS, TYPE,
       REPLY_PATH_PRESENT, SUBJECT, BODY, SERVICE_CENTER, DELIVERY_RECEIPT_COUNT,
       MISMATCHED_IDENTITIES, SUBSCRIPTION_ID, EXPIRES_IN, EXPIRE_STARTED,
-      NOTIFIED, READ_RECEIPT_COUNT, UNIDENTIFIED, REACTIONS, REACTIONS_UNREAD, REACTIONS_LAST_SEEN
+      NOTIFIED, READ_RECEIPT_COUNT, UNIDENTIFIED, REACTIONS_UNREAD, REACTIONS_LAST_SEEN
   };
 
   private final String OUTGOING_INSECURE_MESSAGE_CLAUSE = "(" + TYPE + " & " + Types.BASE_TYPE_MASK + ") = " + Types.BASE_SENT_TYPE + " AND NOT (" + TYPE + " & " + Types.SECURE_MESSAGE_BIT + ")";
@@ -807,6 +809,7 @@ public class SmsDatabase extends MessagingDatabase {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     long threadId     = getThreadIdForMessage(messageId);
     db.delete(TABLE_NAME, ID_WHERE, new String[] {messageId+""});
+    DatabaseFactory.getReactionDatabase(context).invalidate(messageId, false);
     boolean threadDeleted = DatabaseFactory.getThreadDatabase(context).update(threadId, false);
     notifyConversationListeners(threadId);
     return threadDeleted;
@@ -832,9 +835,15 @@ public class SmsDatabase extends MessagingDatabase {
   /*package */void deleteThread(long threadId) {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     db.delete(TABLE_NAME, THREAD_ID + " = ?", new String[] {threadId+""});
+    DatabaseFactory.getReactionDatabase(context).clearCache();
   }
 
-  /*package*/void deleteMessagesInThreadBeforeDate(long threadId, long date) {
+  /**
+   * Deletes in bounded batches so a long thread isn't removed in one huge transaction.
+   *
+   * @return The number of messages deleted.
+   */
+  /*package*/ int deleteMessagesInThreadBeforeDate(long threadId, long date) {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     String where      = THREAD_ID + " = ? AND (CASE " + TYPE;
 
@@ -844,7 +853,21 @@ public class SmsDatabase extends MessagingDatabase {
 
     where += (" ELSE " + DATE_RECEIVED + " < " + date + " END)");
 
-    db.delete(TABLE_NAME, where, new String[] {threadId + ""});
+    String   batch   = ID + " IN (SELECT " + ID + " FROM " + TABLE_NAME + " WHERE " + where + " LIMIT " + TRIM_BATCH_SIZE + ")";
+    String[] args    = new String[] {threadId + ""};
+    int      total   = 0;
+    int      deleted;
+
+    do {
+      deleted = db.delete(TABLE_NAME, batch, args);
+      total  += deleted;
+    } while (deleted > 0);
+
+    if (total > 0) {
+      DatabaseFactory.getReactionDatabase(context).clearCache();
+    }
+
+    return total;
   }
 
   /*package*/ void deleteThreads(Set<Long> threadIds) {
@@ -858,11 +881,13 @@ public class SmsDatabase extends MessagingDatabase {
     where = where.substring(0, where.length() - 4);
 
     db.delete(TABLE_NAME, where, null);
+    DatabaseFactory.getReactionDatabase(context).clearCache();
   }
 
   /*package */ void deleteAllThreads() {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     db.delete(TABLE_NAME, null, null);
+    DatabaseFactory.getReactionDatabase(context).clearCache();
   }
 
   /*package*/ SQLiteDatabase beginTransaction() {
@@ -968,7 +993,7 @@ public class SmsDatabase extends MessagingDatabase {
       long                 expireStarted        = cursor.getLong(cursor.getColumnIndexOrThrow(SmsDatabase.EXPIRE_STARTED          ));
       String               body                 = cursor.getString(cursor.getColumnIndexOrThrow(SmsDatabase.BODY                 ));
       boolean              unidentified         = cursor.getInt(cursor.getColumnIndexOrThrow(SmsDatabase.UNIDENTIFIED)) == 1;
-      List<ReactionRecord> reactions            = parseReactions(cursor);
+      List<ReactionRecord> reactions            = getReactions(cursor, messageId);
 
       if (!TextSecurePreferences.isReadReceiptsEnabled(context)) {
         readReceiptCount = 0;
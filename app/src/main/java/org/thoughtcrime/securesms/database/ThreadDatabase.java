@@ -53,6 +53,7 @@ import org.whispersystems.libsignal.util.guava.Optional;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -199,6 +200,7 @@ public class ThreadDatabase extends Database {
   private void deleteThread(long threadId) {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     db.delete(TABLE_NAME, ID_WHERE, new String[] {threadId + ""});
+    DatabaseFactory.getMediaDatabase(context).deleteStorageForThreads(Collections.singleton(threadId));
     notifyConversationListListeners();
   }
 
@@ -213,63 +215,58 @@ public class ThreadDatabase extends Database {
     where = where.substring(0, where.length() - 4);
 
     db.delete(TABLE_NAME, where, null);
+    DatabaseFactory.getMediaDatabase(context).deleteStorageForThreads(threadIds);
     notifyConversationListListeners();
   }
 
   private void deleteAllThreads() {
     SQLiteDatabase db = databaseHelper.getWritableDatabase();
     db.delete(TABLE_NAME, null, null);
+    DatabaseFactory.getMediaDatabase(context).deleteStorageForAllThreads();
     notifyConversationListListeners();
   }
 
   public void trimAllThreads(int length, ProgressListener listener) {
-    Cursor cursor   = null;
-    int threadCount = 0;
-    int complete    = 0;
-
-    try {
-      cursor = this.getConversationList();
-
-      if (cursor != null)
-        threadCount = cursor.getCount();
+    SQLiteDatabase db        = databaseHelper.getReadableDatabase();
+    List<Long>     threadIds = new LinkedList<>();
 
+    try (Cursor cursor = db.query(TABLE_NAME, new String[] { ID }, ARCHIVED + " = ? AND " + MESSAGE_COUNT + " != 0", new String[] { "0" }, null, null, null)) {
       while (cursor != null && cursor.moveToNext()) {
-        long threadId = cursor.getLong(cursor.getColumnIndexOrThrow(ID));
-        trimThread(threadId, length);
-
-        listener.onProgress(++complete, threadCount);
+        threadIds.add(cursor.getLong(0));
       }
-    } finally {
-      if (cursor != null)
-        cursor.close();
+    }
+
+    int complete = 0;
+
+    for (long threadId : threadIds) {
+      trimThread(threadId, length);
+      listener.onProgress(++complete, threadIds.size());
     }
   }
 
+  /**
+   * Deletes everything older than the newest length messages in the thread. Messages are removed in
+   * batches, and the thread is updated and its listeners notified once at the end.
+   */
   public void trimThread(long threadId, int length) {
-    Log.i("ThreadDatabase", "Trimming thread: " + threadId + " to: " + length);
-    Cursor cursor = null;
+    Log.i(TAG, "Trimming thread: " + threadId + " to: " + length);
 
-    try {
-      cursor = DatabaseFactory.getMmsSmsDatabase(context).getConversation(threadId);
+    long cutoffDate = DatabaseFactory.getMmsSmsDatabase(context).getTrimCutoffDate(threadId, length);
 
-      if (cursor != null && length > 0 && cursor.getCount() > length) {
-        Log.w("ThreadDatabase", "Cursor count is greater than length!");
-        cursor.moveToPosition(length - 1);
+    if (cutoffDate == -1) {
+      return;
+    }
 
-        long lastTweetDate = cursor.getLong(cursor.getColumnIndexOrThrow(MmsSmsColumns.NORMALIZED_DATE_RECEIVED));
+    Log.i(TAG, "Cut off date: " + cutoffDate);
 
-        Log.i("ThreadDatabase", "Cut off tweet date: " + lastTweetDate);
+    long startTime = System.currentTimeMillis();
+    int  deleted   = DatabaseFactory.getSmsDatabase(context).deleteMessagesInThreadBeforeDate(threadId, cutoffDate) +
+                     DatabaseFactory.getMmsDatabase(context).deleteMessagesInThreadBeforeDate(threadId, cutoffDate);
 
-        DatabaseFactory.getSmsDatabase(context).deleteMessagesInThreadBeforeDate(threadId, lastTweetDate);
-        DatabaseFactory.getMmsDatabase(context).deleteMessagesInThreadBeforeDate(threadId, lastTweetDate);
+    Log.i(TAG, "Trimmed " + deleted + " messages in " + (System.currentTimeMillis() - startTime) + " ms");
 
-        update(threadId, false);
-        notifyConversationListeners(threadId);
-      }
-    } finally {
-      if (cursor != null)
-        cursor.close();
-    }
+    update(threadId, false);
+    notifyConversationListeners(threadId);
   }
 
   public List<MarkedMessageInfo> setAllThreadsRead() {
@@ -13,9 +13,12 @@ import android.preference.PreferenceManager;
 import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.annimon.stream.Stream;
 import com.bumptech.glide.Glide;
+import com.google.protobuf.InvalidProtocolBufferException;
 
 import net.sqlcipher.database.SQLiteDatabase;
 import net.sqlcipher.database.SQLiteDatabaseHook;
@@ -31,9 +34,12 @@ import org.thoughtcrime.securesms.database.GroupReceiptDatabase;
 import org.thoughtcrime.securesms.database.IdentityDatabase;
 import org.thoughtcrime.securesms.database.JobDatabase;
 import org.thoughtcrime.securesms.database.KeyValueDatabase;
+import org.thoughtcrime.securesms.database.LinkPreviewDatabase;
+import org.thoughtcrime.securesms.database.MediaDatabase;
 import org.thoughtcrime.securesms.database.MegaphoneDatabase;
 import org.thoughtcrime.securesms.database.MmsDatabase;
 import org.thoughtcrime.securesms.database.OneTimePreKeyDatabase;
+import org.thoughtcrime.securesms.database.ReactionDatabase;
 import org.thoughtcrime.securesms.database.PushDatabase;
 import org.thoughtcrime.securesms.database.RecipientDatabase;
 import org.thoughtcrime.securesms.database.SearchDatabase;
@@ -43,8 +49,10 @@ import org.thoughtcrime.securesms.database.SmsDatabase;
 import org.thoughtcrime.securesms.database.StickerDatabase;
 import org.thoughtcrime.securesms.database.StorageKeyDatabase;
 import org.thoughtcrime.securesms.database.ThreadDatabase;
+import org.thoughtcrime.securesms.database.model.DatabaseProtos.ReactionList;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobs.RefreshPreKeysJob;
+import org.thoughtcrime.securesms.keyvalue.AccountValues;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.notifications.NotificationChannels;
 import org.thoughtcrime.securesms.phonenumbers.PhoneNumberFormatter;
@@ -57,6 +65,7 @@ import org.thoughtcrime.securesms.util.TextSecurePreferences;
 import org.thoughtcrime.securesms.util.Util;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 public class SQLCipherOpenHelper extends SQLiteOpenHelper {
@@ -113,8 +122,17 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
   private static final int PROFILE_KEY_CREDENTIALS          = 48;
   private static final int ATTACHMENT_FILE_INDEX            = 49;
   private static final int STORAGE_SERVICE_ACTIVE           = 50;
-
-  private static final int    DATABASE_VERSION = 50;
+  private static final int FTS_PREFIX_INDEXES               = 51;
+  private static final int CONTACT_SEARCH_INDEXES           = 52;
+  private static final int MEDIA_STORAGE_COUNTERS           = 53;
+  private static final int MEDIA_GALLERY_INDEX              = 54;
+  private static final int GROUP_RECEIPT_ADDRESS_INDEX      = 55;
+  private static final int REACTION_TABLE                   = 56;
+  private static final int LAST_PROFILE_FETCH               = 57;
+  private static final int LINK_PREVIEW_CACHE               = 58;
+  private static final int PUSH_BLOBS                       = 59;
+
+  private static final int    DATABASE_VERSION = 59;
   private static final String DATABASE_NAME    = "signal.db";
 
   private final Context        context;
@@ -158,7 +176,12 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
     db.execSQL(StorageKeyDatabase.CREATE_TABLE);
     db.execSQL(KeyValueDatabase.CREATE_TABLE);
     db.execSQL(MegaphoneDatabase.CREATE_TABLE);
+    db.execSQL(ReactionDatabase.CREATE_TABLE);
+    db.execSQL(LinkPreviewDatabase.CREATE_TABLE);
     executeStatements(db, SearchDatabase.CREATE_TABLE);
+    executeStatements(db, RecipientDatabase.CREATE_FTS_TABLE);
+    executeStatements(db, GroupDatabase.CREATE_FTS_TABLE);
+    executeStatements(db, MediaDatabase.CREATE_TABLE);
     executeStatements(db, JobDatabase.CREATE_TABLE);
 
     executeStatements(db, RecipientDatabase.CREATE_INDEXS);
@@ -171,6 +194,9 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
     executeStatements(db, GroupReceiptDatabase.CREATE_INDEXES);
     executeStatements(db, StickerDatabase.CREATE_INDEXES);
     executeStatements(db, StorageKeyDatabase.CREATE_INDEXES);
+    executeStatements(db, LinkPreviewDatabase.CREATE_INDEXES);
+
+    executeStatements(db, ReactionDatabase.CREATE_TRIGGERS);
 
     if (context.getDatabasePath(ClassicOpenHelper.NAME).exists()) {
       ClassicOpenHelper                      legacyHelper = new ClassicOpenHelper(context);
@@ -443,7 +469,7 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
       }
 
       if (oldVersion < SELF_ATTACHMENT_CLEANUP) {
-        String localNumber = TextSecurePreferences.getLocalNumber(context);
+        String localNumber = getLocalNumber(context, db);
 
         if (!TextUtils.isEmpty(localNumber)) {
           try (Cursor threadCursor = db.rawQuery("SELECT _id FROM thread WHERE recipient_ids = ?", new String[]{ localNumber })) {
@@ -535,7 +561,7 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
       if (oldVersion < RECIPIENT_SEARCH) {
         db.execSQL("ALTER TABLE recipient ADD COLUMN system_phone_type INTEGER DEFAULT -1");
 
-        String localNumber = TextSecurePreferences.getLocalNumber(context);
+        String localNumber = getLocalNumber(context, db);
         if (!TextUtils.isEmpty(localNumber)) {
           try (Cursor cursor = db.query("recipient", null, "phone = ?", new String[] { localNumber }, null, null, null)) {
             if (cursor == null || !cursor.moveToFirst()) {
@@ -719,7 +745,7 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
       }
 
       if (oldVersion < PROFILE_KEY_TO_DB) {
-        String localNumber = TextSecurePreferences.getLocalNumber(context);
+        String localNumber = getLocalNumber(context, db);
         if (!TextUtils.isEmpty(localNumber)) {
           String        encodedProfileKey = PreferenceManager.getDefaultSharedPreferences(context).getString("pref_profile_key", null);
           byte[]        profileKey        = encodedProfileKey != null ? Base64.decodeOrThrow(encodedProfileKey) : Util.getSecretBytes(32);
@@ -761,6 +787,177 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
         }
       }
 
+      if (oldVersion < FTS_PREFIX_INDEXES) {
+        db.execSQL("DROP TRIGGER IF EXISTS sms_ai");
+        db.execSQL("DROP TRIGGER IF EXISTS sms_au");
+        db.execSQL("DROP TRIGGER IF EXISTS sms_ad");
+        db.execSQL("DROP TRIGGER IF EXISTS mms_ai");
+        db.execSQL("DROP TRIGGER IF EXISTS mms_au");
+        db.execSQL("DROP TRIGGER IF EXISTS mms_ad");
+        db.execSQL("DROP TABLE IF EXISTS sms_fts");
+        db.execSQL("DROP TABLE IF EXISTS mms_fts");
+
+        db.execSQL("CREATE VIRTUAL TABLE sms_fts USING fts5(body, thread_id UNINDEXED, content=sms, content_rowid=_id, prefix='2 3')");
+        db.execSQL("CREATE TRIGGER sms_ai AFTER INSERT ON sms BEGIN\n" +
+                   "  INSERT INTO sms_fts(rowid, body, thread_id) VALUES (new._id, new.body, new.thread_id);\n" +
+                   "END;");
+        db.execSQL("CREATE TRIGGER sms_ad AFTER DELETE ON sms BEGIN\n" +
+                   "  INSERT INTO sms_fts(sms_fts, rowid, body, thread_id) VALUES('delete', old._id, old.body, old.thread_id);\n" +
+                   "END;\n");
+        db.execSQL("CREATE TRIGGER sms_au AFTER UPDATE ON sms BEGIN\n" +
+                   "  INSERT INTO sms_fts(sms_fts, rowid, body, thread_id) VALUES('delete', old._id, old.body, old.thread_id);\n" +
+                   "  INSERT INTO sms_fts(rowid, body, thread_id) VALUES(new._id, new.body, new.thread_id);\n" +
+                   "END;");
+
+        db.execSQL("CREATE VIRTUAL TABLE mms_fts USING fts5(body, thread_id UNINDEXED, content=mms, content_rowid=_id, prefix='2 3')");
+        db.execSQL("CREATE TRIGGER mms_ai AFTER INSERT ON mms BEGIN\n" +
+                   "  INSERT INTO mms_fts(rowid, body, thread_id) VALUES (new._id, new.body, new.thread_id);\n" +
+                   "END;");
+        db.execSQL("CREATE TRIGGER mms_ad AFTER DELETE ON mms BEGIN\n" +
+                   "  INSERT INTO mms_fts(mms_fts, rowid, body, thread_id) VALUES('delete', old._id, old.body, old.thread_id);\n" +
+                   "END;\n");
+        db.execSQL("CREATE TRIGGER mms_au AFTER UPDATE ON mms BEGIN\n" +
+                   "  INSERT INTO mms_fts(mms_fts, rowid, body, thread_id) VALUES('delete', old._id, old.body, old.thread_id);\n" +
+                   "  INSERT INTO mms_fts(rowid, body, thread_id) VALUES(new._id, new.body, new.thread_id);\n" +
+                   "END;");
+
+        long start = SystemClock.elapsedRealtime();
+
+        db.execSQL("INSERT INTO sms_fts(sms_fts) VALUES('rebuild')");
+        db.execSQL("INSERT INTO mms_fts(mms_fts) VALUES('rebuild')");
+
+        Log.i(TAG, "Rebuilding search index with prefix indexes completed in " + (SystemClock.elapsedRealtime() - start) + " ms");
+      }
+
+      if (oldVersion < CONTACT_SEARCH_INDEXES) {
+        db.execSQL("CREATE VIRTUAL TABLE recipient_fts USING fts5(system_display_name, profile_joined_name, signal_profile_name, username, email, content=recipient, content_rowid=_id, prefix='2 3')");
+        db.execSQL("CREATE TRIGGER recipient_fts_ai AFTER INSERT ON recipient BEGIN\n" +
+                   "  INSERT INTO recipient_fts(rowid, system_display_name, profile_joined_name, signal_profile_name, username, email) VALUES (new._id, new.system_display_name, new.profile_joined_name, new.signal_profile_name, new.username, new.email);\n" +
+                   "END;");
+        db.execSQL("CREATE TRIGGER recipient_fts_ad AFTER DELETE ON recipient BEGIN\n" +
+                   "  INSERT INTO recipient_fts(recipient_fts, rowid, system_display_name, profile_joined_name, signal_profile_name, username, email) VALUES ('delete', old._id, old.system_display_name, old.profile_joined_name, old.signal_profile_name, old.username, old.email);\n" +
+                   "END;");
+        db.execSQL("CREATE TRIGGER recipient_fts_au AFTER UPDATE OF system_display_name, profile_joined_name, signal_profile_name, username, email ON recipient BEGIN\n" +
+                   "  INSERT INTO recipient_fts(recipient_fts, rowid, system_display_name, profile_joined_name, signal_profile_name, username, email) VALUES ('delete', old._id, old.system_display_name, old.profile_joined_name, old.signal_profile_name, old.username, old.email);\n" +
+                   "  INSERT INTO recipient_fts(rowid, system_display_name, profile_joined_name, signal_profile_name, username, email) VALUES (new._id, new.system_display_name, new.profile_joined_name, new.signal_profile_name, new.username, new.email);\n" +
+                   "END;");
+
+        db.execSQL("CREATE VIRTUAL TABLE group_fts USING fts5(title, content=groups, content_rowid=_id, prefix='2 3')");
+        db.execSQL("CREATE TRIGGER group_fts_ai AFTER INSERT ON groups BEGIN\n" +
+                   "  INSERT INTO group_fts(rowid, title) VALUES (new._id, new.title);\n" +
+                   "END;");
+        db.execSQL("CREATE TRIGGER group_fts_ad AFTER DELETE ON groups BEGIN\n" +
+                   "  INSERT INTO group_fts(group_fts, rowid, title) VALUES ('delete', old._id, old.title);\n" +
+                   "END;");
+        db.execSQL("CREATE TRIGGER group_fts_au AFTER UPDATE OF title ON groups BEGIN\n" +
+                   "  INSERT INTO group_fts(group_fts, rowid, title) VALUES ('delete', old._id, old.title);\n" +
+                   "  INSERT INTO group_fts(rowid, title) VALUES (new._id, new.title);\n" +
+                   "END;");
+
+        db.execSQL("INSERT INTO recipient_fts(recipient_fts) VALUES('rebuild')");
+        db.execSQL("INSERT INTO group_fts(group_fts) VALUES('rebuild')");
+      }
+
+      if (oldVersion < MEDIA_STORAGE_COUNTERS) {
+        db.execSQL("CREATE TABLE media_storage (thread_id INTEGER, category INTEGER, size INTEGER DEFAULT 0, UNIQUE(thread_id, category));");
+        db.execSQL("INSERT INTO media_storage (thread_id, category) VALUES (-1, 0), (-1, 1), (-1, 2), (-1, 3)");
+
+        db.execSQL("CREATE TRIGGER media_storage_ai AFTER INSERT ON part WHEN new._data IS NOT NULL AND new.sticker_pack_id IS NULL AND new.ct IS NOT 'application/x-signal-view-once' BEGIN\n" +
+                   "  INSERT OR IGNORE INTO media_storage (thread_id, category) SELECT thread_id, CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END FROM mms WHERE _id = new.mid;\n" +
+                   "  UPDATE media_storage SET size = size + new.data_size WHERE thread_id = (SELECT thread_id FROM mms WHERE _id = new.mid) AND category = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "  UPDATE media_storage SET size = size + (MAX(new.data_size, (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = new._data AND part._id != new._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) - (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = new._data AND part._id != new._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) WHERE thread_id = -1 AND category = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "END;");
+
+        db.execSQL("CREATE TRIGGER media_storage_ad AFTER DELETE ON part WHEN old._data IS NOT NULL AND old.sticker_pack_id IS NULL AND old.ct IS NOT 'application/x-signal-view-once' BEGIN\n" +
+                   "  INSERT OR IGNORE INTO media_storage (thread_id, category) SELECT thread_id, CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END FROM mms WHERE _id = old.mid;\n" +
+                   "  UPDATE media_storage SET size = size - old.data_size WHERE thread_id = (SELECT thread_id FROM mms WHERE _id = old.mid) AND category = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "  UPDATE media_storage SET size = size - (MAX(old.data_size, (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = old._data AND part._id != old._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) - (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = old._data AND part._id != old._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) WHERE thread_id = -1 AND category = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "END;");
+
+        db.execSQL("CREATE TRIGGER media_storage_bu BEFORE UPDATE OF _data, data_size, ct, mid, sticker_pack_id ON part WHEN old._data IS NOT NULL AND old.sticker_pack_id IS NULL AND old.ct IS NOT 'application/x-signal-view-once' BEGIN\n" +
+                   "  INSERT OR IGNORE INTO media_storage (thread_id, category) SELECT thread_id, CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END FROM mms WHERE _id = old.mid;\n" +
+                   "  UPDATE media_storage SET size = size - old.data_size WHERE thread_id = (SELECT thread_id FROM mms WHERE _id = old.mid) AND category = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "  UPDATE media_storage SET size = size - (MAX(old.data_size, (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = old._data AND part._id != old._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) - (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = old._data AND part._id != old._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) WHERE thread_id = -1 AND category = CASE WHEN old.ct GLOB 'image/*' OR old.ct = 'application/mms' THEN 0 WHEN old.ct GLOB 'video/*' THEN 1 WHEN old.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "END;");
+
+        db.execSQL("CREATE TRIGGER media_storage_au AFTER UPDATE OF _data, data_size, ct, mid, sticker_pack_id ON part WHEN new._data IS NOT NULL AND new.sticker_pack_id IS NULL AND new.ct IS NOT 'application/x-signal-view-once' BEGIN\n" +
+                   "  INSERT OR IGNORE INTO media_storage (thread_id, category) SELECT thread_id, CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END FROM mms WHERE _id = new.mid;\n" +
+                   "  UPDATE media_storage SET size = size + new.data_size WHERE thread_id = (SELECT thread_id FROM mms WHERE _id = new.mid) AND category = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "  UPDATE media_storage SET size = size + (MAX(new.data_size, (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = new._data AND part._id != new._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) - (SELECT COALESCE(MAX(data_size), 0) FROM part WHERE part._data = new._data AND part._id != new._id AND CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END AND part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once')) WHERE thread_id = -1 AND category = CASE WHEN new.ct GLOB 'image/*' OR new.ct = 'application/mms' THEN 0 WHEN new.ct GLOB 'video/*' THEN 1 WHEN new.ct GLOB 'audio/*' THEN 2 ELSE 3 END;\n" +
+                   "END;");
+
+        long start = SystemClock.elapsedRealtime();
+
+        db.execSQL("INSERT OR REPLACE INTO media_storage (thread_id, category, size) SELECT -1, category, SUM(size) FROM (SELECT CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END AS category, MAX(data_size) AS size FROM part WHERE part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once' GROUP BY _data, category) GROUP BY category");
+        db.execSQL("INSERT INTO media_storage (thread_id, category, size) SELECT mms.thread_id, CASE WHEN part.ct GLOB 'image/*' OR part.ct = 'application/mms' THEN 0 WHEN part.ct GLOB 'video/*' THEN 1 WHEN part.ct GLOB 'audio/*' THEN 2 ELSE 3 END, SUM(part.data_size) FROM part INNER JOIN mms ON part.mid = mms._id WHERE part._data IS NOT NULL AND part.sticker_pack_id IS NULL AND part.ct IS NOT 'application/x-signal-view-once' GROUP BY 1, 2");
+
+        Log.i(TAG, "Computing media storage counters completed in " + (SystemClock.elapsedRealtime() - start) + " ms");
+      }
+
+      if (oldVersion < MEDIA_GALLERY_INDEX) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS part_mid_display_order_index ON part (mid, display_order, _id)");
+      }
+
+      if (oldVersion < GROUP_RECEIPT_ADDRESS_INDEX) {
+        db.execSQL("DROP INDEX IF EXISTS group_receipt_mms_id_index");
+        db.execSQL("CREATE INDEX IF NOT EXISTS group_receipt_mms_id_address_index ON group_receipts (mms_id, address)");
+      }
+
+      if (oldVersion < REACTION_TABLE) {
+        db.execSQL("CREATE TABLE reaction (_id INTEGER PRIMARY KEY, " +
+                                          "message_id INTEGER NOT NULL, " +
+                                          "is_mms INTEGER NOT NULL, " +
+                                          "author_id INTEGER NOT NULL, " +
+                                          "emoji TEXT NOT NULL, " +
+                                          "date_sent INTEGER NOT NULL, " +
+                                          "date_received INTEGER NOT NULL, " +
+                                          "UNIQUE(message_id, is_mms, author_id) ON CONFLICT REPLACE)");
+
+        db.execSQL("CREATE TRIGGER reactions_sms_delete AFTER DELETE ON sms BEGIN DELETE FROM reaction WHERE message_id = old._id AND is_mms = 0; END;");
+        db.execSQL("CREATE TRIGGER reactions_mms_delete AFTER DELETE ON mms BEGIN DELETE FROM reaction WHERE message_id = old._id AND is_mms = 1; END;");
+
+        moveReactionsToTable(db);
+      }
+
+      if (oldVersion < LAST_PROFILE_FETCH) {
+        db.execSQL("ALTER TABLE recipient ADD COLUMN last_profile_fetch INTEGER DEFAULT 0");
+      }
+
+      if (oldVersion < LINK_PREVIEW_CACHE) {
+        createLinkPreviewCache(db);
+      }
+
+      if (oldVersion < PUSH_BLOBS) {
+        db.execSQL("CREATE TABLE push_tmp (_id INTEGER PRIMARY KEY, type INTEGER, source TEXT, source_uuid TEXT, device_id INTEGER, body BLOB, content BLOB, timestamp INTEGER, server_timestamp INTEGER DEFAULT 0, server_guid TEXT DEFAULT NULL)");
+
+        try (Cursor cursor = db.query("push", null, null, null, null, null, null)) {
+          while (cursor != null && cursor.moveToNext()) {
+            long id = cursor.getLong(cursor.getColumnIndexOrThrow("_id"));
+
+            try {
+              ContentValues values = new ContentValues(10);
+              values.put("_id", id);
+              values.put("type", cursor.getInt(cursor.getColumnIndexOrThrow("type")));
+              values.put("source", cursor.getString(cursor.getColumnIndexOrThrow("source")));
+              values.put("source_uuid", cursor.getString(cursor.getColumnIndexOrThrow("source_uuid")));
+              values.put("device_id", cursor.getInt(cursor.getColumnIndexOrThrow("device_id")));
+              values.put("body", decodeLegacyPushBody(cursor, "body"));
+              values.put("content", decodeLegacyPushBody(cursor, "content"));
+              values.put("timestamp", cursor.getLong(cursor.getColumnIndexOrThrow("timestamp")));
+              values.put("server_timestamp", cursor.getLong(cursor.getColumnIndexOrThrow("server_timestamp")));
+              values.put("server_guid", cursor.getString(cursor.getColumnIndexOrThrow("server_guid")));
+
+              db.insert("push_tmp", null, values);
+            } catch (IOException e) {
+              Log.w(TAG, "Dropping push " + id + " with an undecodable body.", e);
+            }
+          }
+        }
+
+        db.execSQL("DROP TABLE push");
+        db.execSQL("ALTER TABLE push_tmp RENAME TO push");
+      }
+
       db.setTransactionSuccessful();
     } finally {
       db.endTransaction();
@@ -789,6 +986,84 @@ public class SQLCipherOpenHelper extends SQLiteOpenHelper {
     return context.getDatabasePath(DATABASE_NAME).exists();
   }
 
+  /**
+   * Copies the serialized reaction lists on sms and mms rows into the reaction table and clears
+   * them. A list that can't be parsed is skipped.
+   */
+  @VisibleForTesting
+  static void moveReactionsToTable(@NonNull SQLiteDatabase db) {
+    for (String table : new String[] { "sms", "mms" }) {
+      try (Cursor cursor = db.query(table, new String[] { "_id", "reactions" }, "reactions NOT NULL", null, null, null, null)) {
+        while (cursor != null && cursor.moveToNext()) {
+          long messageId = cursor.getLong(cursor.getColumnIndexOrThrow("_id"));
+
+          try {
+            for (ReactionList.Reaction reaction : ReactionList.parseFrom(cursor.getBlob(cursor.getColumnIndexOrThrow("reactions"))).getReactionsList()) {
+              ContentValues values = new ContentValues(6);
+              values.put("message_id", messageId);
+              values.put("is_mms", "mms".equals(table) ? 1 : 0);
+              values.put("author_id", reaction.getAuthor());
+              values.put("emoji", reaction.getEmoji());
+              values.put("date_sent", reaction.getSentTime());
+              values.put("date_received", reaction.getReceivedTime());
+
+              db.insert("reaction", null, values);
+            }
+          } catch (InvalidProtocolBufferException e) {
+            Log.w(TAG, "Failed to parse reactions for " + table + " " + messageId, e);
+          }
+        }
+      }
+
+      db.execSQL("UPDATE " + table + " SET reactions = NULL WHERE reactions NOT NULL");
+    }
+  }
+
+  @VisibleForTesting
+  static void createLinkPreviewCache(@NonNull SQLiteDatabase db) {
+    db.execSQL("CREATE TABLE link_preview_cache (_id INTEGER PRIMARY KEY, " +
+                                                "url TEXT UNIQUE NOT NULL, " +
+                                                "title TEXT, " +
+                                                "image_url TEXT, " +
+                                                "fetched_at INTEGER NOT NULL)");
+    db.execSQL("CREATE INDEX IF NOT EXISTS link_preview_cache_fetched_at_index ON link_preview_cache (fetched_at)");
+  }
+
+  /**
+   * Push bodies were stored as Base64 text before {@link #PUSH_BLOBS}. Rows written as blobs since
+   * are passed through.
+   */
+  private static @Nullable byte[] decodeLegacyPushBody(@NonNull Cursor cursor, @NonNull String column) throws IOException {
+    int index = cursor.getColumnIndexOrThrow(column);
+
+    switch (cursor.getType(index)) {
+      case Cursor.FIELD_TYPE_BLOB:
+        return cursor.getBlob(index);
+      case Cursor.FIELD_TYPE_STRING:
+        String encoded = cursor.getString(index);
+        return TextUtils.isEmpty(encoded) ? null : Base64.decode(encoded);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Once the local number has moved into the key_value table, {@link TextSecurePreferences} reads it
+   * through the {@link org.thoughtcrime.securesms.keyvalue.SignalStore}, which would open this
+   * database again from inside an upgrade. Read it through the handle being upgraded instead.
+   */
+  private static @Nullable String getLocalNumber(@NonNull Context context, @NonNull SQLiteDatabase db) {
+    if (SqlUtil.tableExists(db, KeyValueDatabase.TABLE_NAME)) {
+      try (Cursor cursor = db.query(KeyValueDatabase.TABLE_NAME, new String[] { "value" }, "key = ?", new String[] { AccountValues.LOCAL_NUMBER }, null, null, null)) {
+        if (cursor != null && cursor.moveToFirst()) {
+          return cursor.getString(0);
+        }
+      }
+    }
+
+    return TextSecurePreferences.getLocalNumber(context);
+  }
+
   private void executeStatements(SQLiteDatabase db, String[] statements) {
     for (String statement : statements)
       db.execSQL(statement);
@@ -3,12 +3,23 @@ package org.thoughtcrime.securesms.database.loaders;
 import android.content.Context;
 import android.database.Cursor;
 
+import androidx.annotation.NonNull;
+
 import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.MmsSmsColumns;
+import org.thoughtcrime.securesms.database.MmsSmsDatabase;
+import org.thoughtcrime.securesms.database.ReactionDatabase;
 import org.thoughtcrime.securesms.recipients.RecipientUtil;
 import org.thoughtcrime.securesms.util.AbstractCursorLoader;
 import org.whispersystems.libsignal.util.Pair;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ConversationLoader extends AbstractCursorLoader {
+
+  private static final int REACTION_PRELOAD_LIMIT = 500;
+
   private final long    threadId;
   private       int     offset;
   private       int     limit;
@@ -67,6 +78,35 @@ public class ConversationLoader extends AbstractCursorLoader {
     this.isMessageRequestAccepted     = RecipientUtil.isMessageRequestAccepted(context, threadId);
     this.hasPreMessageRequestMessages = RecipientUtil.isPreMessageRequestThread(context, threadId);
 
-    return DatabaseFactory.getMmsSmsDatabase(context).getConversation(threadId, offset, limit);
+    Cursor cursor = DatabaseFactory.getMmsSmsDatabase(context).getConversation(threadId, offset, limit);
+
+    preloadReactions(cursor);
+
+    return cursor;
+  }
+
+  /**
+   * Fetches the reactions for the newest messages in the window with one query per table, so
+   * binding those rows is served from the reaction cache.
+   */
+  private void preloadReactions(@NonNull Cursor cursor) {
+    List<Long> smsIds = new ArrayList<>();
+    List<Long> mmsIds = new ArrayList<>();
+
+    while (cursor.moveToNext() && cursor.getPosition() < REACTION_PRELOAD_LIMIT) {
+      long id = cursor.getLong(cursor.getColumnIndexOrThrow(MmsSmsColumns.ID));
+
+      if (MmsSmsDatabase.MMS_TRANSPORT.equals(cursor.getString(cursor.getColumnIndexOrThrow(MmsSmsDatabase.TRANSPORT)))) {
+        mmsIds.add(id);
+      } else {
+        smsIds.add(id);
+      }
+    }
+
+    cursor.moveToPosition(-1);
+
+    ReactionDatabase reactionDatabase = DatabaseFactory.getReactionDatabase(context);
+    reactionDatabase.getReactionsForMessages(smsIds, false);
+    reactionDatabase.getReactionsForMessages(mmsIds, true);
   }
 }
@@ -0,0 +1,297 @@
+package org.thoughtcrime.securesms.database.loaders;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import org.thoughtcrime.securesms.attachments.AttachmentId;
+import org.thoughtcrime.securesms.attachments.DatabaseAttachment;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.MediaDatabase;
+import org.thoughtcrime.securesms.database.MediaDatabase.MediaRecord;
+import org.thoughtcrime.securesms.database.MediaDatabase.Sorting;
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.LRUCache;
+import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A window over the gallery media of a thread, in the order of a {@link Sorting}. Records are
+ * loaded a page at a time with keyset queries anchored on a neighbouring record whenever one is
+ * cached, and only the most recently loaded pages are kept. Pages are only ever read in the
+ * background: a miss returns null and the {@link Listener} hears once the page is in, or that the
+ * gallery no longer matches the window and should be reopened.
+ */
+public final class PagedGalleryMedia {
+
+  private static final String TAG = PagedGalleryMedia.class.getSimpleName();
+
+  private static final int PAGE_SIZE         = 50;
+  private static final int PREFETCH_DISTANCE = 10;
+  private static final int CACHE_SIZE        = PAGE_SIZE * 4;
+
+  private final Context       context;
+  private final MediaDatabase database;
+  private final long          threadId;
+  private final Sorting       sorting;
+  private final int           size;
+  private final int           initialPosition;
+
+  private final LRUCache<Integer, MediaRecord> records      = new LRUCache<>(CACHE_SIZE);
+  private final Set<Integer>                   loadingPages = new HashSet<>();
+
+  private @Nullable Listener listener;
+  private           boolean  stale;
+
+  private PagedGalleryMedia(@NonNull Context context, long threadId, @NonNull Sorting sorting, int size, int initialPosition) {
+    this.context         = context.getApplicationContext();
+    this.database        = DatabaseFactory.getMediaDatabase(context);
+    this.threadId        = threadId;
+    this.sorting         = sorting;
+    this.size            = size;
+    this.initialPosition = initialPosition;
+  }
+
+  /**
+   * @return A window positioned on the attachment, or null if it is not part of the gallery.
+   */
+  @WorkerThread
+  public static @Nullable PagedGalleryMedia create(@NonNull Context context, long threadId, @NonNull Sorting sorting, @NonNull AttachmentId attachmentId) {
+    DatabaseAttachment attachment = DatabaseFactory.getAttachmentDatabase(context).getAttachment(attachmentId);
+
+    if (attachment == null) {
+      return null;
+    }
+
+    MediaDatabase     database = DatabaseFactory.getMediaDatabase(context);
+    int               position = database.getGalleryMediaPosition(threadId, sorting, attachment);
+    List<MediaRecord> before   = readPage(context, database.getGalleryMediaPage(threadId, sorting, attachment, true, PAGE_SIZE / 2));
+    List<MediaRecord> after    = readPage(context, database.getGalleryMediaPage(threadId, sorting, before.isEmpty() ? null : before.get(0).getAttachment(), false, PAGE_SIZE / 2 + 1));
+
+    if (after.isEmpty() || !after.get(0).getAttachment().getAttachmentId().equals(attachmentId)) {
+      return null;
+    }
+
+    PagedGalleryMedia media = new PagedGalleryMedia(context, threadId, sorting, database.getGalleryMediaCount(threadId), position);
+
+    synchronized (media) {
+      for (int i = 0; i < before.size(); i++) {
+        media.records.put(position - 1 - i, before.get(i));
+      }
+
+      for (int i = 0; i < after.size(); i++) {
+        media.records.put(position + i, after.get(i));
+      }
+    }
+
+    return media;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getInitialPosition() {
+    return initialPosition;
+  }
+
+  /**
+   * Listener callbacks are posted to the main thread.
+   */
+  public synchronized void setListener(@Nullable Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Never touches the database on the calling thread. If the position isn't cached, its page is
+   * loaded in the background and null is returned.
+   */
+  public @Nullable MediaRecord get(int position) {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+    }
+
+    MediaRecord record = getCached(position);
+
+    if (record == null) {
+      prefetchPage(position / PAGE_SIZE);
+    } else {
+      prefetchAround(position);
+    }
+
+    return record;
+  }
+
+  private synchronized @Nullable MediaRecord getCached(int position) {
+    return records.get(position);
+  }
+
+  private void prefetchAround(int position) {
+    int page = position / PAGE_SIZE;
+
+    if (position % PAGE_SIZE < PREFETCH_DISTANCE && page > 0) {
+      prefetchPage(page - 1);
+    }
+
+    if (position % PAGE_SIZE >= PAGE_SIZE - PREFETCH_DISTANCE && (page + 1) * PAGE_SIZE < size) {
+      prefetchPage(page + 1);
+    }
+  }
+
+  private void prefetchPage(int page) {
+    synchronized (this) {
+      if (stale || isPageCached(page) || loadingPages.contains(page)) {
+        return;
+      }
+    }
+
+    SignalExecutors.BOUNDED.execute(() -> loadPage(page));
+  }
+
+  @WorkerThread
+  private void loadPage(int page) {
+    int start = page * PAGE_SIZE;
+    int end   = Math.min(start + PAGE_SIZE, size);
+
+    MediaRecord previous;
+    MediaRecord next;
+
+    synchronized (this) {
+      while (loadingPages.contains(page)) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+      }
+
+      if (isPageCached(page)) {
+        return;
+      }
+
+      loadingPages.add(page);
+
+      previous = start > 0 ? records.get(start - 1) : null;
+      next     = end < size ? records.get(end) : null;
+    }
+
+    try {
+      List<MediaRecord> pageRecords;
+      int               first;
+      int               step;
+
+      if (previous != null || start == 0) {
+        pageRecords = readPage(context, database.getGalleryMediaPage(threadId, sorting, previous != null ? previous.getAttachment() : null, false, end - start));
+        first       = start;
+        step        = 1;
+      } else if (next != null) {
+        pageRecords = readPage(context, database.getGalleryMediaPage(threadId, sorting, next.getAttachment(), true, end - start));
+        first       = end - 1;
+        step        = -1;
+      } else {
+        pageRecords = readPage(context, database.getGalleryMediaPage(threadId, sorting, start, end - start));
+        first       = start;
+        step        = 1;
+      }
+
+      if (pageRecords.size() != end - start && step == -1) {
+        Log.w(TAG, "Gallery changed while paging, reloading page " + page + " by offset.");
+        pageRecords = readPage(context, database.getGalleryMediaPage(threadId, sorting, start, end - start));
+        first       = start;
+        step        = 1;
+      }
+
+      if (pageRecords.size() != end - start) {
+        Log.w(TAG, "Gallery changed while paging, page " + page + " has " + pageRecords.size() + " of " + (end - start) + " records.");
+        onStale();
+        return;
+      }
+
+      synchronized (this) {
+        for (int i = 0; i < pageRecords.size(); i++) {
+          records.put(first + i * step, pageRecords.get(i));
+        }
+      }
+
+      onPageLoaded();
+    } finally {
+      synchronized (this) {
+        loadingPages.remove(page);
+        notifyAll();
+      }
+    }
+  }
+
+  private void onPageLoaded() {
+    Listener listener;
+
+    synchronized (this) {
+      listener = this.listener;
+    }
+
+    if (listener != null) {
+      Util.runOnMain(listener::onPageLoaded);
+    }
+  }
+
+  private void onStale() {
+    Listener listener;
+
+    synchronized (this) {
+      if (stale) return;
+
+      stale    = true;
+      listener = this.listener;
+    }
+
+    if (listener != null) {
+      Util.runOnMain(listener::onGalleryChanged);
+    }
+  }
+
+  private boolean isPageCached(int page) {
+    int start = page * PAGE_SIZE;
+    int end   = Math.min(start + PAGE_SIZE, size);
+
+    for (int position = start; position < end; position++) {
+      if (!records.containsKey(position)) return false;
+    }
+
+    return true;
+  }
+
+  private static @NonNull List<MediaRecord> readPage(@NonNull Context context, @NonNull Cursor cursor) {
+    try {
+      List<MediaRecord> page = new ArrayList<>(cursor.getCount());
+
+      while (cursor.moveToNext()) {
+        page.add(MediaRecord.from(context, cursor));
+      }
+
+      return page;
+    } finally {
+      cursor.close();
+    }
+  }
+
+  public interface Listener {
+    /**
+     * A page finished loading, so positions that were missing may now be available.
+     */
+    void onPageLoaded();
+
+    /**
+     * The gallery no longer has the size this window was opened with. The window stops loading
+     * pages and should be replaced with a new one.
+     */
+    void onGalleryChanged();
+  }
+}
@@ -1,21 +1,17 @@
 package org.thoughtcrime.securesms.database.loaders;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.util.Pair;
 
-import org.thoughtcrime.securesms.attachments.AttachmentId;
-import org.thoughtcrime.securesms.database.AttachmentDatabase;
-import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.MediaDatabase.Sorting;
-import org.thoughtcrime.securesms.mms.PartAuthority;
+import org.thoughtcrime.securesms.mms.PartUriParser;
 import org.thoughtcrime.securesms.util.AsyncLoader;
 
-public final class PagingMediaLoader extends AsyncLoader<Pair<Cursor, Integer>> {
+public final class PagingMediaLoader extends AsyncLoader<Pair<PagedGalleryMedia, Integer>> {
 
   @SuppressWarnings("unused")
   private static final String TAG = PagingMediaLoader.class.getSimpleName();
@@ -34,18 +30,15 @@ public final class PagingMediaLoader extends AsyncLoader<Pair<Cursor, Integer>>
   }
 
   @Override
-  public @Nullable Pair<Cursor, Integer> loadInBackground() {
-    Cursor cursor = DatabaseFactory.getMediaDatabase(getContext()).getGalleryMediaForThread(threadId, sorting);
+  public @Nullable Pair<PagedGalleryMedia, Integer> loadInBackground() {
+    PagedGalleryMedia media = PagedGalleryMedia.create(getContext(), threadId, sorting, new PartUriParser(uri).getPartId());
 
-    while (cursor.moveToNext()) {
-      AttachmentId attachmentId  = new AttachmentId(cursor.getLong(cursor.getColumnIndexOrThrow(AttachmentDatabase.ROW_ID)), cursor.getLong(cursor.getColumnIndexOrThrow(AttachmentDatabase.UNIQUE_ID)));
-      Uri          attachmentUri = PartAuthority.getAttachmentDataUri(attachmentId);
-
-      if (attachmentUri.equals(uri)) {
-        return new Pair<>(cursor, leftIsRecent ? cursor.getPosition() : cursor.getCount() - 1 - cursor.getPosition());
-      }
+    if (media == null) {
+      return null;
     }
 
-    return null;
+    int position = media.getInitialPosition();
+
+    return new Pair<>(media, leftIsRecent ? position : media.size() - 1 - position);
   }
 }
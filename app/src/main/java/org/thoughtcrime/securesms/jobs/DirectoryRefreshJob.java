@@ -23,14 +23,31 @@ public class DirectoryRefreshJob extends BaseJob {
 
   private static final String KEY_RECIPIENT           = "recipient";
   private static final String KEY_NOTIFY_OF_NEW_USERS = "notify_of_new_users";
+  private static final String KEY_INCREMENTAL         = "incremental";
 
   @Nullable private Recipient recipient;
             private boolean   notifyOfNewUsers;
+            private boolean   incremental;
 
   public DirectoryRefreshJob(boolean notifyOfNewUsers) {
     this(null, notifyOfNewUsers);
   }
 
+  /**
+   * @param incremental Only look up numbers that changed in the system address book since the last
+   *                    refresh. See {@link DirectoryHelper#refreshDirectoryIncrementally}.
+   */
+  public DirectoryRefreshJob(boolean notifyOfNewUsers, boolean incremental) {
+    this(new Job.Parameters.Builder()
+                           .setQueue("DirectoryRefreshJob")
+                           .addConstraint(NetworkConstraint.KEY)
+                           .setMaxAttempts(10)
+                           .build(),
+         null,
+         notifyOfNewUsers,
+         incremental);
+  }
+
   public DirectoryRefreshJob(@Nullable Recipient recipient,
                              boolean notifyOfNewUsers)
   {
@@ -40,20 +57,23 @@ public class DirectoryRefreshJob extends BaseJob {
                            .setMaxAttempts(10)
                            .build(),
          recipient,
-         notifyOfNewUsers);
+         notifyOfNewUsers,
+         false);
   }
 
-  private DirectoryRefreshJob(@NonNull Job.Parameters parameters, @Nullable Recipient recipient, boolean notifyOfNewUsers) {
+  private DirectoryRefreshJob(@NonNull Job.Parameters parameters, @Nullable Recipient recipient, boolean notifyOfNewUsers, boolean incremental) {
     super(parameters);
 
     this.recipient        = recipient;
     this.notifyOfNewUsers = notifyOfNewUsers;
+    this.incremental      = incremental;
   }
 
   @Override
   public @NonNull Data serialize() {
     return new Data.Builder().putString(KEY_RECIPIENT, recipient != null ? recipient.getId().serialize() : null)
                              .putBoolean(KEY_NOTIFY_OF_NEW_USERS, notifyOfNewUsers)
+                             .putBoolean(KEY_INCREMENTAL, incremental)
                              .build();
   }
 
@@ -66,7 +86,9 @@ public class DirectoryRefreshJob extends BaseJob {
   public void onRun() throws IOException {
     Log.i(TAG, "DirectoryRefreshJob.onRun()");
 
-    if (recipient == null) {
+    if (recipient == null && incremental) {
+      DirectoryHelper.refreshDirectoryIncrementally(context, notifyOfNewUsers);
+    } else if (recipient == null) {
       DirectoryHelper.refreshDirectory(context, notifyOfNewUsers);
     } else {
       DirectoryHelper.refreshDirectoryFor(context, recipient, notifyOfNewUsers);
@@ -89,8 +111,9 @@ public class DirectoryRefreshJob extends BaseJob {
       String    serialized       = data.hasString(KEY_RECIPIENT) ? data.getString(KEY_RECIPIENT) : null;
       Recipient recipient        = serialized != null ? Recipient.resolved(RecipientId.from(serialized)) : null;
       boolean   notifyOfNewUsers = data.getBoolean(KEY_NOTIFY_OF_NEW_USERS);
+      boolean   incremental      = data.getBooleanOrDefault(KEY_INCREMENTAL, false);
 
-      return new DirectoryRefreshJob(parameters, recipient, notifyOfNewUsers);
+      return new DirectoryRefreshJob(parameters, recipient, notifyOfNewUsers, incremental);
     }
   }
 }
@@ -8,12 +8,15 @@ import android.provider.ContactsContract;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.annimon.stream.Stream;
+
 import org.signal.zkgroup.profiles.ProfileKey;
 import org.thoughtcrime.securesms.ApplicationContext;
 import org.thoughtcrime.securesms.crypto.ProfileKeyUtil;
 import org.thoughtcrime.securesms.crypto.UnidentifiedAccessUtil;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.IdentityDatabase;
+import org.thoughtcrime.securesms.database.IdentityDatabase.IdentityRecord;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobmanager.Data;
 import org.thoughtcrime.securesms.jobmanager.Job;
@@ -23,6 +26,8 @@ import org.thoughtcrime.securesms.recipients.Recipient;
 import org.thoughtcrime.securesms.recipients.RecipientId;
 import org.thoughtcrime.securesms.recipients.RecipientUtil;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 import org.whispersystems.libsignal.IdentityKey;
 import org.whispersystems.libsignal.util.guava.Optional;
 import org.whispersystems.signalservice.api.SignalServiceMessageSender;
@@ -38,14 +43,19 @@ import org.whispersystems.signalservice.api.push.SignalServiceAddress;
 import org.whispersystems.signalservice.api.push.exceptions.PushNetworkException;
 import org.whispersystems.signalservice.api.util.InvalidNumberException;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class MultiDeviceContactUpdateJob extends BaseJob {
@@ -56,6 +66,8 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
 
   private static final long FULL_SYNC_TIME = TimeUnit.HOURS.toMillis(6);
 
+  private static final int AVATAR_PREFETCH_WINDOW = 8;
+
   private static final String KEY_RECIPIENT  = "recipient";
   private static final String KEY_FORCE_SYNC = "force_sync";
 
@@ -124,7 +136,7 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     File contactDataFile = createTempFile("multidevice-contact-update");
 
     try {
-      DeviceContactsOutputStream                out             = new DeviceContactsOutputStream(new FileOutputStream(contactDataFile));
+      DeviceContactsOutputStream                out             = new DeviceContactsOutputStream(new BufferedOutputStream(new FileOutputStream(contactDataFile)));
       Recipient                                 recipient       = Recipient.resolved(recipientId);
       Optional<IdentityDatabase.IdentityRecord> identityRecord  = DatabaseFactory.getIdentityDatabase(context).getIdentity(recipient.getId());
       Optional<VerifiedMessage>                 verifiedMessage = getVerifiedMessage(recipient, identityRecord);
@@ -170,27 +182,39 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     TextSecurePreferences.setLastFullContactSyncTime(context, System.currentTimeMillis());
     TextSecurePreferences.setNeedsFullContactSync(context, false);
 
-    File contactDataFile = createTempFile("multidevice-contact-update");
+    File                                                   contactDataFile = createTempFile("multidevice-contact-update");
+    Queue<Future<Optional<SignalServiceAttachmentStream>>> avatars         = new ArrayDeque<>(AVATAR_PREFETCH_WINDOW);
 
     try {
-      DeviceContactsOutputStream out            = new DeviceContactsOutputStream(new FileOutputStream(contactDataFile));
-      List<Recipient>            recipients     = DatabaseFactory.getRecipientDatabase(context).getRecipientsForMultiDeviceSync();
-      Map<RecipientId, Integer>  inboxPositions = DatabaseFactory.getThreadDatabase(context).getInboxPositions();
-      Set<RecipientId>           archived       = DatabaseFactory.getThreadDatabase(context).getArchivedRecipients();
-
-      for (Recipient recipient : recipients) {
-        Optional<IdentityDatabase.IdentityRecord> identity      = DatabaseFactory.getIdentityDatabase(context).getIdentity(recipient.getId());
-        Optional<VerifiedMessage>                 verified      = getVerifiedMessage(recipient, identity);
-        Optional<String>                          name          = Optional.fromNullable(recipient.getName(context));
-        Optional<String>                          color         = Optional.of(recipient.getColor().serialize());
-        Optional<ProfileKey>                      profileKey    = ProfileKeyUtil.profileKeyOptional(recipient.getProfileKey());
-        boolean                                   blocked       = recipient.isBlocked();
-        Optional<Integer>                         expireTimer   = recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages()) : Optional.absent();
-        Optional<Integer>                         inboxPosition = Optional.fromNullable(inboxPositions.get(recipient.getId()));
+      DeviceContactsOutputStream       out            = new DeviceContactsOutputStream(new BufferedOutputStream(new FileOutputStream(contactDataFile)));
+      List<Recipient>                  recipients     = DatabaseFactory.getRecipientDatabase(context).getRecipientsForMultiDeviceSync();
+      Map<RecipientId, IdentityRecord> identities     = DatabaseFactory.getIdentityDatabase(context).getIdentities(Stream.of(recipients).map(Recipient::getId).toList());
+      Map<RecipientId, Integer>        inboxPositions = DatabaseFactory.getThreadDatabase(context).getInboxPositions();
+      Set<RecipientId>                 archived       = DatabaseFactory.getThreadDatabase(context).getArchivedRecipients();
+
+      for (int i = 0; i < Math.min(AVATAR_PREFETCH_WINDOW, recipients.size()); i++) {
+        avatars.add(prefetchSystemAvatar(recipients.get(i)));
+      }
+
+      for (int i = 0; i < recipients.size(); i++) {
+        Recipient                               recipient     = recipients.get(i);
+        Optional<SignalServiceAttachmentStream> avatar        = awaitSystemAvatar(avatars.remove());
+        Optional<IdentityRecord>                identity      = Optional.fromNullable(identities.get(recipient.getId()));
+        Optional<VerifiedMessage>               verified      = getVerifiedMessage(recipient, identity);
+        Optional<String>                        name          = Optional.fromNullable(recipient.getName(context));
+        Optional<String>                        color         = Optional.of(recipient.getColor().serialize());
+        Optional<ProfileKey>                    profileKey    = ProfileKeyUtil.profileKeyOptional(recipient.getProfileKey());
+        boolean                                 blocked       = recipient.isBlocked();
+        Optional<Integer>                       expireTimer   = recipient.getExpireMessages() > 0 ? Optional.of(recipient.getExpireMessages()) : Optional.absent();
+        Optional<Integer>                       inboxPosition = Optional.fromNullable(inboxPositions.get(recipient.getId()));
+
+        if (i + AVATAR_PREFETCH_WINDOW < recipients.size()) {
+          avatars.add(prefetchSystemAvatar(recipients.get(i + AVATAR_PREFETCH_WINDOW)));
+        }
 
         out.write(new DeviceContact(RecipientUtil.toSignalServiceAddress(context, recipient),
                                     name,
-                                    getSystemAvatar(recipient.getContactUri()),
+                                    avatar,
                                     color,
                                     verified,
                                     profileKey,
@@ -200,7 +224,6 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
                                     archived.contains(recipient.getId())));
       }
 
-
       Recipient self       = Recipient.self();
       byte[]    profileKey = self.getProfileKey();
 
@@ -222,6 +245,10 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     } catch(InvalidNumberException e) {
       Log.w(TAG, e);
     } finally {
+      for (Future<Optional<SignalServiceAttachmentStream>> avatar : avatars) {
+        avatar.cancel(true);
+      }
+
       if (contactDataFile != null) contactDataFile.delete();
     }
   }
@@ -257,6 +284,27 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
     }
   }
 
+  private @NonNull Future<Optional<SignalServiceAttachmentStream>> prefetchSystemAvatar(@NonNull Recipient recipient) {
+    Uri contactUri = recipient.getContactUri();
+    return SignalExecutors.BOUNDED.submit(() -> getSystemAvatar(contactUri));
+  }
+
+  private static @NonNull Optional<SignalServiceAttachmentStream> awaitSystemAvatar(@NonNull Future<Optional<SignalServiceAttachmentStream>> avatar)
+      throws IOException
+  {
+    try {
+      return avatar.get();
+    } catch (ExecutionException e) {
+      Log.w(TAG, "Failed to load avatar.", e);
+      return Optional.absent();
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Reads the avatar into memory, so that it can be loaded ahead of the contact being written.
+   */
   private Optional<SignalServiceAttachmentStream> getSystemAvatar(@Nullable Uri uri) {
     if (uri == null) {
       return Optional.absent();
@@ -271,10 +319,12 @@ public class MultiDeviceContactUpdateJob extends BaseJob {
         return Optional.absent();
       }
 
+      byte[] data = Util.readFully(fd.createInputStream());
+
       return Optional.of(SignalServiceAttachment.newStreamBuilder()
-                                                .withStream(fd.createInputStream())
+                                                .withStream(new ByteArrayInputStream(data))
                                                 .withContentType("image/*")
-                                                .withLength(fd.getLength())
+                                                .withLength(data.length)
                                                 .build());
     } catch (IOException e) {
       Log.i(TAG, "Could not find avatar for URI: " + displayPhotoUri);
@@ -1,6 +1,7 @@
 package org.thoughtcrime.securesms.jobs;
 
 import android.content.Context;
+import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -191,11 +192,11 @@ public class PushGroupSendJob extends PushSendJob {
         database.addMismatchedIdentity(messageId, mismatch.getRecipientId(context), mismatch.getIdentityKey());
       }
 
-      for (SendMessageResult success : successes) {
-        DatabaseFactory.getGroupReceiptDatabase(context).setUnidentified(Recipient.externalPush(context, success.getAddress()).getId(),
-                                                                         messageId,
-                                                                         success.getSuccess().isUnidentified());
-      }
+      List<Pair<RecipientId, Boolean>> unidentified = Stream.of(successes)
+                                                            .map(result -> new Pair<>(Recipient.externalPush(context, result.getAddress()).getId(), result.getSuccess().isUnidentified()))
+                                                            .toList();
+
+      DatabaseFactory.getGroupReceiptDatabase(context).setUnidentified(unidentified, messageId);
 
       if (existingNetworkFailures.isEmpty() && networkFailures.isEmpty() && identityMismatches.isEmpty() && existingIdentityMismatches.isEmpty()) {
         database.markAsSent(messageId, true);
@@ -1019,18 +1019,25 @@ public final class PushProcessMessageJob extends BaseJob {
     Map<RecipientId, Integer> localReceipts     = Stream.of(receiptDatabase.getGroupReceiptInfo(messageId))
                                                         .collect(Collectors.toMap(GroupReceiptInfo::getRecipientId, GroupReceiptInfo::getStatus));
 
+    List<RecipientId> toUpdate = new LinkedList<>();
+    List<RecipientId> toInsert = new LinkedList<>();
+
     for (Recipient messageRecipient : messageRecipients) {
       //noinspection ConstantConditions
       if (localReceipts.containsKey(messageRecipient.getId()) && localReceipts.get(messageRecipient.getId()) < GroupReceiptDatabase.STATUS_UNDELIVERED) {
-        receiptDatabase.update(messageRecipient.getId(), messageId, GroupReceiptDatabase.STATUS_UNDELIVERED, message.getTimestamp());
+        toUpdate.add(messageRecipient.getId());
       } else if (!localReceipts.containsKey(messageRecipient.getId())) {
-        receiptDatabase.insert(Collections.singletonList(messageRecipient.getId()), messageId, GroupReceiptDatabase.STATUS_UNDELIVERED, message.getTimestamp());
+        toInsert.add(messageRecipient.getId());
       }
     }
 
-    for (Recipient member : members) {
-      receiptDatabase.setUnidentified(member.getId(), messageId, message.isUnidentified(member.requireServiceId()));
-    }
+    List<Pair<RecipientId, Boolean>> unidentified = Stream.of(members)
+                                                          .map(member -> new Pair<>(member.getId(), message.isUnidentified(member.requireServiceId())))
+                                                          .toList();
+
+    receiptDatabase.update(toUpdate, messageId, GroupReceiptDatabase.STATUS_UNDELIVERED, message.getTimestamp());
+    receiptDatabase.insert(toInsert, messageId, GroupReceiptDatabase.STATUS_UNDELIVERED, message.getTimestamp());
+    receiptDatabase.setUnidentified(unidentified, messageId);
   }
 
   private void handleTextMessage(@NonNull SignalServiceContent content,
@@ -6,6 +6,8 @@ import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.annimon.stream.Stream;
+
 import org.signal.zkgroup.profiles.ProfileKey;
 import org.signal.zkgroup.profiles.ProfileKeyCredential;
 import org.thoughtcrime.securesms.crypto.ProfileKeyUtil;
@@ -25,6 +27,9 @@ import org.thoughtcrime.securesms.util.FeatureFlags;
 import org.thoughtcrime.securesms.util.IdentityUtil;
 import org.thoughtcrime.securesms.util.ProfileUtil;
 import org.thoughtcrime.securesms.util.Util;
+import org.thoughtcrime.securesms.util.concurrent.RateLimitedFetcher;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
+import org.thoughtcrime.securesms.util.concurrent.TokenBucket;
 import org.whispersystems.libsignal.IdentityKey;
 import org.whispersystems.libsignal.InvalidKeyException;
 import org.whispersystems.libsignal.util.guava.Optional;
@@ -34,7 +39,11 @@ import org.whispersystems.signalservice.api.profiles.ProfileAndCredential;
 import org.whispersystems.signalservice.api.profiles.SignalServiceProfile;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Retrieves a users profile and sets the appropriate local fields. If fetching the profile of the
@@ -48,6 +57,14 @@ public class RetrieveProfileJob extends BaseJob {
 
   private static final String KEY_RECIPIENT = "recipient";
 
+  private static final long GROUP_MEMBER_REFRESH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * Shared by all group refreshes, so that concurrent jobs together stay within the rate limit.
+   */
+  private static final RateLimitedFetcher<Recipient, ProfileAndCredential> GROUP_MEMBER_FETCHER =
+      new RateLimitedFetcher<>(SignalExecutors.UNBOUNDED, 8, new TokenBucket(20, 10));
+
   private final Recipient recipient;
 
   public RetrieveProfileJob(@NonNull Recipient recipient) {
@@ -74,7 +91,7 @@ public class RetrieveProfileJob extends BaseJob {
   }
 
   @Override
-  public void onRun() throws IOException {
+  public void onRun() throws IOException, InterruptedException {
     Log.i(TAG, "Retrieving profile of " + recipient.getId());
 
     Recipient resolved = recipient.resolve();
@@ -98,6 +115,13 @@ public class RetrieveProfileJob extends BaseJob {
 
   private void handlePhoneNumberRecipient(Recipient recipient) throws IOException {
     ProfileAndCredential profileAndCredential = ProfileUtil.retrieveProfile(context, recipient, getRequestType(recipient));
+
+    applyProfile(recipient, profileAndCredential);
+
+    DatabaseFactory.getRecipientDatabase(context).markProfilesFetched(Collections.singleton(recipient.getId()), System.currentTimeMillis());
+  }
+
+  private void applyProfile(@NonNull Recipient recipient, @NonNull ProfileAndCredential profileAndCredential) {
     SignalServiceProfile profile              = profileAndCredential.getProfile();
     ProfileKey           recipientProfileKey  = ProfileKeyUtil.profileKeyOrNull(recipient.getProfileKey());
 
@@ -136,12 +160,40 @@ public class RetrieveProfileJob extends BaseJob {
            : SignalServiceProfile.RequestType.PROFILE;
   }
 
-  private void handleGroupRecipient(Recipient group) throws IOException {
-    List<Recipient> recipients = DatabaseFactory.getGroupDatabase(context).getGroupMembers(group.requireGroupId(), false);
+  /**
+   * Fetches the member profiles in parallel, skipping members whose profile was fetched recently,
+   * and applies the results in one transaction.
+   */
+  private void handleGroupRecipient(Recipient group) throws InterruptedException {
+    RecipientDatabase recipientDatabase = DatabaseFactory.getRecipientDatabase(context);
+    List<Recipient>   members           = Stream.of(DatabaseFactory.getGroupDatabase(context).getGroupMembers(group.requireGroupId(), false))
+                                                .filter(Recipient::hasServiceIdentifier)
+                                                .toList();
+    Set<RecipientId>  recentlyFetched   = recipientDatabase.getProfilesFetchedSince(Stream.of(members).map(Recipient::getId).toList(),
+                                                                                    System.currentTimeMillis() - GROUP_MEMBER_REFRESH_INTERVAL);
+    List<Recipient>   toFetch           = Stream.of(members)
+                                                .filterNot(member -> recentlyFetched.contains(member.getId()))
+                                                .toList();
 
-    for (Recipient recipient : recipients) {
-      handleIndividualRecipient(recipient);
+    Log.i(TAG, "Fetching " + toFetch.size() + " of " + members.size() + " member profiles, skipping " + recentlyFetched.size() + " fetched recently.");
+
+    long startTime = System.currentTimeMillis();
+
+    RateLimitedFetcher.Results<Recipient, ProfileAndCredential> results = GROUP_MEMBER_FETCHER.fetchAll(toFetch, member -> ProfileUtil.retrieveProfile(context, member, getRequestType(member)));
+
+    recipientDatabase.runInTransaction(() -> {
+      for (Map.Entry<Recipient, ProfileAndCredential> entry : results.getSuccesses().entrySet()) {
+        applyProfile(entry.getKey(), entry.getValue());
+      }
+    });
+
+    recipientDatabase.markProfilesFetched(Stream.of(results.getSuccesses().keySet()).map(Recipient::getId).toList(), System.currentTimeMillis());
+
+    for (Map.Entry<Recipient, IOException> failure : results.getFailures().entrySet()) {
+      Log.w(TAG, "Failed to retrieve profile of " + failure.getKey().getId(), failure.getValue());
     }
+
+    Log.i(TAG, "Refreshed " + results.getSuccesses().size() + " member profiles in " + (System.currentTimeMillis() - startTime) + " ms, " + results.getFailures().size() + " failed.");
   }
 
   private void setIdentityKey(Recipient recipient, String identityKeyValue) {
@@ -0,0 +1,88 @@
+package org.thoughtcrime.securesms.keyvalue;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.whispersystems.signalservice.api.util.UuidUtil;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Account state that is read on hot paths. These values used to live in SharedPreferences, and
+ * {@link org.thoughtcrime.securesms.util.TextSecurePreferences} keeps fronting them so that it can
+ * fall back to the old preferences until they've been migrated.
+ */
+public final class AccountValues {
+
+  public  static final String LOCAL_NUMBER    = "account.local_number";
+  private static final String LOCAL_UUID      = "account.local_uuid";
+  private static final String PUSH_REGISTERED = "account.push_registered";
+  private static final String FCM_DISABLED    = "account.fcm_disabled";
+
+  private static final Set<String> KEYS = new HashSet<>(Arrays.asList(LOCAL_NUMBER, LOCAL_UUID, PUSH_REGISTERED, FCM_DISABLED));
+
+  private final KeyValueStore store;
+
+  AccountValues(@NonNull KeyValueStore store) {
+    this.store = store;
+  }
+
+  public void migrateFromPreferences(@Nullable String localNumber, @Nullable String localUuid, boolean pushRegistered, boolean fcmDisabled) {
+    store.beginWrite()
+         .putString(LOCAL_NUMBER, localNumber)
+         .putString(LOCAL_UUID, localUuid)
+         .putBoolean(PUSH_REGISTERED, pushRegistered)
+         .putBoolean(FCM_DISABLED, fcmDisabled)
+         .commit();
+  }
+
+  public @Nullable String getLocalNumber() {
+    return store.getString(LOCAL_NUMBER, null);
+  }
+
+  public void setLocalNumber(@Nullable String localNumber) {
+    store.beginWrite().putString(LOCAL_NUMBER, localNumber).apply();
+  }
+
+  public @Nullable UUID getLocalUuid() {
+    return UuidUtil.parseOrNull(store.getString(LOCAL_UUID, null));
+  }
+
+  public void setLocalUuid(@NonNull UUID uuid) {
+    store.beginWrite().putString(LOCAL_UUID, uuid.toString()).apply();
+  }
+
+  public boolean isPushRegistered() {
+    return store.getBoolean(PUSH_REGISTERED, false);
+  }
+
+  public void setPushRegistered(boolean registered) {
+    store.beginWrite().putBoolean(PUSH_REGISTERED, registered).apply();
+  }
+
+  public boolean isFcmDisabled() {
+    return store.getBoolean(FCM_DISABLED, false);
+  }
+
+  public void setFcmDisabled(boolean disabled) {
+    store.beginWrite().putBoolean(FCM_DISABLED, disabled).apply();
+  }
+
+  /**
+   * Runs the listener on the writing thread whenever one of these values changes, so callers can
+   * react to account changes instead of polling for them.
+   */
+  @AnyThread
+  public void registerChangeListener(@NonNull Runnable listener) {
+    store.registerListener(keys -> {
+      if (!Collections.disjoint(keys, KEYS)) {
+        listener.run();
+      }
+    });
+  }
+}
@@ -0,0 +1,41 @@
+package org.thoughtcrime.securesms.keyvalue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+public final class DirectoryValues {
+
+  private static final String ADDRESS_BOOK_SNAPSHOT  = "directory.address_book_snapshot";
+  private static final String LAST_FULL_REFRESH_TIME = "directory.last_full_refresh_time";
+
+  private final KeyValueStore store;
+
+  DirectoryValues(@NonNull KeyValueStore store) {
+    this.store = store;
+  }
+
+  /**
+   * @return The serialized address book snapshot taken at the end of the last successful refresh,
+   *         or null if there hasn't been one.
+   */
+  public @Nullable byte[] getAddressBookSnapshot() {
+    return store.getBlob(ADDRESS_BOOK_SNAPSHOT, null);
+  }
+
+  public long getLastFullRefreshTime() {
+    return store.getLong(LAST_FULL_REFRESH_TIME, 0);
+  }
+
+  public void onIncrementalRefreshCompleted(@NonNull byte[] addressBookSnapshot) {
+    store.beginWrite()
+         .putBlob(ADDRESS_BOOK_SNAPSHOT, addressBookSnapshot)
+         .apply();
+  }
+
+  public void onFullRefreshCompleted(@NonNull byte[] addressBookSnapshot) {
+    store.beginWrite()
+         .putBlob(ADDRESS_BOOK_SNAPSHOT, addressBookSnapshot)
+         .putLong(LAST_FULL_REFRESH_TIME, System.currentTimeMillis())
+         .apply();
+  }
+}
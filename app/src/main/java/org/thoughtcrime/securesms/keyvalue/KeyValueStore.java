@@ -15,7 +15,9 @@ import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 
@@ -25,7 +27,11 @@ import java.util.concurrent.ExecutorService;
  *
  * Implemented as a write-through cache that is safe to read and write to on the main thread.
  *
- * Writes are enqueued on a separate executor, but writes are finished up in
+ * Reads are served from an immutable snapshot published through a volatile field, so they never
+ * take a lock. Writes build a new snapshot under a lock and swap it in.
+ *
+ * Writes are enqueued on a separate executor, and writes that arrive before the executor gets to
+ * them are coalesced into a single transaction. Writes are finished up in
  * {@link SignalUncaughtExceptionHandler}, meaning all write should finish barring a native crash
  * or the system killing us unexpectedly (i.e. a force-stop).
  */
@@ -33,56 +39,57 @@ public final class KeyValueStore implements KeyValueReader {
 
   private static final String TAG = Log.tag(KeyValueStore.class);
 
-  private final ExecutorService  executor;
-  private final KeyValueDatabase database;
+  private final ExecutorService        executor;
+  private final KeyValueDatabase       database;
+  private final Object                 pendingLock;
+  private final List<OnChangeListener> listeners;
+
+  private volatile KeyValueDataSet snapshot;
 
-  private KeyValueDataSet dataSet;
+  private KeyValueDataSet pendingDataSet;
+  private Set<String>     pendingRemoves;
 
   public KeyValueStore(@NonNull Context context) {
-    this.executor = SignalExecutors.newCachedSingleThreadExecutor("signal-KeyValueStore");
-    this.database = DatabaseFactory.getKeyValueDatabase(context);
+    this.executor    = SignalExecutors.newCachedSingleThreadExecutor("signal-KeyValueStore");
+    this.database    = DatabaseFactory.getKeyValueDatabase(context);
+    this.pendingLock = new Object();
+    this.listeners   = new CopyOnWriteArrayList<>();
   }
 
   @AnyThread
   @Override
-  public synchronized byte[] getBlob(@NonNull String key, byte[] defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getBlob(key, defaultValue);
+  public byte[] getBlob(@NonNull String key, byte[] defaultValue) {
+    return getSnapshot().getBlob(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized boolean getBoolean(@NonNull String key, boolean defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getBoolean(key, defaultValue);
+  public boolean getBoolean(@NonNull String key, boolean defaultValue) {
+    return getSnapshot().getBoolean(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized float getFloat(@NonNull String key, float defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getFloat(key, defaultValue);
+  public float getFloat(@NonNull String key, float defaultValue) {
+    return getSnapshot().getFloat(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized int getInteger(@NonNull String key, int defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getInteger(key, defaultValue);
+  public int getInteger(@NonNull String key, int defaultValue) {
+    return getSnapshot().getInteger(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized long getLong(@NonNull String key, long defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getLong(key, defaultValue);
+  public long getLong(@NonNull String key, long defaultValue) {
+    return getSnapshot().getLong(key, defaultValue);
   }
 
   @AnyThread
   @Override
-  public synchronized String getString(@NonNull String key, String defaultValue) {
-    initializeIfNecessary();
-    return dataSet.getString(key, defaultValue);
+  public String getString(@NonNull String key, String defaultValue) {
+    return getSnapshot().getString(key, defaultValue);
   }
 
   /**
@@ -96,24 +103,26 @@ public final class KeyValueStore implements KeyValueReader {
 
   /**
    * @return A reader that lets you read from an immutable snapshot of the store, ensuring that data
-   *         is consistent between reads. If you're only reading a single value, it is more
-   *         efficient to use the various get* methods instead.
+   *         is consistent between reads.
    */
   @AnyThread
-  synchronized @NonNull KeyValueReader beginRead() {
-    initializeIfNecessary();
-
-    KeyValueDataSet copy = new KeyValueDataSet();
-    copy.putAll(dataSet);
+  @NonNull KeyValueReader beginRead() {
+    return getSnapshot();
+  }
 
-    return copy;
+  /**
+   * Registers a listener that is called on the writing thread after every write.
+   */
+  @AnyThread
+  void registerListener(@NonNull OnChangeListener listener) {
+    listeners.add(listener);
   }
 
   /**
    * Ensures that any pending writes (such as those made via {@link Writer#apply()}) are finished.
    */
   @AnyThread
-  synchronized void blockUntilAllWritesFinished() {
+  void blockUntilAllWritesFinished() {
     CountDownLatch latch = new CountDownLatch(1);
 
     executor.execute(latch::countDown);
@@ -125,19 +134,87 @@ public final class KeyValueStore implements KeyValueReader {
     }
   }
 
+  private void write(@NonNull KeyValueDataSet newDataSet, @NonNull Collection<String> removes) {
+    synchronized (this) {
+      KeyValueDataSet updated = new KeyValueDataSet();
+      updated.putAll(getSnapshot());
+      updated.putAll(newDataSet);
+      updated.removeAll(removes);
+
+      snapshot = updated;
+
+      enqueuePersist(newDataSet, removes);
+    }
+
+    if (!listeners.isEmpty()) {
+      Set<String> keys = new HashSet<>(newDataSet.getValues().keySet());
+      keys.addAll(removes);
+
+      for (OnChangeListener listener : listeners) {
+        listener.onChanged(keys);
+      }
+    }
+  }
+
+  /**
+   * Merges the change into the set waiting to be written, and only schedules a write if there
+   * isn't one waiting already.
+   */
+  private void enqueuePersist(@NonNull KeyValueDataSet newDataSet, @NonNull Collection<String> removes) {
+    synchronized (pendingLock) {
+      boolean scheduled = pendingDataSet != null;
+
+      if (!scheduled) {
+        pendingDataSet = new KeyValueDataSet();
+        pendingRemoves = new HashSet<>();
+      }
+
+      pendingDataSet.removeAll(removes);
+      pendingRemoves.removeAll(newDataSet.getValues().keySet());
+
+      pendingDataSet.putAll(newDataSet);
+      pendingRemoves.addAll(removes);
+
+      if (scheduled) return;
+    }
+
+    executor.execute(this::persistPending);
+  }
+
+  @WorkerThread
+  private void persistPending() {
+    KeyValueDataSet dataSet;
+    Set<String>     removes;
+
+    synchronized (pendingLock) {
+      dataSet = pendingDataSet;
+      removes = pendingRemoves;
+
+      pendingDataSet = null;
+      pendingRemoves = null;
+    }
+
+    database.writeDataSet(dataSet, removes);
+  }
+
+  private @NonNull KeyValueDataSet getSnapshot() {
+    KeyValueDataSet current = snapshot;
 
-  private synchronized void write(@NonNull KeyValueDataSet newDataSet, @NonNull Collection<String> removes) {
-    initializeIfNecessary();
+    if (current != null) {
+      return current;
+    }
 
-    dataSet.putAll(newDataSet);
-    dataSet.removeAll(removes);
+    synchronized (this) {
+      if (snapshot == null) {
+        snapshot = database.getDataSet();
+      }
 
-    executor.execute(() -> database.writeDataSet(newDataSet, removes));
+      return snapshot;
+    }
   }
 
-  private void initializeIfNecessary() {
-    if (dataSet != null) return;
-    this.dataSet = database.getDataSet();
+  interface OnChangeListener {
+    void onChanged(@NonNull Set<String> keys);
   }
 
   class Writer {
@@ -13,6 +13,7 @@ public final class SignalStore {
 
   private static final String LAST_PREKEY_REFRESH_TIME      = "last_prekey_refresh_time";
   private static final String MESSAGE_REQUEST_ENABLE_TIME   = "message_request_enable_time";
+  private static final String LAST_STORAGE_REBUILD_TIME     = "last_storage_rebuild_time";
 
   private SignalStore() {}
 
@@ -21,6 +22,10 @@ public final class SignalStore {
     storageServiceValues().setFirstStorageSyncCompleted(false);
   }
 
+  public static @NonNull AccountValues accountValues() {
+    return new AccountValues(getStore());
+  }
+
   public static @NonNull KbsValues kbsValues() {
     return new KbsValues(getStore());
   }
@@ -41,6 +46,10 @@ public final class SignalStore {
     return new StorageServiceValues(getStore());
   }
 
+  public static @NonNull DirectoryValues directoryValues() {
+    return new DirectoryValues(getStore());
+  }
+
   public static long getLastPrekeyRefreshTime() {
     return getStore().getLong(LAST_PREKEY_REFRESH_TIME, 0);
   }
@@ -57,6 +66,14 @@ public final class SignalStore {
     putLong(MESSAGE_REQUEST_ENABLE_TIME, time);
   }
 
+  public static long getLastStorageRebuildTime() {
+    return getStore().getLong(LAST_STORAGE_REBUILD_TIME, 0);
+  }
+
+  public static void setLastStorageRebuildTime(long time) {
+    putLong(LAST_STORAGE_REBUILD_TIME, time);
+  }
+
   /**
    * Ensures any pending writes are finished. Only intended to be called by
    * {@link SignalUncaughtExceptionHandler}.
@@ -0,0 +1,35 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import androidx.annotation.NonNull;
+
+import org.whispersystems.libsignal.util.guava.Optional;
+
+/**
+ * The OpenGraph title and image of a page, as used to build a {@link LinkPreview}.
+ */
+public final class LinkPreviewMetadata {
+
+  private final Optional<String> title;
+  private final Optional<String> imageUrl;
+
+  public LinkPreviewMetadata(@NonNull Optional<String> title, @NonNull Optional<String> imageUrl) {
+    this.title    = title;
+    this.imageUrl = imageUrl;
+  }
+
+  static @NonNull LinkPreviewMetadata empty() {
+    return new LinkPreviewMetadata(Optional.absent(), Optional.absent());
+  }
+
+  public @NonNull Optional<String> getTitle() {
+    return title;
+  }
+
+  public @NonNull Optional<String> getImageUrl() {
+    return imageUrl;
+  }
+
+  boolean isEmpty() {
+    return !title.isPresent() && !imageUrl.isPresent();
+  }
+}
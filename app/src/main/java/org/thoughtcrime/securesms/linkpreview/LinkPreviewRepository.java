@@ -4,16 +4,20 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import android.text.Html;
 import android.text.TextUtils;
 
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.FutureTarget;
+import com.bumptech.glide.signature.ObjectKey;
 
 import org.thoughtcrime.securesms.attachments.Attachment;
 import org.thoughtcrime.securesms.attachments.UriAttachment;
 import org.thoughtcrime.securesms.blurhash.BlurHash;
 import org.thoughtcrime.securesms.database.AttachmentDatabase;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
+import org.thoughtcrime.securesms.database.LinkPreviewDatabase;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.giph.model.ChunkedImageUrl;
 import org.thoughtcrime.securesms.logging.Log;
@@ -41,6 +45,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,6 +55,7 @@ import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 public class LinkPreviewRepository {
 
@@ -56,14 +63,29 @@ public class LinkPreviewRepository {
 
   private static final CacheControl NO_CACHE = new CacheControl.Builder().noCache().build();
 
+  private static final long METADATA_TTL    = TimeUnit.DAYS.toMillis(1);
+  private static final long THUMBNAIL_TTL   = TimeUnit.DAYS.toMillis(1);
+  private static final int  MAX_HEAD_LENGTH = 1024 * 1024;
+
+  /**
+   * Shared by all repositories, so that a link being previewed in several conversations at once
+   * is only fetched once.
+   */
+  private static final SingleFlightRequests<String, LinkPreviewMetadata> METADATA_REQUESTS = new SingleFlightRequests<>();
+
   private final OkHttpClient client;
 
   public LinkPreviewRepository() {
-    this.client = new OkHttpClient.Builder()
-                                  .proxySelector(new ContentProxySelector())
-                                  .addNetworkInterceptor(new ContentProxySafetyInterceptor())
-                                  .cache(null)
-                                  .build();
+    this(new OkHttpClient.Builder()
+                         .proxySelector(new ContentProxySelector())
+                         .addNetworkInterceptor(new ContentProxySafetyInterceptor())
+                         .cache(null)
+                         .build());
+  }
+
+  @VisibleForTesting
+  LinkPreviewRepository(@NonNull OkHttpClient client) {
+    this.client = client;
   }
 
   RequestController getLinkPreview(@NonNull Context context, @NonNull String url, @NonNull Callback<Optional<LinkPreview>> callback) {
@@ -80,7 +102,7 @@ public class LinkPreviewRepository {
     if (StickerUrl.isValidShareLink(url)) {
       metadataController = fetchStickerPackLinkPreview(context, url, callback);
     } else {
-      metadataController = fetchMetadata(url, metadata -> {
+      metadataController = fetchMetadata(DatabaseFactory.getLinkPreviewDatabase(context), SignalExecutors.BOUNDED, url, metadata -> {
         if (metadata.isEmpty()) {
           callback.onComplete(Optional.absent());
           return;
@@ -107,49 +129,101 @@ public class LinkPreviewRepository {
     return compositeController;
   }
 
-  private @NonNull RequestController fetchMetadata(@NonNull String url, Callback<Metadata> callback) {
+  /**
+   * Metadata fetched within {@link #METADATA_TTL} is served from {@link LinkPreviewDatabase}, and
+   * concurrent fetches of the same url share one request.
+   */
+  @VisibleForTesting
+  @NonNull RequestController fetchMetadata(@NonNull LinkPreviewDatabase database,
+                                           @NonNull Executor executor,
+                                           @NonNull String url,
+                                           @NonNull Callback<LinkPreviewMetadata> callback)
+  {
+    return METADATA_REQUESTS.join(url, callback, result -> {
+      CompositeRequestController controller = new CompositeRequestController();
+
+      executor.execute(() -> {
+        LinkPreviewMetadata cached = database.get(url, System.currentTimeMillis() - METADATA_TTL);
+
+        if (cached != null) {
+          Log.i(TAG, "Using cached metadata.");
+          result.onComplete(cached);
+          return;
+        }
+
+        controller.addController(requestMetadata(url, metadata -> {
+          long now = System.currentTimeMillis();
+          database.put(url, metadata, now, now - METADATA_TTL);
+          result.onComplete(metadata);
+        }, result));
+      });
+
+      return controller;
+    });
+  }
+
+  /**
+   * @param onSuccess Called with the metadata of a page that was fetched successfully, even if it
+   *                  has none.
+   * @param onFailure Called with empty metadata if the page could not be fetched.
+   */
+  private @NonNull RequestController requestMetadata(@NonNull String url, @NonNull Callback<LinkPreviewMetadata> onSuccess, @NonNull Callback<LinkPreviewMetadata> onFailure) {
     Call call = client.newCall(new Request.Builder().url(url).cacheControl(NO_CACHE).build());
 
     call.enqueue(new okhttp3.Callback() {
       @Override
       public void onFailure(@NonNull Call call, @NonNull IOException e) {
         Log.w(TAG, "Request failed.", e);
-        callback.onComplete(Metadata.empty());
+        onFailure.onComplete(LinkPreviewMetadata.empty());
       }
 
       @Override
-      public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-        if (!response.isSuccessful()) {
-          Log.w(TAG, "Non-successful response. Code: " + response.code());
-          callback.onComplete(Metadata.empty());
-          return;
-        } else if (response.body() == null) {
-          Log.w(TAG, "No response body.");
-          callback.onComplete(Metadata.empty());
+      public void onResponse(@NonNull Call call, @NonNull Response response) {
+        String head;
+
+        try (ResponseBody body = response.body()) {
+          if (!response.isSuccessful()) {
+            Log.w(TAG, "Non-successful response. Code: " + response.code());
+            onFailure.onComplete(LinkPreviewMetadata.empty());
+            return;
+          } else if (body == null) {
+            Log.w(TAG, "No response body.");
+            onFailure.onComplete(LinkPreviewMetadata.empty());
+            return;
+          }
+
+          head = LinkPreviewUtil.readHead(body.charStream(), MAX_HEAD_LENGTH);
+        } catch (IOException e) {
+          Log.w(TAG, "Failed to read response.", e);
+          onFailure.onComplete(LinkPreviewMetadata.empty());
           return;
         }
 
-        String            body     = response.body().string();
-        Optional<String>  title    = getProperty(body, "title");
-        Optional<String>  imageUrl = getProperty(body, "image");
+        Optional<String> title    = getProperty(head, "title");
+        Optional<String> imageUrl = getProperty(head, "image");
 
         if (imageUrl.isPresent() && !LinkPreviewUtil.isWhitelistedMediaUrl(imageUrl.get())) {
           Log.i(TAG, "Image URL was invalid or for a non-whitelisted domain. Skipping.");
           imageUrl = Optional.absent();
         }
 
-        callback.onComplete(new Metadata(title, imageUrl));
+        onSuccess.onComplete(new LinkPreviewMetadata(title, imageUrl));
       }
     });
 
     return new CallRequestController(call);
   }
 
+  /**
+   * Thumbnails are kept in Glide's encrypted disk cache. The signature changes every
+   * {@link #THUMBNAIL_TTL}, after which older entries are no longer used and age out of the cache.
+   */
   private @NonNull RequestController fetchThumbnail(@NonNull Context context, @NonNull String imageUrl, @NonNull Callback<Optional<Attachment>> callback) {
     FutureTarget<Bitmap> bitmapFuture = GlideApp.with(context).asBitmap()
                                                               .load(new ChunkedImageUrl(imageUrl))
+                                                              .signature(new ObjectKey(System.currentTimeMillis() / THUMBNAIL_TTL))
                                                               .skipMemoryCache(true)
-                                                              .diskCacheStrategy(DiskCacheStrategy.NONE)
+                                                              .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
                                                               .centerInside()
                                                               .submit(1024, 1024);
 
@@ -267,32 +341,6 @@ public class LinkPreviewRepository {
     return () -> Log.i(TAG, "Cancelled sticker pack link preview fetch -- no effect.");
   }
 
-  private static class Metadata {
-    private final Optional<String> title;
-    private final Optional<String> imageUrl;
-
-    Metadata(Optional<String> title, Optional<String> imageUrl) {
-      this.title    = title;
-      this.imageUrl = imageUrl;
-    }
-
-    static Metadata empty() {
-      return new Metadata(Optional.absent(), Optional.absent());
-    }
-
-    Optional<String> getTitle() {
-      return title;
-    }
-
-    Optional<String> getImageUrl() {
-      return imageUrl;
-    }
-
-    boolean isEmpty() {
-      return !title.isPresent() && !imageUrl.isPresent();
-    }
-  }
-
   interface Callback<T> {
     void onComplete(@NonNull T result);
   }
@@ -11,6 +11,8 @@ import com.annimon.stream.Stream;
 
 import org.thoughtcrime.securesms.stickers.StickerUrl;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -24,6 +26,9 @@ public final class LinkPreviewUtil {
   private static final Pattern ALL_ASCII_PATTERN     = Pattern.compile("^[\\x00-\\x7F]*$");
   private static final Pattern ALL_NON_ASCII_PATTERN = Pattern.compile("^[^\\x00-\\x7F]*$");
 
+  private static final String HEAD_END   = "</head";
+  private static final String BODY_START = "<body";
+
   /**
    * @return All whitelisted URLs in the source text.
    */
@@ -83,4 +88,56 @@ public final class LinkPreviewUtil {
       return false;
     }
   }
+
+  /**
+   * Reads an HTML document up to the end of its head, which is where the OpenGraph tags are, so
+   * that the rest of the page does not have to be downloaded or kept in memory.
+   *
+   * @return The document up to the first {@code </head} or {@code <body}, or its first
+   *         {@code maxLength} characters if neither is found before then.
+   */
+  public static @NonNull String readHead(@NonNull Reader reader, int maxLength) throws IOException {
+    StringBuilder head   = new StringBuilder();
+    char[]        buffer = new char[4096];
+    int           read;
+
+    while (head.length() < maxLength && (read = reader.read(buffer, 0, Math.min(buffer.length, maxLength - head.length()))) != -1) {
+      int searchFrom = Math.max(0, head.length() - HEAD_END.length() + 1);
+
+      head.append(buffer, 0, read);
+
+      int headEnd = indexOfHeadEnd(head, searchFrom);
+
+      if (headEnd != -1) {
+        head.setLength(headEnd);
+        break;
+      }
+    }
+
+    return head.toString();
+  }
+
+  private static int indexOfHeadEnd(@NonNull CharSequence html, int from) {
+    for (int i = from; i < html.length(); i++) {
+      if (html.charAt(i) == '<' && (startsWithIgnoreCase(html, i, HEAD_END) || startsWithIgnoreCase(html, i, BODY_START))) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private static boolean startsWithIgnoreCase(@NonNull CharSequence text, int offset, @NonNull String prefix) {
+    if (text.length() - offset < prefix.length()) {
+      return false;
+    }
+
+    for (int i = 0; i < prefix.length(); i++) {
+      if (Character.toLowerCase(text.charAt(offset + i)) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
 }
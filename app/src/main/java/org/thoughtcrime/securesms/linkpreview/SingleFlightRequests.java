@@ -0,0 +1,108 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.thoughtcrime.securesms.net.RequestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces concurrent requests for the same key, so that the work is only started once and every
+ * caller gets its result. Cancelling only detaches that caller, and the work itself is cancelled
+ * once no callers are left.
+ */
+final class SingleFlightRequests<K, V> {
+
+  private final Map<K, Flight<V>> flights = new HashMap<>();
+
+  @NonNull RequestController join(@NonNull K key, @NonNull LinkPreviewRepository.Callback<V> callback, @NonNull Work<V> work) {
+    Flight<V> flight;
+    boolean   start;
+
+    synchronized (flights) {
+      flight = flights.get(key);
+      start  = flight == null;
+
+      if (start) {
+        flight = new Flight<>();
+        flights.put(key, flight);
+      }
+
+      flight.callbacks.add(callback);
+    }
+
+    if (start) {
+      Flight<V>         started    = flight;
+      RequestController controller = work.start(result -> complete(key, started, result));
+      boolean           canceled;
+
+      synchronized (flights) {
+        started.controller = controller;
+        canceled           = started.canceled;
+      }
+
+      if (canceled) {
+        controller.cancel();
+      }
+    }
+
+    Flight<V> joined = flight;
+    return () -> leave(key, joined, callback);
+  }
+
+  private void complete(@NonNull K key, @NonNull Flight<V> flight, @NonNull V result) {
+    List<LinkPreviewRepository.Callback<V>> callbacks;
+
+    synchronized (flights) {
+      if (flights.get(key) == flight) {
+        flights.remove(key);
+      }
+
+      callbacks = new ArrayList<>(flight.callbacks);
+      flight.callbacks.clear();
+    }
+
+    for (LinkPreviewRepository.Callback<V> callback : callbacks) {
+      callback.onComplete(result);
+    }
+  }
+
+  private void leave(@NonNull K key, @NonNull Flight<V> flight, @NonNull LinkPreviewRepository.Callback<V> callback) {
+    RequestController controller;
+
+    synchronized (flights) {
+      if (!flight.callbacks.remove(callback) || !flight.callbacks.isEmpty()) {
+        return;
+      }
+
+      if (flights.get(key) == flight) {
+        flights.remove(key);
+      }
+
+      flight.canceled = true;
+      controller      = flight.controller;
+    }
+
+    if (controller != null) {
+      controller.cancel();
+    }
+  }
+
+  interface Work<V> {
+    /**
+     * Starts the work, which has to call back exactly once unless it is cancelled.
+     */
+    @NonNull RequestController start(@NonNull LinkPreviewRepository.Callback<V> callback);
+  }
+
+  private static final class Flight<V> {
+    private final List<LinkPreviewRepository.Callback<V>> callbacks = new ArrayList<>();
+
+    private @Nullable RequestController controller;
+    private           boolean           canceled;
+  }
+}
@@ -1,7 +1,6 @@
 package org.thoughtcrime.securesms.mediapreview;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.net.Uri;
 
 import androidx.annotation.NonNull;
@@ -11,6 +10,7 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import org.thoughtcrime.securesms.database.MediaDatabase.MediaRecord;
+import org.thoughtcrime.securesms.database.loaders.PagedGalleryMedia;
 import org.thoughtcrime.securesms.mediasend.Media;
 import org.whispersystems.libsignal.util.guava.Optional;
 
@@ -24,12 +24,12 @@ public class MediaPreviewViewModel extends ViewModel {
 
   private boolean leftIsRecent;
 
-  private @Nullable Cursor cursor;
+  private @Nullable PagedGalleryMedia galleryMedia;
 
-  public void setCursor(@NonNull Context context, @Nullable Cursor cursor, boolean leftIsRecent) {
-    boolean firstLoad = (this.cursor == null) && (cursor != null);
+  public void setGalleryMedia(@NonNull Context context, @Nullable PagedGalleryMedia galleryMedia, boolean leftIsRecent) {
+    boolean firstLoad = (this.galleryMedia == null) && (galleryMedia != null);
 
-    this.cursor       = cursor;
+    this.galleryMedia = galleryMedia;
     this.leftIsRecent = leftIsRecent;
 
     if (firstLoad) {
@@ -38,24 +38,27 @@ public class MediaPreviewViewModel extends ViewModel {
   }
 
   public void setActiveAlbumRailItem(@NonNull Context context, int activePosition) {
-    if (cursor == null) {
+    if (galleryMedia == null) {
       previewData.postValue(new PreviewData(Collections.emptyList(), null, 0));
       return;
     }
 
-    activePosition = getCursorPosition(activePosition);
+    activePosition = getMediaPosition(activePosition);
 
-    cursor.moveToPosition(activePosition);
+    MediaRecord activeRecord = galleryMedia.get(activePosition);
 
-    MediaRecord       activeRecord = MediaRecord.from(context, cursor);
-    LinkedList<Media> rail         = new LinkedList<>();
+    if (activeRecord == null) {
+      return;
+    }
+
+    LinkedList<Media> rail = new LinkedList<>();
 
     Media activeMedia = toMedia(activeRecord);
     if (activeMedia != null) rail.add(activeMedia);
 
-    while (cursor.moveToPrevious()) {
-      MediaRecord record = MediaRecord.from(context, cursor);
-      if (record.getAttachment().getMmsId() == activeRecord.getAttachment().getMmsId()) {
+    for (int position = activePosition - 1; position >= 0; position--) {
+      MediaRecord record = galleryMedia.get(position);
+      if (record != null && record.getAttachment().getMmsId() == activeRecord.getAttachment().getMmsId()) {
         Media media = toMedia(record);
         if (media != null) rail.addFirst(media);
       } else {
@@ -63,11 +66,9 @@ public class MediaPreviewViewModel extends ViewModel {
       }
     }
 
-    cursor.moveToPosition(activePosition);
-
-    while (cursor.moveToNext()) {
-      MediaRecord record = MediaRecord.from(context, cursor);
-      if (record.getAttachment().getMmsId() == activeRecord.getAttachment().getMmsId()) {
+    for (int position = activePosition + 1; position < galleryMedia.size(); position++) {
+      MediaRecord record = galleryMedia.get(position);
+      if (record != null && record.getAttachment().getMmsId() == activeRecord.getAttachment().getMmsId()) {
         Media media = toMedia(record);
         if (media != null) rail.addLast(media);
       } else {
@@ -88,13 +89,13 @@ public class MediaPreviewViewModel extends ViewModel {
     previewData.postValue(previewData.getValue());
   }
 
-  private int getCursorPosition(int position) {
-    if (cursor == null) {
+  private int getMediaPosition(int position) {
+    if (galleryMedia == null) {
       return 0;
     }
 
     if (leftIsRecent) return position;
-    else              return cursor.getCount() - 1 - position;
+    else              return galleryMedia.size() - 1 - position;
   }
 
   private @Nullable Media toMedia(@NonNull MediaRecord mediaRecord) {
@@ -0,0 +1,56 @@
+package org.thoughtcrime.securesms.migrations;
+
+import androidx.annotation.NonNull;
+
+import org.thoughtcrime.securesms.jobmanager.Data;
+import org.thoughtcrime.securesms.jobmanager.Job;
+import org.thoughtcrime.securesms.keyvalue.AccountValues;
+import org.thoughtcrime.securesms.logging.Log;
+import org.thoughtcrime.securesms.util.TextSecurePreferences;
+
+/**
+ * Moves the hot account preferences (local number, UUID, push registration, FCM state) out of
+ * SharedPreferences and into {@link AccountValues}.
+ */
+public class AccountValuesMigrationJob extends MigrationJob {
+
+  private static final String TAG = Log.tag(AccountValuesMigrationJob.class);
+
+  public static final String KEY = "AccountValuesMigrationJob";
+
+  AccountValuesMigrationJob() {
+    this(new Parameters.Builder().build());
+  }
+
+  private AccountValuesMigrationJob(@NonNull Parameters parameters) {
+    super(parameters);
+  }
+
+  @Override
+  public boolean isUiBlocking() {
+    return false;
+  }
+
+  @Override
+  public @NonNull String getFactoryKey() {
+    return KEY;
+  }
+
+  @Override
+  public void performMigration() {
+    Log.i(TAG, "Migrating account values.");
+    TextSecurePreferences.migrateAccountValues(context);
+  }
+
+  @Override
+  boolean shouldRetry(@NonNull Exception e) {
+    return false;
+  }
+
+  public static class Factory implements Job.Factory<AccountValuesMigrationJob> {
+    @Override
+    public @NonNull AccountValuesMigrationJob create(@NonNull Parameters parameters, @NonNull Data data) {
+      return new AccountValuesMigrationJob(parameters);
+    }
+  }
+}
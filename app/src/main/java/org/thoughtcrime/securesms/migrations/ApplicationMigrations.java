@@ -40,7 +40,7 @@ public class ApplicationMigrations {
 
   private static final int LEGACY_CANONICAL_VERSION = 455;
 
-  public static final int CURRENT_VERSION = 12;
+  public static final int CURRENT_VERSION = 13;
 
   private static final class Version {
     static final int LEGACY             = 1;
@@ -55,6 +55,7 @@ public class ApplicationMigrations {
     static final int SWOON_STICKERS     = 10;
     static final int STORAGE_SERVICE    = 11;
     static final int STORAGE_KEY_ROTATE = 12;
+    static final int ACCOUNT_VALUES     = 13;
   }
 
   /**
@@ -215,6 +216,10 @@ public class ApplicationMigrations {
       jobs.put(Version.STORAGE_KEY_ROTATE, new StorageKeyRotationMigrationJob());
     }
 
+    if (lastSeenVersion < Version.ACCOUNT_VALUES) {
+      jobs.put(Version.ACCOUNT_VALUES, new AccountValuesMigrationJob());
+    }
+
     return jobs;
   }
 
@@ -164,4 +164,8 @@ public class PartAuthority {
     }
     return false;
   }
+
+  public static boolean isAttachmentUri(final @NonNull Uri uri) {
+    return uriMatcher.match(uri) == PART_ROW;
+  }
 }
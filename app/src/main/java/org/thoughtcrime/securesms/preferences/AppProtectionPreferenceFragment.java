@@ -11,6 +11,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.preference.CheckBoxPreference;
 import androidx.preference.Preference;
 
+import com.bumptech.glide.Glide;
 import com.google.android.material.snackbar.Snackbar;
 
 import org.thoughtcrime.securesms.ApplicationContext;
@@ -20,6 +21,7 @@ import org.thoughtcrime.securesms.PassphraseChangeActivity;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.components.SwitchPreferenceCompat;
 import org.thoughtcrime.securesms.crypto.MasterSecretUtil;
+import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobs.MultiDeviceConfigurationUpdateJob;
 import org.thoughtcrime.securesms.jobs.RefreshAttributesJob;
@@ -30,6 +32,7 @@ import org.thoughtcrime.securesms.service.KeyCachingService;
 import org.thoughtcrime.securesms.util.CommunicationActions;
 import org.thoughtcrime.securesms.util.FeatureFlags;
 import org.thoughtcrime.securesms.util.TextSecurePreferences;
+import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -257,6 +260,14 @@ public class AppProtectionPreferenceFragment extends CorrectedPreferenceFragment
                                                                                         TextSecurePreferences.isShowUnidentifiedDeliveryIndicatorsEnabled(requireContext()),
                                                                                         enabled));
 
+      if (!enabled) {
+        Context context = requireContext().getApplicationContext();
+        SignalExecutors.BOUNDED.execute(() -> {
+          DatabaseFactory.getLinkPreviewDatabase(context).deleteAll();
+          Glide.get(context).clearDiskCache();
+        });
+      }
+
       return true;
     }
   }
@@ -13,13 +13,17 @@ import androidx.lifecycle.ViewModelProviders;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.database.DatabaseFactory;
 import org.thoughtcrime.securesms.database.MediaDatabase;
+import org.thoughtcrime.securesms.keyvalue.SignalStore;
 import org.thoughtcrime.securesms.preferences.widgets.StorageGraphView;
 import org.thoughtcrime.securesms.util.concurrent.SignalExecutors;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public class ApplicationPreferencesViewModel extends ViewModel {
 
+  private static final long STORAGE_REBUILD_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
   private final MutableLiveData<StorageGraphView.StorageBreakdown> storageBreakdown = new MutableLiveData<>();
 
   LiveData<StorageGraphView.StorageBreakdown> getStorageBreakdown() {
@@ -30,19 +34,35 @@ public class ApplicationPreferencesViewModel extends ViewModel {
     return ViewModelProviders.of(activity).get(ApplicationPreferencesViewModel.class);
   }
 
+  /**
+   * Posts the maintained storage counters right away. At most once a day, the counters are then
+   * rebuilt from the attachment table, and posted again if they had drifted.
+   */
   void refreshStorageBreakdown(@NonNull Context context) {
     SignalExecutors.BOUNDED.execute(() -> {
-      MediaDatabase.StorageBreakdown breakdown = DatabaseFactory.getMediaDatabase(context)
-                                                                .getStorageBreakdown();
+      MediaDatabase mediaDatabase = DatabaseFactory.getMediaDatabase(context);
+
+      storageBreakdown.postValue(toGraphBreakdown(context, mediaDatabase.getStorageBreakdown()));
+
+      long now         = System.currentTimeMillis();
+      long lastRebuild = SignalStore.getLastStorageRebuildTime();
 
-      StorageGraphView.StorageBreakdown latestStorageBreakdown = new StorageGraphView.StorageBreakdown(Arrays.asList(
-        new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_photos), breakdown.getPhotoSize()),
-        new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_videos), breakdown.getVideoSize()),
-        new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_files), breakdown.getDocumentSize()),
-        new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_audio), breakdown.getAudioSize())
-      ));
+      if (now - lastRebuild > STORAGE_REBUILD_INTERVAL || now < lastRebuild) {
+        SignalStore.setLastStorageRebuildTime(now);
 
-      storageBreakdown.postValue(latestStorageBreakdown);
+        if (mediaDatabase.rebuildStorageBreakdown()) {
+          storageBreakdown.postValue(toGraphBreakdown(context, mediaDatabase.getStorageBreakdown()));
+        }
+      }
     });
   }
+
+  private static @NonNull StorageGraphView.StorageBreakdown toGraphBreakdown(@NonNull Context context, @NonNull MediaDatabase.StorageBreakdown breakdown) {
+    return new StorageGraphView.StorageBreakdown(Arrays.asList(
+      new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_photos), breakdown.getPhotoSize()),
+      new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_videos), breakdown.getVideoSize()),
+      new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_files), breakdown.getDocumentSize()),
+      new StorageGraphView.Entry(ContextCompat.getColor(context, R.color.storage_color_audio), breakdown.getAudioSize())
+    ));
+  }
 }
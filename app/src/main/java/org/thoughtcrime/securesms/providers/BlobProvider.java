@@ -15,6 +15,7 @@ import org.thoughtcrime.securesms.crypto.AttachmentSecret;
 import org.thoughtcrime.securesms.crypto.AttachmentSecretProvider;
 import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
 import org.thoughtcrime.securesms.crypto.ModernEncryptingPartOutputStream;
+import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.util.IOFunction;
 import org.thoughtcrime.securesms.util.Util;
@@ -27,11 +28,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Allows for the creation and retrieval of blobs.
@@ -60,7 +63,14 @@ public class BlobProvider {
 
   private static final BlobProvider INSTANCE = new BlobProvider();
 
-  private final Map<Uri, byte[]> memoryBlobs = new HashMap<>();
+  private static final long MEMORY_BUDGET_BYTES = Math.min(Runtime.getRuntime().maxMemory() / 8, 64 * 1024 * 1024);
+
+  private final Map<Uri, byte[]>      memoryBlobs   = new ConcurrentHashMap<>();
+  private final Map<Uri, SpilledBlob> spilledBlobs  = new ConcurrentHashMap<>();
+  private final Queue<Uri>            spillOrder    = new ConcurrentLinkedQueue<>();
+  private final AtomicLong            memoryBytes   = new AtomicLong();
+  private final AtomicLong            spilledBytes  = new AtomicLong();
+  private final Executor              spillExecutor = SignalExecutors.newCachedSingleThreadExecutor("signal-blob-spill");
 
 
   public static BlobProvider getInstance() {
@@ -85,7 +95,7 @@ public class BlobProvider {
    * Retrieve a stream for the content with the specified URI.
    * @throws IOException If the stream fails to open or the spec of the URI doesn't match.
    */
-  public synchronized @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri) throws IOException {
+  public @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri) throws IOException {
     return getStream(context, uri, 0L);
   }
 
@@ -93,15 +103,14 @@ public class BlobProvider {
    * Retrieve a stream for the content with the specified URI starting from the specified position.
    * @throws IOException If the stream fails to open or the spec of the URI doesn't match.
    */
-  public synchronized @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri, long position) throws IOException {
+  public @NonNull InputStream getStream(@NonNull Context context, @NonNull Uri uri, long position) throws IOException {
     return getBlobRepresentation(context,
                                  uri,
                                  bytes -> {
-                                   ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(bytes);
-                                   if (byteArrayInputStream.skip(position) != position) {
+                                   if (position < 0 || position > bytes.length) {
                                      throw new IOException("Failed to skip to position " + position + " for: " + uri);
                                    }
-                                   return byteArrayInputStream;
+                                   return new ByteArrayInputStream(bytes, (int) position, bytes.length - (int) position);
                                  },
                                  file -> ModernDecryptingPartInputStream.createFor(getAttachmentSecret(context),
                                                                                    file,
@@ -109,33 +118,36 @@ public class BlobProvider {
   }
 
   @RequiresApi(23)
-  public synchronized @NonNull MediaDataSource getMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
+  public @NonNull MediaDataSource getMediaDataSource(@NonNull Context context, @NonNull Uri uri) throws IOException {
     return getBlobRepresentation(context,
                                  uri,
                                  ByteArrayMediaDataSource::new,
                                  file -> EncryptedMediaDataSource.createForDiskBlob(getAttachmentSecret(context), file));
   }
 
-  private synchronized @NonNull <T> T getBlobRepresentation(@NonNull Context context,
-                                                            @NonNull Uri uri,
-                                                            @NonNull IOFunction<byte[], T> getByteRepresentation,
-                                                            @NonNull IOFunction<File, T> getFileRepresentation)
+  private @NonNull <T> T getBlobRepresentation(@NonNull Context context,
+                                               @NonNull Uri uri,
+                                               @NonNull IOFunction<byte[], T> getByteRepresentation,
+                                               @NonNull IOFunction<File, T> getFileRepresentation)
       throws IOException
   {
     if (isAuthority(uri)) {
       StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
 
       if (storageType.isMemory()) {
-        byte[] data = memoryBlobs.get(uri);
+        byte[] data = storageType == StorageType.SINGLE_USE_MEMORY ? removeFromMemory(uri) : memoryBlobs.get(uri);
 
         if (data != null) {
-          if (storageType == StorageType.SINGLE_USE_MEMORY) {
-            memoryBlobs.remove(uri);
-          }
           return getByteRepresentation.apply(data);
-        } else {
-          throw new IOException("Failed to find in-memory blob for: " + uri);
         }
+
+        SpilledBlob spilled = spilledBlobs.get(uri);
+
+        if (spilled != null) {
+          return getFileRepresentation.apply(spilled.file);
+        }
+
+        throw new IOException("Failed to find in-memory blob for: " + uri);
       } else {
         String id        = uri.getPathSegments().get(ID_PATH_SEGMENT);
         String directory = getDirectory(storageType);
@@ -148,14 +160,14 @@ public class BlobProvider {
     }
   }
 
-  private synchronized AttachmentSecret getAttachmentSecret(@NonNull Context context) {
+  private AttachmentSecret getAttachmentSecret(@NonNull Context context) {
     return AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
   }
 
   /**
    * Delete the content with the specified URI.
    */
-  public synchronized void delete(@NonNull Context context, @NonNull Uri uri) {
+  public void delete(@NonNull Context context, @NonNull Uri uri) {
     if (!isAuthority(uri)) {
       Log.d(TAG, "Can't delete. Not the authority for uri: " + uri);
       return;
@@ -165,7 +177,9 @@ public class BlobProvider {
       StorageType storageType = StorageType.decode(uri.getPathSegments().get(STORAGE_TYPE_PATH_SEGMENT));
 
       if (storageType.isMemory()) {
-        memoryBlobs.remove(uri);
+        spillOrder.remove(uri);
+        removeFromMemory(uri);
+        removeFromSpilled(uri);
       } else {
         String id        = uri.getPathSegments().get(ID_PATH_SEGMENT);
         String directory = getDirectory(storageType);
@@ -183,13 +197,27 @@ public class BlobProvider {
   /**
    * Indicates a new app session has started, allowing old single-session blobs to be deleted.
    */
-  public synchronized void onSessionStart(@NonNull Context context) {
+  public void onSessionStart(@NonNull Context context) {
     File directory = getOrCreateCacheDirectory(context, SINGLE_SESSION_DIRECTORY);
     for (File file : directory.listFiles()) {
       file.delete();
     }
   }
 
+  /**
+   * @return The number of bytes currently held by in-memory blobs.
+   */
+  public long getResidentMemoryBytes() {
+    return memoryBytes.get();
+  }
+
+  /**
+   * @return The number of bytes of in-memory blobs that have been spilled to disk.
+   */
+  public long getSpilledBytes() {
+    return spilledBytes.get();
+  }
+
   public static @Nullable String getMimeType(@NonNull Uri uri) {
     if (isAuthority(uri)) {
       return uri.getPathSegments().get(MIMETYPE_PATH_SEGMENT);
@@ -220,38 +248,27 @@ public class BlobProvider {
   }
 
   @WorkerThread
-  private synchronized @NonNull Uri writeBlobSpecToDisk(@NonNull Context context, @NonNull BlobSpec blobSpec)
+  private @NonNull Uri writeBlobSpecToDisk(@NonNull Context context, @NonNull BlobSpec blobSpec)
       throws IOException
   {
-    CountDownLatch               latch     = new CountDownLatch(1);
-    AtomicReference<IOException> exception = new AtomicReference<>(null);
-    Uri                          uri       = writeBlobSpecToDiskAsync(context, blobSpec, latch::countDown, exception::set);
-
-    try {
-      latch.await();
-    } catch (InterruptedException e) {
-      throw new IOException(e);
-    }
-
-    if (exception.get() != null) {
-      throw exception.get();
-    }
+    Util.copy(blobSpec.getData(), createOutputStream(context, blobSpec));
 
-    return uri;
+    return buildUri(blobSpec);
   }
 
-
+  /**
+   * The copy may block for as long as the source keeps producing data (e.g. a voice note that is
+   * still being recorded), so it runs on the unbounded executor rather than competing for a
+   * bounded pool.
+   */
   @WorkerThread
-  private synchronized @NonNull Uri writeBlobSpecToDiskAsync(@NonNull Context context,
-                                                             @NonNull BlobSpec blobSpec,
-                                                             @Nullable SuccessListener successListener,
-                                                             @Nullable ErrorListener errorListener)
+  private @NonNull Uri writeBlobSpecToDiskAsync(@NonNull Context context,
+                                                @NonNull BlobSpec blobSpec,
+                                                @Nullable SuccessListener successListener,
+                                                @Nullable ErrorListener errorListener)
       throws IOException
   {
-    AttachmentSecret attachmentSecret = AttachmentSecretProvider.getInstance(context).getOrCreateAttachmentSecret();
-    String           directory        = getDirectory(blobSpec.getStorageType());
-    File             outputFile       = new File(getOrCreateCacheDirectory(context, directory), buildFileName(blobSpec.id));
-    OutputStream     outputStream     = ModernEncryptingPartOutputStream.createFor(attachmentSecret, outputFile, true).second;
+    OutputStream outputStream = createOutputStream(context, blobSpec);
 
     SignalExecutors.UNBOUNDED.execute(() -> {
       try {
@@ -270,12 +287,107 @@ public class BlobProvider {
     return buildUri(blobSpec);
   }
 
-  private synchronized @NonNull Uri writeBlobSpecToMemory(@NonNull BlobSpec blobSpec, @NonNull byte[] data) {
+  private @NonNull OutputStream createOutputStream(@NonNull Context context, @NonNull BlobSpec blobSpec) throws IOException {
+    AttachmentSecret attachmentSecret = getAttachmentSecret(context);
+    String           directory        = getDirectory(blobSpec.getStorageType());
+    File             outputFile       = new File(getOrCreateCacheDirectory(context, directory), buildFileName(blobSpec.getId()));
+
+    return ModernEncryptingPartOutputStream.createFor(attachmentSecret, outputFile, true).second;
+  }
+
+  private @NonNull Uri writeBlobSpecToMemory(@NonNull BlobSpec blobSpec, @NonNull byte[] data) {
     Uri uri = buildUri(blobSpec);
+
     memoryBlobs.put(uri, data);
+    memoryBytes.addAndGet(data.length);
+
+    if (blobSpec.getStorageType() == StorageType.SINGLE_SESSION_MEMORY) {
+      spillOrder.add(uri);
+    }
+
+    if (memoryBytes.get() > MEMORY_BUDGET_BYTES) {
+      spillExecutor.execute(this::spillToDiskIfNecessary);
+    }
+
     return uri;
   }
 
+  private @Nullable byte[] removeFromMemory(@NonNull Uri uri) {
+    byte[] data = memoryBlobs.remove(uri);
+
+    if (data != null) {
+      memoryBytes.addAndGet(-data.length);
+    }
+
+    return data;
+  }
+
+  private void removeFromSpilled(@NonNull Uri uri) {
+    SpilledBlob spilled = spilledBlobs.remove(uri);
+
+    if (spilled != null) {
+      spilledBytes.addAndGet(-spilled.size);
+
+      if (!spilled.file.delete()) {
+        Log.w(TAG, "Failed to delete spilled blob for: " + uri);
+      }
+    }
+  }
+
+  /**
+   * Moves the oldest single-session memory blobs to encrypted single-session disk storage until the
+   * memory tier is back under budget. A blob stays readable from memory until its spilled copy has
+   * been fully written. Single-use blobs are never spilled, as they're read almost immediately.
+   */
+  @WorkerThread
+  private void spillToDiskIfNecessary() {
+    Context context = ApplicationDependencies.getApplication();
+
+    while (memoryBytes.get() > MEMORY_BUDGET_BYTES) {
+      Uri uri = spillOrder.poll();
+
+      if (uri == null) {
+        break;
+      }
+
+      byte[] data = memoryBlobs.get(uri);
+
+      if (data == null) {
+        continue;
+      }
+
+      String id   = uri.getPathSegments().get(ID_PATH_SEGMENT);
+      File   file = new File(getOrCreateCacheDirectory(context, SINGLE_SESSION_DIRECTORY), buildFileName(id));
+
+      try {
+        Util.copy(new ByteArrayInputStream(data), ModernEncryptingPartOutputStream.createFor(getAttachmentSecret(context), file, true).second);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to spill blob to disk. Keeping it in memory.", e);
+        file.delete();
+        continue;
+      }
+
+      SpilledBlob spilled = new SpilledBlob(file, data.length);
+
+      spilledBlobs.put(uri, spilled);
+      spilledBytes.addAndGet(spilled.size);
+
+      if (memoryBlobs.remove(uri, data)) {
+        memoryBytes.addAndGet(-data.length);
+      } else {
+        if (spilledBlobs.remove(uri, spilled)) {
+          spilledBytes.addAndGet(-spilled.size);
+        }
+
+        if (file.exists() && !file.delete()) {
+          Log.w(TAG, "Failed to delete spilled blob for: " + uri);
+        }
+      }
+    }
+
+    Log.i(TAG, "Blob memory tier: " + memoryBytes.get() + " bytes resident, " + spilledBytes.get() + " bytes spilled.");
+  }
+
   private static @NonNull String buildFileName(@NonNull String id) {
     return id + ".blob";
   }
@@ -480,6 +592,21 @@ public class BlobProvider {
     }
   }
 
+  /**
+   * The size is what was added to {@link #spilledBytes}, so that the same amount is taken off
+   * again regardless of the file's encrypted length.
+   */
+  private static final class SpilledBlob {
+
+    private final File file;
+    private final long size;
+
+    private SpilledBlob(@NonNull File file, long size) {
+      this.file = file;
+      this.size = size;
+    }
+  }
+
   private enum StorageType {
 
     SINGLE_USE_MEMORY("single-use-memory", true),
@@ -38,6 +38,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages data retrieval for search.
@@ -70,6 +71,7 @@ public class SearchRepository {
   private final ContactAccessor   contactAccessor;
   private final Executor          serialExecutor;
   private final ExecutorService   parallelExecutor;
+  private final AtomicLong        latestQueryId;
 
   public SearchRepository() {
     this.context           = ApplicationDependencies.getApplication().getApplicationContext();
@@ -79,15 +81,27 @@ public class SearchRepository {
     this.contactAccessor   = ContactAccessor.getInstance();
     this.serialExecutor    = SignalExecutors.SERIAL;
     this.parallelExecutor  = SignalExecutors.BOUNDED;
+    this.latestQueryId     = new AtomicLong();
   }
 
+  /**
+   * Queries are issued as the user types, so a query that has been superseded by a newer one by the
+   * time it reaches the front of the serial executor is skipped, and its results are dropped if it
+   * is superseded while running.
+   */
   public void query(@NonNull String query, @NonNull Callback<SearchResult> callback) {
+    long queryId = latestQueryId.incrementAndGet();
+
     if (TextUtils.isEmpty(query)) {
       callback.onResult(SearchResult.EMPTY);
       return;
     }
 
     serialExecutor.execute(() -> {
+      if (isSuperseded(queryId)) {
+        Log.d(TAG, "Skipping superseded query.");
+        return;
+      }
 
       String cleanQuery = sanitizeQuery(query);
 
@@ -101,7 +115,9 @@ public class SearchRepository {
 
         Log.d(TAG, "Total time: " + (System.currentTimeMillis() - startTime) + " ms");
 
-        callback.onResult(result);
+        if (!isSuperseded(queryId)) {
+          callback.onResult(result);
+        }
       } catch (ExecutionException | InterruptedException e) {
         Log.w(TAG, e);
         callback.onResult(SearchResult.EMPTY);
@@ -110,20 +126,33 @@ public class SearchRepository {
   }
 
   public void query(@NonNull String query, long threadId, @NonNull Callback<List<MessageResult>> callback) {
+    long queryId = latestQueryId.incrementAndGet();
+
     if (TextUtils.isEmpty(query)) {
       callback.onResult(CursorList.emptyList());
       return;
     }
 
     serialExecutor.execute(() -> {
+      if (isSuperseded(queryId)) {
+        Log.d(TAG, "[ConversationQuery] Skipping superseded query.");
+        return;
+      }
+
       long startTime = System.currentTimeMillis();
       List<MessageResult> messages = queryMessages(sanitizeQuery(query), threadId);
       Log.d(TAG, "[ConversationQuery] " + (System.currentTimeMillis() - startTime) + " ms");
 
-      callback.onResult(messages);
+      if (!isSuperseded(queryId)) {
+        callback.onResult(messages);
+      }
     });
   }
 
+  private boolean isSuperseded(long queryId) {
+    return latestQueryId.get() != queryId;
+  }
+
   private List<Recipient> queryContacts(String query) {
     Cursor contacts = null;
 
@@ -241,7 +270,7 @@ public class SearchRepository {
       RecipientId messageRecipientId      = RecipientId.from(cursor.getLong(cursor.getColumnIndexOrThrow(SearchDatabase.MESSAGE_RECIPIENT)));
       Recipient   conversationRecipient   = Recipient.live(conversationRecipientId).get();
       Recipient   messageRecipient        = Recipient.live(messageRecipientId).get();
-      String      body                    = cursor.getString(cursor.getColumnIndexOrThrow(SearchDatabase.SNIPPET));
+      String      body                    = cursor.getString(cursor.getColumnIndexOrThrow(SearchDatabase.BODY));
       long        receivedMs              = cursor.getLong(cursor.getColumnIndexOrThrow(MmsSmsColumns.NORMALIZED_DATE_RECEIVED));
       long        threadId                = cursor.getLong(cursor.getColumnIndexOrThrow(MmsSmsColumns.THREAD_ID));
 
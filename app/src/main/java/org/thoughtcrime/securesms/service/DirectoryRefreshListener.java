@@ -23,7 +23,7 @@ public class DirectoryRefreshListener extends PersistentAlarmManagerListener {
   @Override
   protected long onAlarm(Context context, long scheduledTime) {
     if (scheduledTime != 0 && TextSecurePreferences.isPushRegistered(context)) {
-      ApplicationDependencies.getJobManager().add(new DirectoryRefreshJob(true));
+      ApplicationDependencies.getJobManager().add(new DirectoryRefreshJob(true, true));
     }
 
     long newTime = System.currentTimeMillis() + INTERVAL;
@@ -17,6 +17,7 @@ import org.thoughtcrime.securesms.dependencies.ApplicationDependencies;
 import org.thoughtcrime.securesms.jobmanager.ConstraintObserver;
 import org.thoughtcrime.securesms.jobmanager.impl.NetworkConstraint;
 import org.thoughtcrime.securesms.jobmanager.impl.NetworkConstraintObserver;
+import org.thoughtcrime.securesms.keyvalue.SignalStore;
 import org.thoughtcrime.securesms.logging.Log;
 
 import org.thoughtcrime.securesms.ApplicationContext;
@@ -54,6 +55,7 @@ public class IncomingMessageObserver implements ConstraintObserver.Notifier {
     this.networkAccess     = ApplicationDependencies.getSignalServiceNetworkAccess();
 
     new NetworkConstraintObserver(ApplicationContext.getInstance(context)).register(this);
+    SignalStore.accountValues().registerChangeListener(this::onAccountValuesChanged);
     new MessageRetrievalThread().start();
 
     if (TextSecurePreferences.isFcmDisabled(context)) {
@@ -90,6 +92,10 @@ public class IncomingMessageObserver implements ConstraintObserver.Notifier {
     notifyAll();
   }
 
+  private synchronized void onAccountValuesChanged() {
+    notifyAll();
+  }
+
   private synchronized boolean isConnectionNecessary() {
     boolean isGcmDisabled = TextSecurePreferences.isFcmDisabled(context);
 
@@ -11,6 +11,7 @@ import com.annimon.stream.Stream;
 
 import org.whispersystems.libsignal.util.Pair;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -18,6 +19,9 @@ import java.util.Locale;
 
 public class SearchUtil {
 
+  private static final int    SNIPPET_WORDS    = 7;
+  private static final String SNIPPET_ELLIPSIS = "...";
+
   public static Spannable getHighlightedSpan(@NonNull Locale locale,
                                              @NonNull StyleFactory styleFactory,
                                              @Nullable String text,
@@ -56,6 +60,69 @@ public class SearchUtil {
     return spanned;
   }
 
+  /**
+   * Trims a message body down to a window of words around the first word that starts with one of
+   * the query tokens, in the same shape FTS snippet() produces. Search results carry full bodies,
+   * so this is only done for rows that are actually bound to a view.
+   */
+  public static @NonNull String getSnippet(@NonNull Locale locale, @Nullable String text, @Nullable String query) {
+    if (text == null || text.isEmpty()) {
+      return "";
+    }
+
+    List<Pair<Integer, Integer>> words = getWordRanges(text);
+
+    if (words.size() <= SNIPPET_WORDS) {
+      return text;
+    }
+
+    int matchIndex = query != null ? getFirstMatchingWord(locale, text, words, query.toLowerCase(locale).split("\\s+")) : 0;
+    int first      = Math.max(0, Math.min(matchIndex - SNIPPET_WORDS / 2, words.size() - SNIPPET_WORDS));
+    int last       = first + SNIPPET_WORDS - 1;
+
+    return (first > 0 ? SNIPPET_ELLIPSIS : "") +
+           text.substring(words.get(first).first(), words.get(last).second()) +
+           (last < words.size() - 1 ? SNIPPET_ELLIPSIS : "");
+  }
+
+  /**
+   * Each word is lowercased on its own, as lowercasing the whole text can change its length (e.g.
+   * a dotted capital I outside of Turkish) and shift every offset after it.
+   */
+  private static int getFirstMatchingWord(@NonNull Locale locale, @NonNull String text, @NonNull List<Pair<Integer, Integer>> words, @NonNull String[] queryTokens) {
+    for (int i = 0; i < words.size(); i++) {
+      String word = text.substring(words.get(i).first(), words.get(i).second()).toLowerCase(locale);
+
+      for (String queryToken : queryTokens) {
+        if (queryToken.length() > 0 && word.startsWith(queryToken)) {
+          return i;
+        }
+      }
+    }
+
+    return 0;
+  }
+
+  private static @NonNull List<Pair<Integer, Integer>> getWordRanges(@NonNull String text) {
+    List<Pair<Integer, Integer>> words = new ArrayList<>();
+    int                          start = -1;
+
+    for (int i = 0; i < text.length(); i++) {
+      if (Character.isWhitespace(text.charAt(i))) {
+        if (start >= 0) words.add(new Pair<>(start, i));
+        start = -1;
+      } else if (start < 0) {
+        start = i;
+      }
+    }
+
+    if (start >= 0) {
+      words.add(new Pair<>(start, text.length()));
+    }
+
+    return words;
+  }
+
   static List<Pair<Integer, Integer>> getHighlightRanges(@NonNull Locale locale,
                                                          @NonNull String text,
                                                          @NonNull String highlight)
@@ -16,6 +16,8 @@ import androidx.core.app.NotificationCompat;
 import org.greenrobot.eventbus.EventBus;
 import org.thoughtcrime.securesms.R;
 import org.thoughtcrime.securesms.jobmanager.impl.SqlCipherMigrationConstraintObserver;
+import org.thoughtcrime.securesms.keyvalue.AccountValues;
+import org.thoughtcrime.securesms.keyvalue.SignalStore;
 import org.thoughtcrime.securesms.lock.RegistrationLockReminders;
 import org.thoughtcrime.securesms.logging.Log;
 import org.thoughtcrime.securesms.preferences.widgets.NotificationPrivacyPreference;
@@ -35,6 +37,10 @@ public class TextSecurePreferences {
 
   private static final String TAG = TextSecurePreferences.class.getSimpleName();
 
+  private static final Object ACCOUNT_VALUES_LOCK = new Object();
+
+  private static volatile boolean accountValuesMigrated;
+
   public  static final String IDENTITY_PREF                    = "pref_choose_identity";
   public  static final String CHANGE_PASSPHRASE_PREF           = "pref_change_passphrase";
   public  static final String DISABLE_PASSPHRASE_PREF          = "pref_disable_passphrase";
@@ -101,6 +107,7 @@ public class TextSecurePreferences {
   private static final String WIFI_SMS_PREF                    = "pref_wifi_sms";
 
   private static final String GCM_DISABLED_PREF                = "pref_gcm_disabled";
+  private static final String ACCOUNT_VALUES_MIGRATED_PREF     = "pref_account_values_migrated";
   private static final String GCM_REGISTRATION_ID_PREF         = "pref_gcm_registration_id";
   private static final String GCM_REGISTRATION_ID_VERSION_PREF = "pref_gcm_registration_id_version";
   private static final String GCM_REGISTRATION_ID_TIME_PREF    = "pref_gcm_registration_id_last_set_time";
@@ -463,11 +470,15 @@ public class TextSecurePreferences {
   }
 
   public static boolean isFcmDisabled(Context context) {
-    return getBooleanPreference(context, GCM_DISABLED_PREF, false);
+    if (hasMigratedAccountValues(context)) return SignalStore.accountValues().isFcmDisabled();
+    else                                   return getBooleanPreference(context, GCM_DISABLED_PREF, false);
   }
 
   public static void setFcmDisabled(Context context, boolean disabled) {
-    setBooleanPreference(context, GCM_DISABLED_PREF, disabled);
+    synchronized (ACCOUNT_VALUES_LOCK) {
+      if (hasMigratedAccountValues(context)) SignalStore.accountValues().setFcmDisabled(disabled);
+      else                                   setBooleanPreference(context, GCM_DISABLED_PREF, disabled);
+    }
   }
 
   public static boolean isWebrtcCallingEnabled(Context context) {
@@ -696,19 +707,27 @@ public class TextSecurePreferences {
   }
 
   public static String getLocalNumber(Context context) {
-    return getStringPreference(context, LOCAL_NUMBER_PREF, null);
+    if (hasMigratedAccountValues(context)) return SignalStore.accountValues().getLocalNumber();
+    else                                   return getStringPreference(context, LOCAL_NUMBER_PREF, null);
   }
 
   public static void setLocalNumber(Context context, String localNumber) {
-    setStringPreference(context, LOCAL_NUMBER_PREF, localNumber);
+    synchronized (ACCOUNT_VALUES_LOCK) {
+      if (hasMigratedAccountValues(context)) SignalStore.accountValues().setLocalNumber(localNumber);
+      else                                   setStringPreference(context, LOCAL_NUMBER_PREF, localNumber);
+    }
   }
 
   public static UUID getLocalUuid(Context context) {
-    return UuidUtil.parseOrNull(getStringPreference(context, LOCAL_UUID_PREF, null));
+    if (hasMigratedAccountValues(context)) return SignalStore.accountValues().getLocalUuid();
+    else                                   return UuidUtil.parseOrNull(getStringPreference(context, LOCAL_UUID_PREF, null));
   }
 
   public static void setLocalUuid(Context context, UUID uuid) {
-    setStringPreference(context, LOCAL_UUID_PREF, uuid.toString());
+    synchronized (ACCOUNT_VALUES_LOCK) {
+      if (hasMigratedAccountValues(context)) SignalStore.accountValues().setLocalUuid(uuid);
+      else                                   setStringPreference(context, LOCAL_UUID_PREF, uuid.toString());
+    }
   }
 
   public static String getLocalUsername(Context context) {
@@ -898,12 +917,47 @@ public class TextSecurePreferences {
   }
 
   public static boolean isPushRegistered(Context context) {
-    return getBooleanPreference(context, REGISTERED_GCM_PREF, false);
+    if (hasMigratedAccountValues(context)) return SignalStore.accountValues().isPushRegistered();
+    else                                   return getBooleanPreference(context, REGISTERED_GCM_PREF, false);
   }
 
   public static void setPushRegistered(Context context, boolean registered) {
     Log.i(TAG, "Setting push registered: " + registered);
-    setBooleanPreference(context, REGISTERED_GCM_PREF, registered);
+
+    synchronized (ACCOUNT_VALUES_LOCK) {
+      if (hasMigratedAccountValues(context)) SignalStore.accountValues().setPushRegistered(registered);
+      else                                   setBooleanPreference(context, REGISTERED_GCM_PREF, registered);
+    }
+  }
+
+  /**
+   * Copies the account preferences into {@link AccountValues}. Serialized with the setters above so
+   * that no write can land in the preferences after they've been copied.
+   */
+  public static void migrateAccountValues(Context context) {
+    synchronized (ACCOUNT_VALUES_LOCK) {
+      if (hasMigratedAccountValues(context)) return;
+
+      SignalStore.accountValues().migrateFromPreferences(getStringPreference(context, LOCAL_NUMBER_PREF, null),
+                                                         getStringPreference(context, LOCAL_UUID_PREF, null),
+                                                         getBooleanPreference(context, REGISTERED_GCM_PREF, false),
+                                                         getBooleanPreference(context, GCM_DISABLED_PREF, false));
+
+      PreferenceManager.getDefaultSharedPreferences(context).edit().putBoolean(ACCOUNT_VALUES_MIGRATED_PREF, true).commit();
+      accountValuesMigrated = true;
+    }
+  }
+
+  /**
+   * The flag lives in the preferences rather than the {@link SignalStore}, so the account getters
+   * can still be used while the database is being opened or upgraded.
+   */
+  private static boolean hasMigratedAccountValues(Context context) {
+    if (!accountValuesMigrated) {
+      accountValuesMigrated = getBooleanPreference(context, ACCOUNT_VALUES_MIGRATED_PREF, false);
+    }
+
+    return accountValuesMigrated;
   }
 
   public static boolean isShowInviteReminders(Context context) {
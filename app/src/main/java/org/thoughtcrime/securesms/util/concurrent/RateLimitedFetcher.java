@@ -0,0 +1,91 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs a blocking fetch for many keys in parallel, with a bounded number in flight and each fetch
+ * started only once the shared {@link TokenBucket} allows it. A failed fetch does not affect the
+ * others, and every key ends up in either the successes or the failures.
+ */
+public final class RateLimitedFetcher<K, V> {
+
+  private final Executor    executor;
+  private final Semaphore   inFlight;
+  private final TokenBucket rateLimiter;
+
+  public RateLimitedFetcher(@NonNull Executor executor, int maxConcurrency, @NonNull TokenBucket rateLimiter) {
+    this.executor    = executor;
+    this.inFlight    = new Semaphore(maxConcurrency);
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Blocks until every key has been fetched or has failed.
+   */
+  @WorkerThread
+  public @NonNull Results<K, V> fetchAll(@NonNull Collection<K> keys, @NonNull Fetch<K, V> fetch) throws InterruptedException {
+    Map<K, V>           successes = new ConcurrentHashMap<>();
+    Map<K, IOException> failures  = new ConcurrentHashMap<>();
+    CountDownLatch      latch     = new CountDownLatch(keys.size());
+
+    for (K key : keys) {
+      inFlight.acquire();
+
+      try {
+        rateLimiter.acquire();
+      } catch (InterruptedException e) {
+        inFlight.release();
+        throw e;
+      }
+
+      executor.execute(() -> {
+        try {
+          successes.put(key, fetch.fetch(key));
+        } catch (IOException e) {
+          failures.put(key, e);
+        } catch (RuntimeException e) {
+          failures.put(key, new IOException(e));
+        } finally {
+          inFlight.release();
+          latch.countDown();
+        }
+      });
+    }
+
+    latch.await();
+
+    return new Results<>(successes, failures);
+  }
+
+  public interface Fetch<K, V> {
+    @NonNull V fetch(@NonNull K key) throws IOException;
+  }
+
+  public static final class Results<K, V> {
+    private final Map<K, V>           successes;
+    private final Map<K, IOException> failures;
+
+    private Results(@NonNull Map<K, V> successes, @NonNull Map<K, IOException> failures) {
+      this.successes = Collections.unmodifiableMap(successes);
+      this.failures  = Collections.unmodifiableMap(failures);
+    }
+
+    public @NonNull Map<K, V> getSuccesses() {
+      return successes;
+    }
+
+    public @NonNull Map<K, IOException> getFailures() {
+      return failures;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A rate limiter that allows bursts of up to {@code capacity} permits, refilled at a fixed rate.
+ * Safe to share between threads.
+ */
+public final class TokenBucket {
+
+  private final int  capacity;
+  private final long intervalNanos;
+
+  /** The time at which the bucket would be full again if no more permits were taken. */
+  private long fullAt;
+
+  public TokenBucket(int capacity, int permitsPerSecond) {
+    if (capacity < 1 || permitsPerSecond < 1) {
+      throw new IllegalArgumentException("Capacity: " + capacity + ", rate: " + permitsPerSecond);
+    }
+
+    this.capacity      = capacity;
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    this.fullAt        = Long.MIN_VALUE;
+  }
+
+  /**
+   * Blocks until a permit is available and takes it.
+   */
+  public void acquire() throws InterruptedException {
+    long waitNanos = reserve(System.nanoTime());
+
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * Takes the next permit, which may lie in the future.
+   *
+   * @return How long the caller has to wait before using the permit, in nanoseconds.
+   */
+  @VisibleForTesting
+  synchronized long reserve(long nowNanos) {
+    fullAt = Math.max(fullAt, nowNanos) + intervalNanos;
+
+    return Math.max(0, fullAt - nowNanos - capacity * intervalNanos);
+  }
+}
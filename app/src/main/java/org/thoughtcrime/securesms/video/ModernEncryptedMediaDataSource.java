@@ -7,11 +7,10 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import org.thoughtcrime.securesms.crypto.AttachmentSecret;
-import org.thoughtcrime.securesms.crypto.ModernDecryptingPartInputStream;
+import org.thoughtcrime.securesms.crypto.ModernDecryptingPartRandomAccessFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * Create via {@link EncryptedMediaDataSource}.
@@ -29,6 +28,8 @@ final class ModernEncryptedMediaDataSource extends MediaDataSource {
   private final byte[]           random;
   private final long             length;
 
+  private ModernDecryptingPartRandomAccessFile file;
+
   ModernEncryptedMediaDataSource(@NonNull AttachmentSecret attachmentSecret, @NonNull File mediaFile, @Nullable byte[] random, long length) {
     this.attachmentSecret = attachmentSecret;
     this.mediaFile        = mediaFile;
@@ -38,27 +39,27 @@ final class ModernEncryptedMediaDataSource extends MediaDataSource {
 
   @Override
   public int readAt(long position, byte[] bytes, int offset, int length) throws IOException {
-    try (InputStream inputStream = createInputStream(position)) {
-      int totalRead = 0;
-
-      while (length > 0) {
-        int read = inputStream.read(bytes, offset, length);
-
-        if (read == -1) {
-          if (totalRead == 0) {
-            return -1;
-          } else {
-            return totalRead;
-          }
-        }
+    ModernDecryptingPartRandomAccessFile file      = getFile();
+    int                                  totalRead = 0;
 
-        length    -= read;
-        offset    += read;
-        totalRead += read;
+    while (length > 0) {
+      int read = file.read(position, bytes, offset, length);
+
+      if (read == -1) {
+        if (totalRead == 0) {
+          return -1;
+        } else {
+          return totalRead;
+        }
       }
 
-      return totalRead;
+      length    -= read;
+      offset    += read;
+      position  += read;
+      totalRead += read;
     }
+
+    return totalRead;
   }
 
   @Override
@@ -67,14 +68,18 @@ final class ModernEncryptedMediaDataSource extends MediaDataSource {
   }
 
   @Override
-  public void close() {
+  public synchronized void close() throws IOException {
+    if (file != null) {
+      file.close();
+      file = null;
+    }
   }
 
-  private InputStream createInputStream(long position) throws IOException {
-    if (random == null) {
-      return ModernDecryptingPartInputStream.createFor(attachmentSecret, mediaFile, position);
-    } else {
-      return ModernDecryptingPartInputStream.createFor(attachmentSecret, random, mediaFile, position);
+  private synchronized @NonNull ModernDecryptingPartRandomAccessFile getFile() throws IOException {
+    if (file == null) {
+      file = ModernDecryptingPartRandomAccessFile.createFor(attachmentSecret, random, mediaFile);
     }
+
+    return file;
   }
 }
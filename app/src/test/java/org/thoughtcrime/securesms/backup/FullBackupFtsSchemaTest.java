@@ -0,0 +1,100 @@
+package org.thoughtcrime.securesms.backup;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.database.GroupDatabase;
+import org.thoughtcrime.securesms.database.RecipientDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class FullBackupFtsSchemaTest {
+
+  private static final String[] SHADOW_SUFFIXES = { "_data", "_idx", "_docsize", "_config" };
+
+  @Test
+  public void exportThenImport_keepsFtsTriggers() {
+    List<String> restored = restore(schemaFor(RecipientDatabase.FTS_TABLE_NAME, RecipientDatabase.CREATE_FTS_TABLE));
+    restored.addAll(restore(schemaFor(GroupDatabase.FTS_TABLE_NAME, GroupDatabase.CREATE_FTS_TABLE)));
+
+    for (String trigger : new String[] { "recipient_fts_ai", "recipient_fts_ad", "recipient_fts_au", "group_fts_ai", "group_fts_ad", "group_fts_au" }) {
+      assertTrue(trigger, containsStatementFor(restored, "CREATE TRIGGER " + trigger + " "));
+    }
+
+    assertTrue(containsStatementFor(restored, "CREATE VIRTUAL TABLE " + RecipientDatabase.FTS_TABLE_NAME + " "));
+    assertTrue(containsStatementFor(restored, "CREATE VIRTUAL TABLE " + GroupDatabase.FTS_TABLE_NAME + " "));
+  }
+
+  @Test
+  public void exportThenImport_dropsShadowTables() {
+    List<String> restored = restore(schemaFor(RecipientDatabase.FTS_TABLE_NAME, RecipientDatabase.CREATE_FTS_TABLE));
+
+    for (String suffix : SHADOW_SUFFIXES) {
+      assertFalse(suffix, containsStatementFor(restored, "CREATE TABLE '" + RecipientDatabase.FTS_TABLE_NAME + suffix + "'"));
+    }
+
+    assertEquals(RecipientDatabase.CREATE_FTS_TABLE.length, restored.size());
+  }
+
+  @Test
+  public void import_skipsShadowTablesFromOlderBackups() {
+    assertTrue(FullBackupImporter.isForFtsSecretTable("CREATE TABLE 'sms_fts_data'(id INTEGER PRIMARY KEY, block BLOB)"));
+    assertFalse(FullBackupImporter.isForFtsSecretTable(RecipientDatabase.CREATE_FTS_TABLE[1]));
+  }
+
+  /**
+   * Mirrors the sqlite_master rows for an FTS5 index: the virtual table, its shadow tables and the
+   * triggers that keep it current.
+   */
+  private static List<SchemaEntry> schemaFor(String ftsTable, String[] createStatements) {
+    List<SchemaEntry> schema = new ArrayList<>();
+
+    for (String statement : createStatements) {
+      String[] tokens = statement.split("\\s+");
+
+      if (tokens[1].equals("TRIGGER")) schema.add(new SchemaEntry(statement, tokens[2], "trigger"));
+      else                             schema.add(new SchemaEntry(statement, tokens[3], "table"));
+    }
+
+    for (String suffix : SHADOW_SUFFIXES) {
+      schema.add(new SchemaEntry("CREATE TABLE '" + ftsTable + suffix + "'(id INTEGER PRIMARY KEY, block BLOB)", ftsTable + suffix, "table"));
+    }
+
+    return schema;
+  }
+
+  private static List<String> restore(List<SchemaEntry> schema) {
+    List<String> restored = new ArrayList<>();
+
+    for (SchemaEntry entry : schema) {
+      if (FullBackupBase.isFtsSecretTable(entry.name, entry.type)) continue;
+      if (FullBackupImporter.isForFtsSecretTable(entry.sql))       continue;
+
+      restored.add(entry.sql);
+    }
+
+    return restored;
+  }
+
+  private static boolean containsStatementFor(List<String> statements, String prefix) {
+    for (String statement : statements) {
+      if (statement.startsWith(prefix)) return true;
+    }
+    return false;
+  }
+
+  private static final class SchemaEntry {
+    private final String sql;
+    private final String name;
+    private final String type;
+
+    private SchemaEntry(String sql, String name, String type) {
+      this.sql  = sql;
+      this.name = name;
+      this.type = type;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.thoughtcrime.securesms.blurhash;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.linearTosRGB;
+import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.max;
+import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.sRGBToLinear;
+import static org.thoughtcrime.securesms.blurhash.BlurHashUtil.signPow;
+
+public final class BlurHashEncoderTest {
+
+  @Test
+  public void encode_matchesReference_forRandomImages() {
+    Random random = new Random(1234);
+
+    for (int n = 0; n < 50; n++) {
+      int   width  = 1 + random.nextInt(64);
+      int   height = 1 + random.nextInt(64);
+      int[] pixels = new int[width * height];
+
+      for (int i = 0; i < pixels.length; i++) {
+        pixels[i] = random.nextInt();
+      }
+
+      assertEquals(referenceEncode(pixels, width, height, 4, 3), BlurHashEncoder.encode(pixels, width, height, 4, 3));
+    }
+  }
+
+  @Test
+  public void encode_matchesReference_forGradient() {
+    int   width  = 48;
+    int   height = 32;
+    int[] pixels = new int[width * height];
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        pixels[y * width + x] = 0xff000000 | ((x * 5) << 16) | ((y * 7) << 8) | ((x + y) * 2);
+      }
+    }
+
+    for (int componentX = 1; componentX <= 9; componentX++) {
+      for (int componentY = 1; componentY <= 9; componentY++) {
+        assertEquals(referenceEncode(pixels, width, height, componentX, componentY),
+                     BlurHashEncoder.encode(pixels, width, height, componentX, componentY));
+      }
+    }
+  }
+
+  @Test
+  public void encode_solidColor() {
+    int[] pixels = new int[16 * 16];
+
+    Arrays.fill(pixels, 0xff336699);
+
+    assertEquals(referenceEncode(pixels, 16, 16, 4, 3), BlurHashEncoder.encode(pixels, 16, 16, 4, 3));
+  }
+
+  /**
+   * The straightforward per-component implementation the encoder was originally written as.
+   */
+  private static String referenceEncode(int[] pixels, int width, int height, int componentX, int componentY) {
+    double[][] factors = new double[componentX * componentY][3];
+
+    for (int j = 0; j < componentY; j++) {
+      for (int i = 0; i < componentX; i++) {
+        double normalisation = i == 0 && j == 0 ? 1 : 2;
+        double r = 0, g = 0, b = 0;
+
+        for (int x = 0; x < width; x++) {
+          for (int y = 0; y < height; y++) {
+            double basis = normalisation
+                           * Math.cos((Math.PI * i * x) / width)
+                           * Math.cos((Math.PI * j * y) / height);
+            int pixel = pixels[y * width + x];
+            r += basis * sRGBToLinear((pixel >> 16) & 0xff);
+            g += basis * sRGBToLinear((pixel >> 8)  & 0xff);
+            b += basis * sRGBToLinear( pixel        & 0xff);
+          }
+        }
+
+        double scale = 1.0 / (width * height);
+        factors[j * componentX + i][0] = r * scale;
+        factors[j * componentX + i][1] = g * scale;
+        factors[j * componentX + i][2] = b * scale;
+      }
+    }
+
+    char[] hash = new char[1 + 1 + 4 + 2 * (factors.length - 1)];
+
+    Base83.encode(componentX - 1 + (componentY - 1) * 9, 1, hash, 0);
+
+    double maximumValue;
+    if (factors.length > 1) {
+      double quantisedMaximumValue = Math.floor(Math.max(0, Math.min(82, Math.floor(max(factors, 1, factors.length) * 166 - 0.5))));
+      maximumValue = (quantisedMaximumValue + 1) / 166;
+      Base83.encode(Math.round(quantisedMaximumValue), 1, hash, 1);
+    } else {
+      maximumValue = 1;
+      Base83.encode(0, 1, hash, 1);
+    }
+
+    double[] dc = factors[0];
+    Base83.encode((linearTosRGB(dc[0]) << 16) + (linearTosRGB(dc[1]) << 8) + linearTosRGB(dc[2]), 4, hash, 2);
+
+    for (int i = 1; i < factors.length; i++) {
+      double[] ac     = factors[i];
+      double   quantR = Math.floor(Math.max(0, Math.min(18, Math.floor(signPow(ac[0] / maximumValue, 0.5) * 9 + 9.5))));
+      double   quantG = Math.floor(Math.max(0, Math.min(18, Math.floor(signPow(ac[1] / maximumValue, 0.5) * 9 + 9.5))));
+      double   quantB = Math.floor(Math.max(0, Math.min(18, Math.floor(signPow(ac[2] / maximumValue, 0.5) * 9 + 9.5))));
+
+      Base83.encode(Math.round(quantR * 19 * 19 + quantG * 19 + quantB), 2, hash, 6 + 2 * (i - 1));
+    }
+
+    return new String(hash);
+  }
+}
@@ -0,0 +1,92 @@
+package org.thoughtcrime.securesms.components.emoji.parsing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public final class EmojiParserTest {
+
+  private static final String GRINNING        = "\ud83d\ude00";
+  private static final String DETECTIVE       = "\ud83d\udd75\ufe0f";
+  private static final String WOMAN_DETECTIVE = "\ud83d\udd75\ufe0f\u200d\u2640\ufe0f";
+  private static final String THUMBS_UP       = "\ud83d\udc4d";
+  private static final String SKIN_TONE       = "\ud83c\udffd";
+
+  private EmojiDrawInfo grinning;
+  private EmojiDrawInfo detective;
+  private EmojiDrawInfo womanDetective;
+  private EmojiParser   parser;
+
+  @Before
+  public void setUp() {
+    EmojiTree tree = new EmojiTree();
+
+    grinning       = new EmojiDrawInfo(mock(EmojiPageBitmap.class), 0);
+    detective      = new EmojiDrawInfo(mock(EmojiPageBitmap.class), 1);
+    womanDetective = new EmojiDrawInfo(mock(EmojiPageBitmap.class), 2);
+
+    tree.add(GRINNING, grinning);
+    tree.add(DETECTIVE, detective);
+    tree.add(WOMAN_DETECTIVE, womanDetective);
+    tree.add(THUMBS_UP, new EmojiDrawInfo(mock(EmojiPageBitmap.class), 3));
+
+    parser = new EmojiParser(tree);
+  }
+
+  @Test
+  public void findCandidates_noEmoji() {
+    EmojiParser.CandidateList candidates = parser.findCandidates("hello world");
+
+    assertEquals(0, candidates.size());
+    assertFalse(candidates.allEmojis);
+  }
+
+  @Test
+  public void findCandidates_emojiInText() {
+    EmojiParser.CandidateList candidates = parser.findCandidates("hi " + GRINNING + " there");
+
+    assertEquals(1, candidates.size());
+    assertEquals(3, candidates.list.get(0).getStartIndex());
+    assertEquals(5, candidates.list.get(0).getEndIndex());
+    assertSame(grinning, candidates.list.get(0).getDrawInfo());
+    assertFalse(candidates.allEmojis);
+  }
+
+  @Test
+  public void findCandidates_allEmojis() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(GRINNING + " " + THUMBS_UP);
+
+    assertEquals(2, candidates.size());
+    assertTrue(candidates.allEmojis);
+  }
+
+  @Test
+  public void findCandidates_prefersLongestSequence() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(WOMAN_DETECTIVE);
+
+    assertEquals(1, candidates.size());
+    assertEquals(WOMAN_DETECTIVE.length(), candidates.list.get(0).getEndIndex());
+    assertSame(womanDetective, candidates.list.get(0).getDrawInfo());
+  }
+
+  @Test
+  public void findCandidates_missingVariationSelector() {
+    EmojiParser.CandidateList candidates = parser.findCandidates("\ud83d\udd75");
+
+    assertEquals(1, candidates.size());
+    assertSame(detective, candidates.list.get(0).getDrawInfo());
+  }
+
+  @Test
+  public void findCandidates_includesSkinTone() {
+    EmojiParser.CandidateList candidates = parser.findCandidates(THUMBS_UP + SKIN_TONE + "!");
+
+    assertEquals(1, candidates.size());
+    assertEquals(4, candidates.list.get(0).getEndIndex());
+  }
+}
@@ -0,0 +1,186 @@
+package org.thoughtcrime.securesms.contacts.sync;
+
+import org.junit.Test;
+import org.thoughtcrime.securesms.contacts.sync.AddressBookSnapshot.SystemContact;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class AddressBookSnapshotTest {
+
+  private static final SystemContact ALICE = contact(1, "+14155550101", "Alice");
+  private static final SystemContact BOB   = contact(2, "+14155550102", "Bob");
+  private static final SystemContact CAROL = contact(3, "+14155550103", "Carol");
+
+  @Test
+  public void serialize_roundTrip() {
+    AddressBookSnapshot snapshot     = AddressBookSnapshot.create(Arrays.asList(ALICE, BOB, CAROL));
+    byte[]              serialized   = snapshot.serialize();
+    AddressBookSnapshot deserialized = AddressBookSnapshot.deserialize(serialized);
+
+    assertEquals(3 * 8, serialized.length);
+    assertNotNull(deserialized);
+    assertArrayEquals(serialized, deserialized.serialize());
+    assertTrue(snapshot.getChangedNumbers(deserialized).isEmpty());
+    assertFalse(snapshot.hasRemovalsSince(deserialized));
+  }
+
+  @Test
+  public void serialize_isSortedAndIndependentOfProviderOrder() {
+    byte[] forward  = AddressBookSnapshot.create(Arrays.asList(ALICE, BOB, CAROL)).serialize();
+    byte[] backward = AddressBookSnapshot.create(Arrays.asList(CAROL, BOB, ALICE)).serialize();
+
+    assertArrayEquals(forward, backward);
+
+    long[] hashes = toLongs(forward);
+    for (int i = 1; i < hashes.length; i++) {
+      assertTrue(hashes[i - 1] < hashes[i]);
+    }
+  }
+
+  @Test
+  public void serialize_empty() {
+    AddressBookSnapshot snapshot     = AddressBookSnapshot.create(Collections.emptyList());
+    AddressBookSnapshot deserialized = AddressBookSnapshot.deserialize(snapshot.serialize());
+
+    assertEquals(0, snapshot.serialize().length);
+    assertNotNull(deserialized);
+    assertFalse(snapshot.hasRemovalsSince(deserialized));
+  }
+
+  @Test
+  public void create_duplicateRows_storedOnce() {
+    AddressBookSnapshot snapshot = AddressBookSnapshot.create(Arrays.asList(ALICE, ALICE, BOB));
+
+    assertEquals(2 * 8, snapshot.serialize().length);
+    assertEquals(3, snapshot.getContacts().size());
+    assertEquals(new HashSet<>(Arrays.asList(ALICE.getFormattedNumber(), BOB.getFormattedNumber())), snapshot.getNumbers());
+  }
+
+  @Test
+  public void getChangedNumbers_addedRow() {
+    AddressBookSnapshot previous = deserialized(ALICE, BOB);
+    AddressBookSnapshot current  = AddressBookSnapshot.create(Arrays.asList(ALICE, BOB, CAROL));
+
+    assertEquals(Collections.singleton(CAROL.getFormattedNumber()), current.getChangedNumbers(previous));
+    assertFalse(current.hasRemovalsSince(previous));
+  }
+
+  @Test
+  public void getChangedNumbers_anyHashedFieldChanged() {
+    List<SystemContact> edits = Arrays.asList(new SystemContact(BOB.getNumber(), BOB.getFormattedNumber(), "Robert", null, null, 2, 2, "lookup-2"),
+                                              new SystemContact(BOB.getNumber(), BOB.getFormattedNumber(), "Bob", "content://photo", null, 2, 2, "lookup-2"),
+                                              new SystemContact(BOB.getNumber(), BOB.getFormattedNumber(), "Bob", null, "Work", 2, 2, "lookup-2"),
+                                              new SystemContact(BOB.getNumber(), BOB.getFormattedNumber(), "Bob", null, null, 3, 2, "lookup-2"),
+                                              new SystemContact(BOB.getNumber(), BOB.getFormattedNumber(), "Bob", null, null, 2, 9, "lookup-2"),
+                                              new SystemContact(BOB.getNumber(), BOB.getFormattedNumber(), "Bob", null, null, 2, 2, "lookup-9"));
+
+    AddressBookSnapshot previous = deserialized(ALICE, BOB);
+
+    for (SystemContact edit : edits) {
+      AddressBookSnapshot current = AddressBookSnapshot.create(Arrays.asList(ALICE, edit));
+
+      assertEquals(Collections.singleton(BOB.getFormattedNumber()), current.getChangedNumbers(previous));
+      assertTrue(current.hasRemovalsSince(previous));
+    }
+  }
+
+  @Test
+  public void hash_distinguishesNullFromEmptyAndFieldBoundaries() {
+    SystemContact nullName  = new SystemContact("1", "+1", null, null, null, 2, 1, null);
+    SystemContact emptyName = new SystemContact("1", "+1", "", null, null, 2, 1, null);
+    SystemContact shifted   = new SystemContact("1", "+1", null, "", null, 2, 1, null);
+
+    long[] hashes = toLongs(AddressBookSnapshot.create(Arrays.asList(nullName, emptyName, shifted)).serialize());
+
+    assertEquals(3, hashes.length);
+  }
+
+  @Test
+  public void hasRemovalsSince_removedRow() {
+    AddressBookSnapshot previous = deserialized(ALICE, BOB, CAROL);
+    AddressBookSnapshot current  = AddressBookSnapshot.create(Arrays.asList(ALICE, CAROL));
+
+    assertTrue(current.hasRemovalsSince(previous));
+    assertTrue(current.getChangedNumbers(previous).isEmpty());
+  }
+
+  @Test
+  public void hasRemovalsSince_emptyPrevious() {
+    AddressBookSnapshot previous = deserialized();
+    AddressBookSnapshot current  = AddressBookSnapshot.create(Arrays.asList(ALICE, BOB));
+
+    assertFalse(current.hasRemovalsSince(previous));
+    assertEquals(current.getNumbers(), current.getChangedNumbers(previous));
+  }
+
+  @Test
+  public void deserialize_null() {
+    assertNull(AddressBookSnapshot.deserialize(null));
+  }
+
+  @Test
+  public void deserialize_lengthNotMultipleOfEight() {
+    byte[] serialized = AddressBookSnapshot.create(Arrays.asList(ALICE, BOB)).serialize();
+
+    assertNull(AddressBookSnapshot.deserialize(Arrays.copyOf(serialized, serialized.length - 1)));
+    assertNull(AddressBookSnapshot.deserialize(new byte[7]));
+  }
+
+  @Test
+  public void deserialize_unsorted() {
+    assertNull(AddressBookSnapshot.deserialize(toBytes(2, 1)));
+    assertNull(AddressBookSnapshot.deserialize(toBytes(1, 3, 2)));
+  }
+
+  @Test
+  public void deserialize_duplicates() {
+    assertNull(AddressBookSnapshot.deserialize(toBytes(1, 1)));
+  }
+
+  @Test
+  public void deserialize_sortedAsSignedLongs() {
+    assertNotNull(AddressBookSnapshot.deserialize(toBytes(Long.MIN_VALUE, -1, 0, Long.MAX_VALUE)));
+    assertNull(AddressBookSnapshot.deserialize(toBytes(0, -1)));
+  }
+
+  @Test
+  public void deserialize_carriesNoNumbersOrContacts() {
+    AddressBookSnapshot deserialized = deserialized(ALICE, BOB);
+
+    assertNotNull(deserialized);
+    assertTrue(deserialized.getNumbers().isEmpty());
+    assertTrue(deserialized.getContacts().isEmpty());
+  }
+
+  private static AddressBookSnapshot deserialized(SystemContact... contacts) {
+    return AddressBookSnapshot.deserialize(AddressBookSnapshot.create(new ArrayList<>(Arrays.asList(contacts))).serialize());
+  }
+
+  private static SystemContact contact(long id, String number, String name) {
+    return new SystemContact(number, number, name, null, null, 2, id, "lookup-" + id);
+  }
+
+  private static long[] toLongs(byte[] serialized) {
+    long[] longs = new long[serialized.length / 8];
+    ByteBuffer.wrap(serialized).asLongBuffer().get(longs);
+    return longs;
+  }
+
+  private static byte[] toBytes(long... longs) {
+    ByteBuffer buffer = ByteBuffer.allocate(longs.length * 8);
+    buffer.asLongBuffer().put(longs);
+    return buffer.array();
+  }
+}
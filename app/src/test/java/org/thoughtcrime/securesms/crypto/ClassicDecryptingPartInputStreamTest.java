@@ -0,0 +1,143 @@
+package org.thoughtcrime.securesms.crypto;
+
+import android.app.Application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class ClassicDecryptingPartInputStreamTest {
+
+  private static final int LENGTH = 5_000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AttachmentSecret attachmentSecret = new AttachmentSecret(bytes(16, 1), bytes(20, 2), bytes(32, 3));
+
+  @Test
+  public void createFor_offsets_matchPlaintext() throws Exception {
+    byte[] plaintext = bytes(LENGTH, 4);
+    File   file      = encrypt(plaintext);
+
+    for (int offset : new int[] { 0, 1, 15, 16, 17, 31, 32, 33, 4095, 4096, 4097, LENGTH - 17, LENGTH - 16, LENGTH - 1, LENGTH }) {
+      try (InputStream in = ClassicDecryptingPartInputStream.createFor(attachmentSecret, file, offset)) {
+        assertArrayEquals("offset: " + offset, Arrays.copyOfRange(plaintext, offset, LENGTH), readAll(in));
+      }
+    }
+  }
+
+  @Test
+  public void createFor_blockAlignedLength_offsetAtEndIsEmpty() throws Exception {
+    byte[] plaintext = bytes(64, 5);
+    File   file      = encrypt(plaintext);
+
+    try (InputStream in = ClassicDecryptingPartInputStream.createFor(attachmentSecret, file, 64)) {
+      assertEquals(0, readAll(in).length);
+    }
+
+    try (InputStream in = ClassicDecryptingPartInputStream.createFor(attachmentSecret, file, 48)) {
+      assertArrayEquals(Arrays.copyOfRange(plaintext, 48, 64), readAll(in));
+    }
+  }
+
+  @Test
+  public void createFor_offsetPastEnd_throws() throws Exception {
+    File file = encrypt(bytes(LENGTH, 6));
+
+    for (int offset : new int[] { LENGTH + 1, LENGTH + 100 }) {
+      try {
+        ClassicDecryptingPartInputStream.createFor(attachmentSecret, file, offset).close();
+        fail("offset: " + offset);
+      } catch (IOException expected) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void createFor_badMac_throws() throws Exception {
+    File file = encrypt(bytes(LENGTH, 7));
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.seek(100);
+      int value = raf.read();
+      raf.seek(100);
+      raf.write(value ^ 1);
+    }
+
+    try {
+      ClassicDecryptingPartInputStream.createFor(attachmentSecret, file, 32).close();
+      fail();
+    } catch (IOException e) {
+      assertEquals("Bad MAC", e.getMessage());
+    }
+  }
+
+  /**
+   * Writes the classic layout: the IV, the AES/CBC ciphertext and an HmacSHA1 over both.
+   */
+  private File encrypt(byte[] plaintext) throws Exception {
+    File   file = temporaryFolder.newFile();
+    byte[] iv   = bytes(16, 8);
+
+    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(attachmentSecret.getClassicCipherKey(), "AES"), new IvParameterSpec(iv));
+
+    byte[] ciphertext = cipher.doFinal(plaintext);
+
+    Mac mac = Mac.getInstance("HmacSHA1");
+    mac.init(new SecretKeySpec(attachmentSecret.getClassicMacKey(), "HmacSHA1"));
+    mac.update(iv);
+    mac.update(ciphertext);
+
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(iv);
+      out.write(ciphertext);
+      out.write(mac.doFinal());
+    }
+
+    return file;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    byte[]                buffer = new byte[777];
+    int                   read;
+
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static byte[] bytes(int length, long seed) {
+    byte[] bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,97 @@
+package org.thoughtcrime.securesms.crypto;
+
+import android.app.Application;
+import android.util.Pair;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class ModernDecryptingPartInputStreamTest {
+
+  private static final int   LENGTH  = 10_000;
+  private static final int[] OFFSETS = { 0, 1, 15, 16, 17, 31, 33, 4095, 4096, 4097, LENGTH - 17, LENGTH - 1, LENGTH };
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AttachmentSecret attachmentSecret = new AttachmentSecret(null, null, bytes(32, 1));
+
+  @Test
+  public void createFor_inlineRandom_offsetsMatchPlaintext() throws IOException {
+    byte[] plaintext = bytes(LENGTH, 2);
+    File   file      = encrypt(plaintext, true).second;
+
+    for (int offset : OFFSETS) {
+      try (InputStream in = ModernDecryptingPartInputStream.createFor(attachmentSecret, file, offset)) {
+        assertArrayEquals("offset: " + offset, Arrays.copyOfRange(plaintext, offset, LENGTH), readAll(in));
+      }
+    }
+  }
+
+  @Test
+  public void createFor_separateRandom_offsetsMatchPlaintext() throws IOException {
+    byte[]             plaintext = bytes(LENGTH, 3);
+    Pair<byte[], File> encrypted = encrypt(plaintext, false);
+
+    for (int offset : OFFSETS) {
+      try (InputStream in = ModernDecryptingPartInputStream.createFor(attachmentSecret, encrypted.first, encrypted.second, offset)) {
+        assertArrayEquals("offset: " + offset, Arrays.copyOfRange(plaintext, offset, LENGTH), readAll(in));
+      }
+    }
+  }
+
+  @Test
+  public void createFor_blockAlignedOffsetPastEnd_isEmpty() throws IOException {
+    File file = encrypt(bytes(LENGTH, 4), true).second;
+
+    try (InputStream in = ModernDecryptingPartInputStream.createFor(attachmentSecret, file, LENGTH + 16 - LENGTH % 16)) {
+      assertEquals(0, readAll(in).length);
+    }
+  }
+
+  private Pair<byte[], File> encrypt(byte[] plaintext, boolean inline) throws IOException {
+    File                       file      = temporaryFolder.newFile();
+    Pair<byte[], OutputStream> encrypted = ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, inline);
+
+    try (OutputStream outputStream = encrypted.second) {
+      outputStream.write(plaintext);
+    }
+
+    return new Pair<>(encrypted.first, file);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    byte[]                buffer = new byte[777];
+    int                   read;
+
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static byte[] bytes(int length, long seed) {
+    byte[] bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+}
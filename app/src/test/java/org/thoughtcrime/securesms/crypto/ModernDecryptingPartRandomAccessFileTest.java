@@ -0,0 +1,157 @@
+package org.thoughtcrime.securesms.crypto;
+
+import android.app.Application;
+import android.util.Pair;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class ModernDecryptingPartRandomAccessFileTest {
+
+  private static final int LENGTH = 10_000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final AttachmentSecret attachmentSecret = new AttachmentSecret(null, null, bytes(32, 1));
+
+  @Test
+  public void read_inlineRandom_unalignedRangesMatchPlaintext() throws IOException {
+    byte[] plaintext = bytes(LENGTH, 2);
+    File   file      = encrypt(plaintext, true).second;
+
+    try (ModernDecryptingPartRandomAccessFile reader = ModernDecryptingPartRandomAccessFile.createFor(attachmentSecret, null, file)) {
+      assertEquals(LENGTH, reader.length());
+
+      for (int position : new int[] { 0, 1, 15, 16, 17, 31, 33, 4095, 4096, 4097, LENGTH - 17, LENGTH - 1 }) {
+        for (int length : new int[] { 1, 2, 15, 16, 17, 31, 33, 100, 1000 }) {
+          assertRange(reader, plaintext, position, length);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void read_separateRandom_unalignedRangesMatchPlaintext() throws IOException {
+    byte[]             plaintext = bytes(LENGTH, 3);
+    Pair<byte[], File> encrypted = encrypt(plaintext, false);
+
+    try (ModernDecryptingPartRandomAccessFile reader = ModernDecryptingPartRandomAccessFile.createFor(attachmentSecret, encrypted.first, encrypted.second)) {
+      assertEquals(LENGTH, reader.length());
+
+      Random random = new Random(4);
+
+      for (int i = 0; i < 500; i++) {
+        assertRange(reader, plaintext, random.nextInt(LENGTH), 1 + random.nextInt(200));
+      }
+    }
+  }
+
+  @Test
+  public void read_pastEnd_returnsRemainderThenEndOfFile() throws IOException {
+    byte[] plaintext = bytes(LENGTH, 5);
+    File   file      = encrypt(plaintext, true).second;
+
+    try (ModernDecryptingPartRandomAccessFile reader = ModernDecryptingPartRandomAccessFile.createFor(attachmentSecret, null, file)) {
+      byte[] buffer = new byte[64];
+
+      assertEquals(7, reader.read(LENGTH - 7, buffer, 0, buffer.length));
+      assertArrayEquals(Arrays.copyOfRange(plaintext, LENGTH - 7, LENGTH), Arrays.copyOf(buffer, 7));
+
+      assertEquals(-1, reader.read(LENGTH, buffer, 0, buffer.length));
+      assertEquals(-1, reader.read(LENGTH + 20, buffer, 0, buffer.length));
+    }
+  }
+
+  @Test
+  public void read_atBufferOffset_writesOnlyRequestedRegion() throws IOException {
+    byte[] plaintext = bytes(LENGTH, 6);
+    File   file      = encrypt(plaintext, true).second;
+
+    try (ModernDecryptingPartRandomAccessFile reader = ModernDecryptingPartRandomAccessFile.createFor(attachmentSecret, null, file)) {
+      byte[] buffer = new byte[40];
+
+      assertEquals(20, reader.read(27, buffer, 10, 20));
+      assertArrayEquals(new byte[10], Arrays.copyOfRange(buffer, 0, 10));
+      assertArrayEquals(Arrays.copyOfRange(plaintext, 27, 47), Arrays.copyOfRange(buffer, 10, 30));
+      assertArrayEquals(new byte[10], Arrays.copyOfRange(buffer, 30, 40));
+    }
+  }
+
+  @Test
+  public void read_concurrentReaders_allMatchPlaintext() throws Exception {
+    byte[] plaintext = bytes(LENGTH, 7);
+    File   file      = encrypt(plaintext, true).second;
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try (ModernDecryptingPartRandomAccessFile reader = ModernDecryptingPartRandomAccessFile.createFor(attachmentSecret, null, file)) {
+      List<Future<Void>> futures = new ArrayList<>();
+
+      for (int thread = 0; thread < 8; thread++) {
+        final Random random = new Random(thread);
+
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 300; i++) {
+            assertRange(reader, plaintext, random.nextInt(LENGTH), 1 + random.nextInt(300));
+          }
+          return null;
+        }));
+      }
+
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertRange(ModernDecryptingPartRandomAccessFile reader, byte[] plaintext, int position, int length) throws IOException {
+    byte[] buffer   = new byte[length];
+    int    expected = Math.min(length, plaintext.length - position);
+    int    read     = reader.read(position, buffer, 0, length);
+
+    assertEquals("position: " + position + ", length: " + length, expected, read);
+    assertArrayEquals("position: " + position + ", length: " + length,
+                      Arrays.copyOfRange(plaintext, position, position + expected),
+                      Arrays.copyOf(buffer, expected));
+  }
+
+  private Pair<byte[], File> encrypt(byte[] plaintext, boolean inline) throws IOException {
+    File                       file      = temporaryFolder.newFile();
+    Pair<byte[], OutputStream> encrypted = ModernEncryptingPartOutputStream.createFor(attachmentSecret, file, inline);
+
+    try (OutputStream outputStream = encrypted.second) {
+      outputStream.write(plaintext);
+    }
+
+    return new Pair<>(encrypted.first, file);
+  }
+
+  private static byte[] bytes(int length, long seed) {
+    byte[] bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,70 @@
+package org.thoughtcrime.securesms.crypto;
+
+import org.junit.Test;
+import org.whispersystems.libsignal.state.PreKeyRecord;
+import org.whispersystems.libsignal.util.Medium;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class PreKeyUtilTest {
+
+  @Test
+  public void getPreKeyId_wrapsAtMediumMaxValue() {
+    int offset = Medium.MAX_VALUE - 2;
+
+    assertEquals(Medium.MAX_VALUE - 2, PreKeyUtil.getPreKeyId(offset, 0));
+    assertEquals(Medium.MAX_VALUE - 1, PreKeyUtil.getPreKeyId(offset, 1));
+    assertEquals(0, PreKeyUtil.getPreKeyId(offset, 2));
+    assertEquals(1, PreKeyUtil.getPreKeyId(offset, 3));
+  }
+
+  @Test
+  public void getNextPreKeyIdOffset_wrapsAtMediumMaxValue() {
+    assertEquals(101, PreKeyUtil.getNextPreKeyIdOffset(0, 100));
+    assertEquals(50, PreKeyUtil.getNextPreKeyIdOffset(Medium.MAX_VALUE - 51, 100));
+  }
+
+  @Test
+  public void consecutiveBatches_neverReuseIds() {
+    for (int start : new int[] { 0, 12345, Medium.MAX_VALUE - 250, Medium.MAX_VALUE - 101, Medium.MAX_VALUE - 100, Medium.MAX_VALUE - 1 }) {
+      Set<Integer> seen   = new HashSet<>();
+      int          offset = start;
+
+      for (int batch = 0; batch < 5; batch++) {
+        for (int i = 0; i < 100; i++) {
+          int id = PreKeyUtil.getPreKeyId(offset, i);
+
+          assertTrue("Id out of range: " + id, id >= 0 && id < Medium.MAX_VALUE);
+          assertTrue("Id reused: " + id + " starting at " + start, seen.add(id));
+        }
+
+        offset = PreKeyUtil.getNextPreKeyIdOffset(offset, 100);
+      }
+    }
+  }
+
+  @Test
+  public void generatePreKeyRecords_idsInOrderAcrossWraparound() {
+    int                offset  = Medium.MAX_VALUE - 30;
+    List<PreKeyRecord> records = PreKeyUtil.generatePreKeyRecords(offset, 100);
+    Set<String>        keys    = new HashSet<>();
+
+    assertEquals(100, records.size());
+
+    for (int i = 0; i < records.size(); i++) {
+      assertEquals((offset + i) % Medium.MAX_VALUE, records.get(i).getId());
+      assertTrue(keys.add(new String(records.get(i).getKeyPair().getPublicKey().serialize())));
+    }
+  }
+
+  @Test
+  public void generatePreKeyRecords_empty() {
+    assertFalse(PreKeyUtil.generatePreKeyRecords(0, 0).iterator().hasNext());
+  }
+}
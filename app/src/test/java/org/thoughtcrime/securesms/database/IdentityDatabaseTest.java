@@ -0,0 +1,182 @@
+package org.thoughtcrime.securesms.database;
+
+import android.app.Application;
+
+import net.sqlcipher.MatrixCursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.thoughtcrime.securesms.database.IdentityDatabase.IdentityRecord;
+import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+import org.thoughtcrime.securesms.util.Base64;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class IdentityDatabaseTest {
+
+  private static final String[] COLUMNS = { "_id", "address", "key", "timestamp", "first_use", "nonblocking_approval", "verified" };
+
+  private final Set<Long>        stored  = new HashSet<>();
+  private final List<List<Long>> batches = new ArrayList<>();
+
+  private IdentityDatabase identityDatabase;
+
+  @Before
+  public void setUp() {
+    SQLCipherOpenHelper helper = mock(SQLCipherOpenHelper.class);
+    SQLiteDatabase      db     = mock(SQLiteDatabase.class);
+
+    when(helper.getReadableDatabase()).thenReturn(db);
+
+    when(db.query(eq(IdentityDatabase.TABLE_NAME), any(String[].class), anyString(), any(String[].class), anyString(), anyString(), anyString())).thenAnswer(invocation -> query((String) invocation.getArguments()[2]));
+
+    identityDatabase = new IdentityDatabase(mock(Application.class), helper);
+  }
+
+  @Test
+  public void getIdentities_empty() {
+    assertTrue(identityDatabase.getIdentities(Collections.emptyList()).isEmpty());
+    assertTrue(batches.isEmpty());
+  }
+
+  @Test
+  public void getIdentities_atBatchSize_singleQuery() {
+    storeRange(1, 500);
+
+    assertIdentities(identityDatabase.getIdentities(ids(1, 500)), 1, 500);
+    assertBatchSizes(500);
+  }
+
+  @Test
+  public void getIdentities_oneOverBatchSize_secondQuery() {
+    storeRange(1, 501);
+
+    assertIdentities(identityDatabase.getIdentities(ids(1, 501)), 1, 501);
+    assertBatchSizes(500, 1);
+  }
+
+  @Test
+  public void getIdentities_oneUnderBatchSize_singleQuery() {
+    storeRange(1, 499);
+
+    assertIdentities(identityDatabase.getIdentities(ids(1, 499)), 1, 499);
+    assertBatchSizes(499);
+  }
+
+  @Test
+  public void getIdentities_manyBatches_everyIdQueriedOnce() {
+    storeRange(1, 1200);
+
+    assertIdentities(identityDatabase.getIdentities(ids(1, 1200)), 1, 1200);
+    assertBatchSizes(500, 500, 200);
+
+    Set<Long> queried = new HashSet<>();
+    for (List<Long> batch : batches) {
+      for (long id : batch) {
+        assertTrue("queried twice: " + id, queried.add(id));
+      }
+    }
+    assertEquals(1200, queried.size());
+  }
+
+  @Test
+  public void getIdentities_missingIdentities_omitted() {
+    storeRange(1, 250);
+    storeRange(751, 1000);
+
+    Map<RecipientId, IdentityRecord> results = identityDatabase.getIdentities(ids(1, 1000));
+
+    assertEquals(500, results.size());
+    assertTrue(results.containsKey(RecipientId.from(250)));
+    assertTrue(results.containsKey(RecipientId.from(751)));
+    assertFalse(results.containsKey(RecipientId.from(500)));
+    assertFalse(results.containsKey(RecipientId.from(501)));
+    assertBatchSizes(500, 500);
+  }
+
+  private void storeRange(long first, long last) {
+    for (long id = first; id <= last; id++) {
+      stored.add(id);
+    }
+  }
+
+  private static List<RecipientId> ids(long first, long last) {
+    List<RecipientId> ids = new ArrayList<>();
+
+    for (long id = first; id <= last; id++) {
+      ids.add(RecipientId.from(id));
+    }
+
+    return ids;
+  }
+
+  private void assertBatchSizes(int... sizes) {
+    assertEquals(sizes.length, batches.size());
+
+    for (int i = 0; i < sizes.length; i++) {
+      assertEquals(sizes[i], batches.get(i).size());
+    }
+  }
+
+  private static void assertIdentities(Map<RecipientId, IdentityRecord> results, long first, long last) {
+    assertEquals(last - first + 1, results.size());
+
+    for (long id = first; id <= last; id++) {
+      IdentityRecord record = results.get(RecipientId.from(id));
+
+      assertEquals(RecipientId.from(id), record.getRecipientId());
+      assertEquals(id, record.getTimestamp());
+    }
+  }
+
+  private MatrixCursor query(String selection) {
+    String     prefix = "address IN (";
+    List<Long> batch  = new ArrayList<>();
+
+    assertTrue(selection, selection.startsWith(prefix) && selection.endsWith(")"));
+
+    for (String id : selection.substring(prefix.length(), selection.length() - 1).split(",")) {
+      batch.add(Long.parseLong(id));
+    }
+
+    batches.add(batch);
+
+    MatrixCursor cursor = new MatrixCursor(COLUMNS);
+
+    for (long id : batch) {
+      if (stored.contains(id)) {
+        cursor.addRow(new Object[] { id, id, identityKey(id), id, 0, 0, 0 });
+      }
+    }
+
+    return cursor;
+  }
+
+  private static String identityKey(long id) {
+    byte[] key = new byte[33];
+    key[0] = 0x05;
+    key[1] = (byte) id;
+    return Base64.encodeBytes(key);
+  }
+}
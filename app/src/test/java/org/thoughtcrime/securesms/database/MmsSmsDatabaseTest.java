@@ -0,0 +1,178 @@
+package org.thoughtcrime.securesms.database;
+
+import android.app.Application;
+import android.content.ContentValues;
+
+import net.sqlcipher.MatrixCursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs {@link MmsSmsDatabase#getTrimCutoffDate(long, int)} against Robolectric's SQLite, since
+ * SQLCipher can't be loaded on the JVM.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class MmsSmsDatabaseTest {
+
+  private static final long THREAD_ID       = 1;
+  private static final long OTHER_THREAD_ID = 2;
+
+  private android.database.sqlite.SQLiteDatabase sqlite;
+  private MmsSmsDatabase                         mmsSmsDatabase;
+  private int                                    queries;
+
+  @Before
+  public void setUp() {
+    sqlite = android.database.sqlite.SQLiteDatabase.create(null);
+    sqlite.execSQL("CREATE TABLE " + SmsDatabase.TABLE_NAME + " (_id INTEGER PRIMARY KEY, " + MmsSmsColumns.THREAD_ID + " INTEGER, " + SmsDatabase.DATE_RECEIVED + " INTEGER)");
+    sqlite.execSQL("CREATE TABLE " + MmsDatabase.TABLE_NAME + " (_id INTEGER PRIMARY KEY, " + MmsSmsColumns.THREAD_ID + " INTEGER, " + MmsDatabase.DATE_RECEIVED + " INTEGER)");
+
+    SQLCipherOpenHelper helper = mock(SQLCipherOpenHelper.class);
+    SQLiteDatabase      db     = mock(SQLiteDatabase.class);
+
+    when(helper.getReadableDatabase()).thenReturn(db);
+    when(db.rawQuery(anyString(), any(String[].class))).thenAnswer(invocation -> {
+      queries++;
+      return query((String) invocation.getArguments()[0], (String[]) invocation.getArguments()[1]);
+    });
+
+    mmsSmsDatabase = new MmsSmsDatabase(mock(Application.class), helper);
+  }
+
+  @After
+  public void tearDown() {
+    sqlite.close();
+  }
+
+  @Test
+  public void getTrimCutoffDate_nonPositiveLength_doesNotQuery() {
+    insertSms(THREAD_ID, 1);
+
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 0));
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, -5));
+    assertEquals(0, queries);
+  }
+
+  @Test
+  public void getTrimCutoffDate_emptyThread() {
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 1));
+  }
+
+  @Test
+  public void getTrimCutoffDate_threadNotLongerThanLength() {
+    for (int i = 1; i <= 10; i++) insertSms(THREAD_ID, i);
+
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 10));
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 11));
+  }
+
+  @Test
+  public void getTrimCutoffDate_oneOverLength_returnsOldestSurvivor() {
+    for (int i = 1; i <= 11; i++) insertSms(THREAD_ID, i * 10);
+
+    assertEquals(20, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 10));
+    assertEquals(110, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 1));
+  }
+
+  @Test
+  public void getTrimCutoffDate_interleavedSmsAndMms() {
+    List<Long> dates = new ArrayList<>();
+
+    for (long date = 1; date <= 40; date++) {
+      if (date % 3 == 0) insertMms(THREAD_ID, date);
+      else               insertSms(THREAD_ID, date);
+
+      dates.add(date);
+    }
+
+    for (int length = 1; length < dates.size(); length++) {
+      assertEquals("length: " + length, expectedCutoff(dates, length), mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, length));
+    }
+
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, dates.size()));
+  }
+
+  @Test
+  public void getTrimCutoffDate_ignoresOtherThreads() {
+    for (int i = 1; i <= 5; i++)  insertSms(THREAD_ID, i);
+    for (int i = 6; i <= 20; i++) insertMms(OTHER_THREAD_ID, i);
+
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 5));
+    assertEquals(2, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 4));
+  }
+
+  @Test
+  public void getTrimCutoffDate_aroundTrimBatchSize() {
+    List<Long> dates = new ArrayList<>();
+
+    for (long date = 1; date <= 1001; date++) {
+      if (date % 2 == 0) insertMms(THREAD_ID, date);
+      else               insertSms(THREAD_ID, date);
+
+      dates.add(date);
+    }
+
+    for (int length : new int[] { 499, 500, 501, 999, 1000 }) {
+      assertEquals("length: " + length, expectedCutoff(dates, length), mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, length));
+    }
+
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 1001));
+    assertEquals(-1, mmsSmsDatabase.getTrimCutoffDate(THREAD_ID, 1002));
+  }
+
+  private static long expectedCutoff(List<Long> dates, int length) {
+    List<Long> newestFirst = new ArrayList<>(dates);
+    Collections.sort(newestFirst, Collections.reverseOrder());
+    return newestFirst.get(length - 1);
+  }
+
+  private void insertSms(long threadId, long dateReceived) {
+    ContentValues values = new ContentValues(2);
+    values.put(MmsSmsColumns.THREAD_ID, threadId);
+    values.put(SmsDatabase.DATE_RECEIVED, dateReceived);
+    sqlite.insert(SmsDatabase.TABLE_NAME, null, values);
+  }
+
+  private void insertMms(long threadId, long dateReceived) {
+    ContentValues values = new ContentValues(2);
+    values.put(MmsSmsColumns.THREAD_ID, threadId);
+    values.put(MmsDatabase.DATE_RECEIVED, dateReceived);
+    sqlite.insert(MmsDatabase.TABLE_NAME, null, values);
+  }
+
+  private MatrixCursor query(String sql, String[] args) {
+    try (android.database.Cursor cursor = sqlite.rawQuery(sql, args)) {
+      MatrixCursor result = new MatrixCursor(cursor.getColumnNames());
+
+      while (cursor.moveToNext()) {
+        Object[] row = new Object[cursor.getColumnCount()];
+
+        for (int i = 0; i < row.length; i++) {
+          row[i] = cursor.getLong(i);
+        }
+
+        result.addRow(row);
+      }
+
+      return result;
+    }
+  }
+}
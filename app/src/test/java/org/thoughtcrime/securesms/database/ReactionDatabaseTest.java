@@ -0,0 +1,255 @@
+package org.thoughtcrime.securesms.database;
+
+import android.app.Application;
+import android.content.ContentValues;
+
+import net.sqlcipher.MatrixCursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.thoughtcrime.securesms.database.helpers.SQLCipherOpenHelper;
+import org.thoughtcrime.securesms.database.model.ReactionRecord;
+import org.thoughtcrime.securesms.recipients.RecipientId;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class ReactionDatabaseTest {
+
+  private static final String[] COLUMNS = { "_id", "message_id", "is_mms", "author_id", "emoji", "date_sent", "date_received" };
+
+  private final List<Object[]> rows = new ArrayList<>();
+
+  private ReactionDatabase reactionDatabase;
+  private int              queries;
+  private Runnable         duringQuery;
+
+  @Before
+  public void setUp() {
+    SQLCipherOpenHelper helper = mock(SQLCipherOpenHelper.class);
+    SQLiteDatabase      db     = mock(SQLiteDatabase.class);
+
+    when(helper.getReadableDatabase()).thenReturn(db);
+    when(helper.getWritableDatabase()).thenReturn(db);
+
+    when(db.query(eq(ReactionDatabase.TABLE_NAME), any(String[].class), anyString(), any(String[].class), anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+      queries++;
+
+      if (duringQuery != null) {
+        duringQuery.run();
+        duringQuery = null;
+      }
+
+      return query((String) invocation.getArguments()[2], (String[]) invocation.getArguments()[3]);
+    });
+
+    when(db.insert(eq(ReactionDatabase.TABLE_NAME), anyString(), any(ContentValues.class))).thenAnswer(invocation -> {
+      ContentValues values = (ContentValues) invocation.getArguments()[2];
+      insert(values.getAsLong("message_id"), values.getAsInteger("is_mms") == 1, values.getAsString("emoji"));
+      return (long) rows.size();
+    });
+
+    reactionDatabase = new ReactionDatabase(mock(Application.class), helper);
+  }
+
+  @Test
+  public void getReactions_secondReadIsCached() {
+    insert(1, false, "a");
+
+    assertEmojis(reactionDatabase.getReactions(1, false), "a");
+    assertEmojis(reactionDatabase.getReactions(1, false), "a");
+    assertEquals(1, queries);
+  }
+
+  @Test
+  public void getReactions_smsAndMmsAreCachedSeparately() {
+    insert(1, false, "a");
+    insert(1, true, "b");
+
+    assertEmojis(reactionDatabase.getReactions(1, false), "a");
+    assertEmojis(reactionDatabase.getReactions(1, true), "b");
+    assertEquals(2, queries);
+  }
+
+  @Test
+  public void invalidate_requeriesOnlyThatMessage() {
+    insert(1, false, "a");
+    insert(2, false, "b");
+
+    reactionDatabase.getReactions(1, false);
+    reactionDatabase.getReactions(2, false);
+    insert(1, false, "c");
+    reactionDatabase.invalidate(1, false);
+
+    assertEmojis(reactionDatabase.getReactions(1, false), "a", "c");
+    assertEmojis(reactionDatabase.getReactions(2, false), "b");
+    assertEquals(3, queries);
+  }
+
+  @Test
+  public void addReaction_isSeenByNextRead() {
+    reactionDatabase.getReactions(1, true);
+    reactionDatabase.addReaction(1, true, new ReactionRecord("a", RecipientId.from(5), 1, 2));
+
+    assertEmojis(reactionDatabase.getReactions(1, true), "a");
+    assertEquals(2, queries);
+  }
+
+  @Test
+  public void getReactions_writeDuringRead_isNotCached() {
+    insert(1, false, "a");
+    duringQuery = () -> {
+      insert(1, false, "b");
+      reactionDatabase.invalidate(1, false);
+    };
+
+    reactionDatabase.getReactions(1, false);
+
+    assertEmojis(reactionDatabase.getReactions(1, false), "a", "b");
+    assertEquals(2, queries);
+  }
+
+  @Test
+  public void clearCache_requeriesEveryMessage() {
+    insert(1, false, "a");
+    insert(2, true, "b");
+
+    reactionDatabase.getReactions(1, false);
+    reactionDatabase.getReactions(2, true);
+    reactionDatabase.clearCache();
+    reactionDatabase.getReactions(1, false);
+    reactionDatabase.getReactions(2, true);
+
+    assertEquals(4, queries);
+  }
+
+  @Test
+  public void getReactionsFromCursor_loadsOneBatchPerWindow() {
+    android.database.MatrixCursor messages = new android.database.MatrixCursor(new String[] { "_id" });
+
+    for (long id = 1; id <= 250; id++) {
+      messages.addRow(new Object[] { id });
+      if (id % 7 == 0) insert(id, true, "r" + id);
+    }
+
+    readAll(messages, true);
+
+    assertEquals(3, queries);
+  }
+
+  @Test
+  public void getReactionsFromCursor_splitsMixedCursorByTransport() {
+    android.database.MatrixCursor messages = new android.database.MatrixCursor(new String[] { "_id", MmsSmsDatabase.TRANSPORT });
+
+    for (long id = 1; id <= 150; id++) {
+      boolean mms = id % 2 == 0;
+
+      messages.addRow(new Object[] { id, mms ? MmsSmsDatabase.MMS_TRANSPORT : MmsSmsDatabase.SMS_TRANSPORT });
+      if (id % 5 == 0) insert(id, mms, "r" + id);
+    }
+
+    readAll(messages, false);
+
+    assertEquals(4, queries);
+  }
+
+  @Test
+  public void getReactionsFromCursor_skipsCachedRows() {
+    android.database.MatrixCursor messages = new android.database.MatrixCursor(new String[] { "_id" });
+
+    for (long id = 1; id <= 3; id++) {
+      messages.addRow(new Object[] { id });
+    }
+
+    reactionDatabase.getReactions(2, false);
+    insert(2, false, "uncached");
+    insert(3, false, "c");
+
+    messages.moveToFirst();
+    reactionDatabase.getReactions(messages, 1, false);
+
+    assertEquals(2, queries);
+    assertTrue(reactionDatabase.getReactions(2, false).isEmpty());
+    assertEmojis(reactionDatabase.getReactions(3, false), "c");
+    assertEquals(2, queries);
+  }
+
+  private void readAll(android.database.MatrixCursor messages, boolean mms) {
+    while (messages.moveToNext()) {
+      int     position = messages.getPosition();
+      long    id       = messages.getLong(0);
+      boolean rowMms   = messages.getColumnCount() > 1 ? MmsSmsDatabase.MMS_TRANSPORT.equals(messages.getString(1)) : mms;
+
+      List<ReactionRecord> reactions = reactionDatabase.getReactions(messages, id, rowMms);
+
+      assertEquals(position, messages.getPosition());
+
+      if (hasReaction(id, rowMms)) assertEmojis(reactions, "r" + id);
+      else                         assertTrue(reactions.isEmpty());
+    }
+  }
+
+  private void insert(long messageId, boolean mms, String emoji) {
+    rows.add(new Object[] { (long) rows.size() + 1, messageId, mms ? 1 : 0, 5L, emoji, 1L, 2L });
+  }
+
+  private boolean hasReaction(long messageId, boolean mms) {
+    for (Object[] row : rows) {
+      if ((long) row[1] == messageId && (int) row[2] == (mms ? 1 : 0)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Evaluates the two selections {@link ReactionDatabase} uses: a single message id bound as an
+   * argument, or an inlined id list.
+   */
+  private MatrixCursor query(String selection, String[] args) {
+    Set<Long> messageIds = new HashSet<>();
+    String    isMms      = args[args.length - 1];
+
+    if (selection.contains(" IN (")) {
+      String ids = selection.substring(selection.indexOf(" IN (") + 5, selection.indexOf(')'));
+
+      for (String id : ids.split(",")) {
+        messageIds.add(Long.parseLong(id));
+      }
+    } else {
+      messageIds.add(Long.parseLong(args[0]));
+    }
+
+    MatrixCursor cursor = new MatrixCursor(COLUMNS);
+
+    for (Object[] row : rows) {
+      if (messageIds.contains((long) row[1]) && String.valueOf(row[2]).equals(isMms)) {
+        cursor.addRow(row);
+      }
+    }
+
+    return cursor;
+  }
+
+  private static void assertEmojis(List<ReactionRecord> reactions, String... emojis) {
+    assertEquals(emojis.length, reactions.size());
+
+    for (int i = 0; i < emojis.length; i++) {
+      assertEquals(emojis[i], reactions.get(i).getEmoji());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.thoughtcrime.securesms.database.helpers;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.thoughtcrime.securesms.database.LinkPreviewDatabase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public final class LinkPreviewCacheMigrationTest {
+
+  @Test
+  public void createLinkPreviewCache_matchesFreshInstall() {
+    SQLiteDatabase         db       = mock(SQLiteDatabase.class);
+    ArgumentCaptor<String> captor   = ArgumentCaptor.forClass(String.class);
+    List<String>           expected = new ArrayList<>();
+
+    expected.add(LinkPreviewDatabase.CREATE_TABLE);
+    expected.addAll(Arrays.asList(LinkPreviewDatabase.CREATE_INDEXES));
+
+    SQLCipherOpenHelper.createLinkPreviewCache(db);
+
+    verify(db, times(expected.size())).execSQL(captor.capture());
+
+    assertEquals(normalize(expected), normalize(captor.getAllValues()));
+  }
+
+  private static List<String> normalize(List<String> statements) {
+    List<String> normalized = new ArrayList<>(statements.size());
+
+    for (String statement : statements) {
+      normalized.add(statement.replaceAll("\\s+", " ").replaceAll(";\\s*$", "").trim());
+    }
+
+    return normalized;
+  }
+}
@@ -0,0 +1,118 @@
+package org.thoughtcrime.securesms.database.helpers;
+
+import android.app.Application;
+import android.content.ContentValues;
+
+import net.sqlcipher.MatrixCursor;
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.thoughtcrime.securesms.database.model.DatabaseProtos.ReactionList;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class ReactionMigrationTest {
+
+  private SQLiteDatabase db;
+  private MatrixCursor   sms;
+  private MatrixCursor   mms;
+
+  @Before
+  public void setUp() {
+    db  = mock(SQLiteDatabase.class);
+    sms = new MatrixCursor(new String[] { "_id", "reactions" });
+    mms = new MatrixCursor(new String[] { "_id", "reactions" });
+
+    when(db.query(eq("sms"), any(String[].class), anyString(), any(String[].class), anyString(), anyString(), anyString())).thenReturn(sms);
+    when(db.query(eq("mms"), any(String[].class), anyString(), any(String[].class), anyString(), anyString(), anyString())).thenReturn(mms);
+  }
+
+  @Test
+  public void moveReactionsToTable_insertsOneRowPerReaction() {
+    sms.addRow(new Object[] { 1L, reactions(reaction("a", 10, 100, 101), reaction("b", 11, 200, 201)) });
+    mms.addRow(new Object[] { 7L, reactions(reaction("c", 12, 300, 301)) });
+
+    SQLCipherOpenHelper.moveReactionsToTable(db);
+
+    List<ContentValues> inserted = captureInserts(3);
+
+    assertReaction(inserted.get(0), 1, 0, 10, "a", 100, 101);
+    assertReaction(inserted.get(1), 1, 0, 11, "b", 200, 201);
+    assertReaction(inserted.get(2), 7, 1, 12, "c", 300, 301);
+  }
+
+  @Test
+  public void moveReactionsToTable_clearsColumnsAfterCopying() {
+    sms.addRow(new Object[] { 1L, reactions(reaction("a", 10, 100, 101)) });
+
+    SQLCipherOpenHelper.moveReactionsToTable(db);
+
+    InOrder inOrder = inOrder(db);
+    inOrder.verify(db).insert(eq("reaction"), anyString(), any(ContentValues.class));
+    inOrder.verify(db).execSQL("UPDATE sms SET reactions = NULL WHERE reactions NOT NULL");
+    inOrder.verify(db).execSQL("UPDATE mms SET reactions = NULL WHERE reactions NOT NULL");
+  }
+
+  @Test
+  public void moveReactionsToTable_skipsUnparseableLists() {
+    sms.addRow(new Object[] { 1L, new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff } });
+    sms.addRow(new Object[] { 2L, reactions(reaction("a", 10, 100, 101)) });
+
+    SQLCipherOpenHelper.moveReactionsToTable(db);
+
+    assertReaction(captureInserts(1).get(0), 2, 0, 10, "a", 100, 101);
+    verify(db).execSQL("UPDATE sms SET reactions = NULL WHERE reactions NOT NULL");
+  }
+
+  private List<ContentValues> captureInserts(int count) {
+    ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+    verify(db, times(count)).insert(eq("reaction"), anyString(), captor.capture());
+    return captor.getAllValues();
+  }
+
+  private static byte[] reactions(ReactionList.Reaction... reactions) {
+    ReactionList.Builder builder = ReactionList.newBuilder();
+
+    for (ReactionList.Reaction reaction : reactions) {
+      builder.addReactions(reaction);
+    }
+
+    return builder.build().toByteArray();
+  }
+
+  private static ReactionList.Reaction reaction(String emoji, long author, long sentTime, long receivedTime) {
+    return ReactionList.Reaction.newBuilder()
+                                .setEmoji(emoji)
+                                .setAuthor(author)
+                                .setSentTime(sentTime)
+                                .setReceivedTime(receivedTime)
+                                .build();
+  }
+
+  private static void assertReaction(ContentValues values, long messageId, int isMms, long author, String emoji, long sent, long received) {
+    assertEquals(messageId, (long) values.getAsLong("message_id"));
+    assertEquals(isMms, (int) values.getAsInteger("is_mms"));
+    assertEquals(author, (long) values.getAsLong("author_id"));
+    assertEquals(emoji, values.getAsString("emoji"));
+    assertEquals(sent, (long) values.getAsLong("date_sent"));
+    assertEquals(received, (long) values.getAsLong("date_received"));
+  }
+}
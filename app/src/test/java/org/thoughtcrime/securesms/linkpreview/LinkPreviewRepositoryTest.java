@@ -0,0 +1,202 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import android.app.Application;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.thoughtcrime.securesms.database.LinkPreviewDatabase;
+import org.thoughtcrime.securesms.net.RequestController;
+import org.whispersystems.libsignal.util.guava.Optional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, application = Application.class)
+public final class LinkPreviewRepositoryTest {
+
+  private static final String   PAGE      = "<html><head><meta property=\"og:title\" content=\"Title\" /></head><body></body></html>";
+  private static final Executor IMMEDIATE = Runnable::run;
+
+  private HttpServer            server;
+  private AtomicInteger         requestCount;
+  private CountDownLatch        received;
+  private CountDownLatch        release;
+  private OkHttpClient          client;
+  private LinkPreviewDatabase   database;
+  private LinkPreviewRepository repository;
+
+  @Before
+  public void setUp() throws IOException {
+    requestCount = new AtomicInteger();
+    received     = new CountDownLatch(1);
+    release      = new CountDownLatch(1);
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      requestCount.incrementAndGet();
+      received.countDown();
+
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+
+      int    code = exchange.getRequestURI().getPath().equals("/error") ? 500 : 200;
+      byte[] body = PAGE.getBytes(StandardCharsets.UTF_8);
+
+      exchange.sendResponseHeaders(code, body.length);
+
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+
+    client     = new OkHttpClient();
+    database   = mock(LinkPreviewDatabase.class);
+    repository = new LinkPreviewRepository(client);
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  public void fetchMetadata_cacheHit_doesNotRequest() {
+    String                               url    = url("/page");
+    LinkPreviewMetadata                  cached = new LinkPreviewMetadata(Optional.of("Cached"), Optional.absent());
+    AtomicReference<LinkPreviewMetadata> result = new AtomicReference<>();
+
+    when(database.get(eq(url), anyLong())).thenReturn(cached);
+
+    repository.fetchMetadata(database, IMMEDIATE, url, result::set);
+
+    assertEquals(cached, result.get());
+    assertEquals(0, requestCount.get());
+    verify(database, never()).put(anyString(), any(LinkPreviewMetadata.class), anyLong(), anyLong());
+  }
+
+  @Test
+  public void fetchMetadata_cacheMiss_requestsAndStores() throws InterruptedException {
+    String                               url    = url("/page");
+    AtomicReference<LinkPreviewMetadata> result = new AtomicReference<>();
+    CountDownLatch                       done   = new CountDownLatch(1);
+
+    release.countDown();
+
+    repository.fetchMetadata(database, IMMEDIATE, url, metadata -> {
+      result.set(metadata);
+      done.countDown();
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals("Title", result.get().getTitle().get());
+    assertEquals(1, requestCount.get());
+
+    ArgumentCaptor<LinkPreviewMetadata> stored       = ArgumentCaptor.forClass(LinkPreviewMetadata.class);
+    ArgumentCaptor<Long>                fetchedAt    = ArgumentCaptor.forClass(Long.class);
+    ArgumentCaptor<Long>                fetchedSince = ArgumentCaptor.forClass(Long.class);
+
+    verify(database).put(eq(url), stored.capture(), fetchedAt.capture(), fetchedSince.capture());
+
+    assertEquals(result.get(), stored.getValue());
+    assertEquals(TimeUnit.DAYS.toMillis(1), fetchedAt.getValue() - fetchedSince.getValue());
+  }
+
+  @Test
+  public void fetchMetadata_failedRequest_isNotStored() throws InterruptedException {
+    AtomicReference<LinkPreviewMetadata> result = new AtomicReference<>();
+    CountDownLatch                       done   = new CountDownLatch(1);
+
+    release.countDown();
+
+    repository.fetchMetadata(database, IMMEDIATE, url("/error"), metadata -> {
+      result.set(metadata);
+      done.countDown();
+    });
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(result.get().isEmpty());
+    verify(database, never()).put(anyString(), any(LinkPreviewMetadata.class), anyLong(), anyLong());
+  }
+
+  @Test
+  public void fetchMetadata_canceled_neitherCallsBackNorStores() throws InterruptedException {
+    AtomicReference<LinkPreviewMetadata> result = new AtomicReference<>();
+
+    RequestController controller = repository.fetchMetadata(database, IMMEDIATE, url("/page"), result::set);
+
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+
+    controller.cancel();
+    awaitNoRunningCalls();
+    release.countDown();
+
+    assertNull(result.get());
+    verify(database, never()).put(anyString(), any(LinkPreviewMetadata.class), anyLong(), anyLong());
+  }
+
+  @Test
+  public void fetchMetadata_canceledBeforeStart_neitherCallsBackNorStores() {
+    AtomicReference<Runnable>            queued = new AtomicReference<>();
+    AtomicReference<LinkPreviewMetadata> result = new AtomicReference<>();
+
+    repository.fetchMetadata(database, queued::set, url("/page"), result::set).cancel();
+    queued.get().run();
+    awaitNoRunningCalls();
+
+    assertNull(result.get());
+    verify(database, never()).put(anyString(), any(LinkPreviewMetadata.class), anyLong(), anyLong());
+  }
+
+  /**
+   * OkHttp only marks a call finished after its callback has returned.
+   */
+  private void awaitNoRunningCalls() {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+
+    while (client.dispatcher().runningCallsCount() > 0) {
+      if (System.currentTimeMillis() > deadline) throw new AssertionError("Call was not canceled.");
+      Thread.yield();
+    }
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+}
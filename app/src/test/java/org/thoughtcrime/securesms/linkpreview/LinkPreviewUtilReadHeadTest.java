@@ -0,0 +1,113 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class LinkPreviewUtilReadHeadTest {
+
+  private static final String HEAD = "<html><head>" +
+                                     "<meta property=\"og:title\" content=\"Title\" />" +
+                                     "<meta property=\"og:image\" content=\"https://example.com/image.jpg\" />";
+
+  private static final int BODY_CHUNK_SIZE = 64 * 1024;
+  private static final int BODY_CHUNKS     = 1024;
+
+  private HttpServer server;
+  private AtomicLong bodyBytesWritten;
+
+  @Before
+  public void setUp() throws IOException {
+    bodyBytesWritten = new AtomicLong();
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] body = new byte[BODY_CHUNK_SIZE];
+      Arrays.fill(body, (byte) 'x');
+
+      exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+      exchange.sendResponseHeaders(200, 0);
+
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write((HEAD + "</HEAD><body>").getBytes(StandardCharsets.UTF_8));
+
+        for (int i = 0; i < BODY_CHUNKS; i++) {
+          out.write(body);
+          out.flush();
+          bodyBytesWritten.addAndGet(body.length);
+        }
+      } catch (IOException e) {
+        // The client stopped reading after the head.
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void readHead_stopsAtEndOfHead_withoutReadingBody() throws IOException {
+    URL               url        = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    String            head;
+
+    try (Reader reader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)) {
+      head = LinkPreviewUtil.readHead(reader, 1024 * 1024);
+    } finally {
+      connection.disconnect();
+    }
+
+    assertEquals(HEAD, head);
+    assertTrue("Read too much of the body: " + bodyBytesWritten.get(), bodyBytesWritten.get() < (long) BODY_CHUNK_SIZE * BODY_CHUNKS);
+  }
+
+  @Test
+  public void readHead_stopsAtBody_whenHeadIsNotClosed() throws IOException {
+    assertEquals("<html><head><title>a</title>", LinkPreviewUtil.readHead(new StringReader("<html><head><title>a</title><BODY>text</body></html>"), 1024));
+  }
+
+  @Test
+  public void readHead_findsEndSplitAcrossReads() throws IOException {
+    StringBuilder html = new StringBuilder("<html><head>");
+
+    while (html.length() < 4096 - 3) {
+      html.append('a');
+    }
+
+    String head = html.toString();
+    html.append("</head><body></body></html>");
+
+    assertEquals(head, LinkPreviewUtil.readHead(new StringReader(html.toString()), 1024 * 1024));
+  }
+
+  @Test
+  public void readHead_limitsLength_whenNoHeadEnd() throws IOException {
+    assertEquals("<html><he", LinkPreviewUtil.readHead(new StringReader("<html><head><title>a</title>"), 9));
+  }
+
+  @Test
+  public void readHead_returnsWholeDocument_whenShorterThanLimit() throws IOException {
+    assertEquals("<meta property=\"og:title\" content=\"a\">", LinkPreviewUtil.readHead(new StringReader("<meta property=\"og:title\" content=\"a\">"), 1024));
+  }
+}
@@ -0,0 +1,234 @@
+package org.thoughtcrime.securesms.linkpreview;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thoughtcrime.securesms.net.RequestController;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class SingleFlightRequestsTest {
+
+  private HttpServer     server;
+  private AtomicInteger  requestCount;
+  private CountDownLatch release;
+
+  private final SingleFlightRequests<String, String> requests = new SingleFlightRequests<>();
+
+  @Before
+  public void setUp() throws IOException {
+    requestCount = new AtomicInteger();
+    release      = new CountDownLatch(1);
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      requestCount.incrementAndGet();
+
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+
+      byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+
+      exchange.sendResponseHeaders(200, body.length);
+
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void join_concurrentRequestsForSameUrl_fetchOnce() throws InterruptedException {
+    String         url     = url("/page");
+    List<String>   results = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done    = new CountDownLatch(5);
+
+    for (int i = 0; i < 5; i++) {
+      requests.join(url, result -> {
+        results.add(result);
+        done.countDown();
+      }, fetch(url));
+    }
+
+    release.countDown();
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(1, requestCount.get());
+    assertEquals(Collections.nCopies(5, "/page"), results);
+  }
+
+  @Test
+  public void join_differentUrls_fetchEach() throws InterruptedException {
+    CountDownLatch done = new CountDownLatch(2);
+
+    requests.join(url("/a"), result -> done.countDown(), fetch(url("/a")));
+    requests.join(url("/b"), result -> done.countDown(), fetch(url("/b")));
+
+    release.countDown();
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(2, requestCount.get());
+  }
+
+  @Test
+  public void join_afterCompletion_fetchesAgain() throws InterruptedException {
+    String url = url("/page");
+
+    release.countDown();
+
+    for (int i = 0; i < 2; i++) {
+      CountDownLatch done = new CountDownLatch(1);
+      requests.join(url, result -> done.countDown(), fetch(url));
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    assertEquals(2, requestCount.get());
+  }
+
+  @Test
+  public void cancel_oneCaller_othersStillComplete() {
+    FakeWork     work    = new FakeWork();
+    List<String> results = new ArrayList<>();
+
+    RequestController first = requests.join("key", result -> results.add("first"), work);
+    requests.join("key", result -> results.add("second"), work);
+
+    first.cancel();
+    work.complete("done");
+
+    assertEquals(1, work.starts);
+    assertFalse(work.canceled.get());
+    assertEquals(Collections.singletonList("second"), results);
+  }
+
+  @Test
+  public void cancel_allCallers_cancelsWork() {
+    FakeWork     work    = new FakeWork();
+    List<String> results = new ArrayList<>();
+
+    RequestController first  = requests.join("key", results::add, work);
+    RequestController second = requests.join("key", results::add, work);
+
+    first.cancel();
+    second.cancel();
+
+    assertTrue(work.canceled.get());
+
+    work.complete("done");
+
+    assertTrue(results.isEmpty());
+  }
+
+  @Test
+  public void join_afterAllCanceled_startsNewWork() {
+    FakeWork     work    = new FakeWork();
+    List<String> results = new ArrayList<>();
+
+    requests.join("key", results::add, work).cancel();
+    requests.join("key", results::add, work);
+
+    work.complete("done");
+
+    assertEquals(2, work.starts);
+    assertEquals(Collections.singletonList("done"), results);
+  }
+
+  @Test
+  public void join_workCompletesSynchronously() {
+    List<String> results = new ArrayList<>();
+
+    requests.join("key", results::add, callback -> {
+      callback.onComplete("done");
+      return () -> {};
+    });
+
+    assertEquals(Collections.singletonList("done"), results);
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  private static SingleFlightRequests.Work<String> fetch(String url) {
+    return callback -> {
+      Thread thread = new Thread(() -> {
+        try {
+          callback.onComplete(read(url));
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      });
+
+      thread.start();
+      return thread::interrupt;
+    };
+  }
+
+  private static String read(String url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+    try (InputStream in = connection.getInputStream()) {
+      ByteArrayOutputStream out    = new ByteArrayOutputStream();
+      byte[]                buffer = new byte[1024];
+      int                   read;
+
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static final class FakeWork implements SingleFlightRequests.Work<String> {
+    private final AtomicBoolean canceled = new AtomicBoolean();
+
+    private int                                    starts;
+    private LinkPreviewRepository.Callback<String> callback;
+
+    @Override
+    public RequestController start(LinkPreviewRepository.Callback<String> callback) {
+      this.starts++;
+      this.callback = callback;
+      return () -> canceled.set(true);
+    }
+
+    void complete(String result) {
+      callback.onComplete(result);
+    }
+  }
+}
@@ -71,4 +71,45 @@ public class SearchUtilTest {
 
     assertEquals(Arrays.asList(new Pair<>(8, 10)), result);
   }
+
+  @Test
+  public void getSnippet_shortTextIsUnchanged() {
+    assertEquals("abc def", SearchUtil.getSnippet(LOCALE, "abc def", "de"));
+  }
+
+  @Test
+  public void getSnippet_matchInMiddle() {
+    String text = "one two three four five six seven eight nine ten";
+
+    assertEquals("...three four five six seven eight nine...", SearchUtil.getSnippet(LOCALE, text, "Six"));
+  }
+
+  @Test
+  public void getSnippet_matchAtEdges() {
+    String text = "one two three four five six seven eight nine ten";
+
+    assertEquals("one two three four five six seven...", SearchUtil.getSnippet(LOCALE, text, "on"));
+    assertEquals("...four five six seven eight nine ten", SearchUtil.getSnippet(LOCALE, text, "te"));
+  }
+
+  @Test
+  public void getSnippet_onlyMatchesWordPrefixes() {
+    String text = "one two three four five six seven eight nine ten";
+
+    assertEquals("one two three four five six seven...", SearchUtil.getSnippet(LOCALE, text, "en"));
+  }
+
+  @Test
+  public void getSnippet_lowercasingChangesLength() {
+    String text = "\u0130stanbul \u0130zmir one two three four five six seven eight nine";
+
+    assertEquals("...three four five six seven eight nine", SearchUtil.getSnippet(LOCALE, text, "eight"));
+  }
+
+  @Test
+  public void getSnippet_turkishLocale() {
+    String text = "one two three four five six seven eight \u0130stanbul nine ten";
+
+    assertEquals("...five six seven eight \u0130stanbul nine ten", SearchUtil.getSnippet(new Locale("tr"), text, "\u0130STANBUL"));
+  }
 }
@@ -0,0 +1,146 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class RateLimitedFetcherTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void fetchAll_boundsConcurrency() throws Exception {
+    FakeEndpoint                         endpoint = new FakeEndpoint(20, 0);
+    RateLimitedFetcher<Integer, String> fetcher  = new RateLimitedFetcher<>(executor, 4, new TokenBucket(1000, 1000));
+
+    RateLimitedFetcher.Results<Integer, String> results = fetcher.fetchAll(keys(40), endpoint::fetch);
+
+    assertEquals(40, results.getSuccesses().size());
+    assertEquals(40, endpoint.requests.get());
+    assertTrue("Max in flight: " + endpoint.maxInFlight.get(), endpoint.maxInFlight.get() <= 4);
+    assertTrue("Max in flight: " + endpoint.maxInFlight.get(), endpoint.maxInFlight.get() > 1);
+  }
+
+  @Test
+  public void fetchAll_isRateLimited() throws Exception {
+    FakeEndpoint                         endpoint = new FakeEndpoint(0, 0);
+    RateLimitedFetcher<Integer, String> fetcher  = new RateLimitedFetcher<>(executor, 8, new TokenBucket(5, 50));
+
+    long startTime = System.nanoTime();
+    fetcher.fetchAll(keys(15), endpoint::fetch);
+    long elapsed   = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+    assertTrue("Elapsed: " + elapsed, elapsed >= 180);
+  }
+
+  @Test
+  public void fetchAll_collectsFailuresSeparately() throws Exception {
+    FakeEndpoint                         endpoint = new FakeEndpoint(1, 3);
+    RateLimitedFetcher<Integer, String> fetcher  = new RateLimitedFetcher<>(executor, 4, new TokenBucket(100, 1000));
+
+    RateLimitedFetcher.Results<Integer, String> results = fetcher.fetchAll(keys(30), endpoint::fetch);
+
+    assertEquals(20, results.getSuccesses().size());
+    assertEquals(10, results.getFailures().size());
+
+    for (int key : results.getFailures().keySet()) {
+      assertEquals(0, key % 3);
+    }
+
+    for (int key : results.getSuccesses().keySet()) {
+      assertEquals("profile-" + key, results.getSuccesses().get(key));
+    }
+  }
+
+  @Test
+  public void fetchAll_recordsRuntimeExceptionsAsFailures() throws Exception {
+    RateLimitedFetcher<Integer, String> fetcher = new RateLimitedFetcher<>(executor, 4, new TokenBucket(100, 1000));
+
+    RateLimitedFetcher.Results<Integer, String> results = fetcher.fetchAll(keys(10), key -> {
+      if (key % 2 == 0) {
+        throw new IllegalStateException("Bad response: " + key);
+      }
+      return "profile-" + key;
+    });
+
+    assertEquals(5, results.getSuccesses().size());
+    assertEquals(5, results.getFailures().size());
+
+    for (int key : results.getFailures().keySet()) {
+      assertEquals(0, key % 2);
+      assertTrue(results.getFailures().get(key).getCause() instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void fetchAll_empty() throws Exception {
+    RateLimitedFetcher<Integer, String> fetcher = new RateLimitedFetcher<>(executor, 4, new TokenBucket(1, 1));
+
+    RateLimitedFetcher.Results<Integer, String> results = fetcher.fetchAll(new ArrayList<>(), key -> { throw new AssertionError(); });
+
+    assertTrue(results.getSuccesses().isEmpty());
+    assertTrue(results.getFailures().isEmpty());
+  }
+
+  private static List<Integer> keys(int count) {
+    List<Integer> keys = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      keys.add(i);
+    }
+
+    return keys;
+  }
+
+  /**
+   * Stands in for the profile endpoint, with a fixed latency and optionally failing every nth key.
+   */
+  private static final class FakeEndpoint {
+    private final long          latencyMillis;
+    private final int           failEvery;
+    private final AtomicInteger requests    = new AtomicInteger();
+    private final AtomicInteger inFlight    = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private FakeEndpoint(long latencyMillis, int failEvery) {
+      this.latencyMillis = latencyMillis;
+      this.failEvery     = failEvery;
+    }
+
+    String fetch(Integer key) throws IOException {
+      requests.incrementAndGet();
+
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+
+      if (failEvery > 0 && key % failEvery == 0) {
+        throw new IOException("Rate limited: " + key);
+      }
+
+      return "profile-" + key;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.thoughtcrime.securesms.util.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public final class TokenBucketTest {
+
+  private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Test
+  public void reserve_allowsBurstUpToCapacity() {
+    TokenBucket bucket = new TokenBucket(3, 10);
+
+    assertEquals(0, bucket.reserve(0));
+    assertEquals(0, bucket.reserve(0));
+    assertEquals(0, bucket.reserve(0));
+    assertEquals(INTERVAL, bucket.reserve(0));
+    assertEquals(2 * INTERVAL, bucket.reserve(0));
+  }
+
+  @Test
+  public void reserve_refillsOverTime() {
+    TokenBucket bucket = new TokenBucket(2, 10);
+
+    bucket.reserve(0);
+    bucket.reserve(0);
+
+    assertEquals(0, bucket.reserve(INTERVAL));
+    assertEquals(INTERVAL, bucket.reserve(INTERVAL));
+  }
+
+  @Test
+  public void reserve_doesNotBankMoreThanCapacity() {
+    TokenBucket bucket = new TokenBucket(2, 10);
+    long        now    = TimeUnit.MINUTES.toNanos(5);
+
+    assertEquals(0, bucket.reserve(now));
+    assertEquals(0, bucket.reserve(now));
+    assertEquals(INTERVAL, bucket.reserve(now));
+  }
+
+  @Test
+  public void reserve_steadyRate() {
+    TokenBucket bucket = new TokenBucket(1, 10);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(0, bucket.reserve(i * INTERVAL));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_rejectsZeroRate() {
+    new TokenBucket(1, 0);
+  }
+}
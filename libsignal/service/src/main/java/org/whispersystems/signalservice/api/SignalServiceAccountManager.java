@@ -60,6 +60,7 @@ import org.whispersystems.signalservice.internal.storage.protos.StorageManifest;
 import org.whispersystems.signalservice.internal.storage.protos.WriteOperation;
 import org.whispersystems.signalservice.internal.util.StaticCredentialsProvider;
 import org.whispersystems.signalservice.internal.util.Util;
+import org.whispersystems.signalservice.internal.util.concurrent.TaskGroup;
 import org.whispersystems.util.Base64;
 
 import java.io.IOException;
@@ -79,6 +80,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import static org.whispersystems.signalservice.internal.push.ProvisioningProtos.ProvisionMessage;
 import static org.whispersystems.signalservice.internal.push.ProvisioningProtos.ProvisioningVersion;
@@ -93,6 +96,12 @@ public class SignalServiceAccountManager {
 
   private static final String TAG = SignalServiceAccountManager.class.getSimpleName();
 
+  static final int STORAGE_READ_MAX_ITEMS       = 1000;
+  static final int STORAGE_READ_MAX_CONCURRENCY = 3;
+
+  private static final int CONTACT_DISCOVERY_MAX_BATCH_SIZE  = 2048;
+  private static final int CONTACT_DISCOVERY_MAX_CONCURRENCY = 3;
+
   private final PushServiceSocket   pushServiceSocket;
   private final CredentialsProvider credentials;
   private final String              userAgent;
@@ -326,7 +335,31 @@ public class SignalServiceAccountManager {
       throws IOException
   {
     Map<String, String>       contactTokensMap = createDirectoryServerTokenMap(e164numbers);
-    List<ContactTokenDetails> activeTokens     = this.pushServiceSocket.retrieveDirectory(contactTokensMap.keySet());
+    List<List<String>>        batches          = partition(new ArrayList<>(contactTokensMap.keySet()), CONTACT_DISCOVERY_MAX_BATCH_SIZE);
+    List<ContactTokenDetails> activeTokens     = new LinkedList<>();
+
+    if (batches.size() <= 1) {
+      activeTokens.addAll(this.pushServiceSocket.retrieveDirectory(contactTokensMap.keySet()));
+    } else {
+      List<Callable<List<ContactTokenDetails>>> requests = new ArrayList<>(batches.size());
+
+      for (final List<String> batch : batches) {
+        requests.add(new Callable<List<ContactTokenDetails>>() {
+          @Override
+          public List<ContactTokenDetails> call() throws IOException {
+            return pushServiceSocket.retrieveDirectory(batch);
+          }
+        });
+      }
+
+      try {
+        for (List<ContactTokenDetails> batchTokens : TaskGroup.invokeAll(requests, CONTACT_DISCOVERY_MAX_CONCURRENCY)) {
+          activeTokens.addAll(batchTokens);
+        }
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+    }
 
     for (ContactTokenDetails activeToken : activeTokens) {
       activeToken.setNumber(contactTokensMap.get(activeToken.getToken()));
@@ -335,21 +368,63 @@ public class SignalServiceAccountManager {
     return activeTokens;
   }
 
-  public List<String> getRegisteredUsers(KeyStore iasKeyStore, Set<String> e164numbers, String enclaveId)
+  /**
+   * Looks up the numbers in batches of at most {@link #CONTACT_DISCOVERY_MAX_BATCH_SIZE}, with a
+   * bounded number of batches in flight at once. Every batch shares one authorization, but is sent
+   * under its own attestation, since the enclave binds each request ID to a single query.
+   */
+  public List<String> getRegisteredUsers(final KeyStore iasKeyStore, Set<String> e164numbers, final String enclaveId)
       throws IOException, Quote.InvalidQuoteFormatException, UnauthenticatedQuoteException, SignatureException, UnauthenticatedResponseException
   {
+    final String       authorization = pushServiceSocket.getContactDiscoveryAuthorization();
+    final List<String> addressBook   = new ArrayList<>(e164numbers.size());
+
+    for (String e164number : e164numbers) {
+      addressBook.add(e164number.substring(1));
+    }
+
+    List<List<String>> batches = partition(addressBook, CONTACT_DISCOVERY_MAX_BATCH_SIZE);
+
+    if (batches.size() <= 1) {
+      return getRegisteredUsersBatch(iasKeyStore, authorization, enclaveId, addressBook);
+    }
+
+    List<Callable<List<String>>> requests = new ArrayList<>(batches.size());
+
+    for (final List<String> batch : batches) {
+      requests.add(new Callable<List<String>>() {
+        @Override
+        public List<String> call() throws Exception {
+          return getRegisteredUsersBatch(iasKeyStore, authorization, enclaveId, batch);
+        }
+      });
+    }
+
     try {
-      String                 authorization     = pushServiceSocket.getContactDiscoveryAuthorization();
-      RemoteAttestation      remoteAttestation = RemoteAttestationUtil.getAndVerifyRemoteAttestation(pushServiceSocket, PushServiceSocket.ClientSet.ContactDiscovery, iasKeyStore, enclaveId, enclaveId, authorization);
-      List<String>           addressBook       = new LinkedList<>();
+      List<String> results = new LinkedList<>();
 
-      for (String e164number : e164numbers) {
-        addressBook.add(e164number.substring(1));
+      for (List<String> batchResults : TaskGroup.invokeAll(requests, CONTACT_DISCOVERY_MAX_CONCURRENCY)) {
+        results.addAll(batchResults);
       }
 
-      DiscoveryRequest  request  = ContactDiscoveryCipher.createDiscoveryRequest(addressBook, remoteAttestation);
-      DiscoveryResponse response = pushServiceSocket.getContactDiscoveryRegisteredUsers(authorization, request, remoteAttestation.getCookies(), enclaveId);
-      byte[]            data     = ContactDiscoveryCipher.getDiscoveryResponseData(response, remoteAttestation);
+      return results;
+    } catch (ExecutionException e) {
+      TaskGroup.rethrowIfInstance(e, Quote.InvalidQuoteFormatException.class);
+      TaskGroup.rethrowIfInstance(e, UnauthenticatedQuoteException.class);
+      TaskGroup.rethrowIfInstance(e, SignatureException.class);
+      TaskGroup.rethrowIfInstance(e, UnauthenticatedResponseException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private List<String> getRegisteredUsersBatch(KeyStore iasKeyStore, String authorization, String enclaveId, List<String> addressBook)
+      throws IOException, Quote.InvalidQuoteFormatException, UnauthenticatedQuoteException, SignatureException, UnauthenticatedResponseException
+  {
+    try {
+      RemoteAttestation remoteAttestation = RemoteAttestationUtil.getAndVerifyRemoteAttestation(pushServiceSocket, PushServiceSocket.ClientSet.ContactDiscovery, iasKeyStore, enclaveId, enclaveId, authorization);
+      DiscoveryRequest  request           = ContactDiscoveryCipher.createDiscoveryRequest(addressBook, remoteAttestation);
+      DiscoveryResponse response          = pushServiceSocket.getContactDiscoveryRegisteredUsers(authorization, request, remoteAttestation.getCookies(), enclaveId);
+      byte[]            data              = ContactDiscoveryCipher.getDiscoveryResponseData(response, remoteAttestation);
 
       Iterator<String> addressBookIterator = addressBook.iterator();
       List<String>     results             = new LinkedList<>();
@@ -433,16 +508,63 @@ public class SignalServiceAccountManager {
     }
   }
 
-  public List<SignalStorageRecord> readStorageRecords(StorageKey storageKey, List<byte[]> storageKeys) throws IOException, InvalidKeyException {
+  /**
+   * Reads the requested records in chunks of at most {@link #STORAGE_READ_MAX_ITEMS} keys, with a
+   * bounded number of chunks in flight at once. Each chunk is decrypted as soon as it arrives. The
+   * results are returned in chunk order.
+   */
+  public List<SignalStorageRecord> readStorageRecords(final StorageKey storageKey, List<byte[]> storageKeys) throws IOException, InvalidKeyException {
+    final String authToken = this.pushServiceSocket.getStorageAuth();
+
+    return readStorageRecords(storageKeys, new StorageRecordReader() {
+      @Override
+      public List<SignalStorageRecord> read(List<byte[]> chunk) throws IOException, InvalidKeyException {
+        return readStorageRecordsChunk(authToken, storageKey, chunk);
+      }
+    });
+  }
+
+  static List<SignalStorageRecord> readStorageRecords(List<byte[]> storageKeys, final StorageRecordReader reader) throws IOException, InvalidKeyException {
+    List<List<byte[]>> chunks = partition(storageKeys, STORAGE_READ_MAX_ITEMS);
+
+    if (chunks.size() <= 1) {
+      return reader.read(storageKeys);
+    }
+
+    List<Callable<List<SignalStorageRecord>>> requests = new ArrayList<>(chunks.size());
+
+    for (final List<byte[]> chunk : chunks) {
+      requests.add(new Callable<List<SignalStorageRecord>>() {
+        @Override
+        public List<SignalStorageRecord> call() throws IOException, InvalidKeyException {
+          return reader.read(chunk);
+        }
+      });
+    }
+
+    try {
+      List<SignalStorageRecord> result = new ArrayList<>(storageKeys.size());
+
+      for (List<SignalStorageRecord> chunkRecords : TaskGroup.invokeAll(requests, STORAGE_READ_MAX_CONCURRENCY)) {
+        result.addAll(chunkRecords);
+      }
+
+      return result;
+    } catch (ExecutionException e) {
+      TaskGroup.rethrowIfInstance(e, InvalidKeyException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private List<SignalStorageRecord> readStorageRecordsChunk(String authToken, StorageKey storageKey, List<byte[]> storageKeys) throws IOException, InvalidKeyException {
     ReadOperation.Builder operation = ReadOperation.newBuilder();
 
     for (byte[] key : storageKeys) {
       operation.addReadKey(ByteString.copyFrom(key));
     }
 
-    String                    authToken = this.pushServiceSocket.getStorageAuth();
-    StorageItems              items     = this.pushServiceSocket.readStorageItems(authToken, operation.build());
-    List<SignalStorageRecord> result    = new ArrayList<>(items.getItemsCount());
+    StorageItems              items  = this.pushServiceSocket.readStorageItems(authToken, operation.build());
+    List<SignalStorageRecord> result = new ArrayList<>(items.getItemsCount());
 
     if (items.getItemsCount() != storageKeys.size()) {
       Log.w(TAG, "Failed to find all remote keys! Requested: " + storageKeys.size() + ", Found: " + items.getItemsCount());
@@ -458,6 +580,17 @@ public class SignalServiceAccountManager {
 
     return result;
   }
+
+  private static <T> List<List<T>> partition(List<T> list, int chunkSize) {
+    List<List<T>> chunks = new ArrayList<>((list.size() + chunkSize - 1) / chunkSize);
+
+    for (int i = 0; i < list.size(); i += chunkSize) {
+      chunks.add(list.subList(i, Math.min(list.size(), i + chunkSize)));
+    }
+
+    return chunks;
+  }
+
   /**
    * @return If there was a conflict, the latest {@link SignalStorageManifest}. Otherwise absent.
    */
@@ -702,5 +835,9 @@ public class SignalServiceAccountManager {
     return tokenMap;
   }
 
+  interface StorageRecordReader {
+    List<SignalStorageRecord> read(List<byte[]> storageKeys) throws IOException, InvalidKeyException;
+  }
+
 
 }
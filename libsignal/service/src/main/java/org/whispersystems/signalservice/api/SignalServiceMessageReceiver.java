@@ -32,9 +32,11 @@ import org.whispersystems.signalservice.api.websocket.ConnectivityListener;
 import org.whispersystems.signalservice.internal.configuration.SignalServiceConfiguration;
 import org.whispersystems.signalservice.internal.push.PushServiceSocket;
 import org.whispersystems.signalservice.internal.push.SignalServiceEnvelopeEntity;
+import org.whispersystems.signalservice.internal.push.SignalServiceEnvelopeEntityListReader;
 import org.whispersystems.signalservice.internal.sticker.StickerProtos;
 import org.whispersystems.signalservice.internal.util.StaticCredentialsProvider;
 import org.whispersystems.signalservice.internal.util.Util;
+import org.whispersystems.signalservice.internal.util.concurrent.TaskGroup;
 import org.whispersystems.signalservice.internal.websocket.WebSocketConnection;
 
 import java.io.ByteArrayOutputStream;
@@ -46,6 +48,8 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The primary interface for receiving Signal Service messages.
@@ -55,6 +59,8 @@ import java.util.UUID;
 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
 public class SignalServiceMessageReceiver {
 
+  private static final int MAX_CONCURRENT_ACKS = 4;
+
   private final PushServiceSocket          socket;
   private final SignalServiceConfiguration urls;
   private final CredentialsProvider        credentialsProvider;
@@ -240,33 +246,48 @@ public class SignalServiceMessageReceiver {
     return retrieveMessages(new NullMessageReceivedCallback());
   }
 
-  public List<SignalServiceEnvelope> retrieveMessages(MessageReceivedCallback callback)
+  /**
+   * Retrieves queued messages page by page, handing each envelope to the callback as soon as it is
+   * parsed. Acknowledgements are sent concurrently while the rest of the page is read, and all of a
+   * page's acknowledgements complete before the next page is requested.
+   */
+  public List<SignalServiceEnvelope> retrieveMessages(final MessageReceivedCallback callback)
       throws IOException
   {
-    List<SignalServiceEnvelope>       results  = new LinkedList<>();
-    List<SignalServiceEnvelopeEntity> entities = socket.getMessages();
-
-    for (SignalServiceEnvelopeEntity entity : entities) {
-      SignalServiceEnvelope envelope;
-
-      if (entity.hasSource() && entity.getSourceDevice() > 0) {
-        SignalServiceAddress address = new SignalServiceAddress(UuidUtil.parseOrNull(entity.getSourceUuid()), entity.getSourceE164());
-        envelope = new SignalServiceEnvelope(entity.getType(), Optional.of(address),
-                                             entity.getSourceDevice(), entity.getTimestamp(),
-                                             entity.getMessage(), entity.getContent(),
-                                             entity.getServerTimestamp(), entity.getServerUuid());
-      } else {
-        envelope = new SignalServiceEnvelope(entity.getType(), entity.getTimestamp(),
-                                             entity.getMessage(), entity.getContent(),
-                                             entity.getServerTimestamp(), entity.getServerUuid());
-      }
+    return retrieveMessages(new SocketMessageSource(), callback);
+  }
 
-      callback.onMessage(envelope);
-      results.add(envelope);
+  static List<SignalServiceEnvelope> retrieveMessages(final MessageSource source, final MessageReceivedCallback callback)
+      throws IOException
+  {
+    final List<SignalServiceEnvelope> results = new LinkedList<>();
+    boolean                           more;
 
-      if (envelope.hasUuid()) socket.acknowledgeMessage(envelope.getUuid());
-      else                    socket.acknowledgeMessage(entity.getSourceE164(), entity.getTimestamp());
-    }
+    do {
+      final TaskGroup<Void> acks = new TaskGroup<>(MAX_CONCURRENT_ACKS);
+
+      more = source.getMessages(new SignalServiceEnvelopeEntityListReader.Listener() {
+        @Override
+        public void onEntity(SignalServiceEnvelopeEntity entity) {
+          SignalServiceEnvelope envelope = createEnvelope(entity);
+
+          callback.onMessage(envelope);
+          results.add(envelope);
+
+          acks.submit(new AcknowledgeTask(source, entity, envelope));
+        }
+      });
+
+      try {
+        acks.awaitAll();
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+
+      if (acks.isEmpty()) {
+        break;
+      }
+    } while (more);
 
     return results;
   }
@@ -275,6 +296,65 @@ public class SignalServiceMessageReceiver {
     socket.setSoTimeoutMillis(soTimeoutMillis);
   }
 
+  private static SignalServiceEnvelope createEnvelope(SignalServiceEnvelopeEntity entity) {
+    if (entity.hasSource() && entity.getSourceDevice() > 0) {
+      SignalServiceAddress address = new SignalServiceAddress(UuidUtil.parseOrNull(entity.getSourceUuid()), entity.getSourceE164());
+      return new SignalServiceEnvelope(entity.getType(), Optional.of(address),
+                                       entity.getSourceDevice(), entity.getTimestamp(),
+                                       entity.getMessage(), entity.getContent(),
+                                       entity.getServerTimestamp(), entity.getServerUuid());
+    } else {
+      return new SignalServiceEnvelope(entity.getType(), entity.getTimestamp(),
+                                       entity.getMessage(), entity.getContent(),
+                                       entity.getServerTimestamp(), entity.getServerUuid());
+    }
+  }
+
+  /**
+   * Where {@link #retrieveMessages(MessageSource, MessageReceivedCallback)} reads pages from and
+   * sends acknowledgements to.
+   */
+  interface MessageSource {
+    /**
+     * @return True if more messages are queued after this page.
+     */
+    boolean getMessages(SignalServiceEnvelopeEntityListReader.Listener listener) throws IOException;
+
+    void acknowledge(SignalServiceEnvelopeEntity entity, SignalServiceEnvelope envelope) throws IOException;
+  }
+
+  private class SocketMessageSource implements MessageSource {
+    @Override
+    public boolean getMessages(SignalServiceEnvelopeEntityListReader.Listener listener) throws IOException {
+      return socket.getMessages(listener);
+    }
+
+    @Override
+    public void acknowledge(SignalServiceEnvelopeEntity entity, SignalServiceEnvelope envelope) throws IOException {
+      if (envelope.hasUuid()) socket.acknowledgeMessage(envelope.getUuid());
+      else                    socket.acknowledgeMessage(entity.getSourceE164(), entity.getTimestamp());
+    }
+  }
+
+  private static class AcknowledgeTask implements Callable<Void> {
+
+    private final MessageSource               source;
+    private final SignalServiceEnvelopeEntity entity;
+    private final SignalServiceEnvelope       envelope;
+
+    private AcknowledgeTask(MessageSource source, SignalServiceEnvelopeEntity entity, SignalServiceEnvelope envelope) {
+      this.source   = source;
+      this.entity   = entity;
+      this.envelope = envelope;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      source.acknowledge(entity, envelope);
+      return null;
+    }
+  }
+
   public interface MessageReceivedCallback {
     public void onMessage(SignalServiceEnvelope envelope);
   }
@@ -1,53 +1,120 @@
 package org.whispersystems.signalservice.api.messages.multidevice;
 
+import com.google.protobuf.CodedInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+/**
+ * Reads a sequence of varint32 length-prefixed records, each optionally followed by an attachment.
+ *
+ * The source is read through a buffer, and record bodies are read into a single buffer that is
+ * reused across records. Attachments are not copied: they are returned as streams over the source,
+ * and whatever part of one the caller did not read is skipped when the next record is read.
+ */
 public class ChunkedInputStream {
 
+  private static final int BUFFER_SIZE = 8192;
+
   protected final InputStream in;
 
+  private byte[]             record = new byte[256];
+  private LimitedInputStream attachment;
+
   public ChunkedInputStream(InputStream in) {
-    this.in = in;
+    this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, BUFFER_SIZE);
   }
 
   protected int readRawVarint32() throws IOException {
-    byte tmp = (byte)in.read();
-    if (tmp >= 0) {
-      return tmp;
+    int tmp = in.read();
+
+    if (tmp == -1) {
+      throw new EOFException();
     }
+
     int result = tmp & 0x7f;
-    if ((tmp = (byte)in.read()) >= 0) {
-      result |= tmp << 7;
-    } else {
-      result |= (tmp & 0x7f) << 7;
-      if ((tmp = (byte)in.read()) >= 0) {
-        result |= tmp << 14;
-      } else {
-        result |= (tmp & 0x7f) << 14;
-        if ((tmp = (byte)in.read()) >= 0) {
-          result |= tmp << 21;
-        } else {
-          result |= (tmp & 0x7f) << 21;
-          result |= (tmp = (byte)in.read()) << 28;
-          if (tmp < 0) {
-            // Discard upper 32 bits.
-            for (int i = 0; i < 5; i++) {
-              if ((byte)in.read() >= 0) {
-                return result;
-              }
-            }
-
-            throw new IOException("Malformed varint!");
-          }
-        }
+
+    for (int shift = 7; (tmp & 0x80) != 0; shift += 7) {
+      tmp = in.read();
+
+      if (tmp == -1) {
+        throw new IOException("Truncated varint!");
+      }
+
+      if (shift < 32) {
+        result |= (tmp & 0x7f) << shift;
+      } else if (shift >= 64) {
+        throw new IOException("Malformed varint!");
       }
     }
 
     return result;
   }
 
+  /**
+   * Skips the rest of the previous record's attachment and reads the next record into the reusable
+   * record buffer.
+   *
+   * @return A stream over the record, which is only valid until the next call.
+   */
+  protected CodedInputStream readRecord() throws IOException {
+    skipAttachment();
+
+    int length = readRawVarint32();
+
+    if (length < 0) {
+      throw new IOException("Invalid record length: " + length);
+    }
+
+    if (record.length < length) {
+      record = new byte[Math.max(length, record.length * 2)];
+    }
+
+    readFully(in, record, length);
+
+    return CodedInputStream.newInstance(record, 0, length);
+  }
+
+  /**
+   * @return A stream over the attachment that follows the current record, read lazily from the
+   *         source. It has to be read before the next record, as it is skipped otherwise.
+   */
+  protected InputStream readAttachment(long length) {
+    attachment = new LimitedInputStream(in, length);
+    return attachment;
+  }
+
+  private void skipAttachment() throws IOException {
+    if (attachment == null) {
+      return;
+    }
+
+    while (attachment.remaining() > 0) {
+      if (attachment.skip(attachment.remaining()) == 0 && attachment.read() == -1) {
+        throw new EOFException("Truncated attachment!");
+      }
+    }
+
+    attachment = null;
+  }
+
+  private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+    int offset = 0;
+
+    while (offset < length) {
+      int read = in.read(buffer, offset, length - offset);
+
+      if (read == -1) {
+        throw new EOFException("Truncated record!");
+      }
+
+      offset += read;
+    }
+  }
+
   protected static final class LimitedInputStream extends FilterInputStream {
 
     private long left;
@@ -58,6 +125,10 @@ public class ChunkedInputStream {
       left = limit;
     }
 
+    long remaining() {
+      return left;
+    }
+
     @Override public int available() throws IOException {
       return (int) Math.min(in.available(), left);
     }
@@ -111,6 +182,10 @@ public class ChunkedInputStream {
       left -= skipped;
       return skipped;
     }
+
+    @Override public void close() {
+      // The source is shared with the following records.
+    }
   }
 
 }
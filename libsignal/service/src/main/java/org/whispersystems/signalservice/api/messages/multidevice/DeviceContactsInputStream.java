@@ -17,7 +17,6 @@ import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentStre
 import org.whispersystems.signalservice.api.push.SignalServiceAddress;
 import org.whispersystems.signalservice.api.util.UuidUtil;
 import org.whispersystems.signalservice.internal.push.SignalServiceProtos;
-import org.whispersystems.signalservice.internal.util.Util;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -31,11 +30,7 @@ public class DeviceContactsInputStream extends ChunkedInputStream {
   }
 
   public DeviceContact read() throws IOException {
-    long   detailsLength     = readRawVarint32();
-    byte[] detailsSerialized = new byte[(int)detailsLength];
-    Util.readFully(in, detailsSerialized);
-
-    SignalServiceProtos.ContactDetails details = SignalServiceProtos.ContactDetails.parseFrom(detailsSerialized);
+    SignalServiceProtos.ContactDetails details = SignalServiceProtos.ContactDetails.parseFrom(readRecord());
 
     if (!SignalServiceAddress.isValidAddress(details.getUuid(), details.getNumber())) {
       throw new IOException("Missing contact address!");
@@ -54,7 +49,7 @@ public class DeviceContactsInputStream extends ChunkedInputStream {
 
     if (details.hasAvatar()) {
       long        avatarLength      = details.getAvatar().getLength();
-      InputStream avatarStream      = new LimitedInputStream(in, avatarLength);
+      InputStream avatarStream      = readAttachment(avatarLength);
       String      avatarContentType = details.getAvatar().getContentType();
 
       avatar = Optional.of(new SignalServiceAttachmentStream(avatarStream, avatarContentType, avatarLength, Optional.<String>absent(), false, null, null));
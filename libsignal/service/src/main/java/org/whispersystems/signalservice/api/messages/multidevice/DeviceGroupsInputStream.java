@@ -12,7 +12,6 @@ import org.whispersystems.signalservice.api.push.SignalServiceAddress;
 import org.whispersystems.signalservice.api.util.UuidUtil;
 import org.whispersystems.signalservice.internal.push.SignalServiceProtos;
 import org.whispersystems.signalservice.internal.push.SignalServiceProtos.GroupDetails;
-import org.whispersystems.signalservice.internal.util.Util;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,11 +25,7 @@ public class DeviceGroupsInputStream extends ChunkedInputStream{
   }
 
   public DeviceGroup read() throws IOException {
-    long   detailsLength     = readRawVarint32();
-    byte[] detailsSerialized = new byte[(int)detailsLength];
-    Util.readFully(in, detailsSerialized);
-
-    GroupDetails details = GroupDetails.parseFrom(detailsSerialized);
+    GroupDetails details = GroupDetails.parseFrom(readRecord());
 
     if (!details.hasId()) {
       throw new IOException("ID missing on group record!");
@@ -49,7 +44,7 @@ public class DeviceGroupsInputStream extends ChunkedInputStream{
 
     if (details.hasAvatar()) {
       long        avatarLength      = details.getAvatar().getLength();
-      InputStream avatarStream      = new ChunkedInputStream.LimitedInputStream(in, avatarLength);
+      InputStream avatarStream      = readAttachment(avatarLength);
       String      avatarContentType = details.getAvatar().getContentType();
 
       avatar = Optional.of(new SignalServiceAttachmentStream(avatarStream, avatarContentType, avatarLength, Optional.<String>absent(), false, null, null));
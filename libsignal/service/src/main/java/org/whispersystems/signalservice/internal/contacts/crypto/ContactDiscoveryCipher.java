@@ -1,12 +1,10 @@
 package org.whispersystems.signalservice.internal.contacts.crypto;
 
-import org.whispersystems.libsignal.util.ByteUtil;
 import org.whispersystems.signalservice.api.crypto.InvalidCiphertextException;
 import org.whispersystems.signalservice.internal.contacts.entities.DiscoveryRequest;
 import org.whispersystems.signalservice.internal.contacts.entities.DiscoveryResponse;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 public final class ContactDiscoveryCipher {
@@ -15,23 +13,18 @@ public final class ContactDiscoveryCipher {
   }
 
   public static DiscoveryRequest createDiscoveryRequest(List<String> addressBook, RemoteAttestation remoteAttestation) {
-    try {
-      ByteArrayOutputStream requestDataStream = new ByteArrayOutputStream();
+    ByteBuffer requestData = ByteBuffer.allocate(addressBook.size() * 8);
 
-      for (String address : addressBook) {
-        requestDataStream.write(ByteUtil.longToByteArray(Long.parseLong(address)));
-      }
+    for (String address : addressBook) {
+      requestData.putLong(Long.parseLong(address));
+    }
 
-      byte[] clientKey   = remoteAttestation.getKeys().getClientKey();
-      byte[] requestData = requestDataStream.toByteArray();
-      byte[] aad         = remoteAttestation.getRequestId();
+    byte[] clientKey = remoteAttestation.getKeys().getClientKey();
+    byte[] aad       = remoteAttestation.getRequestId();
 
-      AESCipher.AESEncryptedResult aesEncryptedResult = AESCipher.encrypt(clientKey, aad, requestData);
+    AESCipher.AESEncryptedResult aesEncryptedResult = AESCipher.encrypt(clientKey, aad, requestData.array());
 
-      return new DiscoveryRequest(addressBook.size(), aesEncryptedResult.aad, aesEncryptedResult.iv, aesEncryptedResult.data, aesEncryptedResult.mac);
-    } catch (IOException e) {
-      throw new AssertionError(e);
-    }
+    return new DiscoveryRequest(addressBook.size(), aesEncryptedResult.aad, aesEncryptedResult.iv, aesEncryptedResult.data, aesEncryptedResult.mac);
   }
 
   public static byte[] getDiscoveryResponseData(DiscoveryResponse response, RemoteAttestation remoteAttestation) throws InvalidCiphertextException {
@@ -88,6 +88,7 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -348,9 +349,24 @@ public class PushServiceSocket {
     }
   }
 
-  public List<SignalServiceEnvelopeEntity> getMessages() throws IOException {
-    String responseText = makeServiceRequest(String.format(MESSAGE_PATH, ""), "GET", null);
-    return JsonUtil.fromJson(responseText, SignalServiceEnvelopeEntityList.class).getMessages();
+  /**
+   * Streams the queued messages to the listener as they are parsed.
+   *
+   * @return True if the server has more messages queued than were returned in this response.
+   */
+  public boolean getMessages(SignalServiceEnvelopeEntityListReader.Listener listener) throws IOException {
+    Response     response = makeServiceStreamRequest(String.format(MESSAGE_PATH, ""), "GET");
+    ResponseBody body     = response.body();
+
+    try {
+      if (response.code() == 204) {
+        return false;
+      }
+
+      return SignalServiceEnvelopeEntityListReader.read(body.byteStream(), listener);
+    } finally {
+      body.close();
+    }
   }
 
   public void acknowledgeMessage(String sender, long timestamp) throws IOException {
@@ -674,7 +690,7 @@ public class PushServiceSocket {
     makeServiceRequest(DELETE_USERNAME_PATH, "DELETE", null);
   }
 
-  public List<ContactTokenDetails> retrieveDirectory(Set<String> contactTokens)
+  public List<ContactTokenDetails> retrieveDirectory(Collection<String> contactTokens)
       throws NonSuccessfulResponseCodeException, PushNetworkException
   {
     try {
@@ -805,7 +821,11 @@ public class PushServiceSocket {
       throw new IOException("Missing body!");
     }
 
-    return StorageItems.parseFrom(response.body().bytes());
+    try {
+      return StorageItems.parseFrom(response.body().byteStream());
+    } finally {
+      response.body().close();
+    }
   }
 
   public Optional<StorageManifest> writeStorageContacts(String authToken, WriteOperation writeOperation) throws IOException {
@@ -1043,6 +1063,40 @@ public class PushServiceSocket {
       throw new PushNetworkException(ioe);
     }
 
+    handleServiceResponseCode(responseCode, responseMessage, responseBody, responseCodeHandler);
+
+    return responseBody;
+  }
+
+  /**
+   * Like {@link #makeServiceRequest(String, String, String)}, but leaves the body of a successful
+   * response unread so that it can be streamed. The caller is responsible for closing it.
+   */
+  private Response makeServiceStreamRequest(String urlFragment, String method)
+      throws NonSuccessfulResponseCodeException, PushNetworkException
+  {
+    Response response = getServiceConnection(urlFragment, method, null, NO_HEADERS, Optional.<UnidentifiedAccess>absent());
+
+    if (response.code() == 200 || response.code() == 204) {
+      return response;
+    }
+
+    String responseBody;
+
+    try {
+      responseBody = response.body().string();
+    } catch (IOException ioe) {
+      throw new PushNetworkException(ioe);
+    }
+
+    handleServiceResponseCode(response.code(), response.message(), responseBody, NO_HANDLER);
+
+    throw new AssertionError("Unhandled response code: " + response.code());
+  }
+
+  private static void handleServiceResponseCode(int responseCode, String responseMessage, String responseBody, ResponseCodeHandler responseCodeHandler)
+      throws NonSuccessfulResponseCodeException, PushNetworkException
+  {
     responseCodeHandler.handle(responseCode);
 
     switch (responseCode) {
@@ -1115,8 +1169,6 @@ public class PushServiceSocket {
     if (responseCode != 200 && responseCode != 204) {
       throw new NonSuccessfulResponseCodeException("Bad response: " + responseCode + " " + responseMessage);
     }
-
-    return responseBody;
   }
 
   private Response getServiceConnection(String urlFragment, String method, String body, Map<String, String> headers, Optional<UnidentifiedAccess> unidentifiedAccess)
@@ -0,0 +1,56 @@
+package org.whispersystems.signalservice.internal.push;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.whispersystems.signalservice.internal.util.JsonUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Incrementally reads a {@link SignalServiceEnvelopeEntityList} response, handing each envelope to
+ * a {@link Listener} as soon as it has been parsed instead of materializing the whole list.
+ */
+public final class SignalServiceEnvelopeEntityListReader {
+
+  private SignalServiceEnvelopeEntityListReader() {}
+
+  /**
+   * @return The value of the response's "more" flag, indicating that the server has further
+   *         messages queued beyond this page.
+   */
+  public static boolean read(InputStream in, Listener listener) throws IOException {
+    JsonParser parser = JsonUtil.createParser(in);
+    boolean    more   = false;
+
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected an object!");
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String    field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+
+        if ("messages".equals(field) && value == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            listener.onEntity(parser.readValueAs(SignalServiceEnvelopeEntity.class));
+          }
+        } else if ("more".equals(field) && value.isBoolean()) {
+          more = parser.getBooleanValue();
+        } else {
+          parser.skipChildren();
+        }
+      }
+    } finally {
+      parser.close();
+    }
+
+    return more;
+  }
+
+  public interface Listener {
+    void onEntity(SignalServiceEnvelopeEntity entity) throws IOException;
+  }
+}
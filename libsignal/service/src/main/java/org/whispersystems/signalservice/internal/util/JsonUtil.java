@@ -24,6 +24,7 @@ import org.whispersystems.signalservice.api.util.UuidUtil;
 import org.whispersystems.util.Base64;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 
 public class JsonUtil {
@@ -50,6 +51,10 @@ public class JsonUtil {
   {
     return objectMapper.readValue(json, clazz);
   }
+
+  public static JsonParser createParser(InputStream in) throws IOException {
+    return objectMapper.getFactory().createParser(in);
+  }
   
   public static class IdentityKeySerializer extends JsonSerializer<IdentityKey> {
     @Override
@@ -0,0 +1,163 @@
+package org.whispersystems.signalservice.internal.util.concurrent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A group of blocking network tasks that run on one pool shared by every caller, with at most
+ * {@code maxConcurrency} of the group's tasks running at once. Results are returned in the order
+ * the tasks were submitted.
+ */
+public final class TaskGroup<T> {
+
+  private static final int MAX_THREADS = 16;
+
+  private static final ThreadPoolExecutor SHARED_EXECUTOR = createSharedExecutor();
+
+  private final int                  maxConcurrency;
+  private final List<FutureTask<T>>  tasks   = new ArrayList<>();
+  private final Queue<FutureTask<T>> pending = new LinkedList<>();
+
+  private int running;
+
+  public TaskGroup(int maxConcurrency) {
+    if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency);
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Runs every task with at most {@code maxConcurrency} in flight.
+   *
+   * @see #awaitAll()
+   */
+  public static <T> List<T> invokeAll(List<? extends Callable<T>> callables, int maxConcurrency)
+      throws IOException, ExecutionException
+  {
+    TaskGroup<T> group = new TaskGroup<>(maxConcurrency);
+
+    for (Callable<T> callable : callables) {
+      group.submit(callable);
+    }
+
+    return group.awaitAll();
+  }
+
+  public synchronized void submit(Callable<T> callable) {
+    FutureTask<T> task = new FutureTask<>(callable);
+
+    tasks.add(task);
+    pending.add(task);
+
+    startPending();
+  }
+
+  public synchronized boolean isEmpty() {
+    return tasks.isEmpty();
+  }
+
+  /**
+   * Waits for every submitted task. If one fails the rest are cancelled, and the failure is
+   * rethrown as is if it's an {@link IOException} or unchecked. Any other checked exception is
+   * left wrapped in the {@link ExecutionException} for the caller to unwrap.
+   */
+  public List<T> awaitAll() throws IOException, ExecutionException {
+    List<FutureTask<T>> submitted;
+
+    synchronized (this) {
+      submitted = new ArrayList<>(tasks);
+    }
+
+    List<T> results = new ArrayList<>(submitted.size());
+
+    try {
+      for (FutureTask<T> task : submitted) {
+        results.add(task.get());
+      }
+    } catch (InterruptedException e) {
+      cancel();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      cancel();
+
+      Throwable cause = e.getCause();
+
+      if      (cause instanceof IOException)      throw (IOException) cause;
+      else if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      else if (cause instanceof Error)            throw (Error) cause;
+      else                                        throw e;
+    }
+
+    return results;
+  }
+
+  /**
+   * Throws the cause of an {@link ExecutionException} from {@link #awaitAll()} if it has the given
+   * type.
+   */
+  public static <E extends Exception> void rethrowIfInstance(ExecutionException e, Class<E> type) throws E {
+    if (type.isInstance(e.getCause())) {
+      throw type.cast(e.getCause());
+    }
+  }
+
+  private synchronized void cancel() {
+    pending.clear();
+
+    for (FutureTask<T> task : tasks) {
+      task.cancel(true);
+    }
+  }
+
+  private synchronized void startPending() {
+    while (running < maxConcurrency && !pending.isEmpty()) {
+      final FutureTask<T> task = pending.remove();
+
+      running++;
+
+      SHARED_EXECUTOR.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            task.run();
+          } finally {
+            onTaskFinished();
+          }
+        }
+      });
+    }
+  }
+
+  private synchronized void onTaskFinished() {
+    running--;
+    startPending();
+  }
+
+  private static ThreadPoolExecutor createSharedExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                                                         30, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         new ThreadFactory() {
+                                                           private final AtomicInteger count = new AtomicInteger();
+
+                                                           @Override
+                                                           public Thread newThread(Runnable runnable) {
+                                                             Thread thread = new Thread(runnable, "signal-task-group-" + count.incrementAndGet());
+                                                             thread.setDaemon(true);
+                                                             return thread;
+                                                           }
+                                                         });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
@@ -0,0 +1,134 @@
+package org.whispersystems.signalservice.api;
+
+import org.junit.Test;
+import org.whispersystems.libsignal.InvalidKeyException;
+import org.whispersystems.signalservice.api.storage.SignalStorageRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class SignalServiceAccountManagerTest {
+
+  @Test
+  public void readStorageRecords_singleChunk_readsOnCallingThread() throws Exception {
+    FakeStorageService service = new FakeStorageService();
+
+    List<SignalStorageRecord> records = SignalServiceAccountManager.readStorageRecords(keys(SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS), service);
+
+    assertEquals(SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS, records.size());
+    assertEquals(Collections.singletonList(SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS), service.chunkSizes);
+    assertEquals(Collections.singletonList(Thread.currentThread().getName()), service.threads);
+  }
+
+  @Test
+  public void readStorageRecords_manyChunks_returnsRecordsInKeyOrder() throws Exception {
+    FakeStorageService service = new FakeStorageService();
+    int                count   = SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS * 2 + 500;
+
+    List<SignalStorageRecord> records = SignalServiceAccountManager.readStorageRecords(keys(count), service);
+
+    assertEquals(count, records.size());
+
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, ByteBuffer.wrap(records.get(i).getKey()).getInt());
+    }
+
+    List<Integer> chunkSizes = new ArrayList<>(service.chunkSizes);
+    Collections.sort(chunkSizes);
+
+    assertEquals(3, chunkSizes.size());
+    assertEquals(500, (int) chunkSizes.get(0));
+    assertEquals(SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS, (int) chunkSizes.get(2));
+  }
+
+  @Test
+  public void readStorageRecords_boundsChunksInFlight() throws Exception {
+    FakeStorageService service = new FakeStorageService();
+    service.latencyMillis = 20;
+
+    SignalServiceAccountManager.readStorageRecords(keys(SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS * 10), service);
+
+    assertEquals(10, service.chunkSizes.size());
+    assertTrue("Max in flight: " + service.maxInFlight.get(), service.maxInFlight.get() <= SignalServiceAccountManager.STORAGE_READ_MAX_CONCURRENCY);
+    assertTrue("Max in flight: " + service.maxInFlight.get(), service.maxInFlight.get() > 1);
+  }
+
+  @Test
+  public void readStorageRecords_invalidKey_isRethrown() throws Exception {
+    FakeStorageService service = new FakeStorageService();
+    service.failOnKey = SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS + 1;
+
+    try {
+      SignalServiceAccountManager.readStorageRecords(keys(SignalServiceAccountManager.STORAGE_READ_MAX_ITEMS * 3), service);
+      fail();
+    } catch (InvalidKeyException e) {
+      assertEquals("Bad key", e.getMessage());
+    }
+  }
+
+  @Test
+  public void readStorageRecords_empty() throws Exception {
+    assertTrue(SignalServiceAccountManager.readStorageRecords(new ArrayList<byte[]>(), new FakeStorageService()).isEmpty());
+  }
+
+  private static List<byte[]> keys(int count) {
+    List<byte[]> keys = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      keys.add(ByteBuffer.allocate(4).putInt(i).array());
+    }
+
+    return keys;
+  }
+
+  /**
+   * Stands in for the storage service: returns one record per key, after an optional delay.
+   */
+  private static final class FakeStorageService implements SignalServiceAccountManager.StorageRecordReader {
+
+    private final List<Integer> chunkSizes  = Collections.synchronizedList(new ArrayList<Integer>());
+    private final List<String>  threads     = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger inFlight    = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private long latencyMillis;
+    private int  failOnKey = -1;
+
+    @Override
+    public List<SignalStorageRecord> read(List<byte[]> storageKeys) throws IOException, InvalidKeyException {
+      int current = inFlight.incrementAndGet();
+
+      synchronized (maxInFlight) {
+        maxInFlight.set(Math.max(maxInFlight.get(), current));
+      }
+
+      try {
+        chunkSizes.add(storageKeys.size());
+        threads.add(Thread.currentThread().getName());
+
+        if (latencyMillis > 0) Thread.sleep(latencyMillis);
+
+        List<SignalStorageRecord> records = new ArrayList<>(storageKeys.size());
+
+        for (byte[] key : storageKeys) {
+          if (ByteBuffer.wrap(key).getInt() == failOnKey) throw new InvalidKeyException("Bad key");
+          records.add(SignalStorageRecord.forUnknown(key, 0));
+        }
+
+        return records;
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.whispersystems.signalservice.api;
+
+import org.junit.Test;
+import org.whispersystems.signalservice.api.messages.SignalServiceEnvelope;
+import org.whispersystems.signalservice.internal.push.SignalServiceEnvelopeEntity;
+import org.whispersystems.signalservice.internal.push.SignalServiceEnvelopeEntityListReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class SignalServiceMessageReceiverTest {
+
+  @Test
+  public void retrieveMessages_readsEveryPageAndAcknowledgesEachEnvelope() throws IOException {
+    FakeMessageSource  source   = new FakeMessageSource(page(true, "a", "b", "c"), page(true, "d"), page(false, "e", "f"));
+    final List<String> received = new ArrayList<>();
+
+    List<SignalServiceEnvelope> envelopes = SignalServiceMessageReceiver.retrieveMessages(source, new SignalServiceMessageReceiver.MessageReceivedCallback() {
+      @Override
+      public void onMessage(SignalServiceEnvelope envelope) {
+        received.add(envelope.getUuid());
+      }
+    });
+
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f"), received);
+    assertEquals(6, envelopes.size());
+    assertEquals(3, source.pagesRequested);
+    assertEquals(received, sorted(source.acknowledged));
+  }
+
+  @Test
+  public void retrieveMessages_finishesAcknowledgementsBeforeNextPage() throws IOException {
+    FakeMessageSource source = new FakeMessageSource(page(true, "a", "b", "c", "d", "e", "f", "g", "h"), page(false, "i"));
+    source.ackDelayMillis = 10;
+
+    SignalServiceMessageReceiver.retrieveMessages(source, new SignalServiceMessageReceiver.NullMessageReceivedCallback());
+
+    assertEquals(Arrays.asList(0, 8), source.acknowledgedAtPageRequest);
+    assertEquals(9, source.acknowledged.size());
+  }
+
+  @Test
+  public void retrieveMessages_stopsOnEmptyPage() throws IOException {
+    FakeMessageSource source = new FakeMessageSource(page(true, "a"), page(true), page(false, "never"));
+
+    List<SignalServiceEnvelope> envelopes = SignalServiceMessageReceiver.retrieveMessages(source, new SignalServiceMessageReceiver.NullMessageReceivedCallback());
+
+    assertEquals(1, envelopes.size());
+    assertEquals(2, source.pagesRequested);
+  }
+
+  @Test
+  public void retrieveMessages_acknowledgementFailure_stopsPaging() {
+    FakeMessageSource source = new FakeMessageSource(page(true, "a", "fail", "c"), page(false, "d"));
+
+    try {
+      SignalServiceMessageReceiver.retrieveMessages(source, new SignalServiceMessageReceiver.NullMessageReceivedCallback());
+      fail();
+    } catch (IOException e) {
+      assertEquals("Ack failed: fail", e.getMessage());
+    }
+
+    assertEquals(1, source.pagesRequested);
+  }
+
+  private static String page(boolean more, String... guids) {
+    StringBuilder json = new StringBuilder("{\"messages\":[");
+
+    for (int i = 0; i < guids.length; i++) {
+      if (i > 0) json.append(',');
+      json.append("{\"type\":1,\"timestamp\":").append(i + 1).append(",\"guid\":\"").append(guids[i]).append("\"}");
+    }
+
+    return json.append("],\"more\":").append(more).append('}').toString();
+  }
+
+  private static List<String> sorted(Set<String> values) {
+    List<String> list = new ArrayList<>(values);
+    Collections.sort(list);
+    return list;
+  }
+
+  private static final class FakeMessageSource implements SignalServiceMessageReceiver.MessageSource {
+
+    private final List<String>  pages;
+    private final Set<String>   acknowledged              = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<Integer> acknowledgedAtPageRequest = new ArrayList<>();
+
+    private int  pagesRequested;
+    private long ackDelayMillis;
+
+    private FakeMessageSource(String... pages) {
+      this.pages = Arrays.asList(pages);
+    }
+
+    @Override
+    public boolean getMessages(SignalServiceEnvelopeEntityListReader.Listener listener) throws IOException {
+      acknowledgedAtPageRequest.add(acknowledged.size());
+
+      String page = pages.get(pagesRequested++);
+
+      return SignalServiceEnvelopeEntityListReader.read(new ByteArrayInputStream(page.getBytes(Charset.forName("UTF-8"))), listener);
+    }
+
+    @Override
+    public void acknowledge(SignalServiceEnvelopeEntity entity, SignalServiceEnvelope envelope) throws IOException {
+      try {
+        if (ackDelayMillis > 0) Thread.sleep(ackDelayMillis);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+
+      if ("fail".equals(envelope.getUuid())) {
+        throw new IOException("Ack failed: " + envelope.getUuid());
+      }
+
+      acknowledged.add(envelope.getUuid());
+    }
+  }
+}
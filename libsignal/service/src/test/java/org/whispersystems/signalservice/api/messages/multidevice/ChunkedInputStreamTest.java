@@ -0,0 +1,163 @@
+package org.whispersystems.signalservice.api.messages.multidevice;
+
+import com.google.protobuf.CodedInputStream;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class ChunkedInputStreamTest {
+
+  @Test
+  public void readRawVarint32_roundTrip() throws IOException {
+    int[]                 values = { 0, 1, 127, 128, 300, 16383, 16384, 2097151, 2097152, 268435455, 268435456, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    TestOutputStream      writer = new TestOutputStream(out);
+
+    for (int value : values) {
+      writer.writeVarint32(value);
+    }
+
+    ChunkedInputStream in = new ChunkedInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+    for (int value : values) {
+      assertEquals(value, in.readRawVarint32());
+    }
+  }
+
+  @Test
+  public void readRawVarint32_discardsUpperBitsOfTenByteVarint() throws IOException {
+    byte[]             encoded = { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01 };
+    ChunkedInputStream in      = new ChunkedInputStream(new ByteArrayInputStream(encoded));
+
+    assertEquals(-1, in.readRawVarint32());
+  }
+
+  @Test(expected = IOException.class)
+  public void readRawVarint32_tooLong() throws IOException {
+    byte[] encoded = new byte[11];
+    Arrays.fill(encoded, (byte) 0x80);
+
+    new ChunkedInputStream(new ByteArrayInputStream(encoded)).readRawVarint32();
+  }
+
+  @Test(expected = EOFException.class)
+  public void readRecord_endOfStream() throws IOException {
+    new ChunkedInputStream(new ByteArrayInputStream(new byte[0])).readRecord();
+  }
+
+  @Test(expected = EOFException.class)
+  public void readRecord_truncated() throws IOException {
+    new ChunkedInputStream(new ByteArrayInputStream(new byte[] { 10, 1, 2, 3 })).readRecord();
+  }
+
+  @Test
+  public void readRecord_growsAndReusesBuffer() throws IOException {
+    byte[][]              records = { bytes(3, 1), bytes(1000, 2), bytes(0, 3), bytes(70000, 4), bytes(5, 5) };
+    ByteArrayOutputStream out     = new ByteArrayOutputStream();
+    TestOutputStream      writer  = new TestOutputStream(out);
+
+    for (byte[] record : records) {
+      writer.writeRecord(record, null);
+    }
+
+    ChunkedInputStream in = new ChunkedInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+    for (byte[] record : records) {
+      assertArrayEquals(record, readAll(in.readRecord()));
+    }
+  }
+
+  @Test
+  public void readAttachment_unreadAttachmentsAreSkipped() throws IOException {
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    TestOutputStream      writer = new TestOutputStream(out);
+
+    writer.writeRecord(bytes(4, 1), bytes(20000, 7));
+    writer.writeRecord(bytes(4, 2), bytes(50, 8));
+    writer.writeRecord(bytes(4, 3), bytes(10, 9));
+    writer.writeRecord(bytes(4, 4), null);
+
+    ChunkedInputStream in = new ChunkedInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+    assertArrayEquals(bytes(4, 1), readAll(in.readRecord()));
+    in.readAttachment(20000);
+
+    assertArrayEquals(bytes(4, 2), readAll(in.readRecord()));
+    InputStream partial = in.readAttachment(50);
+    assertEquals(8, partial.read());
+    partial.close();
+
+    assertArrayEquals(bytes(4, 3), readAll(in.readRecord()));
+    assertArrayEquals(bytes(10, 9), readAll(in.readAttachment(10)));
+
+    assertArrayEquals(bytes(4, 4), readAll(in.readRecord()));
+  }
+
+  @Test(expected = EOFException.class)
+  public void readAttachment_truncated() throws IOException {
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    TestOutputStream      writer = new TestOutputStream(out);
+
+    writer.writeRecord(bytes(4, 1), bytes(10, 7));
+
+    ChunkedInputStream in = new ChunkedInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+    in.readRecord();
+    in.readAttachment(100);
+    in.readRecord();
+  }
+
+  private static byte[] bytes(int length, int value) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) value);
+    return bytes;
+  }
+
+  private static byte[] readAll(CodedInputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    while (!in.isAtEnd()) {
+      out.write(in.readRawByte());
+    }
+
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out    = new ByteArrayOutputStream();
+    byte[]                buffer = new byte[4096];
+    int                   read;
+
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static final class TestOutputStream extends ChunkedOutputStream {
+
+    TestOutputStream(ByteArrayOutputStream out) {
+      super(out);
+    }
+
+    void writeRecord(byte[] record, byte[] attachment) throws IOException {
+      writeVarint32(record.length);
+      out.write(record);
+
+      if (attachment != null) {
+        out.write(attachment);
+      }
+    }
+  }
+}
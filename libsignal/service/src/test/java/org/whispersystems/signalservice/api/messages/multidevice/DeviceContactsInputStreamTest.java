@@ -0,0 +1,128 @@
+package org.whispersystems.signalservice.api.messages.multidevice;
+
+import org.junit.Test;
+import org.signal.zkgroup.profiles.ProfileKey;
+import org.whispersystems.libsignal.util.guava.Optional;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachment;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentStream;
+import org.whispersystems.signalservice.api.push.SignalServiceAddress;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class DeviceContactsInputStreamTest {
+
+  @Test
+  public void read_roundTrip() throws IOException {
+    List<DeviceContact> contacts = new ArrayList<>();
+    List<byte[]>        avatars  = new ArrayList<>();
+
+    for (int i = 0; i < 100; i++) {
+      byte[] avatar = i % 3 == 0 ? Util.getSecretBytes(i * 100) : null;
+
+      avatars.add(avatar);
+      contacts.add(createContact(i, name(i % 10 == 0 ? 2000 : 10, i), avatar));
+    }
+
+    DeviceContactsInputStream in = new DeviceContactsInputStream(new ByteArrayInputStream(write(contacts)));
+
+    for (int i = 0; i < contacts.size(); i++) {
+      DeviceContact expected = contacts.get(i);
+      DeviceContact actual   = in.read();
+
+      assertEquals(expected.getAddress(), actual.getAddress());
+      assertEquals(expected.getName(), actual.getName());
+      assertEquals(expected.getColor(), actual.getColor());
+      assertEquals(expected.getExpirationTimer(), actual.getExpirationTimer());
+      assertEquals(expected.getInboxPosition(), actual.getInboxPosition());
+      assertEquals(expected.isBlocked(), actual.isBlocked());
+      assertEquals(expected.isArchived(), actual.isArchived());
+
+      if (avatars.get(i) != null) {
+        assertTrue(actual.getAvatar().isPresent());
+        assertEquals(avatars.get(i).length, actual.getAvatar().get().getLength());
+        assertArrayEquals(avatars.get(i), Util.readFullyAsBytes(actual.getAvatar().get().getInputStream()));
+      } else {
+        assertFalse(actual.getAvatar().isPresent());
+      }
+    }
+
+    try {
+      in.read();
+      fail();
+    } catch (EOFException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void read_skipsUnreadAvatars() throws IOException {
+    List<DeviceContact> contacts = Arrays.asList(createContact(0, "Alice", Util.getSecretBytes(10000)),
+                                                 createContact(1, "Bob", Util.getSecretBytes(500)),
+                                                 createContact(2, "Carol", null));
+    DeviceContactsInputStream in = new DeviceContactsInputStream(new ByteArrayInputStream(write(contacts)));
+
+    assertEquals(Optional.of("Alice"), in.read().getName());
+
+    DeviceContact bob = in.read();
+    assertEquals(Optional.of("Bob"), bob.getName());
+    bob.getAvatar().get().getInputStream().read(new byte[100]);
+
+    assertEquals(Optional.of("Carol"), in.read().getName());
+  }
+
+  private static byte[] write(List<DeviceContact> contacts) throws IOException {
+    ByteArrayOutputStream      bytes = new ByteArrayOutputStream();
+    DeviceContactsOutputStream out   = new DeviceContactsOutputStream(bytes);
+
+    for (DeviceContact contact : contacts) {
+      out.write(contact);
+    }
+
+    out.close();
+
+    return bytes.toByteArray();
+  }
+
+  private static DeviceContact createContact(int index, String name, byte[] avatar) {
+    SignalServiceAddress address = new SignalServiceAddress(UUID.randomUUID(), "+1555555" + String.format("%04d", index));
+
+    return new DeviceContact(address,
+                             Optional.of(name),
+                             avatar != null ? Optional.of(createAvatar(avatar)) : Optional.<SignalServiceAttachmentStream>absent(),
+                             Optional.of("blue"),
+                             Optional.<VerifiedMessage>absent(),
+                             Optional.<ProfileKey>absent(),
+                             index % 7 == 0,
+                             index % 2 == 0 ? Optional.of(index + 1) : Optional.<Integer>absent(),
+                             Optional.of(index),
+                             index % 5 == 0);
+  }
+
+  private static SignalServiceAttachmentStream createAvatar(byte[] avatar) {
+    return SignalServiceAttachment.newStreamBuilder()
+                                  .withStream(new ByteArrayInputStream(avatar))
+                                  .withContentType("image/jpeg")
+                                  .withLength(avatar.length)
+                                  .build();
+  }
+
+  private static String name(int length, int index) {
+    char[] name = new char[length];
+    Arrays.fill(name, (char) ('a' + index % 26));
+    return new String(name);
+  }
+}
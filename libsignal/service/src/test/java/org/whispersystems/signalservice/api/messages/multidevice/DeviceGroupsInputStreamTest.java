@@ -0,0 +1,102 @@
+package org.whispersystems.signalservice.api.messages.multidevice;
+
+import org.junit.Test;
+import org.whispersystems.libsignal.util.guava.Optional;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachment;
+import org.whispersystems.signalservice.api.messages.SignalServiceAttachmentStream;
+import org.whispersystems.signalservice.api.push.SignalServiceAddress;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class DeviceGroupsInputStreamTest {
+
+  @Test
+  public void read_roundTrip() throws IOException {
+    List<DeviceGroup> groups  = new ArrayList<>();
+    List<byte[]>      avatars = new ArrayList<>();
+
+    for (int i = 0; i < 50; i++) {
+      byte[] avatar = i % 2 == 0 ? Util.getSecretBytes(1000 + i) : null;
+
+      avatars.add(avatar);
+      groups.add(createGroup(i, i * 10, avatar));
+    }
+
+    ByteArrayOutputStream    bytes = new ByteArrayOutputStream();
+    DeviceGroupsOutputStream out   = new DeviceGroupsOutputStream(bytes);
+
+    for (DeviceGroup group : groups) {
+      out.write(group);
+    }
+
+    out.close();
+
+    DeviceGroupsInputStream in = new DeviceGroupsInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+    for (int i = 0; i < groups.size(); i++) {
+      DeviceGroup expected = groups.get(i);
+      DeviceGroup actual   = in.read();
+
+      assertArrayEquals(expected.getId(), actual.getId());
+      assertEquals(expected.getName(), actual.getName());
+      assertEquals(expected.getMembers(), actual.getMembers());
+      assertEquals(expected.isActive(), actual.isActive());
+      assertEquals(expected.isBlocked(), actual.isBlocked());
+      assertEquals(expected.getInboxPosition(), actual.getInboxPosition());
+
+      if (avatars.get(i) == null) {
+        assertFalse(actual.getAvatar().isPresent());
+      } else if (i % 4 == 0) {
+        assertArrayEquals(avatars.get(i), Util.readFullyAsBytes(actual.getAvatar().get().getInputStream()));
+      } else {
+        assertTrue(actual.getAvatar().isPresent());
+      }
+    }
+
+    try {
+      in.read();
+    } catch (EOFException e) {
+      return;
+    }
+
+    throw new AssertionError("Expected end of stream");
+  }
+
+  private static DeviceGroup createGroup(int index, int memberCount, byte[] avatar) {
+    List<SignalServiceAddress> members = new ArrayList<>(memberCount);
+
+    for (int i = 0; i < memberCount; i++) {
+      members.add(new SignalServiceAddress(UUID.randomUUID(), "+1555555" + String.format("%04d", i)));
+    }
+
+    Optional<SignalServiceAttachmentStream> avatarStream = avatar == null ? Optional.<SignalServiceAttachmentStream>absent()
+                                                                          : Optional.of(SignalServiceAttachment.newStreamBuilder()
+                                                                                                               .withStream(new ByteArrayInputStream(avatar))
+                                                                                                               .withContentType("image/jpeg")
+                                                                                                               .withLength(avatar.length)
+                                                                                                               .build());
+
+    return new DeviceGroup(Util.getSecretBytes(16),
+                           Optional.of("Group " + index),
+                           members,
+                           avatarStream,
+                           index % 3 != 0,
+                           Optional.<Integer>absent(),
+                           Optional.<String>absent(),
+                           index % 5 == 0,
+                           Optional.of(index),
+                           false);
+  }
+}
@@ -0,0 +1,102 @@
+package org.whispersystems.signalservice.internal.contacts.crypto;
+
+import org.junit.Test;
+import org.whispersystems.curve25519.Curve25519;
+import org.whispersystems.libsignal.util.ByteUtil;
+import org.whispersystems.signalservice.api.crypto.InvalidCiphertextException;
+import org.whispersystems.signalservice.internal.contacts.entities.DiscoveryRequest;
+import org.whispersystems.signalservice.internal.contacts.entities.DiscoveryResponse;
+import org.whispersystems.signalservice.internal.util.Util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public final class ContactDiscoveryCipherTest {
+
+  @Test
+  public void createDiscoveryRequest_encodesAddressesAsBigEndianLongs() throws Exception {
+    RemoteAttestation attestation = createAttestation();
+    List<String>      addressBook = Arrays.asList("15555550100", "15555550101", "447700900123");
+
+    DiscoveryRequest request     = ContactDiscoveryCipher.createDiscoveryRequest(addressBook, attestation);
+    ByteBuffer       requestData = ByteBuffer.wrap(enclaveDecrypt(attestation, request));
+
+    assertEquals(addressBook.size(), request.getAddressCount());
+    assertArrayEquals(attestation.getRequestId(), request.getRequestId());
+    assertEquals(addressBook.size() * 8, requestData.remaining());
+
+    for (String address : addressBook) {
+      assertEquals(Long.parseLong(address), requestData.getLong());
+    }
+  }
+
+  @Test
+  public void createDiscoveryRequest_emptyAddressBook() throws Exception {
+    RemoteAttestation attestation = createAttestation();
+    DiscoveryRequest  request     = ContactDiscoveryCipher.createDiscoveryRequest(Collections.<String>emptyList(), attestation);
+
+    assertEquals(0, request.getAddressCount());
+    assertEquals(0, enclaveDecrypt(attestation, request).length);
+  }
+
+  @Test
+  public void getDiscoveryResponseData_roundTrip() throws Exception {
+    RemoteAttestation attestation = createAttestation();
+    byte[]            results     = new byte[] { 1, 0, 0, 1, 1 };
+
+    assertArrayEquals(results, ContactDiscoveryCipher.getDiscoveryResponseData(enclaveEncrypt(attestation, results), attestation));
+  }
+
+  @Test(expected = InvalidCiphertextException.class)
+  public void getDiscoveryResponseData_tamperedMac() throws Exception {
+    RemoteAttestation attestation = createAttestation();
+    DiscoveryResponse response    = enclaveEncrypt(attestation, new byte[] { 1, 0, 1 });
+
+    response.getMac()[0] ^= 1;
+
+    ContactDiscoveryCipher.getDiscoveryResponseData(response, attestation);
+  }
+
+  private static RemoteAttestation createAttestation() {
+    Curve25519            curve     = Curve25519.getInstance(Curve25519.BEST);
+    RemoteAttestationKeys keys      = new RemoteAttestationKeys(curve.generateKeyPair(),
+                                                                curve.generateKeyPair().getPublicKey(),
+                                                                curve.generateKeyPair().getPublicKey());
+
+    return new RemoteAttestation(Util.getSecretBytes(16), keys, Collections.<String>emptyList());
+  }
+
+  /**
+   * Stands in for the enclave, which decrypts requests with the client key and request ID.
+   */
+  private static byte[] enclaveDecrypt(RemoteAttestation attestation, DiscoveryRequest request) throws Exception {
+    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(attestation.getKeys().getClientKey(), "AES"), new GCMParameterSpec(128, request.getIv()));
+    cipher.updateAAD(request.getRequestId());
+
+    return cipher.doFinal(ByteUtil.combine(request.getData(), request.getMac()));
+  }
+
+  /**
+   * Stands in for the enclave, which encrypts responses with the server key.
+   */
+  private static DiscoveryResponse enclaveEncrypt(RemoteAttestation attestation, byte[] data) throws Exception {
+    byte[] iv     = Util.getSecretBytes(12);
+    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(attestation.getKeys().getServerKey(), "AES"), new GCMParameterSpec(128, iv));
+
+    byte[]   ciphertext = cipher.doFinal(data);
+    byte[][] parts      = ByteUtil.split(ciphertext, ciphertext.length - 16, 16);
+
+    return new DiscoveryResponse(iv, parts[0], parts[1]);
+  }
+}
@@ -0,0 +1,84 @@
+package org.whispersystems.signalservice.internal.push;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class SignalServiceEnvelopeEntityListReaderTest {
+
+  @Test
+  public void read_emptyList() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new LinkedList<>();
+
+    boolean more = read("{\"messages\":[],\"more\":false}", entities);
+
+    assertFalse(more);
+    assertTrue(entities.isEmpty());
+  }
+
+  @Test
+  public void read_entitiesInOrder_withMore() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new LinkedList<>();
+
+    boolean more = read("{\"messages\":[" +
+                          "{\"type\":1,\"timestamp\":100,\"source\":\"+15555550101\",\"sourceDevice\":1,\"guid\":\"a\"}," +
+                          "{\"type\":6,\"timestamp\":200,\"serverTimestamp\":300,\"guid\":\"b\"}" +
+                        "],\"more\":true}", entities);
+
+    assertTrue(more);
+    assertEquals(2, entities.size());
+
+    assertEquals(1, entities.get(0).getType());
+    assertEquals(100, entities.get(0).getTimestamp());
+    assertEquals("+15555550101", entities.get(0).getSourceE164());
+    assertEquals("a", entities.get(0).getServerUuid());
+
+    assertEquals(6, entities.get(1).getType());
+    assertEquals(300, entities.get(1).getServerTimestamp());
+    assertFalse(entities.get(1).hasSource());
+  }
+
+  @Test
+  public void read_moreBeforeMessages_andUnknownFields() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new LinkedList<>();
+
+    boolean more = read("{\"more\":true,\"unknown\":{\"nested\":[1,2,3]},\"messages\":[{\"type\":1,\"unknown\":[{}]}]}", entities);
+
+    assertTrue(more);
+    assertEquals(1, entities.size());
+    assertEquals(1, entities.get(0).getType());
+  }
+
+  @Test
+  public void read_missingMore() throws IOException {
+    List<SignalServiceEnvelopeEntity> entities = new LinkedList<>();
+
+    boolean more = read("{\"messages\":[{\"type\":1}]}", entities);
+
+    assertFalse(more);
+    assertEquals(1, entities.size());
+  }
+
+  @Test(expected = IOException.class)
+  public void read_notAnObject() throws IOException {
+    read("[]", new LinkedList<SignalServiceEnvelopeEntity>());
+  }
+
+  private static boolean read(String json, final List<SignalServiceEnvelopeEntity> entities) throws IOException {
+    return SignalServiceEnvelopeEntityListReader.read(new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))),
+                                                      new SignalServiceEnvelopeEntityListReader.Listener() {
+                                                        @Override
+                                                        public void onEntity(SignalServiceEnvelopeEntity entity) {
+                                                          entities.add(entity);
+                                                        }
+                                                      });
+  }
+}
@@ -0,0 +1,124 @@
+package org.whispersystems.signalservice.internal.util.concurrent;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class TaskGroupTest {
+
+  @Test
+  public void invokeAll_returnsResultsInSubmissionOrder() throws Exception {
+    List<Callable<Integer>> tasks = new ArrayList<>();
+
+    for (int i = 0; i < 20; i++) {
+      final int value = i;
+      tasks.add(new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          Thread.sleep((20 - value) % 7);
+          return value;
+        }
+      });
+    }
+
+    List<Integer> results = TaskGroup.invokeAll(tasks, 4);
+
+    assertEquals(20, results.size());
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals(i, (int) results.get(i));
+    }
+  }
+
+  @Test
+  public void invokeAll_boundsConcurrency() throws Exception {
+    final AtomicInteger inFlight    = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    List<Callable<Void>> tasks = new ArrayList<>();
+
+    for (int i = 0; i < 30; i++) {
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          int current = inFlight.incrementAndGet();
+
+          synchronized (maxInFlight) {
+            maxInFlight.set(Math.max(maxInFlight.get(), current));
+          }
+
+          Thread.sleep(5);
+          inFlight.decrementAndGet();
+          return null;
+        }
+      });
+    }
+
+    TaskGroup.invokeAll(tasks, 3);
+
+    assertTrue("Max in flight: " + maxInFlight.get(), maxInFlight.get() <= 3);
+    assertTrue("Max in flight: " + maxInFlight.get(), maxInFlight.get() > 1);
+  }
+
+  @Test
+  public void awaitAll_rethrowsIOException() throws Exception {
+    TaskGroup<Void> group = new TaskGroup<>(2);
+
+    group.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        throw new IOException("Failed");
+      }
+    });
+
+    try {
+      group.awaitAll();
+      fail();
+    } catch (IOException e) {
+      assertEquals("Failed", e.getMessage());
+    }
+  }
+
+  @Test
+  public void awaitAll_leavesOtherCheckedExceptionsWrapped() throws Exception {
+    TaskGroup<Void> group = new TaskGroup<>(2);
+
+    group.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws SignatureException {
+        throw new SignatureException("Bad signature");
+      }
+    });
+
+    try {
+      group.awaitAll();
+      fail();
+    } catch (ExecutionException e) {
+      try {
+        TaskGroup.rethrowIfInstance(e, IllegalStateException.class);
+        TaskGroup.rethrowIfInstance(e, SignatureException.class);
+        fail();
+      } catch (SignatureException expected) {
+        assertEquals("Bad signature", expected.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void awaitAll_empty() throws Exception {
+    TaskGroup<Void> group = new TaskGroup<>(1);
+
+    assertTrue(group.isEmpty());
+    assertTrue(group.awaitAll().isEmpty());
+  }
+}